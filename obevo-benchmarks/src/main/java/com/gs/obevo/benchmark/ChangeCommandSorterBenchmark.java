@@ -0,0 +1,76 @@
+/**
+ * Copyright 2017 Goldman Sachs.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.gs.obevo.benchmark;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.gs.obevo.api.appdata.Change;
+import com.gs.obevo.impl.ExecuteChangeCommand;
+import com.gs.obevo.impl.changesorter.ChangeCommandSorterImpl;
+import com.gs.obevo.impl.command.DeployChangeCommand;
+import com.gs.obevo.impl.graph.GraphEnricherImpl;
+import org.eclipse.collections.api.list.ImmutableList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the ordering of the deploy commands via {@link ChangeCommandSorterImpl}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class ChangeCommandSorterBenchmark {
+    @Param({ "1000", "10000", "100000" })
+    public int objectCount;
+
+    private ImmutableList<ExecuteChangeCommand> changeCommands;
+    private ChangeCommandSorterImpl changeCommandSorter;
+
+    @Setup
+    public void setup() throws IOException {
+        SyntheticSchema schema = new SyntheticSchema(objectCount);
+        ImmutableList<Change> changes;
+        try {
+            changes = schema.readChanges();
+        } finally {
+            schema.delete();
+        }
+        GraphEnricherImpl graphEnricher = new GraphEnricherImpl(schema.getPlatform().convertDbObjectName()::valueOf);
+        SyntheticSchema.setDependentChanges(changes, graphEnricher.createDependencyGraph(changes, false));
+
+        changeCommands = changes.<ExecuteChangeCommand>collect(DeployChangeCommand::new);
+        changeCommandSorter = new ChangeCommandSorterImpl(schema.getPlatform());
+    }
+
+    @Benchmark
+    public List<ExecuteChangeCommand> sort() {
+        return changeCommandSorter.sort(changeCommands);
+    }
+}
@@ -0,0 +1,95 @@
+/**
+ * Copyright 2017 Goldman Sachs.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.gs.obevo.benchmark;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.gs.obevocomparer.compare.CatoComparison;
+import com.gs.obevocomparer.compare.simple.SimpleDataSourceComparator;
+import com.gs.obevocomparer.input.lang.MapDataSource;
+import com.gs.obevocomparer.util.CatoBaseUtil;
+import org.eclipse.collections.impl.factory.Lists;
+import org.eclipse.collections.impl.factory.Maps;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the comparison of two data sets via {@link SimpleDataSourceComparator}, as done by the CSV static data
+ * deployer to compare the file rows against the table rows.
+ *
+ * One row in a hundred differs between the two sides: a third of those are value breaks, and the others only exist on
+ * either the left or the right side.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class DataSourceComparatorBenchmark {
+    @Param({ "1000", "10000", "100000" })
+    public int objectCount;
+
+    private List<Map<String, Object>> leftRows;
+    private List<Map<String, Object>> rightRows;
+
+    @Setup
+    public void setup() {
+        leftRows = Lists.mutable.empty();
+        rightRows = Lists.mutable.empty();
+        for (int i = 0; i < objectCount; i++) {
+            Map<String, Object> row = newRow(i, "name" + i);
+            if (i % 300 == 100) {
+                leftRows.add(row);
+                rightRows.add(newRow(i, "changed" + i));
+            } else if (i % 300 == 200) {
+                leftRows.add(row);
+            } else if (i % 300 == 0) {
+                rightRows.add(row);
+            } else {
+                leftRows.add(row);
+                rightRows.add(newRow(i, "name" + i));
+            }
+        }
+    }
+
+    private static Map<String, Object> newRow(int id, String name) {
+        Map<String, Object> row = Maps.mutable.empty();
+        row.put("ID", id);
+        row.put("NAME", name);
+        row.put("AMOUNT", BigDecimal.valueOf(id, 2));
+        row.put("ACTIVE", id % 2 == 0);
+        return row;
+    }
+
+    @Benchmark
+    public CatoComparison compare() {
+        return CatoBaseUtil.compare("benchmark", new MapDataSource("left", leftRows), new MapDataSource("right", rightRows),
+                Lists.mutable.with("ID"));
+    }
+}
@@ -0,0 +1,80 @@
+/**
+ * Copyright 2017 Goldman Sachs.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.gs.obevo.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import com.gs.obevo.api.appdata.Change;
+import com.gs.obevo.impl.graph.GraphEnricherImpl;
+import com.gs.obevo.impl.graph.GraphSorter;
+import com.gs.obevo.impl.graph.SortableDependencyGroup;
+import org.eclipse.collections.api.list.ImmutableList;
+import org.jgrapht.Graph;
+import org.jgrapht.graph.DefaultEdge;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the building of the change dependency graph via {@link GraphEnricherImpl} and its topological sort via
+ * {@link GraphSorter}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class GraphBenchmark {
+    @Param({ "1000", "10000", "100000" })
+    public int objectCount;
+
+    private ImmutableList<Change> changes;
+    private GraphEnricherImpl graphEnricher;
+    private Graph<Change, DefaultEdge> graph;
+    private final GraphSorter graphSorter = new GraphSorter();
+
+    @Setup
+    public void setup() throws IOException {
+        SyntheticSchema schema = new SyntheticSchema(objectCount);
+        try {
+            changes = schema.readChanges();
+        } finally {
+            schema.delete();
+        }
+        graphEnricher = new GraphEnricherImpl(schema.getPlatform().convertDbObjectName()::valueOf);
+        graph = graphEnricher.createDependencyGraph(changes, false);
+    }
+
+    @Benchmark
+    public Graph<Change, DefaultEdge> createDependencyGraph() {
+        return graphEnricher.createDependencyGraph(changes, false);
+    }
+
+    @Benchmark
+    public ImmutableList<Change> sortChanges() {
+        return graphSorter.sortChanges(graph, SortableDependencyGroup.GRAPH_SORTER_COMPARATOR);
+    }
+}
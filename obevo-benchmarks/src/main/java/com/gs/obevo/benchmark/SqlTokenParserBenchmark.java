@@ -0,0 +1,69 @@
+/**
+ * Copyright 2017 Goldman Sachs.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.gs.obevo.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import com.gs.obevo.api.appdata.ChangeInput;
+import com.gs.obevo.db.sqlparser.tokenparser.SqlTokenParser;
+import org.eclipse.collections.api.list.ImmutableList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks the tokenizing of the change content via {@link SqlTokenParser}, as done for each change when removing
+ * comments or splitting statements.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class SqlTokenParserBenchmark {
+    @Param({ "1000", "10000", "100000" })
+    public int objectCount;
+
+    private ImmutableList<String> contents;
+
+    @Setup
+    public void setup() throws IOException {
+        SyntheticSchema schema = new SyntheticSchema(objectCount);
+        try {
+            contents = schema.readChangeInputs().collect(ChangeInput::getContent);
+        } finally {
+            schema.delete();
+        }
+    }
+
+    @Benchmark
+    public void parseTokens(Blackhole blackhole) {
+        for (String content : contents) {
+            blackhole.consume(new SqlTokenParser().parseTokens(content));
+        }
+    }
+}
@@ -0,0 +1,191 @@
+/**
+ * Copyright 2017 Goldman Sachs.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.gs.obevo.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+import com.gs.obevo.api.appdata.Change;
+import com.gs.obevo.api.appdata.ChangeIncremental;
+import com.gs.obevo.api.appdata.ChangeInput;
+import com.gs.obevo.api.appdata.ChangeRerunnable;
+import com.gs.obevo.api.appdata.CodeDependency;
+import com.gs.obevo.api.platform.ChangeType;
+import com.gs.obevo.api.platform.FileSourceParams;
+import com.gs.obevo.api.platform.Platform;
+import com.gs.obevo.db.impl.platforms.h2.H2DbPlatform;
+import com.gs.obevo.impl.DeployMetricsCollectorImpl;
+import com.gs.obevo.impl.graph.GraphUtil;
+import com.gs.obevo.impl.reader.DbDirectoryChangesetReader;
+import com.gs.obevo.impl.reader.TableChangeParser;
+import com.gs.obevo.impl.reader.TextMarkupDocumentReader;
+import com.gs.obevo.impl.text.TextDependencyExtractorImpl;
+import com.gs.obevo.util.vfs.FileRetrievalMode;
+import org.apache.commons.io.FileUtils;
+import org.eclipse.collections.api.list.ImmutableList;
+import org.eclipse.collections.impl.factory.Lists;
+import org.eclipse.collections.impl.factory.Sets;
+import org.jgrapht.Graph;
+import org.jgrapht.graph.DefaultEdge;
+
+/**
+ * Generates a schema of tables and views on disk for the benchmarks, so that they run against inputs of a given size
+ * that look like a real project.
+ *
+ * Every other object is a table with two changes: the table creation, and a foreign key to the previous table. The
+ * other objects are views that select from the previous table and from an earlier view, so that the dependency graph
+ * has both short and long dependency chains.
+ */
+public class SyntheticSchema {
+    public static final String SCHEMA = "SCHEMA1";
+
+    private final Platform platform = new H2DbPlatform();
+    private final int objectCount;
+    private final File sourceDir;
+
+    public SyntheticSchema(int objectCount) throws IOException {
+        this.objectCount = objectCount;
+        this.sourceDir = Files.createTempDirectory("obevo-benchmark-").toFile();
+        writeFiles();
+    }
+
+    public int getObjectCount() {
+        return objectCount;
+    }
+
+    public Platform getPlatform() {
+        return platform;
+    }
+
+    private void writeFiles() throws IOException {
+        File tableDir = new File(sourceDir, SCHEMA + "/" + platform.getChangeType(ChangeType.TABLE_STR).getDirectoryName());
+        File viewDir = new File(sourceDir, SCHEMA + "/" + platform.getChangeType(ChangeType.VIEW_STR).getDirectoryName());
+
+        for (int i = 0; i < objectCount; i++) {
+            if (isTable(i)) {
+                FileUtils.writeStringToFile(new File(tableDir, tableName(i) + ".sql"), tableContent(i), "UTF-8");
+            } else {
+                FileUtils.writeStringToFile(new File(viewDir, viewName(i) + ".sql"), viewContent(i), "UTF-8");
+            }
+        }
+    }
+
+    private static boolean isTable(int i) {
+        return i % 2 == 0;
+    }
+
+    private static String tableName(int i) {
+        return String.format("TABLE_%06d", i);
+    }
+
+    private static String viewName(int i) {
+        return String.format("VIEW_%06d", i);
+    }
+
+    private static String tableContent(int i) {
+        StringBuilder sb = new StringBuilder()
+                .append("//// CHANGE name=init\n")
+                .append("CREATE TABLE ").append(tableName(i)).append(" (\n")
+                .append("    ID INT NOT NULL,\n")
+                .append("    PARENT_ID INT NULL,\n")
+                .append("    NAME VARCHAR(100) NULL,\n")
+                .append("    PRIMARY KEY (ID)\n")
+                .append(")\n")
+                .append("GO\n");
+        if (i >= 2) {
+            sb.append("//// CHANGE name=fk\n")
+                    .append("ALTER TABLE ").append(tableName(i))
+                    .append(" ADD FOREIGN KEY (PARENT_ID) REFERENCES ").append(tableName(i - 2)).append("(ID)\n")
+                    .append("GO\n");
+        }
+        return sb.toString();
+    }
+
+    private static String viewContent(int i) {
+        StringBuilder sb = new StringBuilder()
+                .append("-- view over ").append(tableName(i - 1)).append("\n")
+                .append("CREATE VIEW ").append(viewName(i)).append(" AS\n")
+                .append("SELECT t.ID, t.NAME\n")
+                .append("FROM ").append(tableName(i - 1)).append(" t\n");
+        int earlierView = i / 2 | 1;
+        if (earlierView < i) {
+            sb.append("WHERE t.ID IN (SELECT v.ID FROM ").append(viewName(earlierView)).append(" v)\n");
+        }
+        return sb.append("GO\n").toString();
+    }
+
+    public DbDirectoryChangesetReader newReader() {
+        return new DbDirectoryChangesetReader(platform.convertDbObjectName(), new DeployMetricsCollectorImpl(), true,
+                new TextMarkupDocumentReader(false), null, TableChangeParser.DEFAULT_IMPL);
+    }
+
+    public FileSourceParams getFileSourceParams() {
+        return FileSourceParams.newBuilder()
+                .setFiles(Lists.immutable.with(FileRetrievalMode.FILE_SYSTEM.resolveSingleFileObject(sourceDir.getAbsolutePath())))
+                .setSchemaNames(Sets.immutable.with(SCHEMA))
+                .setChangeTypes(platform.getChangeTypes())
+                .setAcceptedExtensions(platform.getAcceptedExtensions())
+                .setDefaultSourceEncoding("UTF-8")
+                .setBaseline(false)
+                .build();
+    }
+
+    public ImmutableList<ChangeInput> readChangeInputs() {
+        return newReader().readChanges(getFileSourceParams());
+    }
+
+    /**
+     * Returns the changes of the schema with the code dependencies populated, as MainDeployer does prior to building
+     * the dependency graph.
+     */
+    public ImmutableList<Change> readChanges() {
+        ImmutableList<ChangeInput> changeInputs = readChangeInputs();
+        final Map<ChangeInput, Set<CodeDependency>> dependencies = new TextDependencyExtractorImpl(platform.convertDbObjectName())
+                .calculateDependencies(changeInputs);
+
+        return changeInputs.collect(input -> {
+            Change change;
+            if (input.isRerunnable()) {
+                change = new ChangeRerunnable(input.getChangeKey(), input.getContentHash(), input.getContent());
+            } else {
+                change = new ChangeIncremental(input.getChangeKey(), input.getOrderWithinObject(), input.getContentHash(), input.getContent());
+            }
+            change.setChangeInput(input);
+            change.setOrder(input.getOrder());
+            Set<CodeDependency> inputDependencies = dependencies.get(input);
+            change.setCodeDependencies(Sets.immutable.withAll(inputDependencies != null ? inputDependencies : Collections.<CodeDependency>emptySet()));
+            return change;
+        });
+    }
+
+    /**
+     * Sets the dependent changes on each change from the given graph, as MainDeployer does prior to sorting the
+     * change commands.
+     */
+    public static void setDependentChanges(ImmutableList<Change> changes, Graph<Change, DefaultEdge> graph) {
+        for (Change change : changes) {
+            change.setDependentChanges(Sets.immutable.withAll(GraphUtil.getDependencyNodes(graph, change)));
+        }
+    }
+
+    public void delete() throws IOException {
+        FileUtils.deleteDirectory(sourceDir);
+    }
+}
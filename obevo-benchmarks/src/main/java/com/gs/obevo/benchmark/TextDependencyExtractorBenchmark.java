@@ -0,0 +1,70 @@
+/**
+ * Copyright 2017 Goldman Sachs.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.gs.obevo.benchmark;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import com.gs.obevo.api.appdata.ChangeInput;
+import com.gs.obevo.api.appdata.CodeDependency;
+import com.gs.obevo.impl.text.TextDependencyExtractorImpl;
+import org.eclipse.collections.api.list.ImmutableList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the discovery of the object dependencies from the change text via {@link TextDependencyExtractorImpl}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class TextDependencyExtractorBenchmark {
+    @Param({ "1000", "10000", "100000" })
+    public int objectCount;
+
+    private ImmutableList<ChangeInput> changeInputs;
+    private TextDependencyExtractorImpl textDependencyExtractor;
+
+    @Setup
+    public void setup() throws IOException {
+        SyntheticSchema schema = new SyntheticSchema(objectCount);
+        try {
+            changeInputs = schema.readChangeInputs();
+        } finally {
+            schema.delete();
+        }
+        textDependencyExtractor = new TextDependencyExtractorImpl(schema.getPlatform().convertDbObjectName());
+    }
+
+    @Benchmark
+    public Map<ChangeInput, Set<CodeDependency>> calculateDependencies() {
+        return textDependencyExtractor.calculateDependencies(changeInputs);
+    }
+}
@@ -29,6 +29,7 @@ import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.apache.commons.lang3.builder.ToStringStyle;
 import org.eclipse.collections.api.block.function.Function;
+import org.eclipse.collections.api.block.function.Function0;
 import org.eclipse.collections.api.list.ImmutableList;
 import org.eclipse.collections.api.set.ImmutableSet;
 import org.eclipse.collections.api.set.MutableSet;
@@ -55,6 +56,7 @@ public abstract class Change implements SortableDependency, SortableDependencyGr
     private String convertedContent;
     private String rollbackContent;
     private String convertedRollbackContent;
+    private transient Function0<String> rollbackContentLoader;
     private int order = DEFAULT_CHANGE_ORDER;
 
     private String permissionScheme;  // this is really a property of the DB object, not the individual change. We have this here until we refactor to having a "DB Object" class
@@ -294,10 +296,12 @@ public abstract class Change implements SortableDependency, SortableDependencyGr
     }
 
     public String getConvertedRollbackContent() {
+        this.loadRollbackContent();
         return this.convertedRollbackContent == null ? this.rollbackContent : this.convertedRollbackContent;
     }
 
     public String getRollbackContent() {
+        this.loadRollbackContent();
         // Setting default as blank space for backwards-compatibility w/ Sybase 11.9 change
         // (Sybase 11.9 requires TEXT data type, which cannot accept null values)
         // This setting would work fine across DBs
@@ -305,10 +309,34 @@ public abstract class Change implements SortableDependency, SortableDependencyGr
     }
 
     public void setRollbackContent(String rollbackContent) {
+        this.rollbackContentLoader = null;
         // Setting default as blank space for backwards-compatibility w/ Sybase 11.9 change
         this.rollbackContent = rollbackContent != null ? rollbackContent : "";
     }
 
+    /**
+     * Sets the function to retrieve the rollback content with on its first access, for when the content is expensive
+     * to read and rarely needed, e.g. for the changes read from the audit table.
+     */
+    public void setRollbackContentLoader(Function0<String> rollbackContentLoader) {
+        this.rollbackContentLoader = rollbackContentLoader;
+        this.rollbackContent = null;
+    }
+
+    /**
+     * Whether the rollback content is available without invoking the loader from
+     * {@link #setRollbackContentLoader(Function0)}.
+     */
+    public synchronized boolean isRollbackContentLoaded() {
+        return this.rollbackContentLoader == null;
+    }
+
+    private synchronized void loadRollbackContent() {
+        if (this.rollbackContentLoader != null) {
+            this.setRollbackContent(this.rollbackContentLoader.value());
+        }
+    }
+
     public @NotNull int getOrderWithinObject() {
         return this.orderWithinObject;
     }
@@ -20,6 +20,7 @@ import java.util.LinkedHashSet;
 import com.gs.obevo.api.factory.PlatformConfiguration;
 import com.gs.obevo.api.platform.DeployerAppContext;
 import com.gs.obevo.api.platform.DeployerRuntimeException;
+import com.gs.obevo.api.platform.ParallelGroupExecutorType;
 import com.gs.obevo.api.platform.Platform;
 import com.gs.obevo.util.inputreader.Credential;
 import com.gs.obevo.util.vfs.FileObject;
@@ -63,6 +64,9 @@ public class Environment<T extends Platform> {
     private String sourceEncoding = PlatformConfiguration.getInstance().getSourceEncoding();
     private int legacyDirectoryStructureEnabledVersion = PlatformConfiguration.getInstance().getFeatureToggleVersion("legacyDirectoryStructureEnabled");
     private Boolean forceEnvInfraSetup;
+    private int sourceReaderThreads = 1;
+    private String sourceParseCacheDir;
+    private ParallelGroupExecutorType parallelGroupExecutorType = ParallelGroupExecutorType.FORK_JOIN;
 
     public void copyFieldsFrom(Environment<T> env) {
         this.name = env.name;
@@ -85,6 +89,9 @@ public class Environment<T extends Platform> {
         this.legacyDirectoryStructureEnabledVersion = env.legacyDirectoryStructureEnabledVersion;
         this.metadataLineReaderVersion = env.metadataLineReaderVersion;
         this.forceEnvInfraSetup = env.forceEnvInfraSetup;
+        this.sourceReaderThreads = env.sourceReaderThreads;
+        this.sourceParseCacheDir = env.sourceParseCacheDir;
+        this.parallelGroupExecutorType = env.parallelGroupExecutorType;
     }
 
     public String getName() {
@@ -390,4 +397,40 @@ public class Environment<T extends Platform> {
     public void setForceEnvInfraSetup(Boolean forceEnvInfraSetup) {
         this.forceEnvInfraSetup = forceEnvInfraSetup;
     }
+
+    /**
+     * Number of threads to use when reading and parsing the source files and discovering the dependencies among them.
+     * Defaults to 1; larger values help for source trees with many files. The order of the changes read is the same
+     * regardless of this value.
+     */
+    public int getSourceReaderThreads() {
+        return sourceReaderThreads;
+    }
+
+    public void setSourceReaderThreads(int sourceReaderThreads) {
+        this.sourceReaderThreads = sourceReaderThreads;
+    }
+
+    /**
+     * Directory in which to persist the changes parsed from each source file, so that subsequent runs can skip parsing
+     * the files that have not changed. Disabled (null) by default.
+     */
+    public String getSourceParseCacheDir() {
+        return sourceParseCacheDir;
+    }
+
+    public void setSourceParseCacheDir(String sourceParseCacheDir) {
+        this.sourceParseCacheDir = sourceParseCacheDir;
+    }
+
+    /**
+     * How the changes of a parallel group are run concurrently; defaults to {@link ParallelGroupExecutorType#FORK_JOIN}.
+     */
+    public ParallelGroupExecutorType getParallelGroupExecutorType() {
+        return parallelGroupExecutorType;
+    }
+
+    public void setParallelGroupExecutorType(ParallelGroupExecutorType parallelGroupExecutorType) {
+        this.parallelGroupExecutorType = parallelGroupExecutorType;
+    }
 }
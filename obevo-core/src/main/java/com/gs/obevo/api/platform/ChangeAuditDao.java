@@ -68,5 +68,13 @@ public interface ChangeAuditDao {
      */
     void deleteObjectChanges(Change change);
 
+    /**
+     * Writes any audit changes that the implementation has buffered, e.g. to send them in batches. Called at the end
+     * of the deployment step, including when changes have failed. No-op by default for implementations that write
+     * each change immediately.
+     */
+    default void flush() {
+    }
+
     @NotNull AuditLock acquireLock();
 }
@@ -16,6 +16,9 @@
 package com.gs.obevo.api.platform;
 
 import com.gs.obevo.api.appdata.Change;
+import org.eclipse.collections.api.block.function.Function;
+import org.eclipse.collections.api.collection.ImmutableCollection;
+import org.eclipse.collections.api.map.ImmutableMap;
 
 /**
  * Defines the behavior for deploying a change. This class will be Platform-specific.
@@ -41,4 +44,12 @@ public interface ChangeTypeBehavior {
     void dropObject(Change change, boolean dropForRecreate);
 
     String getDefinitionFromEnvironment(Change exampleChange);
+
+    /**
+     * Returns the result of {@link #getDefinitionFromEnvironment(Change)} for each of the given changes, keyed by the
+     * change. Implementations can override this to retrieve the definitions of many objects in a single lookup.
+     */
+    default ImmutableMap<Change, String> getDefinitionsFromEnvironment(ImmutableCollection<Change> exampleChanges) {
+        return exampleChanges.toMap(change -> change, (Function<Change, String>) this::getDefinitionFromEnvironment).toImmutable();
+    }
 }
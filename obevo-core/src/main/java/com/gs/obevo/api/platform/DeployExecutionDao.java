@@ -18,6 +18,9 @@ package com.gs.obevo.api.platform;
 import com.gs.obevo.api.appdata.DeployExecution;
 import com.gs.obevo.api.appdata.PhysicalSchema;
 import org.eclipse.collections.api.collection.ImmutableCollection;
+import org.eclipse.collections.api.map.ImmutableMap;
+import org.eclipse.collections.api.map.MapIterable;
+import org.eclipse.collections.impl.factory.Maps;
 
 /**
  * DAO for creating new instances of deploy executions, which mark the beginning/end of a deployment.
@@ -26,6 +29,7 @@ public interface DeployExecutionDao {
     // keeping the ARTIFACT name in the prefix to be consistent w/ the pre-existing ARTIFACTDEPLOYMENT table
     String DEPLOY_EXECUTION_TABLE_NAME = "ARTIFACTEXECUTION";
     String DEPLOY_EXECUTION_ATTRIBUTE_TABLE_NAME = "ARTIFACTEXECUTIONATTR";
+    String CHANGE_DURATION_TABLE_NAME = "ARTIFACTDURATION";
 
     void init();
 
@@ -40,4 +44,20 @@ public interface DeployExecutionDao {
     String getExecutionContainerName();
 
     String getExecutionAttributeContainerName();
+
+    /**
+     * Returns the duration in milliseconds of the last successful deploy of each change in the schema, keyed by the
+     * change key strings that were passed to {@link #persistChangeDurations(DeployExecution, MapIterable)}.
+     * Implementations that do not store the durations return an empty map.
+     */
+    default ImmutableMap<String, Long> getChangeDurations(String schema) {
+        return Maps.immutable.empty();
+    }
+
+    /**
+     * Stores the deploy durations in milliseconds of the changes deployed by the given execution, replacing any
+     * previously stored durations of those changes. Only called for the deploys that report their progress.
+     */
+    default void persistChangeDurations(DeployExecution deployExecution, MapIterable<String, Long> durationMillisByChangeKey) {
+    }
 }
@@ -26,4 +26,10 @@ public interface DeployMetrics {
     String UNEXPECTED_FILE_EXTENSIONS = WARNINGS_PREFIX + ".unexpectedFileExtensions";
 
     ImmutableMap<String, Object> toSerializedForm();
+
+    /**
+     * Returns the metrics along with the per-phase timings and the per-change-type latency histograms of the deploy
+     * in the given format.
+     */
+    String export(MetricsExportFormat format);
 }
@@ -41,6 +41,12 @@ public class MainDeployerArgs {
     private String deployRequesterId;
     private File sourceGraphExportFile;
     private GraphExportFormat sourceGraphExportFormat;
+    private File metricsExportFile;
+    private MetricsExportFormat metricsExportFormat;
+    private boolean flightRecorderEventsEnabled;
+    private File flightRecordingFile;
+    private int deployThreads = 1;
+    private int progressReportIntervalSeconds = 0;
 
     public Predicate<? super ChangeKey> getChangeInclusionPredicate() {
         return changeInclusionPredicate;
@@ -238,4 +244,95 @@ public class MainDeployerArgs {
     public void setSourceGraphExportFormat(GraphExportFormat sourceGraphExportFormat) {
         this.sourceGraphExportFormat = sourceGraphExportFormat;
     }
+
+    public File getMetricsExportFile() {
+        return metricsExportFile;
+    }
+
+    /**
+     * File to write the deploy metrics and timings to once the deploy completes (whether successfully or not), in the
+     * {@link #setMetricsExportFormat(MetricsExportFormat) export format}.
+     */
+    public void setMetricsExportFile(File metricsExportFile) {
+        this.metricsExportFile = metricsExportFile;
+    }
+
+    public MetricsExportFormat getMetricsExportFormat() {
+        return metricsExportFormat;
+    }
+
+    /**
+     * Format of the {@link #setMetricsExportFile(File) metrics export file}; defaults to JSON.
+     */
+    public void setMetricsExportFormat(MetricsExportFormat metricsExportFormat) {
+        this.metricsExportFormat = metricsExportFormat;
+    }
+
+    public boolean isFlightRecorderEventsEnabled() {
+        return flightRecorderEventsEnabled;
+    }
+
+    /**
+     * Whether to emit the stages of the deploy (e.g. the source reading, the deploy of each change and each SQL
+     * statement) as JDK Flight Recorder events. The events are only recorded while a flight recording is running,
+     * e.g. one started via -XX:StartFlightRecording or via {@link #setFlightRecordingFile(File)}.
+     */
+    public void setFlightRecorderEventsEnabled(boolean flightRecorderEventsEnabled) {
+        this.flightRecorderEventsEnabled = flightRecorderEventsEnabled;
+    }
+
+    public File getFlightRecordingFile() {
+        return flightRecordingFile;
+    }
+
+    /**
+     * File to write a flight recording of the deploy to, with the default JDK settings plus the deploy events (which
+     * are enabled if this is set).
+     */
+    public void setFlightRecordingFile(File flightRecordingFile) {
+        this.flightRecordingFile = flightRecordingFile;
+    }
+
+    public int getDeployThreads() {
+        return deployThreads;
+    }
+
+    /**
+     * Number of threads to use when executing the changes; defaults to 1 (i.e. changes are deployed one at a time).
+     * If greater than 1, then changes whose dependencies have already been deployed can be executed concurrently.
+     * Each thread will use its own connection, so the deploy fails if this exceeds the number of threads that the
+     * connection pool of the deployer context is sized for (5 by default).
+     */
+    public void setDeployThreads(int deployThreads) {
+        if (deployThreads < 1) {
+            throw new IllegalArgumentException("deployThreads must be at least 1; got " + deployThreads);
+        }
+        this.deployThreads = deployThreads;
+    }
+
+    public MainDeployerArgs deployThreads(int deployThreads) {
+        this.setDeployThreads(deployThreads);
+        return this;
+    }
+
+    public int getProgressReportIntervalSeconds() {
+        return progressReportIntervalSeconds;
+    }
+
+    /**
+     * Interval at which to log the progress of the change deployments, with the time remaining estimated from the
+     * durations of the previous deploys of the changes, which are stored for that purpose only while this is enabled;
+     * defaults to 0, which disables the progress reports.
+     */
+    public void setProgressReportIntervalSeconds(int progressReportIntervalSeconds) {
+        if (progressReportIntervalSeconds < 0) {
+            throw new IllegalArgumentException("progressReportIntervalSeconds must not be negative; got " + progressReportIntervalSeconds);
+        }
+        this.progressReportIntervalSeconds = progressReportIntervalSeconds;
+    }
+
+    public MainDeployerArgs progressReportIntervalSeconds(int progressReportIntervalSeconds) {
+        this.setProgressReportIntervalSeconds(progressReportIntervalSeconds);
+        return this;
+    }
 }
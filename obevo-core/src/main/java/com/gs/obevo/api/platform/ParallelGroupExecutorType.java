@@ -0,0 +1,32 @@
+/**
+ * Copyright 2017 Goldman Sachs.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.gs.obevo.api.platform;
+
+/**
+ * How the changes of a parallel group (i.e. the incremental changes sharing a parallelGroup value) are run concurrently.
+ */
+public enum ParallelGroupExecutorType {
+    /**
+     * Runs the changes on the shared fork-join pool, with up to the configured number of threads.
+     */
+    FORK_JOIN,
+    /**
+     * Starts a thread per change, a virtual thread if the JVM supports them, with up to the configured number of
+     * changes running at once. Suited to changes that mostly wait on the database, e.g. index builds or data migrations.
+     */
+    THREAD_PER_CHANGE,
+    ;
+}
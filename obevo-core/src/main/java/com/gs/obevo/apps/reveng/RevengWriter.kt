@@ -65,14 +65,16 @@ class RevengWriter {
                 ChangeAuditDao.CHANGE_AUDIT_TABLE_NAME,
 //                DbChecksumDao.SCHEMA_CHECKSUM_TABLE_NAME,  should reactivate this, though this functionality has been disabled for a while
                 DeployExecutionDao.DEPLOY_EXECUTION_TABLE_NAME,
-                DeployExecutionDao.DEPLOY_EXECUTION_ATTRIBUTE_TABLE_NAME
+                DeployExecutionDao.DEPLOY_EXECUTION_ATTRIBUTE_TABLE_NAME,
+                DeployExecutionDao.CHANGE_DURATION_TABLE_NAME
         ).collect(platform.convertDbObjectName()))
         // TODO using COLLECTION for MongoDB - make this generic
         coreTablesToExclude.putAll("COLLECTION", Sets.immutable.with(
                 ChangeAuditDao.CHANGE_AUDIT_TABLE_NAME,
 //                DbChecksumDao.SCHEMA_CHECKSUM_TABLE_NAME,  should reactivate this, though this functionality has been disabled for a while
                 DeployExecutionDao.DEPLOY_EXECUTION_TABLE_NAME,
-                DeployExecutionDao.DEPLOY_EXECUTION_ATTRIBUTE_TABLE_NAME
+                DeployExecutionDao.DEPLOY_EXECUTION_ATTRIBUTE_TABLE_NAME,
+                DeployExecutionDao.CHANGE_DURATION_TABLE_NAME
         ).collect(platform.convertDbObjectName()))
 
         var objectExclusionPredicateBuilder = platform.objectExclusionPredicateBuilder
@@ -19,6 +19,7 @@ import java.io.File;
 import java.util.Arrays;
 
 import com.gs.obevo.api.platform.GraphExportFormat;
+import com.gs.obevo.api.platform.MetricsExportFormat;
 import com.gs.obevo.util.inputreader.Credential;
 import com.sampullara.cli.Argument;
 import org.eclipse.collections.api.list.primitive.ImmutableBooleanList;
@@ -61,6 +62,12 @@ public class DeployerArgs {
     private Boolean forceEnvSetup;
     private File sourceGraphExportFile;
     private String sourceGraphExportFormatStr;  // to be converted to enum in the getter
+    private File metricsExportFile;
+    private String metricsExportFormatStr;  // to be converted to enum in the getter
+    private boolean flightRecorderEvents;
+    private File flightRecordingFile;
+    private Integer deployThreads;
+    private Integer progressReportIntervalSeconds;
 
     @Argument(value = "env", required = false)
     public void setEnvNames(String[] envNames) {
@@ -404,4 +411,58 @@ public class DeployerArgs {
     public void setSourceGraphExportFormatStr(String sourceGraphExportFormat) {
         this.sourceGraphExportFormatStr = sourceGraphExportFormat;
     }
+
+    public File getMetricsExportFile() {
+        return metricsExportFile;
+    }
+
+    @Argument(value = "metricsExportFile", required = false, description = "file to write the metrics and the per-phase and per-change timings of the deploy to")
+    public void setMetricsExportFile(File metricsExportFile) {
+        this.metricsExportFile = metricsExportFile;
+    }
+
+    public MetricsExportFormat getMetricsExportFormat() {
+        return metricsExportFormatStr != null ? MetricsExportFormat.valueOf(metricsExportFormatStr) : null;
+    }
+
+    @Argument(value = "metricsExportFormat", required = false, description = "format to write the metrics in. Only used if metricsExportFile is specified. Can be JSON, PROMETHEUS. Default == JSON")
+    public void setMetricsExportFormatStr(String metricsExportFormat) {
+        this.metricsExportFormatStr = metricsExportFormat;
+    }
+
+    public boolean isFlightRecorderEvents() {
+        return flightRecorderEvents;
+    }
+
+    @Argument(value = "flightRecorderEvents", required = false, description = "Emit the deploy stages, changes and SQL statements as JDK Flight Recorder events, for recordings started via the JVM options or jcmd")
+    public void setFlightRecorderEvents(boolean flightRecorderEvents) {
+        this.flightRecorderEvents = flightRecorderEvents;
+    }
+
+    public File getFlightRecordingFile() {
+        return flightRecordingFile;
+    }
+
+    @Argument(value = "flightRecordingFile", required = false, description = "file to write a JDK Flight Recorder recording of the deploy to, including the deploy events")
+    public void setFlightRecordingFile(File flightRecordingFile) {
+        this.flightRecordingFile = flightRecordingFile;
+    }
+
+    public Integer getDeployThreads() {
+        return deployThreads;
+    }
+
+    @Argument(value = "deployThreads", required = false, description = "(Optional, defaults to 1) Number of threads to deploy changes with; changes whose dependencies are already deployed can run concurrently if more than 1")
+    public void setDeployThreads(Integer deployThreads) {
+        this.deployThreads = deployThreads;
+    }
+
+    public Integer getProgressReportIntervalSeconds() {
+        return progressReportIntervalSeconds;
+    }
+
+    @Argument(value = "progressReportIntervalSeconds", required = false, description = "(Optional, defaults to 0, i.e. disabled) Interval in seconds at which to log the deploy progress and the estimated time remaining, based on the durations of the changes from the previous deploys that had this enabled")
+    public void setProgressReportIntervalSeconds(Integer progressReportIntervalSeconds) {
+        this.progressReportIntervalSeconds = progressReportIntervalSeconds;
+    }
 }
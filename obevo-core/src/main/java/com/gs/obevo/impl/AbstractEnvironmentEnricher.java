@@ -23,6 +23,7 @@ import com.gs.obevo.api.appdata.Schema;
 import com.gs.obevo.api.factory.EnvironmentEnricher;
 import com.gs.obevo.api.factory.PlatformConfiguration;
 import com.gs.obevo.api.platform.ChangeType;
+import com.gs.obevo.api.platform.ParallelGroupExecutorType;
 import com.gs.obevo.api.platform.Platform;
 import com.gs.obevo.util.CollectionUtil;
 import com.gs.obevo.util.VisibleForTesting;
@@ -152,6 +153,12 @@ public abstract class AbstractEnvironmentEnricher<E extends Environment> impleme
         }
 
         dbEnv.setForceEnvInfraSetup(envCfg.getBoolean("forceEnvInfraSetup", null));
+        dbEnv.setSourceReaderThreads(envCfg.getInt("sourceReaderThreads", 1));
+        dbEnv.setSourceParseCacheDir(envCfg.getString("sourceParseCacheDir"));
+        String parallelGroupExecutor = envCfg.getString("parallelGroupExecutor");
+        if (parallelGroupExecutor != null) {
+            dbEnv.setParallelGroupExecutorType(ParallelGroupExecutorType.valueOf(parallelGroupExecutor));
+        }
 
         String sourceEncoding = envCfg.getString("sourceEncoding");
         if (sourceEncoding != null) {
@@ -37,6 +37,18 @@ public class DefaultDeployerPlugin implements DeployerPlugin<Environment<?>> {
     public void validatePriorToDeployment(Environment env, DeployStrategy deployStrategy, ImmutableList sourceChanges, ImmutableCollection deployedChanges, Changeset artifactsToProcess) {
     }
 
+    @Override
+    public void beforeDeployChanges(Environment env) {
+    }
+
+    @Override
+    public void afterDeployChangeCommand(Environment env, ExecuteChangeCommand changeCommand) {
+    }
+
+    @Override
+    public void afterDeployChanges(Environment env) {
+    }
+
     @Override
     public void doPostDeployAction(Environment env, ImmutableList sourceChanges) {
     }
@@ -38,6 +38,17 @@ public interface DeployMetricsCollector {
      */
     void addListMetric(String key, Serializable value);
 
+    /**
+     * Adds the given duration to the total time of the phase, e.g. one of the DeployTimings.PHASE_* values. May be
+     * called several times for the same phase, e.g. from multiple threads.
+     */
+    void addPhaseTime(String phase, long durationNanos);
+
+    /**
+     * Records the time taken to deploy a change of the given change type in its latency histogram.
+     */
+    void addChangeLatency(String changeType, long durationNanos);
+
     /**
      * Ends the request and returns the metrics gathered during the execution.
      */
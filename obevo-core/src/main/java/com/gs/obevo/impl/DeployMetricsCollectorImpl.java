@@ -35,6 +35,16 @@ public class DeployMetricsCollectorImpl implements DeployMetricsCollector {
         deployMetrics.addListMetric(key, value);
     }
 
+    @Override
+    public void addPhaseTime(String phase, long durationNanos) {
+        deployMetrics.getDeployTimings().addPhaseTime(phase, durationNanos);
+    }
+
+    @Override
+    public void addChangeLatency(String changeType, long durationNanos) {
+        deployMetrics.getDeployTimings().addChangeLatency(changeType, durationNanos);
+    }
+
     @Override
     public DeployMetrics getMetrics() {
         return deployMetrics;
@@ -0,0 +1,209 @@
+/**
+ * Copyright 2017 Goldman Sachs.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.gs.obevo.impl;
+
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.collections.api.map.MapIterable;
+import org.eclipse.collections.api.map.sorted.ImmutableSortedMap;
+import org.eclipse.collections.api.set.MutableSet;
+import org.eclipse.collections.api.tuple.Pair;
+import org.eclipse.collections.impl.factory.Sets;
+
+/**
+ * Renders the contents of {@link DeployMetricsImpl} in the {@link com.gs.obevo.api.platform.MetricsExportFormat}s.
+ */
+class DeployMetricsExporter {
+    private static final String PROMETHEUS_PREFIX = "obevo_";
+    private static final String PHASE_SECONDS_NAME = PROMETHEUS_PREFIX + "phase_seconds";
+    private static final String CHANGE_DURATION_SECONDS_NAME = PROMETHEUS_PREFIX + "change_duration_seconds";
+
+    static String toJson(MapIterable<String, Object> statMap, DeployTimings deployTimings) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\n  \"metrics\": {");
+        String separator = "\n";
+        for (Pair<String, Object> stat : statMap.keyValuesView().toSortedListBy(Pair::getOne)) {
+            sb.append(separator).append("    ").append(jsonString(stat.getOne())).append(": ").append(jsonValue(stat.getTwo()));
+            separator = ",\n";
+        }
+        sb.append("\n  },\n  \"phases\": {");
+
+        separator = "\n";
+        for (Pair<String, DeployTimings.PhaseTiming> phase : deployTimings.getPhaseTimings().keyValuesView()) {
+            sb.append(separator).append("    ").append(jsonString(phase.getOne()))
+                    .append(": { \"totalMillis\": ").append(phase.getTwo().getTotalMillis())
+                    .append(", \"count\": ").append(phase.getTwo().getCount()).append(" }");
+            separator = ",\n";
+        }
+        sb.append("\n  },\n  \"changeLatencies\": {");
+
+        separator = "\n";
+        long[] bucketUpperBounds = DeployTimings.LatencyHistogram.getBucketUpperBoundsMillis();
+        for (Pair<String, DeployTimings.LatencyHistogram> changeType : deployTimings.getChangeLatencies().keyValuesView()) {
+            DeployTimings.LatencyHistogram histogram = changeType.getTwo();
+            sb.append(separator).append("    ").append(jsonString(changeType.getOne()))
+                    .append(": { \"count\": ").append(histogram.getCount())
+                    .append(", \"totalMillis\": ").append(TimeUnit.NANOSECONDS.toMillis(histogram.getTotalNanos()))
+                    .append(", \"maxMillis\": ").append(TimeUnit.NANOSECONDS.toMillis(histogram.getMaxNanos()))
+                    .append(", \"buckets\": [");
+            long[] bucketCounts = histogram.getBucketCounts();
+            for (int i = 0; i < bucketCounts.length; i++) {
+                sb.append(i == 0 ? "" : ", ")
+                        .append("{ \"leMillis\": ").append(i < bucketUpperBounds.length ? String.valueOf(bucketUpperBounds[i]) : "null")
+                        .append(", \"count\": ").append(bucketCounts[i]).append(" }");
+            }
+            sb.append("] }");
+            separator = ",\n";
+        }
+        sb.append("\n  }\n}\n");
+        return sb.toString();
+    }
+
+    /**
+     * Exports the timings as the phase_seconds gauges and the change_duration_seconds histogram, and the numeric and
+     * boolean metrics as gauges (booleans as 0 or 1) with the metric key converted to a valid metric name. Other
+     * metrics, e.g. the strings and the warnings, are not exported as they do not map to sample values.
+     * <p>
+     * As the conversion of the metric keys is lossy (e.g. "a.b" and "a_b" both become obevo_a_b), a key whose name is
+     * already taken gets a numeric suffix (obevo_a_b_2) so that no two metrics are written under the same name.
+     */
+    static String toPrometheus(MapIterable<String, Object> statMap, DeployTimings deployTimings) {
+        StringBuilder sb = new StringBuilder();
+
+        MutableSet<String> usedNames = Sets.mutable.with(PHASE_SECONDS_NAME,
+                CHANGE_DURATION_SECONDS_NAME + "_bucket", CHANGE_DURATION_SECONDS_NAME + "_sum", CHANGE_DURATION_SECONDS_NAME + "_count");
+        for (Pair<String, Object> stat : statMap.keyValuesView().toSortedListBy(Pair::getOne)) {
+            Object value = stat.getTwo();
+            if (value instanceof Number || value instanceof Boolean) {
+                String baseName = PROMETHEUS_PREFIX + stat.getOne().replaceAll("[^a-zA-Z0-9_]", "_");
+                String name = baseName;
+                for (int suffix = 2; !usedNames.add(name); suffix++) {
+                    name = baseName + "_" + suffix;
+                }
+                String sampleValue = value instanceof Boolean ? ((Boolean) value ? "1" : "0") : prometheusNumber((Number) value);
+                sb.append("# TYPE ").append(name).append(" gauge\n");
+                sb.append(name).append(" ").append(sampleValue).append("\n");
+            }
+        }
+
+        ImmutableSortedMap<String, DeployTimings.PhaseTiming> phaseTimings = deployTimings.getPhaseTimings();
+        if (phaseTimings.notEmpty()) {
+            String name = PHASE_SECONDS_NAME;
+            sb.append("# HELP ").append(name).append(" Time spent in each deploy phase, summed across threads\n");
+            sb.append("# TYPE ").append(name).append(" gauge\n");
+            for (Pair<String, DeployTimings.PhaseTiming> phase : phaseTimings.keyValuesView()) {
+                sb.append(name).append("{phase=").append(prometheusLabel(phase.getOne())).append("} ")
+                        .append(toSeconds(phase.getTwo().getTotalNanos())).append("\n");
+            }
+        }
+
+        ImmutableSortedMap<String, DeployTimings.LatencyHistogram> changeLatencies = deployTimings.getChangeLatencies();
+        if (changeLatencies.notEmpty()) {
+            String name = CHANGE_DURATION_SECONDS_NAME;
+            long[] bucketUpperBounds = DeployTimings.LatencyHistogram.getBucketUpperBoundsMillis();
+            sb.append("# HELP ").append(name).append(" Time taken to deploy a change, by change type\n");
+            sb.append("# TYPE ").append(name).append(" histogram\n");
+            for (Pair<String, DeployTimings.LatencyHistogram> changeType : changeLatencies.keyValuesView()) {
+                String label = prometheusLabel(changeType.getOne());
+                DeployTimings.LatencyHistogram histogram = changeType.getTwo();
+                long[] bucketCounts = histogram.getBucketCounts();
+
+                // Prometheus buckets are cumulative, unlike those of DeployTimings.LatencyHistogram
+                long cumulativeCount = 0;
+                for (int i = 0; i < bucketCounts.length; i++) {
+                    cumulativeCount += bucketCounts[i];
+                    String le = i < bucketUpperBounds.length ? String.valueOf(bucketUpperBounds[i] / 1000.0) : "+Inf";
+                    sb.append(name).append("_bucket{change_type=").append(label).append(",le=\"").append(le).append("\"} ")
+                            .append(cumulativeCount).append("\n");
+                }
+                sb.append(name).append("_sum{change_type=").append(label).append("} ").append(toSeconds(histogram.getTotalNanos())).append("\n");
+                sb.append(name).append("_count{change_type=").append(label).append("} ").append(histogram.getCount()).append("\n");
+            }
+        }
+
+        return sb.toString();
+    }
+
+    private static String jsonValue(Object value) {
+        if (value == null) {
+            return "null";
+        } else if (isNonFinite(value)) {
+            // JSON has no representation for NaN and the infinities
+            return "null";
+        } else if (value instanceof Number || value instanceof Boolean) {
+            return value.toString();
+        } else if (value instanceof Iterable) {
+            StringBuilder sb = new StringBuilder("[");
+            for (Object element : (Iterable<?>) value) {
+                sb.append(sb.length() == 1 ? "" : ", ").append(jsonValue(element));
+            }
+            return sb.append("]").toString();
+        } else {
+            return jsonString(value.toString());
+        }
+    }
+
+    private static String jsonString(String value) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+            case '"':
+                sb.append("\\\"");
+                break;
+            case '\\':
+                sb.append("\\\\");
+                break;
+            case '\n':
+                sb.append("\\n");
+                break;
+            case '\r':
+                sb.append("\\r");
+                break;
+            case '\t':
+                sb.append("\\t");
+                break;
+            default:
+                if (c < 0x20) {
+                    sb.append(String.format("\\u%04x", (int) c));
+                } else {
+                    sb.append(c);
+                }
+            }
+        }
+        return sb.append("\"").toString();
+    }
+
+    private static String prometheusNumber(Number value) {
+        if (isNonFinite(value)) {
+            double doubleValue = value.doubleValue();
+            return Double.isNaN(doubleValue) ? "NaN" : doubleValue > 0 ? "+Inf" : "-Inf";
+        }
+        return value.toString();
+    }
+
+    private static boolean isNonFinite(Object value) {
+        return (value instanceof Double || value instanceof Float) && !Double.isFinite(((Number) value).doubleValue());
+    }
+
+    private static String prometheusLabel(String value) {
+        return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n") + "\"";
+    }
+
+    private static double toSeconds(long nanos) {
+        return nanos / 1e9;
+    }
+}
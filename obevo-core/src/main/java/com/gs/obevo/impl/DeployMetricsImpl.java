@@ -16,12 +16,15 @@
 package com.gs.obevo.impl;
 
 import java.io.Serializable;
+import java.util.concurrent.TimeUnit;
 
 import com.gs.obevo.api.platform.DeployMetrics;
+import com.gs.obevo.api.platform.MetricsExportFormat;
 import org.eclipse.collections.api.block.function.Function;
 import org.eclipse.collections.api.list.MutableList;
 import org.eclipse.collections.api.map.ConcurrentMutableMap;
 import org.eclipse.collections.api.map.ImmutableMap;
+import org.eclipse.collections.api.map.MutableMap;
 import org.eclipse.collections.impl.block.factory.Functions0;
 import org.eclipse.collections.impl.map.mutable.ConcurrentHashMap;
 
@@ -30,6 +33,7 @@ import org.eclipse.collections.impl.map.mutable.ConcurrentHashMap;
  */
 public class DeployMetricsImpl implements DeployMetrics {
     private final ConcurrentMutableMap<String, Object> statMap = new ConcurrentHashMap<String, Object>();
+    private final DeployTimings deployTimings = new DeployTimings();
 
     void addMetric(String key, Serializable value) {
         statMap.put(key, value);
@@ -44,8 +48,35 @@ public class DeployMetricsImpl implements DeployMetrics {
         });
     }
 
+    DeployTimings getDeployTimings() {
+        return deployTimings;
+    }
+
+    /**
+     * Returns the metrics along with the summary of the timings; see {@link #export(MetricsExportFormat)} for the
+     * latency histograms.
+     */
     @Override
     public ImmutableMap<String, Object> toSerializedForm() {
-        return statMap.toImmutable();
+        MutableMap<String, Object> serializedForm = ConcurrentHashMap.newMap(statMap);
+        deployTimings.getPhaseTimings().forEachKeyValue((phase, phaseTiming) -> serializedForm.put("timings.phase." + phase + ".millis", phaseTiming.getTotalMillis()));
+        deployTimings.getChangeLatencies().forEachKeyValue((changeType, histogram) -> {
+            serializedForm.put("timings.changeType." + changeType + ".count", histogram.getCount());
+            serializedForm.put("timings.changeType." + changeType + ".totalMillis", TimeUnit.NANOSECONDS.toMillis(histogram.getTotalNanos()));
+            serializedForm.put("timings.changeType." + changeType + ".maxMillis", TimeUnit.NANOSECONDS.toMillis(histogram.getMaxNanos()));
+        });
+        return serializedForm.toImmutable();
+    }
+
+    @Override
+    public String export(MetricsExportFormat format) {
+        switch (format) {
+        case JSON:
+            return DeployMetricsExporter.toJson(statMap, deployTimings);
+        case PROMETHEUS:
+            return DeployMetricsExporter.toPrometheus(statMap, deployTimings);
+        default:
+            throw new IllegalArgumentException("Export format " + format + " is not supported here");
+        }
     }
 }
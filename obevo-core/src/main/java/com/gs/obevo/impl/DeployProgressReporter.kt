@@ -0,0 +1,174 @@
+/**
+ * Copyright 2017 Goldman Sachs.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.gs.obevo.impl
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory
+import org.apache.commons.lang3.time.DurationFormatUtils
+import org.slf4j.LoggerFactory
+import java.io.Closeable
+import java.util.concurrent.Executors
+import java.util.concurrent.ScheduledExecutorService
+import java.util.concurrent.TimeUnit
+
+/**
+ * Logs the progress of the change deployments at a fixed interval: the share of the expected deploy time that is done,
+ * the estimated time remaining and the slowest changes yet to complete.
+ *
+ * The expected time of a change is the duration of its last successful deploy, as stored via
+ * [com.gs.obevo.api.platform.DeployExecutionDao.persistChangeDurations]. Changes without one (e.g. new incremental
+ * changes) are expected to take the average of the known durations, or of the changes completed so far if none are
+ * known. The time remaining is scaled by how long the completed changes took relative to their previous durations, so
+ * that a deploy running slower than the previous ones is reported as such.
+ *
+ * The changes may be started and completed from multiple threads.
+ */
+internal class DeployProgressReporter(
+        changeKeys: List<String>,
+        historicalDurationMillis: Map<String, Long>,
+        private val nanoTime: () -> Long = System::nanoTime) : Closeable {
+
+    private val changes = changeKeys.distinct().map { ChangeProgress(it, historicalDurationMillis[it]) }
+    private val changesByKey = changes.associateBy { it.changeKey }
+    private val deployStartNanos = nanoTime()
+    private var executor: ScheduledExecutorService? = null
+
+    fun start(interval: Long, unit: TimeUnit) {
+        val executor = Executors.newSingleThreadScheduledExecutor(BasicThreadFactory.Builder()
+                .namingPattern("obevo-deploy-progress-%d")
+                .daemon(true)
+                .build())
+        executor.scheduleAtFixedRate({
+            try {
+                LOG.info(getProgressMessage())
+            } catch (exc: RuntimeException) {
+                // not stopping the reports (or failing the deploy) for one bad estimate
+                LOG.warn("Failed to calculate the deploy progress", exc)
+            }
+        }, interval, interval, unit)
+        this.executor = executor
+    }
+
+    fun changeStarted(changeKey: String) {
+        changesByKey[changeKey]?.startNanos = nanoTime()
+    }
+
+    /**
+     * Marks the change as done, whether it succeeded or failed.
+     */
+    fun changeCompleted(changeKey: String) {
+        changesByKey[changeKey]?.let { change ->
+            val endNanos = nanoTime()
+            change.durationMillis = TimeUnit.NANOSECONDS.toMillis(endNanos - (change.startNanos ?: endNanos))
+        }
+    }
+
+    /**
+     * Marks the change as done without it having been deployed, e.g. as it depends on a failed change.
+     */
+    fun changeSkipped(changeKey: String) {
+        changesByKey[changeKey]?.skipped = true
+    }
+
+    fun getProgressMessage(): String {
+        val now = nanoTime()
+        val doneCount = changes.count { it.isDone }
+        val message = StringBuilder("Deploy progress: $doneCount of ${changes.size} changes done")
+
+        val completedChanges = changes.filter { it.durationMillis != null }
+        val knownDurations = changes.mapNotNull { it.historicalMillis }
+        val defaultExpectedMillis = when {
+            knownDurations.isNotEmpty() -> knownDurations.average()
+            completedChanges.isNotEmpty() -> completedChanges.map { it.durationMillis!! }.average()
+            else -> {
+                message.append(" (").append(percent(doneCount.toDouble(), changes.size.toDouble())).append("%)")
+                        .append("; no previous change durations to estimate the time remaining from yet")
+                return message.toString()
+            }
+        }
+        val expectedMillis = { change: ChangeProgress -> change.historicalMillis?.toDouble() ?: defaultExpectedMillis }
+
+        var totalMillis = 0.0
+        var doneMillis = 0.0
+        for (change in changes) {
+            val changeExpectedMillis = expectedMillis(change)
+            totalMillis += changeExpectedMillis
+            doneMillis += if (change.isDone) {
+                changeExpectedMillis
+            } else {
+                // a running change counts up to its expected time; beyond that, it is just late
+                Math.min(changeExpectedMillis, change.getRunningMillis(now)?.toDouble() ?: 0.0)
+            }
+        }
+
+        // the ratio of the actual to the previous durations of the completed changes
+        val comparableChanges = completedChanges.filter { it.historicalMillis != null }
+        val previousMillisOfComparable = comparableChanges.sumByDouble { it.historicalMillis!!.toDouble() }
+        val paceRatio = if (previousMillisOfComparable > 0) comparableChanges.sumByDouble { it.durationMillis!!.toDouble() } / previousMillisOfComparable else 1.0
+
+        message.append(" (")
+                .append(if (totalMillis > 0) percent(doneMillis, totalMillis) else percent(doneCount.toDouble(), changes.size.toDouble()))
+                .append("%); elapsed ").append(formatMillis(TimeUnit.NANOSECONDS.toMillis(now - deployStartNanos)))
+                .append(", estimated remaining ").append(formatMillis(((totalMillis - doneMillis) * paceRatio).toLong()))
+        if (previousMillisOfComparable > 0) {
+            message.append(String.format(" (the completed changes took %.2fx their previous durations)", paceRatio))
+        }
+
+        val slowestOutstandingChanges = changes.filter { !it.isDone }.sortedByDescending { expectedMillis(it) }.take(SLOWEST_OUTSTANDING_CHANGE_COUNT)
+        if (slowestOutstandingChanges.isNotEmpty()) {
+            message.append("; slowest outstanding changes: ").append(slowestOutstandingChanges.joinToString(", ") { change ->
+                val runningMillis = change.getRunningMillis(now)
+                change.changeKey + " (" +
+                        (if (change.historicalMillis != null) "expected " else "estimated ") + formatMillis(expectedMillis(change).toLong()) +
+                        (if (runningMillis != null) ", running for " + formatMillis(runningMillis) else "") + ")"
+            })
+        }
+
+        return message.toString()
+    }
+
+    override fun close() {
+        executor?.shutdownNow()
+    }
+
+    private fun percent(done: Double, total: Double): Int {
+        return if (total > 0) Math.min(100.0, done * 100 / total).toInt() else 100
+    }
+
+    private fun formatMillis(millis: Long): String {
+        return DurationFormatUtils.formatDuration(Math.max(0, millis), "HH:mm:ss")
+    }
+
+    private class ChangeProgress(val changeKey: String, val historicalMillis: Long?) {
+        @Volatile
+        var startNanos: Long? = null
+        @Volatile
+        var durationMillis: Long? = null
+        @Volatile
+        var skipped = false
+
+        val isDone: Boolean
+            get() = durationMillis != null || skipped
+
+        fun getRunningMillis(now: Long): Long? {
+            return if (isDone) null else startNanos?.let { TimeUnit.NANOSECONDS.toMillis(now - it) }
+        }
+    }
+
+    companion object {
+        private val LOG = LoggerFactory.getLogger(DeployProgressReporter::class.java)
+        private const val SLOWEST_OUTSTANDING_CHANGE_COUNT = 3
+    }
+}
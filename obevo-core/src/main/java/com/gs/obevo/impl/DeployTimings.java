@@ -0,0 +1,146 @@
+/**
+ * Copyright 2017 Goldman Sachs.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.gs.obevo.impl;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.eclipse.collections.api.map.ConcurrentMutableMap;
+import org.eclipse.collections.api.map.sorted.ImmutableSortedMap;
+import org.eclipse.collections.impl.map.mutable.ConcurrentHashMap;
+import org.eclipse.collections.impl.map.sorted.mutable.TreeSortedMap;
+
+/**
+ * Timing data of a deploy execution: the total time spent in each phase of the deployment (e.g. reading the source,
+ * sorting the changes, deploying them) and the latency distribution of the deployed changes per change type.
+ *
+ * The phase times are summed across threads, so the deploy and audit phases can exceed the wall-clock time when
+ * deploying with multiple threads. This class is thread-safe.
+ */
+public class DeployTimings {
+    public static final String PHASE_SOURCE_READ = "sourceRead";
+    public static final String PHASE_LOCK_WAIT = "lockWait";
+    public static final String PHASE_AUDIT_READ = "auditRead";
+    public static final String PHASE_DEPENDENCY_EXTRACTION = "dependencyExtraction";
+    public static final String PHASE_DROP_DEPENDENCY_EXTRACTION = "dropDependencyExtraction";
+    public static final String PHASE_GRAPH_BUILD = "graphBuild";
+    public static final String PHASE_DEPENDENCY_ASSIGNMENT = "dependencyAssignment";
+    public static final String PHASE_CHANGESET_CALCULATION = "changesetCalculation";
+    public static final String PHASE_SORT = "sort";
+    public static final String PHASE_DEPLOY = "deploy";
+    public static final String PHASE_AUDIT = "audit";
+
+    private final ConcurrentMutableMap<String, PhaseTiming> phaseTimings = new ConcurrentHashMap<String, PhaseTiming>();
+    private final ConcurrentMutableMap<String, LatencyHistogram> changeLatencies = new ConcurrentHashMap<String, LatencyHistogram>();
+
+    public void addPhaseTime(String phase, long durationNanos) {
+        phaseTimings.getIfAbsentPut(phase, PhaseTiming::new).add(durationNanos);
+    }
+
+    public void addChangeLatency(String changeType, long durationNanos) {
+        changeLatencies.getIfAbsentPut(changeType, LatencyHistogram::new).add(durationNanos);
+    }
+
+    public ImmutableSortedMap<String, PhaseTiming> getPhaseTimings() {
+        return TreeSortedMap.newMap(phaseTimings).toImmutable();
+    }
+
+    public ImmutableSortedMap<String, LatencyHistogram> getChangeLatencies() {
+        return TreeSortedMap.newMap(changeLatencies).toImmutable();
+    }
+
+    /**
+     * The accumulated time and the number of executions of a phase.
+     */
+    public static class PhaseTiming {
+        private final AtomicLong totalNanos = new AtomicLong();
+        private final AtomicLong count = new AtomicLong();
+
+        void add(long durationNanos) {
+            totalNanos.addAndGet(durationNanos);
+            count.incrementAndGet();
+        }
+
+        public long getTotalNanos() {
+            return totalNanos.get();
+        }
+
+        public long getTotalMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(totalNanos.get());
+        }
+
+        public long getCount() {
+            return count.get();
+        }
+    }
+
+    /**
+     * Histogram of latencies over fixed buckets, from 1 millisecond to 5 minutes. The bucket counts are not cumulative,
+     * i.e. each latency is only counted in the first bucket whose upper bound it does not exceed, or in the overflow
+     * bucket past the last bound.
+     */
+    public static class LatencyHistogram {
+        private static final long[] BUCKET_UPPER_BOUND_MILLIS = { 1, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 30000, 60000, 300000 };
+
+        private final AtomicLongArray bucketCounts = new AtomicLongArray(BUCKET_UPPER_BOUND_MILLIS.length + 1);
+        private final AtomicLong totalNanos = new AtomicLong();
+        private final AtomicLong maxNanos = new AtomicLong();
+        private final AtomicLong count = new AtomicLong();
+
+        void add(long durationNanos) {
+            long durationMillis = TimeUnit.NANOSECONDS.toMillis(durationNanos);
+            int bucket = 0;
+            while (bucket < BUCKET_UPPER_BOUND_MILLIS.length && durationMillis > BUCKET_UPPER_BOUND_MILLIS[bucket]) {
+                bucket++;
+            }
+            bucketCounts.incrementAndGet(bucket);
+            totalNanos.addAndGet(durationNanos);
+            maxNanos.accumulateAndGet(durationNanos, Math::max);
+            count.incrementAndGet();
+        }
+
+        /**
+         * Returns the upper bounds of the buckets in milliseconds, excluding the overflow bucket.
+         */
+        public static long[] getBucketUpperBoundsMillis() {
+            return BUCKET_UPPER_BOUND_MILLIS.clone();
+        }
+
+        /**
+         * Returns the number of latencies in each bucket; the last element is the overflow bucket.
+         */
+        public long[] getBucketCounts() {
+            long[] counts = new long[bucketCounts.length()];
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = bucketCounts.get(i);
+            }
+            return counts;
+        }
+
+        public long getTotalNanos() {
+            return totalNanos.get();
+        }
+
+        public long getMaxNanos() {
+            return maxNanos.get();
+        }
+
+        public long getCount() {
+            return count.get();
+        }
+    }
+}
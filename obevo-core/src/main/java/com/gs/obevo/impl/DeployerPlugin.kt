@@ -30,6 +30,23 @@ interface DeployerPlugin<E : Environment<*>> {
 
     fun validatePriorToDeployment(env: E, deployStrategy: DeployStrategy, sourceChanges: ImmutableList<Change>, deployedChanges: ImmutableCollection<Change>, artifactsToProcess: Changeset)
 
+    /**
+     * Invoked before the change commands of a deployment are executed; paired with [afterDeployChanges].
+     */
+    fun beforeDeployChanges(env: E)
+
+    /**
+     * Invoked after each change command is executed, regardless of whether it succeeded, e.g. to discard any state
+     * that the plugin holds on the objects that the command modified.
+     * This may be invoked concurrently for independent commands when deploying with multiple threads.
+     */
+    fun afterDeployChangeCommand(env: E, changeCommand: ExecuteChangeCommand)
+
+    /**
+     * Invoked after all the change commands of a deployment were executed, regardless of whether they succeeded.
+     */
+    fun afterDeployChanges(env: E)
+
     fun doPostDeployAction(env: E, sourceChanges: ImmutableList<Change>)
 
     fun logEnvironmentMetrics(env: E)
@@ -36,9 +36,13 @@ import com.gs.obevo.api.platform.DeployMetrics
 import com.gs.obevo.api.platform.FailedChange
 import com.gs.obevo.api.platform.GraphExportFormat
 import com.gs.obevo.api.platform.MainDeployerArgs
+import com.gs.obevo.api.platform.MetricsExportFormat
 import com.gs.obevo.api.platform.Platform
+import com.gs.obevo.impl.command.ParallelDeployChangeCommand
 import com.gs.obevo.impl.graph.GraphEnricher
 import com.gs.obevo.impl.graph.GraphUtil
+import com.gs.obevo.impl.jfr.DeployEventType
+import com.gs.obevo.impl.jfr.DeployEvents
 import com.gs.obevo.impl.text.TextDependencyExtractableImpl
 import com.gs.obevo.impl.text.TextDependencyExtractor
 import com.gs.obevo.util.inputreader.ConsoleInputReader
@@ -53,6 +57,7 @@ import org.eclipse.collections.impl.block.factory.Predicates
 import org.eclipse.collections.impl.block.factory.StringFunctions
 import org.eclipse.collections.impl.factory.Lists
 import org.eclipse.collections.impl.factory.Sets
+import org.eclipse.collections.impl.map.mutable.MapAdapter
 import org.jgrapht.Graph
 import org.jgrapht.graph.DefaultEdge
 import org.jgrapht.io.ComponentNameProvider
@@ -62,10 +67,13 @@ import org.jgrapht.io.GraphMLExporter
 import org.jgrapht.io.IntegerComponentNameProvider
 import org.jgrapht.io.MatrixExporter
 import org.slf4j.LoggerFactory
+import java.io.Closeable
+import java.io.File
 import java.io.FileWriter
 import java.io.Writer
 import java.sql.Timestamp
 import java.util.Date
+import java.util.concurrent.ConcurrentHashMap
 import java.util.concurrent.TimeUnit
 
 /**
@@ -82,23 +90,64 @@ class MainDeployer<P : Platform, E : Environment<P>>(
         private val credential: Credential,
         private val textDependencyExtractor: TextDependencyExtractor,
         private val deployerPlugin: DeployerPlugin<E>,
-        private val graphEnricher: GraphEnricher) {
+        private val graphEnricher: GraphEnricher,
+        private val maxDeployThreads: Int) {
 
     private val userInputReader = ConsoleInputReader()
 
     fun execute(env: E, sourceReaderStrategy: SourceReaderStrategy, deployerArgs: MainDeployerArgs) {
+        if (deployerArgs.deployThreads > maxDeployThreads) {
+            // each deploy thread holds a connection; more threads than the pool has connections for would just block
+            throw IllegalArgumentException("deployThreads must not exceed $maxDeployThreads, the number of threads that the connection pool of this environment is sized for; got ${deployerArgs.deployThreads}")
+        }
+
         val changeStopWatch = StopWatch()
         changeStopWatch.start()
 
+        val eventsPreviouslyEnabled = DeployEvents.isEnabled()
+        if (deployerArgs.isFlightRecorderEventsEnabled) {
+            DeployEvents.setEnabled(true)
+        }
+        val flightRecording = deployerArgs.flightRecordingFile?.let { DeployEvents.startRecording(it) }
+
         var mainDeploymentSuccess = false
         try {
             executeInternal(env, sourceReaderStrategy, deployerArgs)
             mainDeploymentSuccess = true
         } finally {
+            flightRecording?.let { stopFlightRecording(it, deployerArgs.flightRecordingFile) }
+            DeployEvents.setEnabled(eventsPreviouslyEnabled)
             changeStopWatch.stop()
             val deployRuntimeSeconds = TimeUnit.MILLISECONDS.toSeconds(changeStopWatch.time)
             deployMetricsCollector.addMetric("runtimeSeconds", deployRuntimeSeconds)
             deployMetricsCollector.addMetric("success", mainDeploymentSuccess)
+            deployerArgs.metricsExportFile?.let { exportMetrics(it, deployerArgs.metricsExportFormat ?: MetricsExportFormat.JSON) }
+        }
+    }
+
+    private fun stopFlightRecording(flightRecording: Closeable, flightRecordingFile: File) {
+        runQuietly("write the flight recording to $flightRecordingFile") {
+            flightRecording.close()
+            LOG.info("Wrote the flight recording to {}", flightRecordingFile)
+        }
+    }
+
+    private fun exportMetrics(metricsExportFile: File, format: MetricsExportFormat) {
+        runQuietly("write the deploy metrics to $metricsExportFile") {
+            FileWriter(metricsExportFile).use { it.write(deployMetricsCollector.metrics.export(format)) }
+            LOG.info("Wrote the deploy metrics to {}", metricsExportFile)
+        }
+    }
+
+    /**
+     * Runs a step that only produces supplementary output of the deploy (e.g. the metrics), logging its failure
+     * instead of failing the deploy, or masking the deploy's exception when run from a finally block.
+     */
+    private inline fun runQuietly(description: String, block: () -> Unit) {
+        try {
+            block()
+        } catch (exc: Exception) {
+            LOG.warn("Failed to {}", description, exc)
         }
     }
 
@@ -135,7 +184,9 @@ class MainDeployer<P : Platform, E : Environment<P>>(
         logEnvironmentMetrics(env)
         deployerPlugin.logEnvironmentMetrics(env)
 
-        val changeInputs = mainInputReader.readInternal(sourceReaderStrategy, deployerArgs)
+        val changeInputs = emitEvent(DeployEventType.SOURCE_READ, { it.size() }) {
+            timePhase(DeployTimings.PHASE_SOURCE_READ) { mainInputReader.readInternal(sourceReaderStrategy, deployerArgs) }
+        }
 
         val onboardingStrategy = getOnboardingStrategy(deployerArgs)
         onboardingStrategy.validateSourceDirs(env.sourceDirs, env.schemaNames)
@@ -145,16 +196,20 @@ class MainDeployer<P : Platform, E : Environment<P>>(
         val lock = artifactDeployerDao.acquireLock()
         try {
             LOG.info("Attempting to acquire deploy lock")
-            lock.lock()
+            timePhase(DeployTimings.PHASE_LOCK_WAIT) { lock.lock() }
             LOG.info("Deploy lock acquired")
 
-            val deployedChanges = readDeployedChanges(deployerArgs)
+            val deployedChanges = timePhase(DeployTimings.PHASE_AUDIT_READ) { readDeployedChanges(deployerArgs) }
             mainInputReader.logChanges("deployed", deployedChanges)
 
             // TODO ensure that we've handled the split between static data and others properly
-            val changeInputSetMap = this.textDependencyExtractor.calculateDependencies(
-                    changeInputs.filter { it.changeKey.changeType.isEnrichableForDependenciesInText }
-            )
+            val changeInputSetMap = emitEvent(DeployEventType.DEPENDENCY_EXTRACTION, { it.size }) {
+                timePhase(DeployTimings.PHASE_DEPENDENCY_EXTRACTION) {
+                    this.textDependencyExtractor.calculateDependencies(
+                            changeInputs.filter { it.changeKey.changeType.isEnrichableForDependenciesInText }
+                    )
+                }
+            }
 
             val newChangeInputSetMap = mutableMapOf<ChangeInput, Set<CodeDependency>>()
             val packageChanges = changeInputs.filter { it.objectKey.changeType.name == ChangeType.PACKAGE_STR || it.objectKey.changeType.name == ChangeType.PACKAGE_BODY }
@@ -219,6 +274,10 @@ class MainDeployer<P : Platform, E : Environment<P>>(
             val changePairs = ChangesetCreator.getChangePairs(deployedChanges, sourceChanges)
 
             if (deployerArgs.isRollback) {
+                // Rollback runs need the deployed rollback content of the removed changes and refresh it for the rest,
+                // so we read any deferred content here, all at once
+                deployedChanges.filter { it is ChangeIncremental && !it.isRollbackContentLoaded }.forEach { it.rollbackContent }
+
                 // Add back rollback changes to the sourceList so that they can take part in the change calculation
                 val rollbacksToAddBack = changePairs
                         .filter { !it.changeKey.changeType.isRerunnable && it.sourceChange == null && it.deployedChange != null }
@@ -238,13 +297,20 @@ class MainDeployer<P : Platform, E : Environment<P>>(
 
                 val dropsByObjectName = dropsToEnrich.associateBy { env.platform.convertDbObjectName().valueOf(it.objectName) }
 
+                // retrieve the definitions in bulk per change type to avoid a metadata lookup per dropped object
+                val definitionsByDrop = dropsToEnrich.groupBy { it.changeType }.flatMap { (changeType, drops) ->
+                    changeTypeBehaviorRegistry.getChangeTypeBehavior(changeType).getDefinitionsFromEnvironment(Lists.immutable.ofAll(drops)).keyValuesView()
+                }.associateBy({ it.one }, { it.two })
+
                 val dropsForTextProcessing = dropsToEnrich.map { drop ->
-                    val sql = changeTypeBehaviorRegistry.getChangeTypeBehavior(drop.changeType).getDefinitionFromEnvironment(drop);
+                    val sql = definitionsByDrop[drop]
                     LOG.debug("Found the sql from the DB for dropping: {}", sql)
                     TextDependencyExtractableImpl(drop.objectName, sql ?: "", drop)
                 }
 
-                val dropDependencies = this.textDependencyExtractor.calculateDependencies(dropsForTextProcessing)
+                val dropDependencies = emitEvent(DeployEventType.DEPENDENCY_EXTRACTION, { it.size }) {
+                    timePhase(DeployTimings.PHASE_DROP_DEPENDENCY_EXTRACTION) { this.textDependencyExtractor.calculateDependencies(dropsForTextProcessing) }
+                }
 
                 dropsForTextProcessing.forEach { it.codeDependencies = Sets.immutable.ofAll(dropDependencies.get(it)) }
 
@@ -258,7 +324,9 @@ class MainDeployer<P : Platform, E : Environment<P>>(
             }
 
 
-            val dependencyGraph = graphEnricher.createDependencyGraph(sourceChanges, deployerArgs.isRollback)
+            val dependencyGraph = emitEvent(DeployEventType.GRAPH_BUILD, { it.vertexSet().size }) {
+                timePhase(DeployTimings.PHASE_GRAPH_BUILD) { graphEnricher.createDependencyGraph(sourceChanges, deployerArgs.isRollback) }
+            }
 
             deployerArgs.sourceGraphExportFile?.let { sourceGraphOutputFile ->
                 val exporterFormat = deployerArgs.sourceGraphExportFormat ?: GraphExportFormat.DOT
@@ -267,7 +335,9 @@ class MainDeployer<P : Platform, E : Environment<P>>(
                 FileWriter(sourceGraphOutputFile).use { exporterFunc(it, dependencyGraph) }
             }
 
-            sourceChanges.each { it.dependentChanges = Sets.immutable.ofAll(GraphUtil.getDependencyNodes(dependencyGraph, it)) }
+            timePhase(DeployTimings.PHASE_DEPENDENCY_ASSIGNMENT) {
+                sourceChanges.each { it.dependentChanges = Sets.immutable.ofAll(GraphUtil.getDependencyNodes(dependencyGraph, it)) }
+            }
 
             val artifactsToProcess = changesetCreator.determineChangeset(changePairs, sourceChanges, deployStrategy.isInitAllowedOnHashExceptions)
                     .applyDeferredPredicate(deployerArgs.changesetPredicate)
@@ -315,7 +385,12 @@ class MainDeployer<P : Platform, E : Environment<P>>(
                 var mainDeploymentSuccess = false
                 val cec = CommandExecutionContext()
                 try {
-                    this.doExecute(artifactsToProcess, deployStrategy, onboardingStrategy, executionsBySchema, cec)
+                    deployerPlugin.beforeDeployChanges(env)
+                    try {
+                        this.doExecute(env, artifactsToProcess, deployStrategy, onboardingStrategy, executionsBySchema, cec, deployerArgs.deployThreads, deployerArgs.progressReportIntervalSeconds)
+                    } finally {
+                        deployerPlugin.afterDeployChanges(env)
+                    }
                     LOG.info("$action has Completed Successfully!")
                     executionsBySchema.values.forEach { deployExecution ->
                         deployExecution.status = DeployExecutionStatus.SUCCEEDED
@@ -395,6 +470,7 @@ class MainDeployer<P : Platform, E : Environment<P>>(
         deployMetricsCollector.addMetric("args.rollback", deployerArgs.isRollback)
         deployMetricsCollector.addMetric("args.preview", deployerArgs.isPreview)
         deployMetricsCollector.addMetric("args.useBaseline", deployerArgs.isUseBaseline)
+        deployMetricsCollector.addMetric("args.deployThreads", deployerArgs.deployThreads)
     }
 
     private fun logEnvironment(env: E) {
@@ -439,80 +515,71 @@ class MainDeployer<P : Platform, E : Environment<P>>(
         return if (deployerArgs.isOnboardingMode) EnabledOnboardingStrategy() else DisabledOnboardingStrategy()
     }
 
-    private fun doExecute(artifactsToProcess: Changeset, deployStrategy: DeployStrategy, onboardingStrategy: OnboardingStrategy, executionsBySchema: Map<String, DeployExecution>, cec: CommandExecutionContext) {
+    private fun doExecute(env: E, artifactsToProcess: Changeset, deployStrategy: DeployStrategy, onboardingStrategy: OnboardingStrategy, executionsBySchema: Map<String, DeployExecution>, cec: CommandExecutionContext, deployThreads: Int, progressReportIntervalSeconds: Int) {
         val failedChanges = Lists.mutable.empty<FailedChange>()
         val failedObjectNames = Sets.mutable.empty<String>()  // to handle use case of table failing and prevent subsequent CSV from getting deployed
         val failedChangeKeys = Sets.mutable.empty<ChangeKey>()  // to handle all other cases; should move the CSV case into this one
-
-        for (auditChangeCommand in artifactsToProcess.auditChanges) {
-            auditChangeCommand.markAuditTable(changeTypeBehaviorRegistry, this.artifactDeployerDao, executionsBySchema.getValue(auditChangeCommand.schema))
-        }
-
-        for (changeCommand in artifactsToProcess.inserts) {
-            val previousFailedObjects = failedObjectNames.intersect(changeCommand.changes.toSet().map { it.dbObjectKey })
-            if (previousFailedObjects.isNotEmpty()) {
-                // We skip subsequent changes in objects that failed as we don't any unexpected activities to happen on
-                // a particular DB object
-                // (e.g. if one change relied on a previous one, and the previous one failed; what if something goes bad
-                // if the first one isn't executed?)
-                LOG.info("Skipping artifact [{}] as these objects previously failed deploying: {}",
-                        changeCommand.commandDescription, previousFailedObjects.joinToString(", "))
-                continue
-            }
-            val dependencyChangeKeys = changeCommand.changes.flatMap { it.dependentChanges ?: Sets.mutable.empty() }.map { it.changeKey }
-            val failedCommandKeys = dependencyChangeKeys.intersect(failedChangeKeys)
-
-            if (failedCommandKeys.isNotEmpty()) {
-                // We skip subsequent changes in objects that failed as we don't any unexpected activities to happen on
-                // a particular DB object
-                // (e.g. if one change relied on a previous one, and the previous one failed; what if something goes bad
-                // if the first one isn't executed?)
-                LOG.info("Skipping artifact [{}] as these changes previously failed deploying: {}",
-                        changeCommand.commandDescription, failedCommandKeys.joinToString(", "))
-                continue
+        val progressReporter = createProgressReporter(artifactsToProcess, executionsBySchema.keys, progressReportIntervalSeconds)
+        // the durations of the successful changes per schema, to estimate the progress of the next deploys; only kept
+        // while the progress is reported, so that the other deploys do not read or write the duration table
+        val changeDurationsBySchema = if (progressReporter != null) executionsBySchema.keys.associateWith { ConcurrentHashMap<String, Long>() } else emptyMap()
+        try {
+            timePhase(DeployTimings.PHASE_AUDIT) {
+                for (auditChangeCommand in artifactsToProcess.auditChanges) {
+                    auditChangeCommand.markAuditTable(changeTypeBehaviorRegistry, this.artifactDeployerDao, executionsBySchema.getValue(auditChangeCommand.schema))
+                }
             }
 
-            LOG.info("Attempting to deploy: " + changeCommand.commandDescription)
-
-            val changeStopWatch = StopWatch()
-            changeStopWatch.start()
-
-            try {
-                deployStrategy.deploy(changeTypeBehaviorRegistry, changeCommand, cec)
-                changeCommand.markAuditTable(changeTypeBehaviorRegistry, this.artifactDeployerDao, executionsBySchema.getValue(changeCommand.schema))
-
-                changeStopWatch.stop()
-                val runtimeSeconds = TimeUnit.MILLISECONDS.toSeconds(changeStopWatch.time)
-                LOG.info("Successfully " + deployStrategy.deployVerbMessage + " artifact " + changeCommand.commandDescription +
-                        ", took " + runtimeSeconds + " seconds")
-
-                for (change in changeCommand.changes) {
-                    // changeInput may be null due to manufactured changes e.g. object drops
-                    change.changeInput?.let { onboardingStrategy.handleSuccess(it) }
+            val shouldSkip = { changeCommand: ExecuteChangeCommand ->
+                val skip = shouldSkipChangeCommand(changeCommand, failedObjectNames, failedChangeKeys)
+                if (skip) {
+                    getChangeKeyString(changeCommand)?.let { progressReporter?.changeSkipped(it) }
                 }
-            } catch (exc: Exception) {
-                changeStopWatch.stop()
-
-                val runtimeSeconds = TimeUnit.MILLISECONDS.toSeconds(changeStopWatch.time)
-
-                for (change in changeCommand.changes) {
-                    if (change.changeInput != null) {
-                        onboardingStrategy.handleException(change.changeInput, exc)
-                    }
+                skip
+            }
+            val deploy = { changeCommand: ExecuteChangeCommand ->
+                val changeKey = getChangeKeyString(changeCommand)
+                changeKey?.let { progressReporter?.changeStarted(it) }
+                val startNanos = System.nanoTime()
+                val exc = deployChangeCommand(changeCommand, deployStrategy, onboardingStrategy, executionsBySchema, cec)
+                if (exc == null && changeKey != null) {
+                    changeDurationsBySchema[changeCommand.schema]?.put(changeKey, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos))
                 }
-
-                LOG.info("Failed to deploy artifact " + changeCommand.commandDescription + ", took "
-                        + runtimeSeconds + " seconds")
-
-                LOG.info("We will continue and fail the process at the end. This was the exception: " + ExceptionUtils.getStackTrace(exc))
+                changeKey?.let { progressReporter?.changeCompleted(it) }
+                deployerPlugin.afterDeployChangeCommand(env, changeCommand)
+                exc
+            }
+            val onFailure = { changeCommand: ExecuteChangeCommand, exc: Exception ->
                 failedChanges.add(FailedChange(changeCommand, exc))
 
                 failedObjectNames.withAll(changeCommand.changes.map { it.dbObjectKey })
                 failedChangeKeys.withAll(changeCommand.changes.map{ it.changeKey })
+                Unit
             }
 
+            if (deployThreads > 1) {
+                ParallelChangeCommandScheduler(deployThreads).execute(artifactsToProcess.inserts.toList(), shouldSkip, deploy, onFailure)
+            } else {
+                for (changeCommand in artifactsToProcess.inserts) {
+                    if (shouldSkip(changeCommand)) {
+                        continue
+                    }
+                    deploy(changeCommand)?.let { onFailure(changeCommand, it) }
+                }
+            }
+        } catch (exc: Throwable) {
+            // write the audit rows of the changes that completed before the exception, without masking the exception
+            try {
+                completeChangeDeployment(progressReporter, executionsBySchema, changeDurationsBySchema)
+            } catch (completionExc: Exception) {
+                exc.addSuppressed(completionExc)
+            }
+            throw exc
         }
 
+        // write the audit rows of the successful changes, even if other changes failed
+        completeChangeDeployment(progressReporter, executionsBySchema, changeDurationsBySchema)
+
         if (!failedChanges.isEmpty) {
             deployMetricsCollector.addMetric("exceptionCount", failedChanges.size)
             val changeMessages = failedChanges.collect {
@@ -534,6 +601,166 @@ class MainDeployer<P : Platform, E : Environment<P>>(
         }
     }
 
+    /**
+     * Starts the progress reports of the changes to deploy, unless disabled via the interval.
+     */
+    private fun createProgressReporter(artifactsToProcess: Changeset, schemas: Set<String>, progressReportIntervalSeconds: Int): DeployProgressReporter? {
+        if (progressReportIntervalSeconds <= 0) {
+            return null
+        }
+
+        // the change keys include the schema, so the durations of the schemas can be combined
+        val historicalDurations = schemas.flatMap { deployExecutionDao.getChangeDurations(it).keyValuesView() }
+                .associateBy({ it.one }, { it.two })
+        val progressReporter = DeployProgressReporter(artifactsToProcess.inserts.mapNotNull { getChangeKeyString(it) }, historicalDurations)
+        progressReporter.start(progressReportIntervalSeconds.toLong(), TimeUnit.SECONDS)
+        return progressReporter
+    }
+
+    private fun completeChangeDeployment(progressReporter: DeployProgressReporter?, executionsBySchema: Map<String, DeployExecution>, changeDurationsBySchema: Map<String, Map<String, Long>>) {
+        progressReporter?.close()
+        timePhase(DeployTimings.PHASE_AUDIT) { artifactDeployerDao.flush() }
+        persistChangeDurations(executionsBySchema, changeDurationsBySchema)
+    }
+
+    private fun persistChangeDurations(executionsBySchema: Map<String, DeployExecution>, changeDurationsBySchema: Map<String, Map<String, Long>>) {
+        for ((schema, changeDurations) in changeDurationsBySchema) {
+            runQuietly("save the change durations for schema $schema") {
+                deployExecutionDao.persistChangeDurations(executionsBySchema.getValue(schema), MapAdapter.adapt(changeDurations))
+            }
+        }
+    }
+
+    private fun shouldSkipChangeCommand(changeCommand: ExecuteChangeCommand, failedObjectNames: Set<String>, failedChangeKeys: Set<ChangeKey>): Boolean {
+        val previousFailedObjects = failedObjectNames.intersect(changeCommand.changes.toSet().map { it.dbObjectKey })
+        if (previousFailedObjects.isNotEmpty()) {
+            // We skip subsequent changes in objects that failed as we don't any unexpected activities to happen on
+            // a particular DB object
+            // (e.g. if one change relied on a previous one, and the previous one failed; what if something goes bad
+            // if the first one isn't executed?)
+            LOG.info("Skipping artifact [{}] as these objects previously failed deploying: {}",
+                    changeCommand.commandDescription, previousFailedObjects.joinToString(", "))
+            return true
+        }
+        val dependencyChangeKeys = changeCommand.changes.flatMap { it.dependentChanges ?: Sets.mutable.empty() }.map { it.changeKey }
+        val failedCommandKeys = dependencyChangeKeys.intersect(failedChangeKeys)
+
+        if (failedCommandKeys.isNotEmpty()) {
+            // We skip subsequent changes in objects that failed as we don't any unexpected activities to happen on
+            // a particular DB object
+            // (e.g. if one change relied on a previous one, and the previous one failed; what if something goes bad
+            // if the first one isn't executed?)
+            LOG.info("Skipping artifact [{}] as these changes previously failed deploying: {}",
+                    changeCommand.commandDescription, failedCommandKeys.joinToString(", "))
+            return true
+        }
+
+        return false
+    }
+
+    /**
+     * Deploys the given command and marks the audit table. Exceptions are returned rather than thrown so that the caller
+     * can continue w/ the other changes and fail the process at the end.
+     *
+     * This may be invoked concurrently for independent commands when deploying with multiple threads.
+     */
+    private fun deployChangeCommand(changeCommand: ExecuteChangeCommand, deployStrategy: DeployStrategy, onboardingStrategy: OnboardingStrategy, executionsBySchema: Map<String, DeployExecution>, cec: CommandExecutionContext): Exception? {
+        LOG.info("Attempting to deploy: " + changeCommand.commandDescription)
+
+        val changeStopWatch = StopWatch()
+        changeStopWatch.start()
+
+        try {
+            val deployEvent = DeployEvents.beginChangeDeploy(getChangeKeyString(changeCommand), changeCommand.changes.sumBy { it.convertedContent?.length ?: 0 })
+            try {
+                timePhase(DeployTimings.PHASE_DEPLOY) { deployStrategy.deploy(changeTypeBehaviorRegistry, changeCommand, cec) }
+            } catch (exc: Exception) {
+                if (changeCommand is ParallelDeployChangeCommand) {
+                    // the other changes of the parallel group were still deployed; audit them so that they are not rerun
+                    try {
+                        timePhase(DeployTimings.PHASE_AUDIT) { changeCommand.markAuditTable(changeTypeBehaviorRegistry, this.artifactDeployerDao, executionsBySchema.getValue(changeCommand.schema)) }
+                    } catch (auditExc: Exception) {
+                        exc.addSuppressed(auditExc)
+                    }
+                }
+                throw exc
+            } finally {
+                deployEvent.end(changeCommand.changes.size)
+            }
+            timePhase(DeployTimings.PHASE_AUDIT) { changeCommand.markAuditTable(changeTypeBehaviorRegistry, this.artifactDeployerDao, executionsBySchema.getValue(changeCommand.schema)) }
+
+            changeStopWatch.stop()
+            addChangeLatency(changeCommand, changeStopWatch.nanoTime)
+            val runtimeSeconds = TimeUnit.MILLISECONDS.toSeconds(changeStopWatch.time)
+            LOG.info("Successfully " + deployStrategy.deployVerbMessage + " artifact " + changeCommand.commandDescription +
+                    ", took " + runtimeSeconds + " seconds")
+
+            for (change in changeCommand.changes) {
+                // changeInput may be null due to manufactured changes e.g. object drops
+                change.changeInput?.let { onboardingStrategy.handleSuccess(it) }
+            }
+            return null
+        } catch (exc: Exception) {
+            changeStopWatch.stop()
+            addChangeLatency(changeCommand, changeStopWatch.nanoTime)
+
+            val runtimeSeconds = TimeUnit.MILLISECONDS.toSeconds(changeStopWatch.time)
+
+            for (change in changeCommand.changes) {
+                if (change.changeInput != null) {
+                    onboardingStrategy.handleException(change.changeInput, exc)
+                }
+            }
+
+            LOG.info("Failed to deploy artifact " + changeCommand.commandDescription + ", took "
+                    + runtimeSeconds + " seconds")
+
+            LOG.info("We will continue and fail the process at the end. This was the exception: " + ExceptionUtils.getStackTrace(exc))
+            return exc
+        }
+    }
+
+    private fun addChangeLatency(changeCommand: ExecuteChangeCommand, durationNanos: Long) {
+        // the changes of a command are of the same change type, e.g. the rows of a static data load
+        val changeType = changeCommand.changes.firstOrNull()?.changeType?.name ?: "unknown"
+        deployMetricsCollector.addChangeLatency(changeType, durationNanos)
+    }
+
+    /**
+     * Returns the key of the command's first change, to identify the command in the deploy events and the stored
+     * change durations.
+     */
+    private fun getChangeKeyString(changeCommand: ExecuteChangeCommand): String? {
+        return changeCommand.changes.firstOrNull()?.changeKey?.let { it.objectKey.toStringShort() + "-" + it.changeName }
+    }
+
+    /**
+     * Runs the block within a flight recorder event of the given type, recording the number of changes that it returned.
+     */
+    private inline fun <T> emitEvent(type: DeployEventType, changeCount: (T) -> Int, block: () -> T): T {
+        val event = DeployEvents.begin(type)
+        try {
+            val result = block()
+            event.end(changeCount(result))
+            return result
+        } catch (exc: Throwable) {
+            event.end()
+            throw exc
+        }
+    }
+
+    /**
+     * Runs the block and adds its runtime to the given phase of the deploy timings, even if it fails.
+     */
+    private inline fun <T> timePhase(phase: String, block: () -> T): T {
+        val startNanos = System.nanoTime()
+        try {
+            return block()
+        } finally {
+            deployMetricsCollector.addPhaseTime(phase, System.nanoTime() - startNanos)
+        }
+    }
+
     private fun shouldProceedWithDbChange(artifactsToProcess: Changeset, args: MainDeployerArgs): Boolean {
         if (args.isPreview) {
             LOG.info("We are in PREVIEW mode, so we will not proceed further. Exiting.")
@@ -0,0 +1,189 @@
+/**
+ * Copyright 2017 Goldman Sachs.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.gs.obevo.impl
+
+import com.gs.obevo.api.appdata.ChangeKey
+import com.gs.obevo.api.platform.ChangeType
+import org.apache.commons.lang3.concurrent.BasicThreadFactory
+import org.slf4j.LoggerFactory
+import java.util.PriorityQueue
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.ExecutorCompletionService
+import java.util.concurrent.Executors
+
+/**
+ * Executes an already-sorted list of [ExecuteChangeCommand]s across multiple threads, starting a command as soon as all
+ * the commands it depends on have completed.
+ *
+ * The input is expected to be in the order produced by the [com.gs.obevo.impl.changesorter.ChangeCommandSorter]; a
+ * command is only made to wait on commands that precede it in that list, so the sequential order remains a valid
+ * execution order. A command waits on an earlier command if:
+ * 1) either command's changes declare the other's changes in [com.gs.obevo.api.appdata.Change.getDependentChanges]
+ * 2) they touch the same DB object
+ * 3) either is a "barrier" command (see [isBarrier]), whose relative order can't be derived from the dependency graph
+ *
+ * The skip-check and completion callbacks are always invoked from the calling thread, so callers can keep their
+ * bookkeeping (e.g. the failed objects and change keys in [MainDeployer]) in non-thread-safe collections.
+ */
+internal class ParallelChangeCommandScheduler(private val numThreads: Int) {
+    init {
+        if (numThreads < 1) {
+            throw IllegalArgumentException("numThreads must be at least 1; got $numThreads")
+        }
+    }
+
+    /**
+     * @param commands The commands to execute, in sorted order
+     * @param shouldSkip Invoked once a command's predecessors have completed; if true, the command is not executed,
+     * but its dependents are still released (consistent with the sequential execution)
+     * @param deploy Executes the command on a worker thread; returns the exception if the deployment failed
+     * @param onFailure Invoked for commands whose deployment returned an exception
+     */
+    fun execute(commands: List<ExecuteChangeCommand>,
+                shouldSkip: (ExecuteChangeCommand) -> Boolean,
+                deploy: (ExecuteChangeCommand) -> Exception?,
+                onFailure: (ExecuteChangeCommand, Exception) -> Unit) {
+        LOG.info("Executing {} change commands using up to {} threads", commands.size, numThreads)
+        val predecessors = getPredecessors(commands)
+
+        val remainingPredecessorCounts = IntArray(commands.size) { predecessors[it].size }
+        val successors = Array(commands.size) { mutableListOf<Int>() }
+        predecessors.forEachIndexed { index, preds -> preds.forEach { successors[it].add(index) } }
+
+        // Use the original sorted position as the priority so that the execution order stays close to the sequential one
+        val readyCommands = PriorityQueue<Int>()
+        remainingPredecessorCounts.forEachIndexed { index, count -> if (count == 0) readyCommands.add(index) }
+
+        val executor = Executors.newFixedThreadPool(numThreads, BasicThreadFactory.Builder()
+                .namingPattern("obevo-deploy-%d")
+                .daemon(true)
+                .build())
+        val completionService = ExecutorCompletionService<Pair<Int, Exception?>>(executor)
+
+        fun release(index: Int) {
+            for (successor in successors[index]) {
+                remainingPredecessorCounts[successor]--
+                if (remainingPredecessorCounts[successor] == 0) {
+                    readyCommands.add(successor)
+                }
+            }
+        }
+
+        try {
+            var runningCount = 0
+            while (readyCommands.isNotEmpty() || runningCount > 0) {
+                while (readyCommands.isNotEmpty() && runningCount < numThreads) {
+                    val index = readyCommands.poll()
+                    val command = commands[index]
+                    if (shouldSkip(command)) {
+                        release(index)
+                    } else {
+                        completionService.submit(Callable { Pair(index, deploy(command)) })
+                        runningCount++
+                    }
+                }
+
+                if (runningCount > 0) {
+                    val (index, exception) = try {
+                        completionService.take().get()
+                    } catch (e: ExecutionException) {
+                        // deploy() is expected to return exceptions; anything thrown here is an Error we should not swallow
+                        throw e.cause ?: e
+                    }
+                    runningCount--
+
+                    exception?.let { onFailure(commands[index], it) }
+                    release(index)
+                }
+            }
+        } finally {
+            executor.shutdownNow()
+        }
+
+        val unexecutedCount = remainingPredecessorCounts.count { it > 0 }
+        if (unexecutedCount > 0) {
+            throw IllegalStateException("$unexecutedCount commands were never released for execution; this is a bug in the scheduler")
+        }
+    }
+
+    /**
+     * Returns the indices of the commands that each command must wait on. Only the direct predecessors are returned;
+     * the transitive ones are implied.
+     */
+    fun getPredecessors(commands: List<ExecuteChangeCommand>): List<Set<Int>> {
+        val predecessors = List(commands.size) { mutableSetOf<Int>() }
+
+        val commandIndexByChangeKey = mutableMapOf<ChangeKey, Int>()
+        commands.forEachIndexed { index, command -> command.changes.forEach { commandIndexByChangeKey[it.changeKey] = index } }
+
+        fun addEdge(index1: Int, index2: Int) {
+            // the earlier command in the sorted list always goes first, regardless of the direction of the dependency
+            // (drops are executed in the reverse order of their dependencies)
+            if (index1 < index2) {
+                predecessors[index2].add(index1)
+            } else if (index2 < index1) {
+                predecessors[index1].add(index2)
+            }
+        }
+
+        val lastIndexByObjectKey = mutableMapOf<String, Int>()
+        var lastBarrierIndex: Int? = null
+        val indicesSinceBarrier = mutableListOf<Int>()
+
+        commands.forEachIndexed { index, command ->
+            for (change in command.changes) {
+                change.dependentChanges?.forEach { dependentChange ->
+                    // dependentChanges may contain nulls for the manufactured drop changes
+                    @Suppress("SENSELESS_COMPARISON")
+                    if (dependentChange != null) {
+                        commandIndexByChangeKey[dependentChange.changeKey]?.let { addEdge(it, index) }
+                    }
+                }
+
+                lastIndexByObjectKey.put(change.dbObjectKey, index)?.let { addEdge(it, index) }
+            }
+
+            if (isBarrier(command)) {
+                predecessors[index].addAll(indicesSinceBarrier)
+                lastBarrierIndex?.let { predecessors[index].add(it) }
+                lastBarrierIndex = index
+                indicesSinceBarrier.clear()
+            } else {
+                lastBarrierIndex?.let { predecessors[index].add(it) }
+                indicesSinceBarrier.add(index)
+            }
+        }
+
+        return predecessors
+    }
+
+    /**
+     * Barrier commands are run on their own, after all previous commands complete and before any subsequent ones start.
+     * These are the commands whose position in the sorted order is not fully derived from the dependency graph:
+     * drops (sorted by type and name unless the platform requires a drop order), static data (sorted via the "order"
+     * attribute) and change types that are not enriched with dependencies from their text (e.g. migrations).
+     */
+    private fun isBarrier(command: ExecuteChangeCommand): Boolean {
+        return command.isDrop || command.changes.any {
+            it.changeType.name == ChangeType.STATICDATA_STR || !it.changeType.isEnrichableForDependenciesInText
+        }
+    }
+
+    companion object {
+        private val LOG = LoggerFactory.getLogger(ParallelChangeCommandScheduler::class.java)
+    }
+}
@@ -19,15 +19,19 @@ import com.gs.obevo.api.appdata.Change
 import com.gs.obevo.api.platform.ChangePair
 import com.gs.obevo.impl.*
 import com.gs.obevo.impl.changesorter.ChangeCommandSorter
+import com.gs.obevo.impl.jfr.DeployEventType
+import com.gs.obevo.impl.jfr.DeployEvents
 import org.eclipse.collections.api.RichIterable
 import org.eclipse.collections.impl.collection.mutable.CollectionAdapter
 import org.eclipse.collections.impl.factory.Lists
 
 class ChangesetCreatorImpl(
         private val changeCommandSorter: ChangeCommandSorter,
-        private val changeTypeBehaviorRegistry: ChangeTypeBehaviorRegistry
+        private val changeTypeBehaviorRegistry: ChangeTypeBehaviorRegistry,
+        private val deployMetricsCollector: DeployMetricsCollector
 ) : ChangesetCreator {
     override fun determineChangeset(changePairs: Iterable<ChangePair>, fromSourceList: RichIterable<Change>, initAllowedOnHashExceptions: Boolean): Changeset {
+        val calculationStartNanos = System.nanoTime()
         val changePairsByChangeType = changePairs.groupBy { it.changeKey.changeType }
 
         val commands = changePairsByChangeType.flatMap { (changeType, changeTypePairs) ->
@@ -42,7 +46,15 @@ class ChangesetCreatorImpl(
             throw IllegalStateException("These changes are not of an expected class type: " + warningPartition.second)
         }
 
-        val changeCommands = changeCommandSorter.sort(executePartition.first as Iterable<ExecuteChangeCommand>)
+        val sortStartNanos = System.nanoTime()
+        deployMetricsCollector.addPhaseTime(DeployTimings.PHASE_CHANGESET_CALCULATION, sortStartNanos - calculationStartNanos)
+        val sortEvent = DeployEvents.begin(DeployEventType.CHANGE_SORT)
+        val changeCommands = try {
+            changeCommandSorter.sort(executePartition.first as Iterable<ExecuteChangeCommand>)
+        } finally {
+            sortEvent.end(executePartition.first.size)
+        }
+        deployMetricsCollector.addPhaseTime(DeployTimings.PHASE_SORT, System.nanoTime() - sortStartNanos)
 
         return Changeset(Lists.immutable.ofAll(changeCommands),
                 Lists.immutable.ofAll(auditPartition.first as Iterable<AuditChangeCommand>),
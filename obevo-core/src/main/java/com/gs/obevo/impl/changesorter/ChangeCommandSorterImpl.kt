@@ -19,9 +19,8 @@ import com.gs.obevo.api.appdata.Change
 import com.gs.obevo.api.platform.ChangeType
 import com.gs.obevo.api.platform.Platform
 import com.gs.obevo.impl.ExecuteChangeCommand
-import com.gs.obevo.impl.graph.GraphEnricher
-import com.gs.obevo.impl.graph.GraphEnricherImpl
 import com.gs.obevo.impl.graph.GraphSorter
+import com.gs.obevo.impl.graph.IntDependencyGraph
 import com.gs.obevo.impl.graph.SortableDependencyGroup
 import org.eclipse.collections.api.block.function.Function
 import org.eclipse.collections.impl.block.factory.Comparators
@@ -46,13 +45,8 @@ import org.slf4j.LoggerFactory
 class ChangeCommandSorterImpl(
         private val dialect: Platform
 ) : ChangeCommandSorter {
-    private val enricher: GraphEnricher
     private val graphSorter = GraphSorter()
 
-    init {
-        this.enricher = GraphEnricherImpl(dialect.convertDbObjectName()::valueOf)
-    }
-
     override fun sort(changeCommands: Iterable<ExecuteChangeCommand>): List<ExecuteChangeCommand> {
         val addOrDropPartition = changeCommands.partition { !it.isDrop }
         val commandDatas = addOrDropPartition.first.map { DbCommandSortKey(it) }
@@ -68,7 +62,7 @@ class ChangeCommandSorterImpl(
 
     private fun sortAddCommands(addCommands: Iterable<DbCommandSortKey>): List<DbCommandSortKey> {
         val changeToSortKeyMap = CollectionAdapter.wrapList(addCommands).groupByEach { it.changeCommand.changes };
-        val addGraph = enricher.createSimpleDependencyGraph(addCommands, {
+        val addGraph = IntDependencyGraph.of(addCommands, {
             it.changeCommand.changes
                     .flatMap { it.dependentChanges ?: Sets.immutable.empty()}
                     .flatMap(changeToSortKeyMap::get)
@@ -92,7 +86,7 @@ class ChangeCommandSorterImpl(
 
         if (dialect.isDropOrderRequired) {
             val changeToSortKeyMap = CollectionAdapter.wrapList(rerunnableDrops).groupByEach { it.changeCommand.changes };
-            val addGraph = enricher.createSimpleDependencyGraph(rerunnableDrops, {
+            val addGraph = IntDependencyGraph.of(rerunnableDrops, {
                 it.changeCommand.changes
                         .flatMap { it.dependentChanges ?: Sets.mutable.empty()}
                         .flatMap(changeToSortKeyMap::get)
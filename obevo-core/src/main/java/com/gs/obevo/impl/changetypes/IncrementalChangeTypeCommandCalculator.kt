@@ -25,9 +25,11 @@ import com.gs.obevo.api.platform.ChangeTypeCommandCalculator
 import com.gs.obevo.impl.changecalc.ChangeCommandFactory
 import com.gs.obevo.impl.command.AlreadyDroppedTableWarning
 import com.gs.obevo.impl.command.BaselineChangeCommand
+import com.gs.obevo.impl.command.ForkJoinParallelGroupExecutor
 import com.gs.obevo.impl.command.HashMismatchWarning
 import com.gs.obevo.impl.command.IncompleteBaselineWarning
 import com.gs.obevo.impl.command.ParallelDeployChangeCommand
+import com.gs.obevo.impl.command.ParallelGroupExecutor
 import com.gs.obevo.impl.command.UnmanageChangeCommand
 import com.gs.obevo.util.DAStringUtil
 import org.apache.commons.lang3.ObjectUtils
@@ -49,7 +51,9 @@ import org.slf4j.LoggerFactory
 /**
  * The [ChangeTypeCommandCalculator] implementation to use for incremental (i.e. rerunnable == false) [ChangeType]s.
  */
-class IncrementalChangeTypeCommandCalculator internal constructor(private val numThreads: Int) : ChangeTypeCommandCalculator {
+class IncrementalChangeTypeCommandCalculator internal constructor(private val parallelGroupExecutor: ParallelGroupExecutor) : ChangeTypeCommandCalculator {
+    internal constructor(numThreads: Int) : this(ForkJoinParallelGroupExecutor(numThreads))
+
 
     private val changeCommandFactory = ChangeCommandFactory()
 
@@ -140,7 +144,10 @@ class IncrementalChangeTypeCommandCalculator internal constructor(private val nu
                     changeset.add(changeCommandFactory.createCurrentDeactivationWarning(incrementalDeployed))
                 }
 
-                if (!ObjectUtils.equals(DAStringUtil.normalizeWhiteSpaceFromString(incrementalSource.rollbackContent),
+                // A deployed rollback content that has not been read (see Change.setRollbackContentLoader) is left
+                // alone, as reading it for the comparison would read the rollback content of every deployed change.
+                // MainDeployer loads it upfront for rollback runs, where it gets compared and refreshed.
+                if (incrementalDeployed.isRollbackContentLoaded && !ObjectUtils.equals(DAStringUtil.normalizeWhiteSpaceFromString(incrementalSource.rollbackContent),
                                 DAStringUtil.normalizeWhiteSpaceFromString(incrementalDeployed.rollbackContent))) {
                     incrementalDeployed.rollbackContent = incrementalSource.rollbackContent
                     changeset.add(changeCommandFactory.createUpdateAuditTableOnly(incrementalDeployed,
@@ -173,7 +180,7 @@ class IncrementalChangeTypeCommandCalculator internal constructor(private val nu
             if (groupedChanges.size() == 1) {
                 changeset.add(changeCommandFactory.createDeployCommand(groupedChanges.first))
             } else {
-                changeset.add(ParallelDeployChangeCommand(groupedChanges.first.schema, groupedChanges.toList().toImmutable(), numThreads))
+                changeset.add(ParallelDeployChangeCommand(groupedChanges.first.schema, groupedChanges.toList().toImmutable(), parallelGroupExecutor))
             }
         }
 
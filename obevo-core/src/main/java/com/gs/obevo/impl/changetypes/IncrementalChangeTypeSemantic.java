@@ -19,15 +19,21 @@ import com.gs.obevo.api.appdata.Change;
 import com.gs.obevo.api.appdata.DeployExecution;
 import com.gs.obevo.api.platform.ChangeAuditDao;
 import com.gs.obevo.api.platform.ChangeTypeCommandCalculator;
+import com.gs.obevo.impl.command.ForkJoinParallelGroupExecutor;
+import com.gs.obevo.impl.command.ParallelGroupExecutor;
 
 /**
  * Implementation for incremental changes.
  */
 public class IncrementalChangeTypeSemantic extends AbstractChangeTypeSemantic {
-    private final int numThreads;
+    private final ParallelGroupExecutor parallelGroupExecutor;
 
     public IncrementalChangeTypeSemantic(int numThreads) {
-        this.numThreads = numThreads;
+        this(new ForkJoinParallelGroupExecutor(numThreads));
+    }
+
+    public IncrementalChangeTypeSemantic(ParallelGroupExecutor parallelGroupExecutor) {
+        this.parallelGroupExecutor = parallelGroupExecutor;
     }
 
     @Override
@@ -37,6 +43,6 @@ public class IncrementalChangeTypeSemantic extends AbstractChangeTypeSemantic {
 
     @Override
     public ChangeTypeCommandCalculator getChangeTypeCalculator() {
-        return new IncrementalChangeTypeCommandCalculator(numThreads);
+        return new IncrementalChangeTypeCommandCalculator(parallelGroupExecutor);
     }
 }
@@ -15,6 +15,8 @@
  */
 package com.gs.obevo.impl.changetypes;
 
+import java.util.BitSet;
+
 import com.gs.obevo.api.appdata.Change;
 import com.gs.obevo.api.appdata.ObjectKey;
 import com.gs.obevo.api.platform.ChangeCommand;
@@ -24,7 +26,7 @@ import com.gs.obevo.api.platform.ChangeTypeCommandCalculator;
 import com.gs.obevo.impl.ExecuteChangeCommand;
 import com.gs.obevo.impl.changecalc.ChangeCommandFactory;
 import com.gs.obevo.impl.graph.GraphEnricher;
-import com.gs.obevo.util.CollectionUtil;
+import com.gs.obevo.impl.graph.IntDependencyGraph;
 import org.apache.commons.lang3.ObjectUtils;
 import org.eclipse.collections.api.RichIterable;
 import org.eclipse.collections.api.block.function.Function;
@@ -41,7 +43,6 @@ import org.eclipse.collections.impl.factory.Lists;
 import org.eclipse.collections.impl.factory.Sets;
 import org.jgrapht.Graph;
 import org.jgrapht.graph.DefaultEdge;
-import org.jgrapht.traverse.BreadthFirstIterator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -177,16 +178,23 @@ class RerunnableChangeTypeCommandCalculator implements ChangeTypeCommandCalculat
                 return change1.getObjectKey();
             }
         }));
+        // find the dependents of all the changed objects in one pass over the graph, instead of one traversal per change
+        IntDependencyGraph<Change> intGraph = IntDependencyGraph.fromGraph(graph);
+        int[] changedIndexes = new int[changesForType.size()];
+        int i = 0;
         for (Change change : changesForType) {
-            BreadthFirstIterator<Change, DefaultEdge> dependencyIterator = new BreadthFirstIterator<Change, DefaultEdge>(graph, change);
-
-            MutableSet<Change> dependencies = CollectionUtil.iteratorToList(dependencyIterator).toSet();
-            dependencies.remove(change);  // the iterator result includes the self; we can remove this
+            int index = intGraph.indexOf(change);
+            if (index < 0) {
+                throw new IllegalArgumentException("Changed object is not in the dependency graph: " + change);
+            }
+            changedIndexes[i++] = index;
+        }
 
-            for (Change changeToAddBack : dependencies) {
-                if (!changesForTypeSet.contains(changeToAddBack)) {
-                    newChangesToAdd.add(changeToAddBack);
-                }
+        BitSet dependents = intGraph.getReachableVertices(changedIndexes);
+        for (int index = dependents.nextSetBit(0); index >= 0; index = dependents.nextSetBit(index + 1)) {
+            Change changeToAddBack = intGraph.getVertex(index);
+            if (!changesForTypeSet.contains(changeToAddBack)) {
+                newChangesToAdd.add(changeToAddBack);
             }
         }
         return newChangesToAdd;
@@ -0,0 +1,36 @@
+/**
+ * Copyright 2017 Goldman Sachs.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.gs.obevo.impl.command;
+
+import org.eclipse.collections.api.list.ImmutableList;
+import org.eclipse.collections.impl.parallel.ParallelIterate;
+
+/**
+ * Runs the changes on the fork-join pool of {@link ParallelIterate}, with up to numThreads threads.
+ */
+public class ForkJoinParallelGroupExecutor implements ParallelGroupExecutor {
+    private final int numThreads;
+
+    public ForkJoinParallelGroupExecutor(int numThreads) {
+        this.numThreads = numThreads;
+    }
+
+    @Override
+    public void executeAll(ImmutableList<Runnable> tasks) {
+        // 2 value -> only fork to parallelism if we have 2 tasks. 1 task will not require thread pool usage
+        ParallelIterate.forEach(tasks, Runnable::run, 2, numThreads);
+    }
+}
@@ -16,6 +16,7 @@
 package com.gs.obevo.impl.command;
 
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import com.gs.obevo.api.appdata.Change;
 import com.gs.obevo.api.appdata.DeployExecution;
@@ -23,31 +24,70 @@ import com.gs.obevo.api.platform.ChangeAuditDao;
 import com.gs.obevo.api.platform.CommandExecutionContext;
 import com.gs.obevo.impl.ChangeTypeBehaviorRegistry;
 import com.gs.obevo.impl.ExecuteChangeCommand;
-import org.eclipse.collections.api.block.procedure.Procedure;
 import org.eclipse.collections.api.collection.ImmutableCollection;
-import org.eclipse.collections.impl.parallel.ParallelIterate;
+import org.eclipse.collections.api.list.ImmutableList;
+import org.eclipse.collections.api.list.MutableList;
+import org.eclipse.collections.api.set.MutableSet;
+import org.eclipse.collections.api.tuple.Pair;
+import org.eclipse.collections.impl.factory.Lists;
+import org.eclipse.collections.impl.factory.Sets;
+import org.eclipse.collections.impl.tuple.Tuples;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+/**
+ * Deploys the changes of a parallel group concurrently via the {@link ParallelGroupExecutor}.
+ *
+ * All the changes are attempted even if some of them fail; the failures are then reported together in the exception
+ * thrown for the command. {@link #markAuditTable} only marks the changes that did not fail, so that it can be called
+ * after a failed execution to keep the deployed changes from being rerun.
+ */
 public class ParallelDeployChangeCommand implements ExecuteChangeCommand {
+    private static final Logger LOG = LoggerFactory.getLogger(ParallelDeployChangeCommand.class);
+
     private final String schema;
-    private final int numThreads;
+    private final ParallelGroupExecutor parallelGroupExecutor;
     private final ImmutableCollection<? extends Change> changes;
+    private final MutableSet<Change> failedChanges = Sets.mutable.<Change>empty().asSynchronized();
     private boolean drop = false;
 
     public ParallelDeployChangeCommand(String schema, ImmutableCollection<? extends Change> changes, int numThreads) {
+        this(schema, changes, new ForkJoinParallelGroupExecutor(numThreads));
+    }
+
+    public ParallelDeployChangeCommand(String schema, ImmutableCollection<? extends Change> changes, ParallelGroupExecutor parallelGroupExecutor) {
         this.changes = changes;
         this.schema = schema;
-        this.numThreads = numThreads;
+        this.parallelGroupExecutor = parallelGroupExecutor;
     }
 
     @Override
     public void execute(final ChangeTypeBehaviorRegistry changeTypeBehaviorRegistry, final CommandExecutionContext cec) {
-        // 2 value -> only fork to parallelism if we have 2 tasks. 1 task will not require thread pool usage
-        ParallelIterate.forEach(changes, new Procedure<Change>() {
-            @Override
-            public void value(Change change) {
+        final MutableList<Pair<Change, RuntimeException>> failures = Lists.mutable.<Pair<Change, RuntimeException>>empty().asSynchronized();
+        failedChanges.clear();
+
+        ImmutableList<Runnable> tasks = changes.toList().toImmutable().collect(change -> (Runnable) () -> {
+            long startNanos = System.nanoTime();
+            try {
                 changeTypeBehaviorRegistry.deploy(change, cec);
+                LOG.info("Deployed parallel change {}, took {} ms", change.getDisplayString(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+            } catch (RuntimeException exc) {
+                LOG.info("Failed to deploy parallel change {}, took {} ms", change.getDisplayString(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+                failures.add(Tuples.pair(change, exc));
+                failedChanges.add(change);
+            }
+        });
+        parallelGroupExecutor.executeAll(tasks);
+
+        if (failures.notEmpty()) {
+            RuntimeException exc = new RuntimeException(failures.size() + " of " + changes.size() + " parallel changes failed:\n"
+                    + failures.collect(failure -> failure.getOne().getDisplayString() + ": " + failure.getTwo().getMessage()).makeString("\n"),
+                    failures.getFirst().getTwo());
+            for (Pair<Change, RuntimeException> failure : failures.subList(1, failures.size())) {
+                exc.addSuppressed(failure.getTwo());
             }
-        }, 2, numThreads);
+            throw exc;
+        }
     }
 
     @Override
@@ -69,7 +109,9 @@ public class ParallelDeployChangeCommand implements ExecuteChangeCommand {
     @Override
     public void markAuditTable(ChangeTypeBehaviorRegistry changeTypeBehaviorRegistry, ChangeAuditDao artifactDeployerDao, DeployExecution deployExecution) {
         for (Change change : changes) {
-            changeTypeBehaviorRegistry.manage(change, artifactDeployerDao, deployExecution);
+            if (!failedChanges.contains(change)) {
+                changeTypeBehaviorRegistry.manage(change, artifactDeployerDao, deployExecution);
+            }
         }
     }
 
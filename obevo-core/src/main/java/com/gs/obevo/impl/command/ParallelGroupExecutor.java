@@ -0,0 +1,29 @@
+/**
+ * Copyright 2017 Goldman Sachs.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.gs.obevo.impl.command;
+
+import org.eclipse.collections.api.list.ImmutableList;
+
+/**
+ * Runs the changes of a {@link ParallelDeployChangeCommand} concurrently.
+ */
+public interface ParallelGroupExecutor {
+    /**
+     * Runs the tasks and returns once all of them have completed. The tasks are expected to handle their own
+     * exceptions, so that the failure of one task does not stop the others.
+     */
+    void executeAll(ImmutableList<Runnable> tasks);
+}
@@ -0,0 +1,105 @@
+/**
+ * Copyright 2017 Goldman Sachs.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.gs.obevo.impl.command;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.eclipse.collections.api.list.ImmutableList;
+import org.eclipse.collections.api.list.MutableList;
+import org.eclipse.collections.impl.factory.Lists;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs each change on a thread of its own, with a semaphore limiting the changes running at once to
+ * maxConcurrentChanges, which should not exceed the connections available to the deploy. The permit is taken before
+ * the change is submitted, so that no more than maxConcurrentChanges threads are busy at once.
+ *
+ * The threads are virtual threads on JVMs that support them (JDK 21+), so that changes waiting on the database (e.g.
+ * index builds or data migrations) do not tie up platform threads; on older JVMs, the changes run on a cached pool of
+ * platform threads instead.
+ */
+public class ThreadPerChangeParallelGroupExecutor implements ParallelGroupExecutor {
+    private static final Logger LOG = LoggerFactory.getLogger(ThreadPerChangeParallelGroupExecutor.class);
+
+    private final int maxConcurrentChanges;
+
+    public ThreadPerChangeParallelGroupExecutor(int maxConcurrentChanges) {
+        if (maxConcurrentChanges < 1) {
+            throw new IllegalArgumentException("maxConcurrentChanges must be at least 1; got " + maxConcurrentChanges);
+        }
+        this.maxConcurrentChanges = maxConcurrentChanges;
+    }
+
+    @Override
+    public void executeAll(ImmutableList<Runnable> tasks) {
+        final Semaphore permits = new Semaphore(maxConcurrentChanges);
+        ExecutorService executor = newThreadPerTaskExecutor();
+        try {
+            MutableList<Future<?>> futures = Lists.mutable.empty();
+            for (final Runnable task : tasks) {
+                permits.acquireUninterruptibly();
+                try {
+                    futures.add(executor.submit(() -> {
+                        try {
+                            task.run();
+                        } finally {
+                            permits.release();
+                        }
+                    }));
+                } catch (RuntimeException e) {
+                    permits.release();
+                    throw e;
+                }
+            }
+
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for the parallel changes to complete", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static ExecutorService newThreadPerTaskExecutor() {
+        try {
+            // looked up reflectively as the code is compiled for JDK 8
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException e) {
+            LOG.debug("Virtual threads are not available on this JVM; using a cached pool of platform threads");
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            LOG.warn("Could not create the virtual thread executor; using a cached pool of platform threads", e);
+        }
+
+        // the cached pool reuses an idle thread if it has one and otherwise starts a new one; as the permits bound the
+        // running changes to maxConcurrentChanges, so are its threads
+        return Executors.newCachedThreadPool(new BasicThreadFactory.Builder()
+                .namingPattern("obevo-parallel-change-%d")
+                .daemon(true)
+                .build());
+    }
+}
@@ -50,12 +50,16 @@ import com.gs.obevo.impl.changesorter.ChangeCommandSorterImpl;
 import com.gs.obevo.impl.changetypes.GroupChangeTypeSemantic;
 import com.gs.obevo.impl.changetypes.IncrementalChangeTypeSemantic;
 import com.gs.obevo.impl.changetypes.RerunnableChangeTypeSemantic;
+import com.gs.obevo.impl.command.ForkJoinParallelGroupExecutor;
+import com.gs.obevo.impl.command.ParallelGroupExecutor;
+import com.gs.obevo.impl.command.ThreadPerChangeParallelGroupExecutor;
 import com.gs.obevo.impl.graph.GraphEnricher;
 import com.gs.obevo.impl.graph.GraphEnricherImpl;
 import com.gs.obevo.impl.reader.CachedDbChangeReader;
 import com.gs.obevo.impl.reader.DbChangeFileParser;
 import com.gs.obevo.impl.reader.DbDirectoryChangesetReader;
 import com.gs.obevo.impl.reader.GetChangeType;
+import com.gs.obevo.impl.reader.PersistentChangeParseCache;
 import com.gs.obevo.impl.reader.TextMarkupDocumentReader;
 import com.gs.obevo.impl.text.TextDependencyExtractor;
 import com.gs.obevo.impl.text.TextDependencyExtractorImpl;
@@ -189,7 +193,7 @@ public abstract class AbstractDeployerAppContext<E extends Environment, Self ext
         return this.singleton("getChangesetCreator", new Function0<ChangesetCreatorImpl>() {
             @Override
             public ChangesetCreatorImpl value() {
-                return new ChangesetCreatorImpl(AbstractDeployerAppContext.this.changeCommandSorter(), AbstractDeployerAppContext.this.getChangeTypeBehaviorRegistry());
+                return new ChangesetCreatorImpl(AbstractDeployerAppContext.this.changeCommandSorter(), AbstractDeployerAppContext.this.getChangeTypeBehaviorRegistry(), AbstractDeployerAppContext.this.deployStatsTracker());
             }
         });
     }
@@ -235,13 +239,14 @@ public abstract class AbstractDeployerAppContext<E extends Environment, Self ext
                         , AbstractDeployerAppContext.this.getTextDependencyExtractor()
                         , AbstractDeployerAppContext.this.getDeployerPlugin()
                         , AbstractDeployerAppContext.this.graphEnricher()
+                        , AbstractDeployerAppContext.this.getNumThreads()
                 );
             }
         });
     }
 
     private TextDependencyExtractor getTextDependencyExtractor() {
-        return new TextDependencyExtractorImpl(env.getPlatform().convertDbObjectName());
+        return new TextDependencyExtractorImpl(env.getPlatform().convertDbObjectName(), env.getSourceReaderThreads());
     }
 
     protected abstract FileSourceContext getDefaultFileSourceContext();
@@ -263,7 +268,18 @@ public abstract class AbstractDeployerAppContext<E extends Environment, Self ext
     }
 
     protected ChangeTypeSemantic incrementalSemantic() {
-        return new IncrementalChangeTypeSemantic(getNumThreads());
+        return new IncrementalChangeTypeSemantic(parallelGroupExecutor());
+    }
+
+    protected ParallelGroupExecutor parallelGroupExecutor() {
+        switch (env.getParallelGroupExecutorType()) {
+        case THREAD_PER_CHANGE:
+            // limited to the threads that the connection pool is sized for
+            return new ThreadPerChangeParallelGroupExecutor(getNumThreads());
+        case FORK_JOIN:
+        default:
+            return new ForkJoinParallelGroupExecutor(getNumThreads());
+        }
     }
 
     protected ChangeTypeSemantic groupSemantic() {
@@ -295,7 +311,16 @@ public abstract class AbstractDeployerAppContext<E extends Environment, Self ext
             int metadataLineReaderVersion = env.getMetadataLineReaderVersion();
             TextMarkupDocumentReader textMarkupDocumentReader = new TextMarkupDocumentReader(metadataLineReaderVersion < 3);  // legacy mode is 2 and below
 
-            FileSourceContext underlyingChangesetReader = new DbDirectoryChangesetReader(env.getPlatform().convertDbObjectName(), deployStatsTracker, true, textMarkupDocumentReader, baselineTableChangeParser, getChangeType);
+            PersistentChangeParseCache parseCache = null;
+            if (env.getSourceParseCacheDir() != null) {
+                String parseSettings = "platform=" + env.getPlatform().getName()
+                        + ";metadataLineReaderVersion=" + metadataLineReaderVersion
+                        + ";legacyDirectoryStructure=" + env.isLegacyDirectoryStructureEnabled()
+                        + ";baselineTableChangeParser=" + (baselineTableChangeParser == null ? null : baselineTableChangeParser.getClass().getName());
+                parseCache = new PersistentChangeParseCache(new File(env.getSourceParseCacheDir()), changeTypeName -> env.getPlatform().getChangeType(changeTypeName), parseSettings);
+            }
+
+            FileSourceContext underlyingChangesetReader = new DbDirectoryChangesetReader(env.getPlatform().convertDbObjectName(), deployStatsTracker, true, textMarkupDocumentReader, baselineTableChangeParser, getChangeType, env.getSourceReaderThreads(), parseCache);
 
             return new CachedDbChangeReader(underlyingChangesetReader);
         }
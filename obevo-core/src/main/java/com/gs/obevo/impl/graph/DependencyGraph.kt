@@ -0,0 +1,42 @@
+/**
+ * Copyright 2017 Goldman Sachs.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.gs.obevo.impl.graph
+
+import org.jgrapht.graph.DefaultDirectedGraph
+
+/**
+ * The jgrapht graph created by [GraphEnricherImpl], which remembers whether it has been validated by
+ * [GraphUtil.validateNoCycles] so that callers that check the same graph again do not redo the strongly connected
+ * components pass.
+ *
+ * Only adding an edge can introduce a cycle, so that is the only modification that clears the validated state; adding
+ * vertices or removing vertices or edges keeps an acyclic graph acyclic.
+ */
+class DependencyGraph<V, E>(edgeClass: Class<out E>) : DefaultDirectedGraph<V, E>(edgeClass) {
+    @Volatile
+    var validatedAcyclic = false
+        internal set
+
+    override fun addEdge(sourceVertex: V, targetVertex: V): E? {
+        validatedAcyclic = false
+        return super.addEdge(sourceVertex, targetVertex)
+    }
+
+    override fun addEdge(sourceVertex: V, targetVertex: V, e: E): Boolean {
+        validatedAcyclic = false
+        return super.addEdge(sourceVertex, targetVertex, e)
+    }
+}
@@ -20,7 +20,6 @@ import com.gs.obevo.api.platform.ChangeType
 import org.eclipse.collections.api.tuple.Pair
 import org.eclipse.collections.impl.tuple.Tuples
 import org.jgrapht.Graph
-import org.jgrapht.graph.DefaultDirectedGraph
 import org.jgrapht.graph.DefaultEdge
 import org.slf4j.LoggerFactory
 
@@ -38,7 +37,7 @@ class GraphEnricherImpl(private val convertDbObjectName: Function1<String, Strin
 
         changeIndexes.forEach { changeIndex -> inputs.forEach(changeIndex::add) }
 
-        val graph = DefaultDirectedGraph<T, DependencyEdge>(DependencyEdge::class.java)
+        val graph = DependencyGraph<T, DependencyEdge>(DependencyEdge::class.java)
 
         // First - add the core objects to the graph
         inputs.forEach { graph.addVertex(it) }
@@ -114,7 +113,7 @@ class GraphEnricherImpl(private val convertDbObjectName: Function1<String, Strin
     }
 
     override fun <T> createSimpleDependencyGraph(inputs: Iterable<T>, edgesFunction: Function1<T, Iterable<T>>): Graph<T, DefaultEdge> {
-        val graph = DefaultDirectedGraph<T, DefaultEdge>(DefaultEdge::class.java)
+        val graph = DependencyGraph<T, DefaultEdge>(DefaultEdge::class.java)
         inputs.forEach { graph.addVertex(it) }
 
         inputs.forEach { input ->
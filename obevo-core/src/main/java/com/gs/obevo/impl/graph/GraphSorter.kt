@@ -15,15 +15,14 @@
  */
 package com.gs.obevo.impl.graph
 
-import com.gs.obevo.util.CollectionUtil
 import org.eclipse.collections.api.RichIterable
 import org.eclipse.collections.api.list.ImmutableList
 import org.eclipse.collections.impl.block.factory.Comparators
 import org.eclipse.collections.impl.factory.Lists
+import org.eclipse.collections.impl.list.mutable.FastList
 import org.jgrapht.Graph
-import org.jgrapht.graph.AsSubgraph
+import org.jgrapht.graph.DefaultDirectedGraph
 import org.jgrapht.graph.DefaultEdge
-import org.jgrapht.traverse.TopologicalOrderIterator
 import java.util.Comparator
 
 /**
@@ -55,21 +54,16 @@ class GraphSorter {
      * @param comparator The comparator on which to order the vertices to guarantee a consistent topological ordering
      */
     fun <T> sortChanges(graph: Graph<T, DefaultEdge>, subsetVertices: RichIterable<T>, comparator: Comparator<in T>?): ImmutableList<T> {
-        if (subsetVertices.toSet().size != subsetVertices.size()) {
+        val subsetVertexSet = subsetVertices.toSet()
+        if (subsetVertexSet.size != subsetVertices.size()) {
             throw IllegalStateException("Unexpected state - have some dupe elements here: $subsetVertices")
         }
 
-        val subsetGraph = AsSubgraph(
-                graph, subsetVertices.toSet(), null)
-
-        // At one point, we _thought_ that the DirectedSubGraph was dropping vertices that don't have edges, so we
-        // manually add them back to the graph to ensure that we can still order them.
-        // However, that no longer seems to be the case. We add a check here just in case this comes up again.
-        if (subsetVertices.size() != subsetGraph.vertexSet().size) {
-            throw IllegalArgumentException("This case should never happen! [subsetVertices: " + subsetVertices + ", subsetGraphVertices: " + subsetGraph.vertexSet())
+        if (!graph.vertexSet().containsAll(subsetVertexSet)) {
+            throw IllegalArgumentException("This case should never happen! [subsetVertices: " + subsetVertices + ", graphVertices: " + graph.vertexSet())
         }
 
-        return sortChanges(subsetGraph, comparator)
+        return sortChanges(IntDependencyGraph.fromGraph(graph, subsetVertices), comparator)
     }
 
     /**
@@ -88,25 +82,151 @@ class GraphSorter {
      * @param comparator The comparator on which to order the vertices to guarantee a consistent topological ordering
      */
     fun <T> sortChanges(graph: Graph<T, DefaultEdge>, comparator: Comparator<in T>?): ImmutableList<T> {
-        if (graph.vertexSet().isEmpty()) {
+        return sortChanges(IntDependencyGraph.fromGraph(graph), comparator)
+    }
+
+    /**
+     * Sorts the graph to provide a consistent topological ordering, using Kahn's algorithm: among the vertices whose
+     * dependencies have all been emitted, the lowest one per the comparator is emitted next. Vertices that are equal
+     * per the comparator are emitted in the order of the graph's vertex indexes.
+     *
+     * @param graph The input graph - all vertices in the graph will be returned in the output list
+     * @param comparator The comparator on which to order the vertices to guarantee a consistent topological ordering
+     * @throws GraphCycleException if the graph has cycles
+     */
+    fun <T> sortChanges(graph: IntDependencyGraph<T>, comparator: Comparator<in T>?): ImmutableList<T> {
+        val vertexCount = graph.vertexCount
+        if (vertexCount == 0) {
             return Lists.immutable.empty()
         }
 
-        GraphUtil.validateNoCycles(graph)
+        val vertexComparator = getComparator(graph.getVertex(0), comparator)
+
+        // Rank the vertices once so that the queue only needs to compare ints; the sort is stable, so that equal
+        // vertices are ranked in the order of their indexes. If the vertices cannot be compared, we still run the
+        // sort to report any cycles first
+        val verticesByRank = if (vertexComparator == null) IntArray(vertexCount) { it } else (0 until vertexCount)
+                .sortedWith(Comparator { i1, i2 -> vertexComparator.compare(graph.getVertex(i1), graph.getVertex(i2)) })
+                .toIntArray()
+        val ranks = IntArray(vertexCount)
+        for (rank in 0 until vertexCount) {
+            ranks[verticesByRank[rank]] = rank
+        }
+
+        val inDegrees = graph.getInDegrees()
+        val queue = IntMinHeap(vertexCount)
+        for (rank in 0 until vertexCount) {
+            if (inDegrees[verticesByRank[rank]] == 0) {
+                queue.add(rank)
+            }
+        }
 
-        val iterator = getTopologicalOrderIterator(graph, comparator)
+        val sortedVertices = FastList.newList<T>(vertexCount)
+        while (queue.isNotEmpty()) {
+            val vertex = verticesByRank[queue.removeMin()]
+            sortedVertices.add(graph.getVertex(vertex))
+            for (n in 0 until graph.getSuccessorCount(vertex)) {
+                val successor = graph.getSuccessor(vertex, n)
+                inDegrees[successor]--
+                if (inDegrees[successor] == 0) {
+                    queue.add(ranks[successor])
+                }
+            }
+        }
 
-        return CollectionUtil.iteratorToList(iterator)
+        if (sortedVertices.size < vertexCount) {
+            throwCycleException(graph)
+        }
+        if (vertexComparator == null) {
+            throw IllegalArgumentException("Unsortable graph elements - either need to provide a Comparator or have Comparable vertices to guarantee a consistent topological order")
+        }
+
+        return sortedVertices.toImmutable()
     }
 
-    private fun <T> getTopologicalOrderIterator(graph: Graph<T, DefaultEdge>, comparator: Comparator<in T>?): TopologicalOrderIterator<T, DefaultEdge> {
+    private fun <T> getComparator(vertex: T, comparator: Comparator<in T>?): Comparator<in T>? {
         if (comparator != null) {
-            return TopologicalOrderIterator(graph, comparator as Comparator<T>)
-        } else if (graph.vertexSet().iterator().next() is Comparable<*>) {
+            return comparator
+        } else if (vertex is Comparable<*>) {
             // ensure consistent output order
-            return TopologicalOrderIterator(graph, Comparators.naturalOrder<T>())
+            return Comparators.naturalOrder<T>()
         } else {
-            throw IllegalArgumentException("Unsortable graph elements - either need to provide a Comparator or have Comparable vertices to guarantee a consistent topological order")
+            return null
+        }
+    }
+
+    /**
+     * Kahn's algorithm could not emit all the vertices, so the graph has cycles; we copy the cycle components to a
+     * jgrapht graph to describe the cycles.
+     */
+    private fun <T> throwCycleException(graph: IntDependencyGraph<T>): Nothing {
+        val cycleComponents = graph.cycleComponents
+        if (cycleComponents.isEmpty()) {
+            throw IllegalStateException("Could not sort the graph, but no cycles were found in it")
+        }
+
+        val componentIds = IntArray(graph.vertexCount) { -1 }
+        cycleComponents.forEachIndexed { componentId, component -> component.forEach { componentIds[it] = componentId } }
+
+        val cycleGraph = DefaultDirectedGraph<T, DefaultEdge>(DefaultEdge::class.java)
+        for (component in cycleComponents) {
+            component.forEach { cycleGraph.addVertex(graph.getVertex(it)) }
+            for (vertex in component) {
+                for (n in 0 until graph.getSuccessorCount(vertex)) {
+                    val successor = graph.getSuccessor(vertex, n)
+                    if (componentIds[successor] == componentIds[vertex]) {
+                        cycleGraph.addEdge(graph.getVertex(vertex), graph.getVertex(successor))
+                    }
+                }
+            }
+        }
+
+        throw GraphUtil.createCycleException(cycleGraph, cycleComponents.map { component -> component.map(graph::getVertex) },
+                { vertex, _, _ -> vertex.toString() }, DefaultEdge::toString)
+    }
+
+    /**
+     * Binary min-heap of ints, to avoid boxing the vertex ranks in a [java.util.PriorityQueue].
+     */
+    private class IntMinHeap(capacity: Int) {
+        private val heap = IntArray(capacity)
+        private var size = 0
+
+        fun isNotEmpty(): Boolean = size > 0
+
+        fun add(value: Int) {
+            var i = size++
+            while (i > 0) {
+                val parent = (i - 1) / 2
+                if (heap[parent] <= value) {
+                    break
+                }
+                heap[i] = heap[parent]
+                i = parent
+            }
+            heap[i] = value
+        }
+
+        fun removeMin(): Int {
+            val min = heap[0]
+            val last = heap[--size]
+            var i = 0
+            while (true) {
+                var child = 2 * i + 1
+                if (child >= size) {
+                    break
+                }
+                if (child + 1 < size && heap[child + 1] < heap[child]) {
+                    child++
+                }
+                if (last <= heap[child]) {
+                    break
+                }
+                heap[i] = heap[child]
+                i = child
+            }
+            heap[i] = last
+            return min
         }
     }
 }
@@ -22,7 +22,6 @@
 package com.gs.obevo.impl.graph
 
 import org.jgrapht.Graph
-import org.jgrapht.alg.cycle.HawickJamesSimpleCycles
 import org.jgrapht.graph.AsSubgraph
 import org.jgrapht.graph.DefaultEdge
 import org.jgrapht.graph.EdgeReversedGraph
@@ -47,56 +46,81 @@ object GraphUtil {
     }
 
 
+    /**
+     * Validates that the graph has no cycles, finding them all in one linear-time pass over the strongly connected
+     * components of the graph (see [IntDependencyGraph.cycleComponents]).
+     *
+     * The result is stored on [DependencyGraph] instances, so that validating an unchanged graph again is a no-op.
+     *
+     * @throws GraphCycleException with one cycle component per strongly connected component that has a cycle
+     */
     @JvmStatic
     fun <T, E> validateNoCycles(graph: Graph<T, E>, vertexToString: VertexToString<in T, in E>, edgeToString: Function1<in E, String>) {
-        val simpleCycles = HawickJamesSimpleCycles(graph)
-        val cycleComponents = simpleCycles.findSimpleCycles()
-        cycleComponents.zipWithNext()
+        if (graph is DependencyGraph && graph.validatedAcyclic) {
+            return
+        }
+
+        val intGraph = IntDependencyGraph.fromGraph(graph)
+        val cycleComponents = intGraph.cycleComponents.map { component -> component.map(intGraph::getVertex) }
 
         if (cycleComponents.isNotEmpty()) {
-            val cycleMessages = cycleComponents.mapIndexed { cycleCounter, cycleComponent ->
-                val subgraph = EdgeReversedGraph(AsSubgraph(graph, cycleComponent.toSet()))
-                val visitedVertices = mutableSetOf<T>()
+            throw createCycleException(graph, cycleComponents, vertexToString, edgeToString)
+        }
 
-                val sb = StringBuilder()
-                sb.append("Cycle #$cycleCounter:")
+        if (graph is DependencyGraph) {
+            graph.validatedAcyclic = true
+        }
+    }
 
-                val walkIterator = RandomWalkEdgeIterator(subgraph)
-                var prevVertex = walkIterator.nextEdge().first
-                visitedVertices.add(prevVertex)
-                while (walkIterator.hasNext()) {
-                    val nextEdge = walkIterator.nextEdge()
-                    val nextVertex = nextEdge.first
-                    sb.append("\n    " + vertexToString(prevVertex, false, nextEdge.second) + " == depends on ==> " + vertexToString(nextVertex, true, nextEdge.second) + "   (" + edgeToString(nextEdge.second) + " dependency)")
-                    if (!visitedVertices.contains(nextVertex)) {
-                        visitedVertices.add(nextVertex)
-                    } else {
-                        sb.append(" (CYCLE FORMED)")
-                        break
-                    }
-                    prevVertex = nextVertex
+    /**
+     * Creates the exception for the given cycle components, describing one cycle in each.
+     *
+     * @param graph The graph to describe the cycles from; must contain the vertices of the cycle components and the
+     * edges between them
+     */
+    internal fun <T, E> createCycleException(graph: Graph<T, E>, cycleComponents: List<List<T>>, vertexToString: VertexToString<in T, in E>, edgeToString: Function1<E, String>): GraphCycleException {
+        val cycleMessages = cycleComponents.mapIndexed { cycleCounter, cycleComponent ->
+            val subgraph = EdgeReversedGraph(AsSubgraph(graph, cycleComponent.toSet()))
+            val visitedVertices = mutableSetOf<T>()
+
+            val sb = StringBuilder()
+            sb.append("Cycle #$cycleCounter:")
+
+            val walkIterator = RandomWalkEdgeIterator(subgraph)
+            var prevVertex = walkIterator.nextEdge().first
+            visitedVertices.add(prevVertex)
+            while (walkIterator.hasNext()) {
+                val nextEdge = walkIterator.nextEdge()
+                val nextVertex = nextEdge.first
+                sb.append("\n    " + vertexToString(prevVertex, false, nextEdge.second) + " == depends on ==> " + vertexToString(nextVertex, true, nextEdge.second) + "   (" + edgeToString(nextEdge.second) + " dependency)")
+                if (!visitedVertices.contains(nextVertex)) {
+                    visitedVertices.add(nextVertex)
+                } else {
+                    sb.append(" (CYCLE FORMED)")
+                    break
                 }
-                sb.toString()
+                prevVertex = nextVertex
             }
-
-            throw GraphCycleException(
-                    "Found cycles for the changes below. Please correct the object content.\n" +
-                            "You can remediate by:\n" +
-                            "    A) manually excluding false dependencies (likely the DISCOVERED dependencies) using //// METADATA excludeDependencies=A,B,C or\n" +
-                            "    B) defining appropriate dependencies using the METADATA includeDependencies or dependencies attributes\n" +
-                            "    C) excluding unnecessary EXPLICIT dependency types\n" +
-                            "\n" +
-                            "Changes are marked as [objectName.changeName]\n" +
-                            "\n" +
-                            "Overview of dependency types:\n" +
-                            " * DISCOVERED: dependencies found through the text code analysis.\n" +
-                            "       These are the likeliest candidates for causing cycles.\n" +
-                            "       Use excludeDependencies on the object name (not the change name) if needed on this\n" +
-                            " * EXPLICIT: user-defined dependencies set via the includeDependencies or dependencies attributes\n" +
-                            " * IMPLICIT: implied change dependencies determined by the order within incremental table changes\n" +
-                            "\n" +
-                            cycleMessages.joinToString("\n"), cycleComponents)
+            sb.toString()
         }
+
+        return GraphCycleException(
+                "Found cycles for the changes below. Please correct the object content.\n" +
+                        "You can remediate by:\n" +
+                        "    A) manually excluding false dependencies (likely the DISCOVERED dependencies) using //// METADATA excludeDependencies=A,B,C or\n" +
+                        "    B) defining appropriate dependencies using the METADATA includeDependencies or dependencies attributes\n" +
+                        "    C) excluding unnecessary EXPLICIT dependency types\n" +
+                        "\n" +
+                        "Changes are marked as [objectName.changeName]\n" +
+                        "\n" +
+                        "Overview of dependency types:\n" +
+                        " * DISCOVERED: dependencies found through the text code analysis.\n" +
+                        "       These are the likeliest candidates for causing cycles.\n" +
+                        "       Use excludeDependencies on the object name (not the change name) if needed on this\n" +
+                        " * EXPLICIT: user-defined dependencies set via the includeDependencies or dependencies attributes\n" +
+                        " * IMPLICIT: implied change dependencies determined by the order within incremental table changes\n" +
+                        "\n" +
+                        cycleMessages.joinToString("\n"), cycleComponents)
     }
 }
 
@@ -0,0 +1,316 @@
+/**
+ * Copyright 2017 Goldman Sachs.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.gs.obevo.impl.graph
+
+import org.eclipse.collections.impl.list.mutable.primitive.IntArrayList
+import org.eclipse.collections.impl.map.mutable.primitive.ObjectIntHashMap
+import org.jgrapht.Graph
+import org.slf4j.LoggerFactory
+import java.util.BitSet
+
+/**
+ * Compact, read-only dependency graph for the sort path, as an alternative to the jgrapht graphs for large inputs.
+ *
+ * The vertices are numbered from 0 in the order that they were added, and the edges are stored in primitive
+ * adjacency arrays (i.e. the successors of vertex i are at edgeTargets[edgeOffsets[i] until edgeOffsets[i + 1]]),
+ * so that no object is allocated per edge. As with the jgrapht graphs in this package, an edge from A to B means that
+ * B depends on A, i.e. A must come before B.
+ *
+ * Build instances via [newBuilder] or the factory methods in the companion object.
+ */
+class IntDependencyGraph<T> private constructor(
+        private val vertices: List<T>,
+        private val vertexIndexes: ObjectIntHashMap<T>,
+        private val edgeOffsets: IntArray,
+        private val edgeTargets: IntArray
+) {
+    val vertexCount: Int
+        get() = vertices.size
+
+    val edgeCount: Int
+        get() = edgeTargets.size
+
+    fun getVertex(index: Int): T = vertices[index]
+
+    /**
+     * Returns the index of the given vertex, or -1 if it is not in the graph.
+     */
+    fun indexOf(vertex: T): Int = vertexIndexes.getIfAbsent(vertex, -1)
+
+    fun getSuccessorCount(index: Int): Int = edgeOffsets[index + 1] - edgeOffsets[index]
+
+    /**
+     * Returns the index of the nth successor of the given vertex, i.e. of the nth vertex that depends on it.
+     */
+    fun getSuccessor(index: Int, n: Int): Int = edgeTargets[edgeOffsets[index] + n]
+
+    /**
+     * Returns the number of edges into each vertex, i.e. the number of vertices that each vertex depends on. A new
+     * array is returned on each call so that callers can modify it, e.g. for Kahn's algorithm.
+     */
+    fun getInDegrees(): IntArray {
+        val inDegrees = IntArray(vertices.size)
+        for (target in edgeTargets) {
+            inDegrees[target]++
+        }
+        return inDegrees
+    }
+
+    /**
+     * Returns the vertices reachable from any of the given start vertices, i.e. their transitive dependents, as a
+     * bitset of vertex indexes. The start vertices are included in the result.
+     *
+     * This is a single breadth-first pass from all the start vertices at once, so that each vertex and edge is visited
+     * at most once regardless of how many start vertices share the same dependents.
+     */
+    fun getReachableVertices(startIndexes: IntArray): BitSet {
+        val visited = BitSet(vertices.size)
+        val queue = IntArray(vertices.size)
+        var queueHead = 0
+        var queueTail = 0
+
+        for (startIndex in startIndexes) {
+            if (!visited.get(startIndex)) {
+                visited.set(startIndex)
+                queue[queueTail++] = startIndex
+            }
+        }
+
+        while (queueHead < queueTail) {
+            val vertex = queue[queueHead++]
+            for (n in 0 until getSuccessorCount(vertex)) {
+                val successor = getSuccessor(vertex, n)
+                if (!visited.get(successor)) {
+                    visited.set(successor)
+                    queue[queueTail++] = successor
+                }
+            }
+        }
+
+        return visited
+    }
+
+    /**
+     * The strongly connected components of the graph that contain a cycle, i.e. those with more than one vertex or
+     * with a vertex that depends on itself, as lists of vertex indexes. Each cycle in the graph is within one of these
+     * components, and each component is the minimal set of vertices that covers its cycles.
+     *
+     * This is computed once per graph with Tarjan's algorithm, in time linear to the number of vertices and edges;
+     * the graph is immutable, so repeated checks on it skip the work. The components are ordered by their lowest
+     * vertex index, and the vertices within each component by index, so that the cycle reports are consistent.
+     */
+    val cycleComponents: List<IntArray> by lazy { findCycleComponents() }
+
+    /**
+     * Iterative form of Tarjan's algorithm, so that long dependency chains do not overflow the call stack.
+     */
+    private fun findCycleComponents(): List<IntArray> {
+        val vertexCount = vertices.size
+        val visitIndexes = IntArray(vertexCount) { -1 }
+        val lowLinks = IntArray(vertexCount)
+        val onStack = BooleanArray(vertexCount)
+        val stack = IntArray(vertexCount)
+        var stackSize = 0
+        val callStack = IntArray(vertexCount)
+        val nextSuccessors = IntArray(vertexCount)
+        var callStackSize = 0
+        var nextVisitIndex = 0
+
+        val cycleComponents = ArrayList<IntArray>()
+
+        for (root in 0 until vertexCount) {
+            if (visitIndexes[root] >= 0) {
+                continue
+            }
+
+            visitIndexes[root] = nextVisitIndex
+            lowLinks[root] = nextVisitIndex
+            nextVisitIndex++
+            stack[stackSize++] = root
+            onStack[root] = true
+            callStack[callStackSize++] = root
+
+            while (callStackSize > 0) {
+                val vertex = callStack[callStackSize - 1]
+                if (nextSuccessors[vertex] < getSuccessorCount(vertex)) {
+                    val successor = getSuccessor(vertex, nextSuccessors[vertex]++)
+                    if (visitIndexes[successor] < 0) {
+                        visitIndexes[successor] = nextVisitIndex
+                        lowLinks[successor] = nextVisitIndex
+                        nextVisitIndex++
+                        stack[stackSize++] = successor
+                        onStack[successor] = true
+                        callStack[callStackSize++] = successor
+                    } else if (onStack[successor]) {
+                        lowLinks[vertex] = Math.min(lowLinks[vertex], visitIndexes[successor])
+                    }
+                } else {
+                    callStackSize--
+                    if (callStackSize > 0) {
+                        val parent = callStack[callStackSize - 1]
+                        lowLinks[parent] = Math.min(lowLinks[parent], lowLinks[vertex])
+                    }
+
+                    if (lowLinks[vertex] == visitIndexes[vertex]) {
+                        // the vertex is the root of a component, which consists of it and the vertices above it on the stack
+                        var componentStart = stackSize - 1
+                        while (stack[componentStart] != vertex) {
+                            componentStart--
+                        }
+                        val component = stack.copyOfRange(componentStart, stackSize)
+                        for (member in component) {
+                            onStack[member] = false
+                        }
+                        stackSize = componentStart
+
+                        if (component.size > 1 || hasSelfLoop(vertex)) {
+                            component.sort()
+                            cycleComponents.add(component)
+                        }
+                    }
+                }
+            }
+        }
+
+        cycleComponents.sortBy { it[0] }
+        return cycleComponents
+    }
+
+    private fun hasSelfLoop(vertex: Int): Boolean {
+        for (n in 0 until getSuccessorCount(vertex)) {
+            if (getSuccessor(vertex, n) == vertex) {
+                return true
+            }
+        }
+        return false
+    }
+
+    class Builder<T> internal constructor() {
+        private val vertices = ArrayList<T>()
+        private val vertexIndexes = ObjectIntHashMap<T>()
+        private val edgeSources = IntArrayList()
+        private val edgeTargets = IntArrayList()
+
+        /**
+         * Adds the vertex if it is not yet in the graph, and returns its index.
+         */
+        fun addVertex(vertex: T): Int {
+            val existingIndex = vertexIndexes.getIfAbsent(vertex, -1)
+            if (existingIndex >= 0) {
+                return existingIndex
+            }
+            val index = vertices.size
+            vertices.add(vertex)
+            vertexIndexes.put(vertex, index)
+            return index
+        }
+
+        fun indexOf(vertex: T): Int = vertexIndexes.getIfAbsent(vertex, -1)
+
+        /**
+         * Adds an edge between the vertices at the given indexes. Duplicate edges are kept, as they do not change
+         * the sort order.
+         */
+        fun addEdge(sourceIndex: Int, targetIndex: Int) {
+            if (sourceIndex < 0 || sourceIndex >= vertices.size || targetIndex < 0 || targetIndex >= vertices.size) {
+                throw IllegalArgumentException("Vertex index out of range: $sourceIndex -> $targetIndex for ${vertices.size} vertices")
+            }
+            edgeSources.add(sourceIndex)
+            edgeTargets.add(targetIndex)
+        }
+
+        fun build(): IntDependencyGraph<T> {
+            // counting sort of the edges by source vertex, keeping the insertion order of the edges for each vertex
+            val edgeOffsets = IntArray(vertices.size + 1)
+            for (i in 0 until edgeSources.size()) {
+                edgeOffsets[edgeSources.get(i) + 1]++
+            }
+            for (i in 0 until vertices.size) {
+                edgeOffsets[i + 1] += edgeOffsets[i]
+            }
+
+            val nextEdgePositions = edgeOffsets.copyOf(vertices.size)
+            val sortedEdgeTargets = IntArray(edgeTargets.size())
+            for (i in 0 until edgeSources.size()) {
+                sortedEdgeTargets[nextEdgePositions[edgeSources.get(i)]++] = edgeTargets.get(i)
+            }
+
+            return IntDependencyGraph(ArrayList(vertices), ObjectIntHashMap(vertexIndexes), edgeOffsets, sortedEdgeTargets)
+        }
+    }
+
+    companion object {
+        private val LOG = LoggerFactory.getLogger(IntDependencyGraph::class.java)
+
+        @JvmStatic
+        fun <T> newBuilder(): Builder<T> = Builder()
+
+        /**
+         * Creates the graph from the inputs and the dependencies that the edgesFunction returns for each input, with
+         * the same semantics as [GraphEnricher.createSimpleDependencyGraph].
+         */
+        @JvmStatic
+        fun <T> of(inputs: Iterable<T>, edgesFunction: Function1<T, Iterable<T>>): IntDependencyGraph<T> {
+            val builder = Builder<T>()
+            inputs.forEach { builder.addVertex(it) }
+
+            inputs.forEach { input ->
+                val inputIndex = builder.indexOf(input)
+                for (dependency in edgesFunction.invoke(input)) {
+                    val dependencyIndex = builder.indexOf(dependency)
+                    if (dependencyIndex >= 0) {
+                        builder.addEdge(dependencyIndex, inputIndex)
+                    } else {
+                        LOG.debug("Ignoring the dependency {} of {}, as it is not among the graph inputs", dependency, input)
+                    }
+                }
+            }
+
+            return builder.build()
+        }
+
+        /**
+         * Copies the given subset of the vertices from the jgrapht graph, along with the edges between them. The
+         * vertices are numbered in the order of the subset.
+         */
+        @JvmStatic
+        fun <T, E> fromGraph(graph: Graph<T, E>, subsetVertices: Iterable<T>): IntDependencyGraph<T> {
+            val builder = Builder<T>()
+            subsetVertices.forEach { builder.addVertex(it) }
+
+            subsetVertices.forEach { vertex ->
+                val vertexIndex = builder.indexOf(vertex)
+                for (edge in graph.outgoingEdgesOf(vertex)) {
+                    val targetIndex = builder.indexOf(graph.getEdgeTarget(edge))
+                    if (targetIndex >= 0) {
+                        builder.addEdge(vertexIndex, targetIndex)
+                    }
+                }
+            }
+
+            return builder.build()
+        }
+
+        /**
+         * Copies all the vertices and edges of the jgrapht graph. The vertices are numbered in the iteration order of
+         * the graph's vertex set.
+         */
+        @JvmStatic
+        fun <T, E> fromGraph(graph: Graph<T, E>): IntDependencyGraph<T> {
+            return fromGraph(graph, graph.vertexSet())
+        }
+    }
+}
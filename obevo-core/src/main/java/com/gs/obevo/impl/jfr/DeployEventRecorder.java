@@ -0,0 +1,33 @@
+/**
+ * Copyright 2017 Goldman Sachs.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.gs.obevo.impl.jfr;
+
+import java.io.Closeable;
+import java.io.File;
+
+/**
+ * Emits the {@link DeployEvents}; separated from that class so that the flight recorder classes are only loaded if the
+ * events are enabled.
+ */
+interface DeployEventRecorder {
+    DeployEventScope begin(DeployEventType type, String changeKey, int sqlLength);
+
+    /**
+     * Starts a flight recording with the default JDK settings plus the deploy events; the recording is written to
+     * the file when the returned handle is closed.
+     */
+    Closeable startRecording(File destination);
+}
@@ -0,0 +1,29 @@
+/**
+ * Copyright 2017 Goldman Sachs.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.gs.obevo.impl.jfr;
+
+/**
+ * An event that was started by {@link DeployEvents}; one of the end methods must be called once the stage completes,
+ * typically in a finally block.
+ */
+public interface DeployEventScope {
+    void end();
+
+    /**
+     * Ends the event, recording the number of changes that the stage processed.
+     */
+    void end(int changeCount);
+}
@@ -0,0 +1,51 @@
+/**
+ * Copyright 2017 Goldman Sachs.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.gs.obevo.impl.jfr;
+
+/**
+ * The stages of the deploy pipeline that are emitted as flight recorder events; see {@link DeployEvents}.
+ */
+public enum DeployEventType {
+    /**
+     * Reading and parsing all the source files of the environment.
+     */
+    SOURCE_READ,
+    /**
+     * Parsing a single source file into its changes.
+     */
+    CHANGE_PARSE,
+    /**
+     * Extracting the dependencies of the changes from their text.
+     */
+    DEPENDENCY_EXTRACTION,
+    /**
+     * Building the dependency graph of the changes.
+     */
+    GRAPH_BUILD,
+    /**
+     * Sorting the change commands to deploy.
+     */
+    CHANGE_SORT,
+    /**
+     * Deploying a single change command.
+     */
+    CHANGE_DEPLOY,
+    /**
+     * Executing a single SQL statement.
+     */
+    SQL_STATEMENT,
+    ;
+}
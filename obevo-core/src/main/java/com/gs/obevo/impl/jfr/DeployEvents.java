@@ -0,0 +1,144 @@
+/**
+ * Copyright 2017 Goldman Sachs.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.gs.obevo.impl.jfr;
+
+import java.io.Closeable;
+import java.io.File;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Emits the stages of the deploy pipeline as JDK Flight Recorder events, so that a deploy can be profiled along with the
+ * rest of the JVM activity and the slow SQL statements can be traced back to the changes that executed them.
+ *
+ * The events are disabled by default, in which case each call costs a volatile read. Once enabled, the events are
+ * only created while a flight recording is running, whether started via {@link #startRecording(File)} or externally
+ * (e.g. via -XX:StartFlightRecording or jcmd). The flight recorder API is available from JDK 8u262 onwards; on JVMs
+ * without it, the events stay disabled. Note that on JDK 8, the string fields of the events may be missing from the
+ * second and later recordings of the same JVM if the same values were recorded before, e.g. when deploying the same
+ * changes again within a test.
+ */
+public final class DeployEvents {
+    private static final Logger LOG = LoggerFactory.getLogger(DeployEvents.class);
+
+    private static final String RECORDER_CLASS_NAME = "com.gs.obevo.impl.jfr.JfrDeployEventRecorder";
+
+    static final DeployEventScope NOOP_SCOPE = new DeployEventScope() {
+        @Override
+        public void end() {
+        }
+
+        @Override
+        public void end(int changeCount) {
+        }
+    };
+
+    private static final ThreadLocal<String> CURRENT_CHANGE_KEY = new ThreadLocal<String>();
+    private static volatile DeployEventRecorder recorder;
+
+    private DeployEvents() {
+    }
+
+    public static boolean isEnabled() {
+        return recorder != null;
+    }
+
+    /**
+     * Enables or disables the events; returns whether the events are enabled, i.e. false if they were requested but
+     * the flight recorder is not available in this JVM.
+     */
+    public static synchronized boolean setEnabled(boolean enabled) {
+        if (!enabled) {
+            recorder = null;
+        } else if (recorder == null) {
+            try {
+                Class.forName("jdk.jfr.FlightRecorder");
+                // loaded reflectively so that this class can be loaded on JVMs without the flight recorder
+                recorder = (DeployEventRecorder) Class.forName(RECORDER_CLASS_NAME).newInstance();
+            } catch (ClassNotFoundException e) {
+                LOG.warn("Flight recorder events were requested, but the flight recorder is not available in this JVM; continuing without the events");
+            } catch (InstantiationException | IllegalAccessException e) {
+                throw new IllegalStateException("Could not create " + RECORDER_CLASS_NAME, e);
+            }
+        }
+        return recorder != null;
+    }
+
+    /**
+     * Starts a flight recording of the JVM along with the deploy events, which are enabled if they were not already;
+     * the recording is written to the file once the returned handle is closed. Returns null if the flight recorder is
+     * not available.
+     */
+    public static Closeable startRecording(File destination) {
+        if (!setEnabled(true)) {
+            return null;
+        }
+        LOG.info("Starting flight recording to {}", destination);
+        return recorder.startRecording(destination);
+    }
+
+    public static DeployEventScope begin(DeployEventType type) {
+        return begin(type, null, 0);
+    }
+
+    public static DeployEventScope begin(DeployEventType type, String changeKey, int sqlLength) {
+        DeployEventRecorder currentRecorder = recorder;
+        if (currentRecorder == null) {
+            return NOOP_SCOPE;
+        }
+        return currentRecorder.begin(type, changeKey, sqlLength);
+    }
+
+    /**
+     * Begins the {@link DeployEventType#CHANGE_DEPLOY} event and sets the change as the current one of the thread until
+     * the event ends, so that the SQL statement events emitted meanwhile carry its key.
+     */
+    public static DeployEventScope beginChangeDeploy(String changeKey, int sqlLength) {
+        DeployEventRecorder currentRecorder = recorder;
+        if (currentRecorder == null) {
+            return NOOP_SCOPE;
+        }
+        final String previousChangeKey = CURRENT_CHANGE_KEY.get();
+        final DeployEventScope scope = currentRecorder.begin(DeployEventType.CHANGE_DEPLOY, changeKey, sqlLength);
+        CURRENT_CHANGE_KEY.set(changeKey);
+        return new DeployEventScope() {
+            @Override
+            public void end() {
+                CURRENT_CHANGE_KEY.set(previousChangeKey);
+                scope.end();
+            }
+
+            @Override
+            public void end(int changeCount) {
+                CURRENT_CHANGE_KEY.set(previousChangeKey);
+                scope.end(changeCount);
+            }
+        };
+    }
+
+    /**
+     * Begins the {@link DeployEventType#SQL_STATEMENT} event for the SQL, attributed to the change that the thread is
+     * deploying, if any.
+     */
+    public static DeployEventScope beginSqlStatement(String sql) {
+        DeployEventRecorder currentRecorder = recorder;
+        if (currentRecorder == null) {
+            return NOOP_SCOPE;
+        }
+        return currentRecorder.begin(DeployEventType.SQL_STATEMENT, CURRENT_CHANGE_KEY.get(), sql.length());
+    }
+}
@@ -0,0 +1,163 @@
+/**
+ * Copyright 2017 Goldman Sachs.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.gs.obevo.impl.jfr;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.text.ParseException;
+
+import jdk.jfr.Category;
+import jdk.jfr.Configuration;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Recording;
+import jdk.jfr.StackTrace;
+
+/**
+ * The {@link DeployEventRecorder} that emits the events to the JDK Flight Recorder; this is the only class that refers
+ * to the flight recorder API, and it is only loaded once {@link DeployEvents} are enabled.
+ */
+class JfrDeployEventRecorder implements DeployEventRecorder {
+    @Override
+    public DeployEventScope begin(DeployEventType type, String changeKey, int sqlLength) {
+        AbstractDeployEvent event = newEvent(type);
+        if (!event.isEnabled()) {
+            // no recording is running
+            return DeployEvents.NOOP_SCOPE;
+        }
+        event.changeKey = changeKey;
+        event.sqlLength = sqlLength;
+        event.begin();
+        return new JfrDeployEventScope(event);
+    }
+
+    private static AbstractDeployEvent newEvent(DeployEventType type) {
+        switch (type) {
+        case SOURCE_READ:
+            return new SourceReadEvent();
+        case CHANGE_PARSE:
+            return new ChangeParseEvent();
+        case DEPENDENCY_EXTRACTION:
+            return new DependencyExtractionEvent();
+        case GRAPH_BUILD:
+            return new GraphBuildEvent();
+        case CHANGE_SORT:
+            return new ChangeSortEvent();
+        case CHANGE_DEPLOY:
+            return new ChangeDeployEvent();
+        case SQL_STATEMENT:
+            return new SqlStatementEvent();
+        default:
+            throw new IllegalArgumentException("Event type " + type + " is not supported here");
+        }
+    }
+
+    @Override
+    public Closeable startRecording(File destination) {
+        final Recording recording;
+        try {
+            recording = new Recording(Configuration.getConfiguration("default"));
+            recording.setDestination(destination.toPath());
+        } catch (IOException | ParseException e) {
+            throw new IllegalStateException("Could not set up the flight recording to " + destination, e);
+        }
+        recording.start();
+        return new Closeable() {
+            @Override
+            public void close() {
+                // stopping the recording writes it to the destination
+                recording.stop();
+                recording.close();
+            }
+        };
+    }
+
+    private static class JfrDeployEventScope implements DeployEventScope {
+        private final AbstractDeployEvent event;
+
+        JfrDeployEventScope(AbstractDeployEvent event) {
+            this.event = event;
+        }
+
+        @Override
+        public void end() {
+            end(0);
+        }
+
+        @Override
+        public void end(int changeCount) {
+            event.end();
+            if (event.shouldCommit()) {
+                event.changeCount = changeCount;
+                event.commit();
+            }
+        }
+    }
+
+    @Category({ "Obevo", "Deploy" })
+    @StackTrace(false)
+    abstract static class AbstractDeployEvent extends Event {
+        @Label("Change Key")
+        @Description("The change being processed, if the event applies to a single change")
+        String changeKey;
+
+        @Label("SQL Length")
+        @Description("The length of the SQL or of the source file content, in characters")
+        int sqlLength;
+
+        @Label("Change Count")
+        @Description("The number of changes processed, for the events that apply to many changes")
+        int changeCount;
+    }
+
+    @Name("com.gs.obevo.SourceRead")
+    @Label("Source Read")
+    static class SourceReadEvent extends AbstractDeployEvent {
+    }
+
+    @Name("com.gs.obevo.ChangeParse")
+    @Label("Change Parse")
+    static class ChangeParseEvent extends AbstractDeployEvent {
+    }
+
+    @Name("com.gs.obevo.DependencyExtraction")
+    @Label("Dependency Extraction")
+    static class DependencyExtractionEvent extends AbstractDeployEvent {
+    }
+
+    @Name("com.gs.obevo.GraphBuild")
+    @Label("Graph Build")
+    static class GraphBuildEvent extends AbstractDeployEvent {
+    }
+
+    @Name("com.gs.obevo.ChangeSort")
+    @Label("Change Sort")
+    static class ChangeSortEvent extends AbstractDeployEvent {
+    }
+
+    @Name("com.gs.obevo.ChangeDeploy")
+    @Label("Change Deploy")
+    static class ChangeDeployEvent extends AbstractDeployEvent {
+    }
+
+    @Name("com.gs.obevo.SqlStatement")
+    @Label("SQL Statement")
+    static class SqlStatementEvent extends AbstractDeployEvent {
+    }
+}
@@ -16,6 +16,7 @@
 package com.gs.obevo.impl.reader
 
 import com.gs.obevo.api.appdata.ChangeInput
+import com.gs.obevo.api.appdata.ObjectKey
 import com.gs.obevo.api.appdata.doc.TextMarkupDocumentSection
 import com.gs.obevo.api.platform.ChangeType
 import com.gs.obevo.api.platform.DeployMetrics
@@ -24,6 +25,8 @@ import com.gs.obevo.api.platform.FileSourceParams
 import com.gs.obevo.impl.DeployMetricsCollector
 import com.gs.obevo.impl.DeployMetricsCollectorImpl
 import com.gs.obevo.impl.OnboardingStrategy
+import com.gs.obevo.impl.jfr.DeployEventType
+import com.gs.obevo.impl.jfr.DeployEvents
 import com.gs.obevo.util.VisibleForTesting
 import com.gs.obevo.util.hash.OldWhitespaceAgnosticDbChangeHashStrategy
 import com.gs.obevo.util.vfs.*
@@ -38,6 +41,10 @@ import org.eclipse.collections.impl.factory.Lists
 import org.eclipse.collections.impl.factory.Sets
 import org.eclipse.collections.impl.map.mutable.ConcurrentHashMap
 import org.slf4j.LoggerFactory
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.ForkJoinPool
+import java.util.concurrent.ForkJoinTask
 
 class DbDirectoryChangesetReader : FileSourceContext {
 
@@ -48,14 +55,29 @@ class DbDirectoryChangesetReader : FileSourceContext {
     private val baselineTableChangeParser: DbChangeFileParser?
     private val rerunnableChangeParser: DbChangeFileParser
     private val deployMetricsCollector: DeployMetricsCollector
+    private val numThreads: Int
+    private val parseCache: PersistentChangeParseCache?
 
-    constructor(convertDbObjectName: Function<String, String>, deployMetricsCollector: DeployMetricsCollector, backwardsCompatibleMode: Boolean, textMarkupDocumentReader: TextMarkupDocumentReader, baselineTableChangeParser: DbChangeFileParser?, getChangeType: GetChangeType) {
+    constructor(convertDbObjectName: Function<String, String>, deployMetricsCollector: DeployMetricsCollector, backwardsCompatibleMode: Boolean, textMarkupDocumentReader: TextMarkupDocumentReader, baselineTableChangeParser: DbChangeFileParser?, getChangeType: GetChangeType)
+            : this(convertDbObjectName, deployMetricsCollector, backwardsCompatibleMode, textMarkupDocumentReader, baselineTableChangeParser, getChangeType, 1)
+
+    constructor(convertDbObjectName: Function<String, String>, deployMetricsCollector: DeployMetricsCollector, backwardsCompatibleMode: Boolean, textMarkupDocumentReader: TextMarkupDocumentReader, baselineTableChangeParser: DbChangeFileParser?, getChangeType: GetChangeType, numThreads: Int)
+            : this(convertDbObjectName, deployMetricsCollector, backwardsCompatibleMode, textMarkupDocumentReader, baselineTableChangeParser, getChangeType, numThreads, null)
+
+    /**
+     * @param numThreads If greater than 1, the files are read and parsed across a fork-join pool of this size. The
+     * order of the returned changes is the same regardless of this value.
+     * @param parseCache If provided, the parsed changes of each file are cached there and reused for unchanged files.
+     */
+    constructor(convertDbObjectName: Function<String, String>, deployMetricsCollector: DeployMetricsCollector, backwardsCompatibleMode: Boolean, textMarkupDocumentReader: TextMarkupDocumentReader, baselineTableChangeParser: DbChangeFileParser?, getChangeType: GetChangeType, numThreads: Int, parseCache: PersistentChangeParseCache?) {
         this.packageMetadataReader = PackageMetadataReader(textMarkupDocumentReader)
         this.convertDbObjectName = convertDbObjectName
         this.tableChangeParser = TableChangeParser(OldWhitespaceAgnosticDbChangeHashStrategy(), backwardsCompatibleMode, deployMetricsCollector, textMarkupDocumentReader, getChangeType)
         this.baselineTableChangeParser = baselineTableChangeParser
         this.rerunnableChangeParser = RerunnableChangeParser(backwardsCompatibleMode, deployMetricsCollector, textMarkupDocumentReader)
         this.deployMetricsCollector = deployMetricsCollector
+        this.numThreads = numThreads
+        this.parseCache = parseCache
     }
 
     @VisibleForTesting
@@ -67,6 +89,8 @@ class DbDirectoryChangesetReader : FileSourceContext {
         this.baselineTableChangeParser = baselineTableChangeParser
         this.rerunnableChangeParser = rerunnableChangeParser
         this.deployMetricsCollector = DeployMetricsCollectorImpl()
+        this.numThreads = 1
+        this.parseCache = null
     }
 
     /*
@@ -75,6 +99,23 @@ class DbDirectoryChangesetReader : FileSourceContext {
      * @see com.gs.obevo.db.newdb.DbChangeReader#readChanges(java.io.File)
      */
     override fun readChanges(fileSourceParams: FileSourceParams): ImmutableList<ChangeInput> {
+        if (numThreads <= 1) {
+            return readChanges(fileSourceParams, null)
+        }
+
+        LOG.info("Reading files using {} threads", numThreads)
+        val pool = ForkJoinPool(numThreads)
+        try {
+            // Run the whole read within the pool so that the nested parallelMap calls can fork their tasks into it
+            return pool.submit(Callable { readChanges(fileSourceParams, pool) }).get()
+        } catch (e: ExecutionException) {
+            throw e.cause ?: e
+        } finally {
+            pool.shutdown()
+        }
+    }
+
+    private fun readChanges(fileSourceParams: FileSourceParams, pool: ForkJoinPool?): ImmutableList<ChangeInput> {
         val allChanges = mutableListOf<ChangeInput>()
 
         val envSchemas = fileSourceParams.schemaNames.collect(this.convertDbObjectName)
@@ -87,19 +128,19 @@ class DbDirectoryChangesetReader : FileSourceContext {
                 val schema = schemaDir.name.baseName
 
                 if (envSchemas.contains(this.convertDbObjectName.valueOf(schema))) {
-                    val schemaChanges = fileSourceParams.changeTypes.flatMap { changeType ->
+                    val schemaChanges = parallelMap(pool, fileSourceParams.changeTypes.toList()) { changeType ->
                         val changeTypeDir = this.findDirectoryForChangeType(schemaDir, changeType, fileSourceParams.isLegacyDirectoryStructureEnabled)
 
                         if (changeTypeDir != null) {
                             if (changeType.isRerunnable) {
-                                findChanges(changeType, changeTypeDir, this.rerunnableChangeParser, TrueFileFilter.INSTANCE, schema, fileSourceParams.acceptedExtensions, fileSourceParams.defaultSourceEncoding)
+                                findChanges(pool, changeType, changeTypeDir, this.rerunnableChangeParser, TrueFileFilter.INSTANCE, schema, fileSourceParams.acceptedExtensions, fileSourceParams.defaultSourceEncoding)
                             } else {
-                                findTableChanges(changeType, changeTypeDir, schema, fileSourceParams.isBaseline, fileSourceParams.acceptedExtensions, fileSourceParams.defaultSourceEncoding)
+                                findTableChanges(pool, changeType, changeTypeDir, schema, fileSourceParams.isBaseline, fileSourceParams.acceptedExtensions, fileSourceParams.defaultSourceEncoding)
                             }
                         } else {
                             emptyList<ChangeInput>()
                         }
-                    }
+                    }.flatten()
 
                     val tableChangeMap = schemaChanges
                             .filter { Sets.immutable.of(ChangeType.TABLE_STR, ChangeType.FOREIGN_KEY_STR).contains(it.changeTypeName) }
@@ -154,13 +195,13 @@ class DbDirectoryChangesetReader : FileSourceContext {
         return null
     }
 
-    private fun findTableChanges(changeType: ChangeType, tableDir: FileObject, schema: String, useBaseline: Boolean, acceptedExtensions: ImmutableSet<String>, sourceEncoding: String): List<ChangeInput> {
+    private fun findTableChanges(pool: ForkJoinPool?, changeType: ChangeType, tableDir: FileObject, schema: String, useBaseline: Boolean, acceptedExtensions: ImmutableSet<String>, sourceEncoding: String): List<ChangeInput> {
         val baselineFilter = WildcardFileFilter("*.baseline.*")
 
         val nonBaselineFiles = findFiles(tableDir,
                 if (this.isUsingChangesConvention(tableDir)) CHANGES_WILDCARD_FILTER else NotFileFilter(baselineFilter), acceptedExtensions)
 
-        var nonBaselineChanges = parseChanges(changeType, nonBaselineFiles, this.tableChangeParser, schema, sourceEncoding)
+        var nonBaselineChanges = parseChanges(pool, changeType, nonBaselineFiles, this.tableChangeParser, schema, sourceEncoding)
         val nonBaselineChangeMap = nonBaselineChanges.groupBy { it.dbObjectKey }
 
         if (useBaseline) {
@@ -172,7 +213,7 @@ class DbDirectoryChangesetReader : FileSourceContext {
                 throw IllegalArgumentException("Cannot invoke readChanges with useBaseline == true if baselineTableChangeParser hasn't been set; baseline reading may not be enabled in your Platform type")
             }
 
-            val baselineChanges = parseChanges(changeType, baselineFiles, this.baselineTableChangeParser, schema, sourceEncoding)
+            val baselineChanges = parseChanges(pool, changeType, baselineFiles, this.baselineTableChangeParser, schema, sourceEncoding)
 
             for (baselineChange in baselineChanges) {
                 val regularChanges = nonBaselineChangeMap.get(baselineChange.dbObjectKey)!!
@@ -230,9 +271,9 @@ class DbDirectoryChangesetReader : FileSourceContext {
         return extensionPartition.first
     }
 
-    private fun parseChanges(changeType: ChangeType, files: List<FileObject>,
+    private fun parseChanges(pool: ForkJoinPool?, changeType: ChangeType, files: List<FileObject>,
                              changeParser: DbChangeFileParser, schema: String, sourceEncoding: String): List<ChangeInput> {
-        return files.flatMap { file ->
+        return parallelMap(pool, files) { file ->
             val packageMetadata = getPackageMetadata(file, sourceEncoding)
             var encoding: String? = null
             var metadataSection: TextMarkupDocumentSection? = null
@@ -240,15 +281,43 @@ class DbDirectoryChangesetReader : FileSourceContext {
                 encoding = packageMetadata.fileToEncodingMap.get(file.name.baseName)
                 metadataSection = packageMetadata.metadataSection
             }
-            val charsetStrategy = CharsetStrategyFactory.getCharsetStrategy(encoding ?: sourceEncoding)
+            val fileEncoding = encoding ?: sourceEncoding
+            val charsetStrategy = CharsetStrategyFactory.getCharsetStrategy(fileEncoding)
             val objectName = file.name.baseName.split("\\.".toRegex()).dropLastWhile { it.isEmpty() }.toTypedArray()[0]
             try {
                 LOG.debug("Attempting to read file {}", file)
-                changeParser.value(changeType, file, file.getStringContent(charsetStrategy), objectName, schema, metadataSection).castToList()
+                val parse = { content: String ->
+                    val parseEvent = DeployEvents.begin(DeployEventType.CHANGE_PARSE, ObjectKey(schema, objectName, changeType).toStringShort(), content.length)
+                    try {
+                        changeParser.value(changeType, file, content, objectName, schema, metadataSection).castToList()
+                    } finally {
+                        parseEvent.end()
+                    }
+                }
+                if (parseCache == null) {
+                    parse(file.getStringContent(charsetStrategy))
+                } else {
+                    parseCache.getOrParse(file, changeType, schema, changeParser.javaClass.name, fileEncoding, metadataSection,
+                            { file.getStringContent(charsetStrategy) }, parse)
+                }
             } catch (e: RuntimeException) {
                 throw IllegalArgumentException("Error while parsing file " + file + " of change type " + changeType.name + "; please see the cause in the stack trace below: " + e.message, e)
             }
+        }.flatten()
+    }
+
+    /**
+     * Maps the items in order, forking each into the given pool if one is provided. This must be called from a thread
+     * within the pool so that the tasks can be forked and joined.
+     */
+    private fun <T, R> parallelMap(pool: ForkJoinPool?, items: List<T>, function: (T) -> R): List<R> {
+        if (pool == null || items.size <= 1) {
+            return items.map(function)
         }
+
+        val tasks = items.map { ForkJoinTask.adapt(Callable { function(it) }) }
+        ForkJoinTask.invokeAll(tasks)
+        return tasks.map { it.join() }
     }
 
     private fun getPackageMetadata(file: FileObject, sourceEncoding: String): PackageMetadata? {
@@ -264,9 +333,9 @@ class DbDirectoryChangesetReader : FileSourceContext {
         })
     }
 
-    private fun findChanges(changeType: ChangeType, dir: FileObject, changeParser: DbChangeFileParser,
+    private fun findChanges(pool: ForkJoinPool?, changeType: ChangeType, dir: FileObject, changeParser: DbChangeFileParser,
                             fileFilter: FileFilter, schema: String, acceptedExtensions: ImmutableSet<String>, sourceEncoding: String): List<ChangeInput> {
-        return parseChanges(changeType, findFiles(dir, fileFilter, acceptedExtensions), changeParser, schema, sourceEncoding)
+        return parseChanges(pool, changeType, findFiles(dir, fileFilter, acceptedExtensions), changeParser, schema, sourceEncoding)
     }
 
     /**
@@ -0,0 +1,360 @@
+/**
+ * Copyright 2017 Goldman Sachs.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.gs.obevo.impl.reader
+
+import com.gs.obevo.api.appdata.ArtifactEnvironmentRestrictions
+import com.gs.obevo.api.appdata.ArtifactPlatformRestrictions
+import com.gs.obevo.api.appdata.ArtifactRestrictions
+import com.gs.obevo.api.appdata.ChangeInput
+import com.gs.obevo.api.appdata.ChangeKey
+import com.gs.obevo.api.appdata.CodeDependency
+import com.gs.obevo.api.appdata.CodeDependencyType
+import com.gs.obevo.api.appdata.doc.TextMarkupDocumentSection
+import com.gs.obevo.api.platform.ChangeType
+import com.gs.obevo.util.vfs.FileObject
+import org.apache.commons.codec.digest.DigestUtils
+import org.eclipse.collections.api.set.ImmutableSet
+import org.eclipse.collections.impl.factory.Lists
+import org.eclipse.collections.impl.factory.Maps
+import org.eclipse.collections.impl.factory.Sets
+import org.eclipse.collections.impl.list.mutable.FastList
+import org.eclipse.collections.impl.set.mutable.UnifiedSet
+import org.slf4j.LoggerFactory
+import java.io.BufferedInputStream
+import java.io.BufferedOutputStream
+import java.io.ByteArrayOutputStream
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.File
+import java.io.FileInputStream
+import java.io.FileOutputStream
+import java.io.IOException
+import java.nio.file.AtomicMoveNotSupportedException
+import java.nio.file.Files
+import java.nio.file.StandardCopyOption
+
+/**
+ * Persists the [ChangeInput]s parsed from each source file in a directory so that subsequent runs can skip parsing the
+ * files that have not changed, i.e. the [TextMarkupDocumentReader] parsing, comment removal and content hashing.
+ *
+ * An entry is kept per file and parse context (change type, schema, parser and package metadata). The entry is reused if
+ * the modification time and size of the file are the same as when it was written; otherwise, it is reused if the hash of
+ * the file content is the same (e.g. for fresh checkouts in CI builds, where all the modification times change).
+ *
+ * The entries are also keyed by the Obevo version and by the parse settings, so that upgrading Obevo or changing the
+ * settings that affect parsing does not reuse the changes parsed before.
+ *
+ * Entries that cannot be read (e.g. written by a different version of this class) are treated as cache misses.
+ */
+class PersistentChangeParseCache(
+        private val cacheDir: File,
+        private val getChangeType: (String) -> ChangeType,
+        /** The settings that the parsing of the files depends on, e.g. the platform and the metadata reader version. */
+        private val parseSettings: String
+) {
+    init {
+        if (!cacheDir.isDirectory && !cacheDir.mkdirs()) {
+            throw IllegalArgumentException("Could not create the parse cache directory $cacheDir")
+        }
+    }
+
+    /**
+     * Returns the cached changes for the given file if it is unchanged, or otherwise parses it via the parse function
+     * and caches the result.
+     *
+     * @param parserKey Identifies the parser used, as different parsers produce different changes from the same file
+     * @param parse Parses the file content into its changes
+     */
+    fun getOrParse(file: FileObject, changeType: ChangeType, schema: String, parserKey: String, encoding: String,
+                   packageMetadata: TextMarkupDocumentSection?, readContent: () -> String, parse: (String) -> List<ChangeInput>): List<ChangeInput> {
+        val entryFile = File(cacheDir, getEntryName(file, changeType, schema, parserKey, encoding, packageMetadata))
+        val lastModifiedTime = file.content.lastModifiedTime
+        val size = file.content.size
+
+        val entry = readEntry(entryFile, file)
+        if (entry != null && entry.lastModifiedTime == lastModifiedTime && entry.size == size) {
+            return entry.changes
+        }
+
+        val content = readContent()
+        val contentHash = DigestUtils.md5Hex(content)
+        if (entry != null && entry.contentHash == contentHash) {
+            // only the file timestamp has changed; rewrite the entry so that the next run can skip reading the content
+            writeEntry(entryFile, CacheEntry(lastModifiedTime, size, contentHash, entry.changes))
+            return entry.changes
+        }
+
+        val changes = parse(content)
+        writeEntry(entryFile, CacheEntry(lastModifiedTime, size, contentHash, changes))
+        return changes
+    }
+
+    private fun getEntryName(file: FileObject, changeType: ChangeType, schema: String, parserKey: String, encoding: String, packageMetadata: TextMarkupDocumentSection?): String {
+        val bytes = ByteArrayOutputStream()
+        DataOutputStream(bytes).use { out ->
+            out.writeInt(FORMAT_VERSION)
+            writeString(out, OBEVO_VERSION)
+            writeString(out, parseSettings)
+            writeString(out, file.name.uri)
+            writeString(out, changeType.name)
+            writeString(out, schema)
+            writeString(out, parserKey)
+            writeString(out, encoding)
+            writeSection(out, packageMetadata)
+        }
+        return DigestUtils.sha1Hex(bytes.toByteArray()) + ".bin"
+    }
+
+    private fun readEntry(entryFile: File, file: FileObject): CacheEntry? {
+        if (!entryFile.isFile) {
+            return null
+        }
+
+        try {
+            DataInputStream(BufferedInputStream(FileInputStream(entryFile))).use { input ->
+                if (input.readInt() != FORMAT_VERSION) {
+                    return null
+                }
+                val lastModifiedTime = input.readLong()
+                val size = input.readLong()
+                val contentHash = input.readUTF()
+                val changes = List(input.readInt()) { readChange(input, file) }
+                return CacheEntry(lastModifiedTime, size, contentHash, changes)
+            }
+        } catch (e: IOException) {
+            LOG.debug("Ignoring unreadable parse cache entry {} for file {}", entryFile, file, e)
+            return null
+        } catch (e: RuntimeException) {
+            // e.g. if the change type of a cached change is no longer registered in the platform
+            LOG.debug("Ignoring unreadable parse cache entry {} for file {}", entryFile, file, e)
+            return null
+        }
+    }
+
+    private fun writeEntry(entryFile: File, entry: CacheEntry) {
+        try {
+            // write to a temp file first so that concurrent readers never see a partially-written entry
+            val tempFile = File.createTempFile(entryFile.name, ".tmp", cacheDir)
+            try {
+                DataOutputStream(BufferedOutputStream(FileOutputStream(tempFile))).use { out ->
+                    out.writeInt(FORMAT_VERSION)
+                    out.writeLong(entry.lastModifiedTime)
+                    out.writeLong(entry.size)
+                    out.writeUTF(entry.contentHash)
+                    out.writeInt(entry.changes.size)
+                    entry.changes.forEach { writeChange(out, it) }
+                }
+                try {
+                    Files.move(tempFile.toPath(), entryFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE)
+                } catch (e: AtomicMoveNotSupportedException) {
+                    Files.move(tempFile.toPath(), entryFile.toPath(), StandardCopyOption.REPLACE_EXISTING)
+                }
+            } finally {
+                tempFile.delete()
+            }
+        } catch (e: IOException) {
+            LOG.warn("Could not write the parse cache entry {}; the file will be parsed again on the next run", entryFile, e)
+        }
+    }
+
+    private fun writeChange(out: DataOutputStream, change: ChangeInput) {
+        out.writeBoolean(change.isRerunnable)
+        writeString(out, change.changeKey.objectKey.schema)
+        writeString(out, change.changeKey.changeType.name)
+        writeString(out, change.changeKey.objectKey.objectName)
+        writeString(out, change.changeKey.changeName)
+        writeString(out, change.content)
+        writeString(out, change.contentHash)
+        writeString(out, change.rollbackContent)
+        writeString(out, change.rollbackIfAlreadyDeployedContent)
+        writeString(out, change.dropContent)
+        writeString(out, change.permissionScheme)
+        out.writeInt(change.order)
+        out.writeInt(change.orderWithinObject)
+        out.writeBoolean(change.active)
+        writeStrings(out, change.baselinedChanges)
+        writeString(out, change.parallelGroup)
+        out.writeBoolean(change.isDrop)
+        out.writeBoolean(change.isKeepIncrementalOrder)
+        writeString(out, change.applyGrants?.toString())
+        writeString(out, change.changeset)
+
+        writeNullable(out, change.restrictions) { restrictions ->
+            out.writeInt(restrictions.size())
+            restrictions.forEach { restriction ->
+                out.writeUTF(when (restriction) {
+                    is ArtifactEnvironmentRestrictions -> RESTRICTION_ENV
+                    is ArtifactPlatformRestrictions -> RESTRICTION_PLATFORM
+                    else -> throw IOException("Unsupported restriction type for the parse cache: " + restriction.javaClass)
+                })
+                writeStrings(out, restriction.includes)
+                writeStrings(out, restriction.excludes)
+            }
+        }
+        writeNullable(out, change.codeDependencies) { dependencies ->
+            out.writeInt(dependencies.size())
+            dependencies.forEach { dependency ->
+                writeString(out, dependency.target)
+                out.writeUTF(dependency.codeDependencyType.name)
+            }
+        }
+        writeStrings(out, change.includeDependencies)
+        writeStrings(out, change.excludeDependencies)
+        writeSection(out, change.metadataSection)
+    }
+
+    private fun readChange(input: DataInputStream, file: FileObject): ChangeInput {
+        val change = ChangeInput(input.readBoolean())
+        val schema = readString(input)!!
+        val changeType = getChangeType(readString(input)!!)
+        change.changeKey = ChangeKey(schema, changeType, readString(input)!!, readString(input)!!)
+        change.content = readString(input)
+        change.contentHash = readString(input)
+        change.rollbackContent = readString(input)
+        change.rollbackIfAlreadyDeployedContent = readString(input)
+        change.dropContent = readString(input)
+        change.permissionScheme = readString(input)
+        change.order = input.readInt()
+        change.orderWithinObject = input.readInt()
+        change.active = input.readBoolean()
+        change.baselinedChanges = readStrings(input)?.let { FastList.newList(it) }
+        change.parallelGroup = readString(input)
+        change.isDrop = input.readBoolean()
+        change.isKeepIncrementalOrder = input.readBoolean()
+        change.applyGrants = readString(input)?.let { java.lang.Boolean.valueOf(it) }
+        change.changeset = readString(input)
+
+        change.restrictions = readNullable(input) {
+            Lists.immutable.ofAll(List<ArtifactRestrictions>(input.readInt()) {
+                val type = input.readUTF()
+                val includes = readStrings(input)?.let { UnifiedSet.newSet(it) }
+                val excludes = readStrings(input)?.let { UnifiedSet.newSet(it) }
+                when (type) {
+                    RESTRICTION_ENV -> ArtifactEnvironmentRestrictions(includes, excludes)
+                    RESTRICTION_PLATFORM -> ArtifactPlatformRestrictions(includes, excludes)
+                    else -> throw IOException("Unexpected restriction type in the parse cache: $type")
+                }
+            })
+        }
+        change.setCodeDependencies(readNullable(input) {
+            Sets.immutable.ofAll(List(input.readInt()) { CodeDependency(readString(input)!!, CodeDependencyType.valueOf(input.readUTF())) })
+        })
+        change.setIncludeDependencies(readStringSet(input))
+        change.setExcludeDependencies(readStringSet(input))
+        change.metadataSection = readSection(input)
+        change.fileLocation = file
+        return change
+    }
+
+    private fun writeSection(out: DataOutputStream, section: TextMarkupDocumentSection?) {
+        writeNullable(out, section) {
+            writeString(out, it.name)
+            writeString(out, it.content)
+            // sort the attributes and toggles so that the entry name computed from the package metadata is stable
+            val attrs = it.attrs.keyValuesView().toSortedListBy { attr -> attr.one }
+            out.writeInt(attrs.size)
+            attrs.forEach { attr ->
+                writeString(out, attr.one)
+                writeString(out, attr.two)
+            }
+            writeStrings(out, it.toggles.toSortedList())
+            out.writeInt(it.subsections.size())
+            it.subsections.forEach { subsection -> writeSection(out, subsection) }
+        }
+    }
+
+    private fun readSection(input: DataInputStream): TextMarkupDocumentSection? {
+        return readNullable(input) {
+            val name = readString(input)
+            val content = readString(input)
+            val attrs = Maps.mutable.empty<String, String>()
+            repeat(input.readInt()) { attrs.put(readString(input)!!, readString(input)!!) }
+            val section = TextMarkupDocumentSection(name, content, attrs.toImmutable())
+            section.toggles = readStringSet(input)
+            section.subsections = Lists.immutable.ofAll(List(input.readInt()) { readSection(input) })
+            section
+        }
+    }
+
+    private fun writeStrings(out: DataOutputStream, values: Iterable<String>?) {
+        writeNullable(out, values?.toList()) { list ->
+            out.writeInt(list.size)
+            list.forEach { writeString(out, it) }
+        }
+    }
+
+    private fun readStrings(input: DataInputStream): List<String>? {
+        return readNullable(input) { List(input.readInt()) { readString(input)!! } }
+    }
+
+    private fun readStringSet(input: DataInputStream): ImmutableSet<String> {
+        return Sets.immutable.ofAll(readStrings(input) ?: emptyList())
+    }
+
+    /**
+     * Strings are written as UTF-8 bytes with their length instead of via [DataOutputStream.writeUTF], as the latter is
+     * limited to 64KB and file content can be larger than that.
+     */
+    private fun writeString(out: DataOutputStream, value: String?) {
+        writeNullable(out, value) {
+            val bytes = it.toByteArray(Charsets.UTF_8)
+            out.writeInt(bytes.size)
+            out.write(bytes)
+        }
+    }
+
+    private fun readString(input: DataInputStream): String? {
+        return readNullable(input) {
+            val bytes = ByteArray(input.readInt())
+            input.readFully(bytes)
+            String(bytes, Charsets.UTF_8)
+        }
+    }
+
+    private inline fun <T> writeNullable(out: DataOutputStream, value: T?, write: (T) -> Unit) {
+        out.writeBoolean(value != null)
+        if (value != null) {
+            write(value)
+        }
+    }
+
+    private inline fun <T> readNullable(input: DataInputStream, read: () -> T): T? {
+        return if (input.readBoolean()) read() else null
+    }
+
+    private class CacheEntry(val lastModifiedTime: Long, val size: Long, val contentHash: String, val changes: List<ChangeInput>)
+
+    companion object {
+        private val LOG = LoggerFactory.getLogger(PersistentChangeParseCache::class.java)
+
+        /**
+         * Increment this whenever the entry format or the fields of [ChangeInput] that are cached are changed.
+         */
+        private const val FORMAT_VERSION = 1
+
+        /**
+         * The version of the Obevo build, or the location and timestamp of the jar that this class was loaded from if the
+         * jar manifest does not specify it, so that an upgrade does not read the entries written by a previous version.
+         */
+        private val OBEVO_VERSION: String = PersistentChangeParseCache::class.java.`package`?.implementationVersion
+                ?: PersistentChangeParseCache::class.java.protectionDomain?.codeSource?.location?.let { location ->
+                    val codeSourceFile = File(location.path)
+                    if (codeSourceFile.isFile) "${location}@${codeSourceFile.lastModified()}" else location.toString()
+                } ?: "unknown"
+        private const val RESTRICTION_ENV = "env"
+        private const val RESTRICTION_PLATFORM = "platform"
+    }
+}
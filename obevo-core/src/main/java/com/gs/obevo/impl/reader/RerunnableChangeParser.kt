@@ -176,7 +176,8 @@ class RerunnableChangeParser(backwardsCompatibleMode: Boolean, deployMetricsColl
 
         private fun rerunnableToggles(): ImmutableSet<String> {
             return Sets.immutable.with(
-                    TextMarkupDocumentReader.TOGGLE_DISABLE_QUOTED_IDENTIFIERS
+                    TextMarkupDocumentReader.TOGGLE_DISABLE_QUOTED_IDENTIFIERS,
+                    TextMarkupDocumentReader.TOGGLE_STREAMING_DIFF
             )
         }
 
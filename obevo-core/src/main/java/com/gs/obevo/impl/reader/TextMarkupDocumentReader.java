@@ -47,6 +47,11 @@ public class TextMarkupDocumentReader {
     // rollbackIfAlreadyDeployed
     public static final String TAG_ROLLBACK_IF_ALREADY_DEPLOYED = "ROLLBACK-IF-ALREADY-DEPLOYED";
     public static final String TOGGLE_DISABLE_QUOTED_IDENTIFIERS = "DISABLE_QUOTED_IDENTIFIERS";
+    /**
+     * For CSV static data files whose rows are sorted by the key columns; the diff against the table is then
+     * calculated in one streaming pass instead of loading both sides into memory.
+     */
+    public static final String TOGGLE_STREAMING_DIFF = "STREAMING_DIFF";
     public static final String ATTR_UPDATE_TIME_COLUMN = "updateTimeColumn";
     public static final String ATTR_DEPENDENCIES = "dependencies";
     public static final String ATTR_EXCLUDE_DEPENDENCIES = "excludeDependencies";
@@ -0,0 +1,143 @@
+/**
+ * Copyright 2017 Goldman Sachs.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.gs.obevo.impl.text
+
+import com.gs.obevo.util.RegexUtil
+import org.slf4j.LoggerFactory
+
+/**
+ * Single-pass equivalent of splitting the output of [CommentRemover.removeComments] by [RegexUtil.SPACE_PATTERN], for
+ * callers that only need the words of the text and not the text itself.
+ *
+ * This avoids the cost of the full token parse, the rebuilt string and the regex split, as the words are read directly
+ * from the input while tracking whether the current position is within a comment or a quoted string. The same
+ * rules apply as in the SqlTokenParser grammar:
+ * 1) //, -- and block comments are skipped, unless within a quoted string
+ * 2) the words within quoted strings are still returned
+ * 3) if the text has an unclosed quote or block comment, the comments are not skipped at all
+ */
+internal object SqlWordScanner {
+    private val LOG = LoggerFactory.getLogger(SqlWordScanner::class.java)
+
+    private const val DEFAULT = 0
+    private const val SINGLE_LINE_COMMENT = 1
+    private const val MULTI_LINE_COMMENT = 2
+    private const val SINGLE_QUOTE_STRING = 3
+    private const val DOUBLE_QUOTE_STRING = 4
+
+    /**
+     * Returns the words in the content outside of comments that the predicate accepts.
+     */
+    fun findWords(content: String, logMessage: String, predicate: (String) -> Boolean): Set<String> {
+        val words = mutableSetOf<String>()
+        if (!scan(content, true, predicate, words)) {
+            LOG.warn("Error in removing comments from [{}] due to an unclosed quote or comment; will default to searching the original string", logMessage)
+            words.clear()
+            scan(content, false, predicate, words)
+        }
+        return words
+    }
+
+    /**
+     * @return false if the content ended within a quoted string or block comment
+     */
+    private fun scan(content: String, skipComments: Boolean, predicate: (String) -> Boolean, words: MutableSet<String>): Boolean {
+        var state = DEFAULT
+        var wordStart = -1
+        var i = 0
+        val length = content.length
+
+        while (i < length) {
+            val c = content[i]
+            val next = if (i + 1 < length) content[i + 1] else '\u0000'
+
+            if (state == SINGLE_LINE_COMMENT) {
+                if (c == '\n' || c == '\r') {
+                    state = DEFAULT
+                }
+                i++
+                continue
+            } else if (state == MULTI_LINE_COMMENT) {
+                if (c == '*' && next == '/') {
+                    state = DEFAULT
+                    i += 2
+                } else {
+                    i++
+                }
+                continue
+            }
+
+            if (isWordChar(c)) {
+                if (wordStart < 0) {
+                    wordStart = i
+                }
+                i++
+                continue
+            }
+
+            // any other character ends the current word, including the start of a comment or quote
+            if (wordStart >= 0) {
+                addIfAccepted(content.substring(wordStart, i), predicate, words)
+                wordStart = -1
+            }
+
+            if (!skipComments) {
+                i++
+            } else if (state == SINGLE_QUOTE_STRING || state == DOUBLE_QUOTE_STRING) {
+                if (c == '\'' && next == '\'') {
+                    i += 2  // escaped quote; also applies in double-quoted strings per the grammar
+                } else {
+                    if (c == '\'' && state == SINGLE_QUOTE_STRING || c == '"' && state == DOUBLE_QUOTE_STRING) {
+                        state = DEFAULT
+                    }
+                    i++
+                }
+            } else if (c == '/' && next == '/' || c == '-' && next == '-') {
+                state = SINGLE_LINE_COMMENT
+                i += 2
+            } else if (c == '/' && next == '*') {
+                state = MULTI_LINE_COMMENT
+                i += 2
+            } else {
+                if (c == '\'') {
+                    state = SINGLE_QUOTE_STRING
+                } else if (c == '"') {
+                    state = DOUBLE_QUOTE_STRING
+                }
+                i++
+            }
+        }
+
+        if (wordStart >= 0) {
+            addIfAccepted(content.substring(wordStart), predicate, words)
+        }
+
+        return state == DEFAULT || state == SINGLE_LINE_COMMENT
+    }
+
+    private inline fun addIfAccepted(word: String, predicate: (String) -> Boolean, words: MutableSet<String>) {
+        if (predicate(word)) {
+            words.add(word)
+        }
+    }
+
+    /**
+     * Word characters as per [RegexUtil.SPACE_PATTERN], i.e. \w (without the unicode flag) and #.
+     */
+    private fun isWordChar(c: Char): Boolean {
+        return c in 'a'..'z' || c in 'A'..'Z' || c in '0'..'9' || c == '_' || c == '#'
+    }
+}
@@ -17,37 +17,79 @@ package com.gs.obevo.impl.text
 
 import com.gs.obevo.api.appdata.CodeDependency
 import com.gs.obevo.api.appdata.CodeDependencyType
-import com.gs.obevo.util.RegexUtil
+import org.apache.commons.lang3.concurrent.BasicThreadFactory
+import java.util.concurrent.Callable
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Executors
 
 /**
  * Standard implementation of [TextDependencyExtractor] going forward. Looks across all object types.
+ *
+ * The content of each change is scanned in a single pass via [SqlWordScanner], and the changes are scanned across
+ * numThreads threads if more than 1 is specified.
  */
 class TextDependencyExtractorImpl(
-        private val convertDbObjectName: (String) -> String
+        private val convertDbObjectName: (String) -> String,
+        private val numThreads: Int
 ) : TextDependencyExtractor {
+    constructor(convertDbObjectName: (String) -> String) : this(convertDbObjectName, 1)
     constructor(myConvert: org.eclipse.collections.api.block.function.Function<String, String>) : this(myConvert::valueOf)
+    constructor(myConvert: org.eclipse.collections.api.block.function.Function<String, String>, numThreads: Int) : this(myConvert::valueOf, numThreads)
 
     override fun <T : TextDependencyExtractable> calculateDependencies(changes: Iterable<T>): Map<T, Set<CodeDependency>> {
         val objectNames = changes.map { it.objectName }.map(convertDbObjectName).toSet()
 
+        // The same words (e.g. SQL keywords and column names) recur across the changes, so we only convert and look up
+        // each distinct word once
+        val objectNameMatches = ConcurrentHashMap<String, Boolean>()
+        val isObjectName = { word: String -> objectNameMatches.getOrPut(word) { objectNames.contains(convertDbObjectName(word)) } }
+
         // note - only check for nulls here; the calling class will anyway override the codeDependencies value if specified
-        return changes.filter { it.codeDependencies == null }.associateBy({ it }, { change ->
+        val changesToCalculate = changes.filter { it.codeDependencies == null }
+        val dependencies = map(changesToCalculate) { change ->
             // we use getContentForDependencyCalculation() instead of just getContent() due to the staticData
             // objects needing to have its dependency calculated differently.
 
             // TODO go via objectNames and physicalSchema+objectName combo
-            val discoveredDependencies = calculateDependencies(change.objectName, change.contentForDependencyCalculation, objectNames)
+            val discoveredDependencies = SqlWordScanner.findWords(change.contentForDependencyCalculation, change.objectName, isObjectName)
             val filteredDependencies = discoveredDependencies
                     .filterNot { change.objectName.equals(it, true) }  // We originally compared the value w/ the result from convertDbObjectName. However, after refactoring from GITHUB#153, we saw failures in HsqlDeployerTest, so this was a pre-existing flaw. We keep the comparison as case-insensitive going forward for backwards-compatibility with existing clients
                     .filterNot { change.excludeDependencies.contains(it) }
                     .map { CodeDependency(it, CodeDependencyType.DISCOVERED) }
 
             filteredDependencies.plus(change.includeDependencies.map { CodeDependency(it, CodeDependencyType.EXPLICIT) }).toSet()
-        })
+        }
+
+        return changesToCalculate.zip(dependencies).toMap()
     }
 
     internal fun calculateDependencies(logMessage: String, content: String, objectNames: Set<String>): Set<String> {
-        val tokens = CommentRemover.removeComments(content, logMessage).split(RegexUtil.SPACE_PATTERN)
-        return tokens.filter { objectNames.contains(convertDbObjectName(it)) }.toSet()
+        return SqlWordScanner.findWords(content, logMessage) { objectNames.contains(convertDbObjectName(it)) }
+    }
+
+    /**
+     * Maps the items in order, using a thread pool if numThreads is greater than 1.
+     */
+    private fun <T, R> map(items: List<T>, function: (T) -> R): List<R> {
+        if (numThreads <= 1 || items.size <= 1) {
+            return items.map(function)
+        }
+
+        val executor = Executors.newFixedThreadPool(numThreads, BasicThreadFactory.Builder()
+                .namingPattern("obevo-dependency-%d")
+                .daemon(true)
+                .build())
+        try {
+            return executor.invokeAll(items.map { Callable { function(it) } }).map {
+                try {
+                    it.get()
+                } catch (e: ExecutionException) {
+                    throw e.cause ?: e
+                }
+            }
+        } finally {
+            executor.shutdownNow()
+        }
     }
 }
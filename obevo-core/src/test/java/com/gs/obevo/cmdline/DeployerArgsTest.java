@@ -18,12 +18,15 @@ package com.gs.obevo.cmdline;
 import java.io.File;
 
 import com.gs.obevo.api.platform.GraphExportFormat;
+import com.gs.obevo.api.platform.MetricsExportFormat;
 import com.gs.obevo.util.ArgsParser;
 import org.junit.Test;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 public class DeployerArgsTest {
     @Test
@@ -59,6 +62,34 @@ public class DeployerArgsTest {
         assertEquals(GraphExportFormat.GML, args.getSourceGraphExportFormat());
     }
 
+    @Test
+    public void testMetricsArgs() {
+        DeployerArgs args = parseArgs("-sourcePath abc -metricsExportFile /home/metrics.prom -metricsExportFormat PROMETHEUS");
+        assertEquals(new File("/home/metrics.prom"), args.getMetricsExportFile());
+        assertEquals(MetricsExportFormat.PROMETHEUS, args.getMetricsExportFormat());
+        assertNull(parseArgs("-sourcePath abc").getMetricsExportFormat());
+    }
+
+    @Test
+    public void testFlightRecorderArgs() {
+        DeployerArgs args = parseArgs("-sourcePath abc -flightRecorderEvents -flightRecordingFile /home/deploy.jfr");
+        assertTrue(args.isFlightRecorderEvents());
+        assertEquals(new File("/home/deploy.jfr"), args.getFlightRecordingFile());
+        assertFalse(parseArgs("-sourcePath abc").isFlightRecorderEvents());
+    }
+
+    @Test
+    public void testDeployThreads() {
+        assertNull(parseArgs("-sourcePath abc").getDeployThreads());
+        assertEquals(Integer.valueOf(4), parseArgs("-sourcePath abc -deployThreads 4").getDeployThreads());
+    }
+
+    @Test
+    public void testProgressReportInterval() {
+        assertNull(parseArgs("-sourcePath abc").getProgressReportIntervalSeconds());
+        assertEquals(Integer.valueOf(0), parseArgs("-sourcePath abc -progressReportIntervalSeconds 0").getProgressReportIntervalSeconds());
+    }
+
     private DeployerArgs parseArgs(String argsStr) {
         return new ArgsParser().parse(argsStr.split(" "), new DeployerArgs());
     }
@@ -0,0 +1,128 @@
+/**
+ * Copyright 2017 Goldman Sachs.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.gs.obevo.impl;
+
+import java.util.concurrent.TimeUnit;
+
+import com.gs.obevo.api.platform.DeployMetrics;
+import com.gs.obevo.api.platform.MetricsExportFormat;
+import org.eclipse.collections.api.map.ImmutableMap;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+
+public class DeployMetricsCollectorImplTest {
+    private final DeployMetricsCollectorImpl collector = new DeployMetricsCollectorImpl();
+
+    @Before
+    public void setup() {
+        collector.addMetric("runtimeSeconds", 12L);
+        collector.addMetric("success", true);
+        collector.addMetric("platform", "H2");
+        collector.addListMetric(DeployMetrics.BAD_FILE_FORMAT_WARNINGS, "bad \"quote\"");
+
+        collector.addPhaseTime(DeployTimings.PHASE_SORT, TimeUnit.MILLISECONDS.toNanos(30));
+        collector.addPhaseTime(DeployTimings.PHASE_DEPLOY, TimeUnit.MILLISECONDS.toNanos(1000));
+        collector.addPhaseTime(DeployTimings.PHASE_DEPLOY, TimeUnit.MILLISECONDS.toNanos(500));
+
+        collector.addChangeLatency("TABLE", TimeUnit.MICROSECONDS.toNanos(500));
+        collector.addChangeLatency("TABLE", TimeUnit.MILLISECONDS.toNanos(7));
+        collector.addChangeLatency("TABLE", TimeUnit.MINUTES.toNanos(10));
+        collector.addChangeLatency("VIEW", TimeUnit.MILLISECONDS.toNanos(5));
+    }
+
+    @Test
+    public void testHistogramBuckets() {
+        DeployTimings.LatencyHistogram tableLatencies = ((DeployMetricsImpl) collector.getMetrics()).getDeployTimings().getChangeLatencies().get("TABLE");
+        long[] expectedBucketCounts = new long[DeployTimings.LatencyHistogram.getBucketUpperBoundsMillis().length + 1];
+        expectedBucketCounts[0] = 1;  // <= 1ms
+        expectedBucketCounts[2] = 1;  // <= 10ms
+        expectedBucketCounts[expectedBucketCounts.length - 1] = 1;  // overflow
+        assertArrayEquals(expectedBucketCounts, tableLatencies.getBucketCounts());
+        assertEquals(3, tableLatencies.getCount());
+        assertEquals(TimeUnit.MINUTES.toNanos(10), tableLatencies.getMaxNanos());
+    }
+
+    @Test
+    public void testSerializedFormIncludesTimings() {
+        ImmutableMap<String, Object> serializedForm = collector.getMetrics().toSerializedForm();
+        assertEquals(12L, serializedForm.get("runtimeSeconds"));
+        assertEquals(1500L, serializedForm.get("timings.phase.deploy.millis"));
+        assertEquals(30L, serializedForm.get("timings.phase.sort.millis"));
+        assertEquals(3L, serializedForm.get("timings.changeType.TABLE.count"));
+        assertEquals(5L, serializedForm.get("timings.changeType.VIEW.totalMillis"));
+    }
+
+    @Test
+    public void testJsonExport() {
+        String json = collector.getMetrics().export(MetricsExportFormat.JSON);
+        assertThat(json, containsString("\"runtimeSeconds\": 12"));
+        assertThat(json, containsString("\"success\": true"));
+        assertThat(json, containsString("\"platform\": \"H2\""));
+        assertThat(json, containsString("\"warnings.badFileFormat\": [\"bad \\\"quote\\\"\"]"));
+        assertThat(json, containsString("\"deploy\": { \"totalMillis\": 1500, \"count\": 2 }"));
+        assertThat(json, containsString("\"VIEW\": { \"count\": 1, \"totalMillis\": 5, \"maxMillis\": 5, \"buckets\": [{ \"leMillis\": 1, \"count\": 0 }, { \"leMillis\": 5, \"count\": 1 }"));
+        assertThat(json, containsString("{ \"leMillis\": null, \"count\": 1 }"));
+    }
+
+    @Test
+    public void testPrometheusExport() {
+        String text = collector.getMetrics().export(MetricsExportFormat.PROMETHEUS);
+        assertThat(text, containsString("obevo_runtimeSeconds 12\n"));
+        assertThat(text, containsString("obevo_success 1\n"));
+        assertThat(text, containsString("obevo_phase_seconds{phase=\"deploy\"} 1.5\n"));
+        assertThat(text, containsString("# TYPE obevo_change_duration_seconds histogram\n"));
+        // the buckets are cumulative
+        assertThat(text, containsString("obevo_change_duration_seconds_bucket{change_type=\"TABLE\",le=\"0.001\"} 1\n"));
+        assertThat(text, containsString("obevo_change_duration_seconds_bucket{change_type=\"TABLE\",le=\"0.01\"} 2\n"));
+        assertThat(text, containsString("obevo_change_duration_seconds_bucket{change_type=\"TABLE\",le=\"300.0\"} 2\n"));
+        assertThat(text, containsString("obevo_change_duration_seconds_bucket{change_type=\"TABLE\",le=\"+Inf\"} 3\n"));
+        assertThat(text, containsString("obevo_change_duration_seconds_count{change_type=\"TABLE\"} 3\n"));
+        assertThat(text, containsString("obevo_change_duration_seconds_sum{change_type=\"VIEW\"} 0.005\n"));
+    }
+
+    @Test
+    public void testNonFiniteValuesAreExportedInValidForms() {
+        collector.addMetric("rate", Double.NaN);
+        collector.addMetric("ratio", Float.NEGATIVE_INFINITY);
+
+        String json = collector.getMetrics().export(MetricsExportFormat.JSON);
+        assertThat(json, containsString("\"rate\": null"));
+        assertThat(json, containsString("\"ratio\": null"));
+
+        String text = collector.getMetrics().export(MetricsExportFormat.PROMETHEUS);
+        assertThat(text, containsString("obevo_rate NaN\n"));
+        assertThat(text, containsString("obevo_ratio -Inf\n"));
+    }
+
+    @Test
+    public void testCollidingPrometheusNamesAreDisambiguated() {
+        collector.addMetric("a.b", 1L);
+        collector.addMetric("a_b", 2L);
+        collector.addMetric("phase.seconds", 3L);
+
+        String text = collector.getMetrics().export(MetricsExportFormat.PROMETHEUS);
+        assertThat(text, containsString("obevo_a_b 1\n"));
+        assertThat(text, containsString("obevo_a_b_2 2\n"));
+        assertThat(text, containsString("obevo_phase_seconds_2 3\n"));
+        assertThat(text, not(containsString("obevo_phase_seconds 3\n")));
+    }
+}
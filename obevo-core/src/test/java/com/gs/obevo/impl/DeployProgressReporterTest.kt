@@ -0,0 +1,61 @@
+/**
+ * Copyright 2017 Goldman Sachs.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.gs.obevo.impl
+
+import org.hamcrest.Matchers.containsString
+import org.junit.Assert.assertThat
+import org.junit.Test
+import java.util.concurrent.TimeUnit
+
+class DeployProgressReporterTest {
+    private var nowNanos = 0L
+
+    @Test
+    fun testProgressFromPreviousDurations() {
+        val reporter = DeployProgressReporter(listOf("a", "b", "c", "d"), mapOf("a" to 60000L, "b" to 120000L, "c" to 600000L), { nowNanos })
+
+        reporter.changeStarted("a")
+        advanceSeconds(90)
+        reporter.changeCompleted("a")
+        reporter.changeStarted("b")
+        advanceSeconds(60)
+
+        val message = reporter.getProgressMessage()
+        // 60s of a + 60s of b out of 60s + 120s + 600s + the 260s average for d
+        assertThat(message, containsString("1 of 4 changes done (11%); elapsed 00:02:30"))
+        // the 920s left, taking 1.5x the previous durations as change a did
+        assertThat(message, containsString("estimated remaining 00:23:00 (the completed changes took 1.50x their previous durations)"))
+        assertThat(message, containsString("slowest outstanding changes: c (expected 00:10:00), d (estimated 00:04:20), b (expected 00:02:00, running for 00:01:00)"))
+    }
+
+    @Test
+    fun testProgressWithoutPreviousDurations() {
+        val reporter = DeployProgressReporter(listOf("a", "b", "c"), mapOf(), { nowNanos })
+        reporter.changeSkipped("c")
+        assertThat(reporter.getProgressMessage(), containsString("1 of 3 changes done (33%); no previous change durations"))
+
+        reporter.changeStarted("a")
+        advanceSeconds(30)
+        reporter.changeCompleted("a")
+
+        // the remaining change is expected to take as long as the completed one
+        assertThat(reporter.getProgressMessage(), containsString("2 of 3 changes done (66%); elapsed 00:00:30, estimated remaining 00:00:30; slowest outstanding changes: b (estimated 00:00:30)"))
+    }
+
+    private fun advanceSeconds(seconds: Long) {
+        nowNanos += TimeUnit.SECONDS.toNanos(seconds)
+    }
+}
@@ -0,0 +1,138 @@
+/**
+ * Copyright 2017 Goldman Sachs.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.gs.obevo.impl
+
+import com.gs.obevo.api.appdata.ChangeIncremental
+import com.gs.obevo.api.appdata.ChangeKey
+import com.gs.obevo.api.appdata.ObjectKey
+import com.gs.obevo.api.platform.ChangeType
+import org.eclipse.collections.impl.factory.Sets
+import org.hamcrest.Matchers
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertThat
+import org.junit.Test
+import org.mockito.Mockito.`when`
+import org.mockito.Mockito.mock
+import java.util.Collections
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+class ParallelChangeCommandSchedulerTest {
+    private val viewType = changeType("VIEW", true)
+    private val staticDataType = changeType(ChangeType.STATICDATA_STR, true)
+    private val migrationType = changeType(ChangeType.MIGRATION_STR, false)
+
+    @Test
+    fun testPredecessors() {
+        val view1 = newCommand(viewType, "view1")
+        val view2 = newCommand(viewType, "view2")
+        val view3 = newCommand(viewType, "view3", view1)
+        val data1 = newCommand(staticDataType, "data1")
+        val view4 = newCommand(viewType, "view4")
+
+        val predecessors = ParallelChangeCommandScheduler(4).getPredecessors(listOf(view1, view2, view3, data1, view4))
+
+        assertEquals(setOf<Int>(), predecessors[0])
+        assertEquals(setOf<Int>(), predecessors[1])
+        assertEquals("view3 depends on view1", setOf(0), predecessors[2])
+        assertEquals("static data waits for everything before it", setOf(0, 1, 2), predecessors[3])
+        assertEquals("everything after static data waits for it", setOf(3), predecessors[4])
+    }
+
+    @Test
+    fun testPredecessorsForSameObjectAndReverseDependency() {
+        val drop1 = newCommand(viewType, "view1")
+        val view2 = newCommand(viewType, "view2")
+        // declaring a dependency to an earlier command in the reverse direction, as the drop commands would
+        drop1.changes.first().dependentChanges = Sets.immutable.ofAll(view2.changes)
+        val view1Again = newCommand(viewType, "view1")
+        val migration = newCommand(migrationType, "mig1")
+
+        val predecessors = ParallelChangeCommandScheduler(4).getPredecessors(listOf(drop1, view2, view1Again, migration))
+
+        assertEquals(setOf(0), predecessors[1])
+        assertEquals("same object must stay in order", setOf(0), predecessors[2])
+        assertEquals("non-text-enriched change types are barriers", setOf(0, 1, 2), predecessors[3])
+    }
+
+    @Test
+    fun testExecutesIndependentCommandsConcurrently() {
+        val view1 = newCommand(viewType, "view1")
+        val view2 = newCommand(viewType, "view2")
+        val view3 = newCommand(viewType, "view3", view1, view2)
+
+        // view1 and view2 can only both complete if they run at the same time
+        val latch = CountDownLatch(2)
+        val executedCommands = Collections.synchronizedList(mutableListOf<ExecuteChangeCommand>())
+
+        ParallelChangeCommandScheduler(2).execute(listOf(view1, view2, view3),
+                { false },
+                { command ->
+                    if (command !== view3) {
+                        latch.countDown()
+                        if (!latch.await(10, TimeUnit.SECONDS)) {
+                            throw IllegalStateException("Commands were not executed concurrently")
+                        }
+                    }
+                    executedCommands.add(command)
+                    null
+                },
+                { _, exc -> throw exc })
+
+        assertEquals(3, executedCommands.size)
+        assertEquals(view3, executedCommands.last())
+    }
+
+    @Test
+    fun testSkipAndFailureCallbacks() {
+        val view1 = newCommand(viewType, "view1")
+        val view2 = newCommand(viewType, "view2", view1)
+        val view3 = newCommand(viewType, "view3", view2)
+        val view4 = newCommand(viewType, "view4")
+
+        val failedCommands = mutableSetOf<ExecuteChangeCommand>()
+        val executedCommands = Collections.synchronizedList(mutableListOf<ExecuteChangeCommand>())
+
+        ParallelChangeCommandScheduler(3).execute(listOf(view1, view2, view3, view4),
+                { command -> command.changes.flatMap { it.dependentChanges ?: Sets.immutable.empty() }.any { dep -> failedCommands.any { it.changes.contains(dep) } } },
+                { command ->
+                    executedCommands.add(command)
+                    if (command === view1) RuntimeException("failure") else null
+                },
+                { command, _ -> failedCommands.add(command) })
+
+        assertEquals(setOf(view1), failedCommands)
+        assertThat(executedCommands, Matchers.containsInAnyOrder(view1, view3, view4))
+    }
+
+    private fun newCommand(changeType: ChangeType, objectName: String, vararg dependencies: ExecuteChangeCommand): ExecuteChangeCommand {
+        val change = ChangeIncremental(ChangeKey(ObjectKey("schema", objectName, changeType), "n/a"), 0, "n/a", "n/a")
+        change.dependentChanges = Sets.immutable.ofAll(dependencies.flatMap { it.changes })
+
+        val command = mock(ExecuteChangeCommand::class.java)
+        `when`(command.isDrop).thenReturn(false)
+        `when`(command.changes).thenReturn(listOf(change))
+
+        return command
+    }
+
+    private fun changeType(name: String, enrichableForDependenciesInText: Boolean): ChangeType {
+        val changeType = mock(ChangeType::class.java)
+        `when`(changeType.name).thenReturn(name)
+        `when`(changeType.isEnrichableForDependenciesInText).thenReturn(enrichableForDependenciesInText)
+        return changeType
+    }
+}
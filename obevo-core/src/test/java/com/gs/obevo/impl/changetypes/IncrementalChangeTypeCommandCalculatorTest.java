@@ -42,6 +42,7 @@ import org.junit.Before;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -169,6 +170,49 @@ public class IncrementalChangeTypeCommandCalculatorTest {
         Verify.assertAnySatisfy(changeset, assertValue(UpdateAuditTableOnlyCommand.class, tabE1Dep));
     }
 
+    @Test
+    public void testChangedRollbackContentIsUpdated() {
+        Change tabF1Dep = new ChangeIncremental(tableChangeType, "schema", "tabF", "1", 1, "chng1", CONTENT);
+        tabF1Dep.setRollbackContent("old rollback");
+        Change tabF1Src = new ChangeIncremental(tableChangeType, "schema", "tabF", "1", 1, "chng1", CONTENT);
+        tabF1Src.setRollbackContent("new rollback");
+
+        ListIterable<ChangeCommand> changeset = cmdCalc.calculateCommands(tableChangeType, Lists.mutable.of(
+                new ChangePair(tabF1Src, tabF1Dep)
+        ), unusedChangesArg, false);
+
+        assertEquals(1, changeset.size());
+        Verify.assertAnySatisfy(changeset, assertValue(UpdateAuditTableOnlyCommand.class, tabF1Dep));
+        assertEquals("new rollback", tabF1Dep.getRollbackContent());
+    }
+
+    /**
+     * The deferred rollback content of the deployed changes (e.g. from the lightweight audit read) is only needed for
+     * rollbacks, so a regular deploy must not read it.
+     */
+    @Test
+    public void testDeferredRollbackContentIsNotReadForRegularDeploy() {
+        AtomicInteger loaderCalls = new AtomicInteger(0);
+        Change tabF1Dep = new ChangeIncremental(tableChangeType, "schema", "tabF", "1", 1, "chng1", CONTENT);
+        tabF1Dep.setRollbackContentLoader(() -> {
+            loaderCalls.incrementAndGet();
+            return "old rollback";
+        });
+        Change tabF1Src = new ChangeIncremental(tableChangeType, "schema", "tabF", "1", 1, "chng1", CONTENT);
+        tabF1Src.setRollbackContent("new rollback");
+        Change tabF2Src = new ChangeIncremental(tableChangeType, "schema", "tabF", "2", 2, "chng2", CONTENT);
+
+        ListIterable<ChangeCommand> changeset = cmdCalc.calculateCommands(tableChangeType, Lists.mutable.of(
+                new ChangePair(tabF1Src, tabF1Dep)
+                , new ChangePair(tabF2Src, null)
+        ), unusedChangesArg, false);
+
+        assertEquals(1, changeset.size());
+        Verify.assertAnySatisfy(changeset, assertValue(DeployChangeCommand.class, tabF2Src));
+        assertEquals(0, loaderCalls.get());
+        assertFalse(tabF1Dep.isRollbackContentLoaded());
+    }
+
     @Test
     public void testImproperlyDroppedSourceChange() {
         Change tabE0Dep = new ChangeIncremental(tableChangeType, "schema", "tabE", "0", 0, "chng0", CONTENT);
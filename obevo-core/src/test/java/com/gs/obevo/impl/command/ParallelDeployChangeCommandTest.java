@@ -0,0 +1,133 @@
+/**
+ * Copyright 2017 Goldman Sachs.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.gs.obevo.impl.command;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.gs.obevo.api.appdata.Change;
+import com.gs.obevo.api.appdata.ChangeIncremental;
+import com.gs.obevo.api.appdata.ChangeKey;
+import com.gs.obevo.api.appdata.DeployExecution;
+import com.gs.obevo.api.appdata.ObjectKey;
+import com.gs.obevo.api.platform.ChangeAuditDao;
+import com.gs.obevo.api.platform.ChangeType;
+import com.gs.obevo.api.platform.CommandExecutionContext;
+import com.gs.obevo.impl.ChangeTypeBehaviorRegistry;
+import org.eclipse.collections.api.list.ImmutableList;
+import org.eclipse.collections.api.set.MutableSet;
+import org.eclipse.collections.impl.factory.Sets;
+import org.eclipse.collections.impl.list.Interval;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+public class ParallelDeployChangeCommandTest {
+    private final ChangeType changeType = mock(ChangeType.class);
+    private final ChangeTypeBehaviorRegistry changeTypeBehaviorRegistry = mock(ChangeTypeBehaviorRegistry.class);
+    private final CommandExecutionContext cec = new CommandExecutionContext();
+
+    @Test
+    public void testForkJoinCollectsAllFailures() {
+        verifyFailuresAreCollected(new ForkJoinParallelGroupExecutor(3));
+    }
+
+    @Test
+    public void testThreadPerChangeCollectsAllFailures() {
+        verifyFailuresAreCollected(new ThreadPerChangeParallelGroupExecutor(3));
+    }
+
+    @Test
+    public void testThreadPerChangeLimitsConcurrentChanges() {
+        final AtomicInteger runningCount = new AtomicInteger();
+        final AtomicInteger maxRunningCount = new AtomicInteger();
+        doAnswer(invocation -> {
+            int running = runningCount.incrementAndGet();
+            maxRunningCount.accumulateAndGet(running, Math::max);
+            Thread.sleep(20);
+            runningCount.decrementAndGet();
+            return null;
+        }).when(changeTypeBehaviorRegistry).deploy(any(Change.class), any(CommandExecutionContext.class));
+
+        new ParallelDeployChangeCommand("schema", newChanges(10), new ThreadPerChangeParallelGroupExecutor(2)).execute(changeTypeBehaviorRegistry, cec);
+
+        assertTrue("expected at most 2 concurrent changes, got " + maxRunningCount.get(), maxRunningCount.get() <= 2);
+    }
+
+    @Test
+    public void testOnlySucceededChangesAreAudited() {
+        doAnswer(invocation -> {
+            Change change = (Change) invocation.getArguments()[0];
+            if (change.getObjectName().equals("obj2")) {
+                throw new IllegalStateException("failed " + change.getObjectName());
+            }
+            return null;
+        }).when(changeTypeBehaviorRegistry).deploy(any(Change.class), any(CommandExecutionContext.class));
+
+        ImmutableList<Change> changes = newChanges(3);
+        ParallelDeployChangeCommand command = new ParallelDeployChangeCommand("schema", changes, new ThreadPerChangeParallelGroupExecutor(3));
+        try {
+            command.execute(changeTypeBehaviorRegistry, cec);
+            fail("Expecting the failed change to be reported");
+        } catch (RuntimeException expected) {
+        }
+
+        ChangeAuditDao changeAuditDao = mock(ChangeAuditDao.class);
+        DeployExecution deployExecution = mock(DeployExecution.class);
+        command.markAuditTable(changeTypeBehaviorRegistry, changeAuditDao, deployExecution);
+
+        verify(changeTypeBehaviorRegistry).manage(changes.get(0), changeAuditDao, deployExecution);
+        verify(changeTypeBehaviorRegistry, never()).manage(changes.get(1), changeAuditDao, deployExecution);
+        verify(changeTypeBehaviorRegistry).manage(changes.get(2), changeAuditDao, deployExecution);
+    }
+
+    private void verifyFailuresAreCollected(ParallelGroupExecutor parallelGroupExecutor) {
+        final MutableSet<String> deployedObjects = Sets.mutable.<String>empty().asSynchronized();
+        doAnswer(invocation -> {
+            Change change = (Change) invocation.getArguments()[0];
+            deployedObjects.add(change.getObjectName());
+            if (change.getObjectName().equals("obj2") || change.getObjectName().equals("obj4")) {
+                throw new IllegalStateException("failed " + change.getObjectName());
+            }
+            return null;
+        }).when(changeTypeBehaviorRegistry).deploy(any(Change.class), any(CommandExecutionContext.class));
+
+        try {
+            new ParallelDeployChangeCommand("schema", newChanges(5), parallelGroupExecutor).execute(changeTypeBehaviorRegistry, cec);
+            fail("Expecting the failed changes to be reported");
+        } catch (RuntimeException exc) {
+            assertThat(exc.getMessage(), containsString("2 of 5 parallel changes failed"));
+            assertThat(exc.getMessage(), containsString("failed obj2"));
+            assertThat(exc.getMessage(), containsString("failed obj4"));
+            assertEquals(1, exc.getSuppressed().length);
+        }
+
+        // the failures did not stop the other changes
+        assertEquals(Sets.mutable.with("obj1", "obj2", "obj3", "obj4", "obj5"), deployedObjects);
+    }
+
+    private ImmutableList<Change> newChanges(int count) {
+        return Interval.oneTo(count).collect(i -> (Change) new ChangeIncremental(new ChangeKey(new ObjectKey("schema", "obj" + i, changeType), "chng"), 0, "n/a", "n/a")).toList().toImmutable();
+    }
+}
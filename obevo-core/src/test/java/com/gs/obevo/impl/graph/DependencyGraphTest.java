@@ -0,0 +1,52 @@
+/**
+ * Copyright 2017 Goldman Sachs.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.gs.obevo.impl.graph;
+
+import org.jgrapht.graph.DefaultEdge;
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class DependencyGraphTest {
+    @Test
+    public void testValidationIsKeptUntilAnEdgeIsAdded() {
+        DependencyGraph<String, DefaultEdge> graph = new DependencyGraph<>(DefaultEdge.class);
+        graph.addVertex("a");
+        graph.addVertex("b");
+        graph.addEdge("a", "b");
+        assertFalse(graph.getValidatedAcyclic());
+
+        GraphUtil.validateNoCycles(graph);
+        assertTrue(graph.getValidatedAcyclic());
+
+        // new vertices and removals cannot introduce a cycle
+        graph.addVertex("c");
+        graph.removeEdge("a", "b");
+        assertTrue(graph.getValidatedAcyclic());
+
+        graph.addEdge("a", "b");
+        graph.addEdge("b", "a");
+        assertFalse(graph.getValidatedAcyclic());
+        try {
+            GraphUtil.validateNoCycles(graph);
+            fail("Expected a cycle exception");
+        } catch (GraphCycleException expected) {
+            assertFalse(graph.getValidatedAcyclic());
+        }
+    }
+}
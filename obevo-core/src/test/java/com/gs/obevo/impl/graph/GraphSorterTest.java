@@ -198,6 +198,45 @@ public class GraphSorterTest {
         }
     }
 
+    @Test
+    public void testIntGraphOrderingBreaksTiesByVertexIndex() {
+        IntDependencyGraph.Builder<String> builder = IntDependencyGraph.newBuilder();
+        for (String vertex : Lists.mutable.with("b2", "a1", "b1", "a2")) {
+            builder.addVertex(vertex);
+        }
+        builder.addEdge(builder.indexOf("a2"), builder.indexOf("a1"));
+
+        // compares only on the first letter, so the vertices within each letter are ordered by their index
+        ImmutableList<String> sorted = sorter.sortChanges(builder.build(), Comparators.fromFunctions(new Function<String, Character>() {
+            @Override
+            public Character valueOf(String vertex) {
+                return vertex.charAt(0);
+            }
+        }));
+
+        assertEquals(Lists.immutable.with("a2", "a1", "b2", "b1"), sorted);
+    }
+
+    @Test
+    public void testIntGraphCycleDetection() {
+        IntDependencyGraph.Builder<String> builder = IntDependencyGraph.newBuilder();
+        for (String vertex : Lists.mutable.with("sp1", "sp2", "sp3", "sp4")) {
+            builder.addVertex(vertex);
+        }
+        builder.addEdge(builder.indexOf("sp1"), builder.indexOf("sp2"));
+        builder.addEdge(builder.indexOf("sp2"), builder.indexOf("sp3"));
+        builder.addEdge(builder.indexOf("sp3"), builder.indexOf("sp2"));
+        builder.addEdge(builder.indexOf("sp3"), builder.indexOf("sp4"));
+
+        try {
+            sorter.sortChanges(builder.build(), null);
+            fail("Expecting exception here: " + GraphCycleException.class);
+        } catch (GraphCycleException e) {
+            Verify.assertSize(1, e.getCycleComponents());
+            assertEquals(Sets.mutable.with("sp2", "sp3"), Sets.mutable.withAll(e.<String>getCycleComponents().get(0)));
+        }
+    }
+
     private void verifyCycleExists(GraphCycleException e, final ImmutableSet<String> cycleVertices) {
         Verify.assertAnySatisfy(e.<SortableDependency>getCycleComponents(), each ->
                 CollectionAdapter.wrapSet(each).collect(sortableDependency ->
@@ -0,0 +1,153 @@
+/**
+ * Copyright 2017 Goldman Sachs.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.gs.obevo.impl.graph;
+
+import java.util.BitSet;
+import java.util.List;
+
+import org.eclipse.collections.impl.factory.Lists;
+import org.jgrapht.Graph;
+import org.jgrapht.graph.DefaultDirectedGraph;
+import org.jgrapht.graph.DefaultEdge;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class IntDependencyGraphTest {
+    @Test
+    public void testBuilder() {
+        IntDependencyGraph.Builder<String> builder = IntDependencyGraph.newBuilder();
+        assertEquals(0, builder.addVertex("a"));
+        assertEquals(1, builder.addVertex("b"));
+        assertEquals(2, builder.addVertex("c"));
+        assertEquals(1, builder.addVertex("b"));
+
+        builder.addEdge(1, 2);
+        builder.addEdge(0, 2);
+        builder.addEdge(0, 1);
+        IntDependencyGraph<String> graph = builder.build();
+
+        assertEquals(3, graph.getVertexCount());
+        assertEquals(3, graph.getEdgeCount());
+        assertEquals("c", graph.getVertex(2));
+        assertEquals(2, graph.indexOf("c"));
+        assertEquals(-1, graph.indexOf("d"));
+
+        // the successors are kept in the order that the edges were added
+        assertEquals(2, graph.getSuccessorCount(0));
+        assertEquals(2, graph.getSuccessor(0, 0));
+        assertEquals(1, graph.getSuccessor(0, 1));
+        assertEquals(1, graph.getSuccessorCount(1));
+        assertEquals(0, graph.getSuccessorCount(2));
+        assertArrayEquals(new int[] { 0, 1, 2 }, graph.getInDegrees());
+    }
+
+    @Test
+    public void testOf() {
+        // each input depends on the inputs returned by the function, i.e. the edges go from the dependency to the input
+        IntDependencyGraph<String> graph = IntDependencyGraph.of(Lists.mutable.with("view1", "table1", "view2"),
+                input -> input.startsWith("view") ? Lists.mutable.with("table1", "missing") : Lists.mutable.<String>empty());
+
+        assertEquals(3, graph.getVertexCount());
+        assertEquals(2, graph.getEdgeCount());
+        assertEquals(2, graph.getSuccessorCount(1));
+        assertEquals(0, graph.getSuccessor(1, 0));
+        assertEquals(2, graph.getSuccessor(1, 1));
+    }
+
+    @Test
+    public void testFromGraphWithSubset() {
+        Graph<String, DefaultEdge> jgraph = new DefaultDirectedGraph<String, DefaultEdge>(DefaultEdge.class);
+        for (String vertex : Lists.mutable.with("a", "b", "c", "d")) {
+            jgraph.addVertex(vertex);
+        }
+        jgraph.addEdge("a", "b");
+        jgraph.addEdge("b", "c");
+        jgraph.addEdge("c", "d");
+
+        IntDependencyGraph<String> graph = IntDependencyGraph.fromGraph(jgraph, Lists.mutable.with("c", "b", "a"));
+
+        assertEquals(3, graph.getVertexCount());
+        assertEquals(2, graph.getEdgeCount());
+        assertEquals("c", graph.getVertex(0));
+        assertEquals(0, graph.getSuccessorCount(0));
+        assertArrayEquals(new int[] { 1, 1, 0 }, graph.getInDegrees());
+    }
+
+    @Test
+    public void testReachableVertices() {
+        IntDependencyGraph.Builder<String> builder = IntDependencyGraph.newBuilder();
+        for (String vertex : Lists.mutable.with("a", "b", "c", "d", "e", "f")) {
+            builder.addVertex(vertex);
+        }
+        builder.addEdge(0, 1);
+        builder.addEdge(1, 2);
+        builder.addEdge(3, 2);
+        builder.addEdge(2, 4);
+        builder.addEdge(4, 2);
+        IntDependencyGraph<String> graph = builder.build();
+
+        assertEquals(BitSet.valueOf(new long[] { 0b010110 }), graph.getReachableVertices(new int[] { 1, 4 }));
+        assertEquals(BitSet.valueOf(new long[] { 0b011111 }), graph.getReachableVertices(new int[] { 0, 3, 0 }));
+        assertEquals(BitSet.valueOf(new long[] { 0b100000 }), graph.getReachableVertices(new int[] { 5 }));
+        assertTrue(graph.getReachableVertices(new int[0]).isEmpty());
+    }
+
+    @Test
+    public void testCycleComponents() {
+        IntDependencyGraph.Builder<String> builder = IntDependencyGraph.newBuilder();
+        for (String vertex : Lists.mutable.with("a", "b", "c", "d", "e", "f", "g")) {
+            builder.addVertex(vertex);
+        }
+        // d -> b -> c -> d is a cycle, e depends on itself, and the other edges are not in a cycle
+        builder.addEdge(0, 1);
+        builder.addEdge(1, 2);
+        builder.addEdge(2, 3);
+        builder.addEdge(3, 1);
+        builder.addEdge(3, 5);
+        builder.addEdge(4, 4);
+        builder.addEdge(5, 6);
+        IntDependencyGraph<String> graph = builder.build();
+
+        List<int[]> cycleComponents = graph.getCycleComponents();
+        assertEquals(2, cycleComponents.size());
+        assertArrayEquals(new int[] { 1, 2, 3 }, cycleComponents.get(0));
+        assertArrayEquals(new int[] { 4 }, cycleComponents.get(1));
+        assertSame(cycleComponents, graph.getCycleComponents());
+    }
+
+    @Test
+    public void testCycleComponentsOnLongChain() {
+        // a chain deep enough to overflow the stack for a recursive implementation
+        int vertexCount = 200000;
+        IntDependencyGraph.Builder<Integer> builder = IntDependencyGraph.newBuilder();
+        for (int i = 0; i < vertexCount; i++) {
+            builder.addVertex(i);
+            if (i > 0) {
+                builder.addEdge(i - 1, i);
+            }
+        }
+        assertTrue(builder.build().getCycleComponents().isEmpty());
+
+        builder.addEdge(vertexCount - 1, 0);
+        List<int[]> cycleComponents = builder.build().getCycleComponents();
+        assertEquals(1, cycleComponents.size());
+        assertEquals(vertexCount, cycleComponents.get(0).length);
+    }
+}
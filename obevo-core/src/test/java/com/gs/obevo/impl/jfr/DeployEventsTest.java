@@ -0,0 +1,96 @@
+/**
+ * Copyright 2017 Goldman Sachs.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.gs.obevo.impl.jfr;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.eclipse.collections.impl.list.mutable.ListAdapter;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class DeployEventsTest {
+    @Rule
+    public final TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Before
+    public void setup() {
+        Assume.assumeTrue("Flight recorder is not available in this JVM", DeployEvents.setEnabled(true));
+        DeployEvents.setEnabled(false);
+    }
+
+    @After
+    public void teardown() {
+        DeployEvents.setEnabled(false);
+    }
+
+    @Test
+    public void testDisabledEventsAreNoOps() {
+        assertFalse(DeployEvents.isEnabled());
+        assertSame(DeployEvents.NOOP_SCOPE, DeployEvents.begin(DeployEventType.GRAPH_BUILD));
+        assertSame(DeployEvents.NOOP_SCOPE, DeployEvents.beginSqlStatement("select 1"));
+    }
+
+    @Test
+    public void testEventsAreRecorded() throws IOException {
+        File recordingFile = new File(tempFolder.getRoot(), "deploy.jfr");
+        Closeable recording = DeployEvents.startRecording(recordingFile);
+
+        DeployEvents.begin(DeployEventType.GRAPH_BUILD).end(3);
+        DeployEventScope changeDeploy = DeployEvents.beginChangeDeploy("SCHEMA1.TABLE_A.change1", 30);
+        DeployEvents.beginSqlStatement("create table TABLE_A (a int)").end();
+        changeDeploy.end();
+        DeployEvents.beginSqlStatement("select 1").end();
+
+        recording.close();
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(recordingFile.toPath());
+        List<RecordedEvent> graphEvents = eventsOfType(events, "com.gs.obevo.GraphBuild");
+        assertEquals(1, graphEvents.size());
+        assertEquals(3, graphEvents.get(0).getInt("changeCount"));
+
+        List<RecordedEvent> changeEvents = eventsOfType(events, "com.gs.obevo.ChangeDeploy");
+        assertEquals(1, changeEvents.size());
+        assertEquals("SCHEMA1.TABLE_A.change1", changeEvents.get(0).getString("changeKey"));
+        assertEquals(30, changeEvents.get(0).getInt("sqlLength"));
+
+        // the statements carry the key of the change that executed them
+        List<RecordedEvent> sqlEvents = eventsOfType(events, "com.gs.obevo.SqlStatement");
+        assertEquals(2, sqlEvents.size());
+        assertEquals("SCHEMA1.TABLE_A.change1", sqlEvents.get(0).getString("changeKey"));
+        assertEquals(28, sqlEvents.get(0).getInt("sqlLength"));
+        assertNull(sqlEvents.get(1).getString("changeKey"));
+    }
+
+    private List<RecordedEvent> eventsOfType(List<RecordedEvent> events, String eventName) {
+        return ListAdapter.adapt(events)
+                .select(event -> event.getEventType().getName().equals(eventName))
+                .sortThisBy(RecordedEvent::getStartTime);
+    }
+}
@@ -15,17 +15,29 @@
  */
 package com.gs.obevo.impl.reader;
 
+import java.io.File;
+
 import com.gs.obevo.api.appdata.Change;
+import com.gs.obevo.api.appdata.ChangeInput;
 import com.gs.obevo.api.appdata.ChangeIncremental;
 import com.gs.obevo.api.appdata.ChangeRerunnable;
 import com.gs.obevo.api.platform.ChangeType;
+import com.gs.obevo.api.platform.FileSourceParams;
+import com.gs.obevo.impl.DeployMetricsCollectorImpl;
 import com.gs.obevo.util.vfs.FileObject;
+import com.gs.obevo.util.vfs.FileRetrievalMode;
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.vfs2.FileName;
 import org.apache.commons.vfs2.FileSelectInfo;
 import org.eclipse.collections.api.list.ImmutableList;
+import org.eclipse.collections.impl.block.factory.Functions;
 import org.eclipse.collections.impl.factory.Lists;
+import org.eclipse.collections.impl.factory.Sets;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
@@ -34,6 +46,9 @@ import static org.mockito.Mockito.when;
 public class DbDirectoryChangesetReaderTest {
     private static final String CONTENT = "";
 
+    @Rule
+    public final TemporaryFolder tempFolder = new TemporaryFolder();
+
     private final ChangeType viewChangeType = mock(ChangeType.class);
     private final ChangeType spChangeType = mock(ChangeType.class);
     private final ChangeType fkChangeType = mock(ChangeType.class);
@@ -252,6 +267,45 @@ public class DbDirectoryChangesetReaderTest {
 //        when(changeParser.value(tableChangeType, fileObject, fileObject.getStringContent(), fileObject.getName().getBaseName(), schema, null)).thenReturn(changes);
     }
 
+    @Test
+    public void testParallelReadKeepsSameOrder() throws Exception {
+        File sourceDir = tempFolder.newFolder();
+        for (String schema : Lists.mutable.with("schema1", "schema2")) {
+            for (int i = 0; i < 50; i++) {
+                FileUtils.writeStringToFile(new File(sourceDir, schema + "/view/view" + i + ".sql"), "CREATE VIEW view" + i + " AS SELECT " + i, "UTF-8");
+                FileUtils.writeStringToFile(new File(sourceDir, schema + "/sp/sp" + i + ".sql"), "CREATE PROCEDURE sp" + i + " AS SELECT " + i, "UTF-8");
+            }
+        }
+
+        when(viewChangeType.getName()).thenReturn(ChangeType.VIEW_STR);
+        when(viewChangeType.getDirectoryName()).thenReturn("view");
+        when(viewChangeType.isRerunnable()).thenReturn(true);
+        when(spChangeType.getName()).thenReturn(ChangeType.SP_STR);
+        when(spChangeType.getDirectoryName()).thenReturn("sp");
+        when(spChangeType.isRerunnable()).thenReturn(true);
+
+        FileSourceParams params = FileSourceParams.newBuilder()
+                .setFiles(Lists.immutable.with(FileRetrievalMode.FILE_SYSTEM.resolveSingleFileObject(sourceDir.getAbsolutePath())))
+                .setSchemaNames(Sets.immutable.with("schema1", "schema2"))
+                .setChangeTypes(Lists.immutable.with(viewChangeType, spChangeType))
+                .setAcceptedExtensions(Sets.immutable.with("sql"))
+                .setDefaultSourceEncoding("UTF-8")
+                .setBaseline(false)
+                .build();
+
+        ImmutableList<ChangeInput> sequentialChanges = newReader(1).readChanges(params);
+        ImmutableList<ChangeInput> parallelChanges = newReader(4).readChanges(params);
+
+        assertEquals(200, sequentialChanges.size());
+        assertEquals(sequentialChanges.collect(ChangeInput::getChangeKey), parallelChanges.collect(ChangeInput::getChangeKey));
+        assertEquals(sequentialChanges.collect(ChangeInput::getContent), parallelChanges.collect(ChangeInput::getContent));
+    }
+
+    private DbDirectoryChangesetReader newReader(int numThreads) {
+        return new DbDirectoryChangesetReader(Functions.getStringPassThru(), new DeployMetricsCollectorImpl(), true,
+                new TextMarkupDocumentReader(false), null, mock(GetChangeType.class), numThreads);
+    }
+
     @Test
     public void testWildcardOperator() {
         assertFalse(DbDirectoryChangesetReader.getCHANGES_WILDCARD_FILTER().accept(getFileSelectInfo("myfile")));
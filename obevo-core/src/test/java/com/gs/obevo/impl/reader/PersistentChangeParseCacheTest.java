@@ -0,0 +1,150 @@
+/**
+ * Copyright 2017 Goldman Sachs.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.gs.obevo.impl.reader;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.gs.obevo.api.appdata.ArtifactEnvironmentRestrictions;
+import com.gs.obevo.api.appdata.ChangeInput;
+import com.gs.obevo.api.appdata.CodeDependency;
+import com.gs.obevo.api.appdata.CodeDependencyType;
+import com.gs.obevo.api.platform.ChangeType;
+import com.gs.obevo.util.vfs.FileObject;
+import com.gs.obevo.util.vfs.FileRetrievalMode;
+import org.apache.commons.io.FileUtils;
+import org.eclipse.collections.impl.factory.Sets;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class PersistentChangeParseCacheTest {
+    @Rule
+    public final TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private final ChangeType viewChangeType = mock(ChangeType.class);
+    private final RerunnableChangeParser parser = new RerunnableChangeParser();
+    private final AtomicInteger parseCount = new AtomicInteger();
+
+    private File cacheDir;
+    private File sourceFile;
+
+    @Before
+    public void setup() throws Exception {
+        when(viewChangeType.getName()).thenReturn(ChangeType.VIEW_STR);
+        cacheDir = tempFolder.newFolder("cache");
+        sourceFile = new File(tempFolder.newFolder("src"), "view1.sql");
+        FileUtils.writeStringToFile(sourceFile, "//// METADATA dependencies=\"abc,123\" includeEnvs=\"env1\" order=\"5\"\n" +
+                "CREATE VIEW view1 AS SELECT 1\n" +
+                "//// DROP_COMMAND\n" +
+                "DROP VIEW view1", "UTF-8");
+    }
+
+    @Test
+    public void testUnchangedFileIsNotParsedAgain() throws Exception {
+        List<ChangeInput> changes = getOrParse(newCache());
+        assertEquals(1, parseCount.get());
+
+        List<ChangeInput> cachedChanges = getOrParse(newCache());
+        assertEquals("a new cache instance should read the entry from disk", 1, parseCount.get());
+
+        assertEquals(1, cachedChanges.size());
+        ChangeInput change = changes.get(0);
+        ChangeInput cachedChange = cachedChanges.get(0);
+        assertEquals(change.getChangeKey(), cachedChange.getChangeKey());
+        assertSame(viewChangeType, cachedChange.getChangeKey().getChangeType());
+        assertEquals(change.getContent(), cachedChange.getContent());
+        assertEquals(change.getContentHash(), cachedChange.getContentHash());
+        assertEquals("DROP VIEW view1", cachedChange.getDropContent());
+        assertEquals(5, cachedChange.getOrder());
+        assertEquals(Sets.immutable.with(new CodeDependency("abc", CodeDependencyType.EXPLICIT), new CodeDependency("123", CodeDependencyType.EXPLICIT)), cachedChange.getCodeDependencies());
+        assertEquals(1, cachedChange.getRestrictions().size());
+        assertEquals(ArtifactEnvironmentRestrictions.class, cachedChange.getRestrictions().get(0).getClass());
+        assertEquals(Sets.mutable.with("env1"), cachedChange.getRestrictions().get(0).getIncludes());
+        assertEquals("5", cachedChange.getMetadataSection().getAttr("order"));
+        assertEquals(change.getFileLocation(), cachedChange.getFileLocation());
+    }
+
+    @Test
+    public void testTouchedFileWithSameContentIsNotParsedAgain() throws Exception {
+        getOrParse(newCache());
+        assertEquals(sourceFile.setLastModified(sourceFile.lastModified() + 10000), true);
+
+        getOrParse(newCache());
+        assertEquals(1, parseCount.get());
+    }
+
+    @Test
+    public void testModifiedFileIsParsedAgain() throws Exception {
+        getOrParse(newCache());
+        FileUtils.writeStringToFile(sourceFile, "CREATE VIEW view1 AS SELECT 2", "UTF-8");
+        assertEquals(sourceFile.setLastModified(sourceFile.lastModified() + 10000), true);
+
+        List<ChangeInput> changes = getOrParse(newCache());
+        assertEquals(2, parseCount.get());
+        assertEquals("CREATE VIEW view1 AS SELECT 2", changes.get(0).getContent());
+    }
+
+    @Test
+    public void testChangedParseSettingsAreParsedAgain() throws Exception {
+        getOrParse(newCache("metadataLineReaderVersion=3"));
+        getOrParse(newCache("metadataLineReaderVersion=2"));
+        assertEquals(2, parseCount.get());
+
+        getOrParse(newCache("metadataLineReaderVersion=3"));
+        assertEquals(2, parseCount.get());
+    }
+
+    @Test
+    public void testUnreadableEntryIsTreatedAsMiss() throws Exception {
+        getOrParse(newCache());
+        for (File entryFile : cacheDir.listFiles()) {
+            FileUtils.writeStringToFile(entryFile, "corrupt", "UTF-8");
+        }
+
+        List<ChangeInput> changes = getOrParse(newCache());
+        assertEquals(2, parseCount.get());
+        assertEquals(1, changes.size());
+    }
+
+    private PersistentChangeParseCache newCache() {
+        return newCache("metadataLineReaderVersion=3");
+    }
+
+    private PersistentChangeParseCache newCache(String parseSettings) {
+        return new PersistentChangeParseCache(cacheDir, changeTypeName -> {
+            assertEquals(ChangeType.VIEW_STR, changeTypeName);
+            return viewChangeType;
+        }, parseSettings);
+    }
+
+    private List<ChangeInput> getOrParse(PersistentChangeParseCache cache) {
+        FileObject file = FileRetrievalMode.FILE_SYSTEM.resolveSingleFileObject(sourceFile.getAbsolutePath());
+        return cache.getOrParse(file, viewChangeType, "schema", parser.getClass().getName(), "UTF-8", null,
+                () -> file.getStringContent(),
+                content -> {
+                    parseCount.incrementAndGet();
+                    return parser.value(viewChangeType, file, content, "view1", "schema", null).castToList();
+                });
+    }
+}
@@ -0,0 +1,58 @@
+/**
+ * Copyright 2017 Goldman Sachs.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.gs.obevo.impl.text
+
+import com.gs.obevo.util.RegexUtil
+import org.junit.Assert.assertEquals
+import org.junit.Test
+
+class SqlWordScannerTest {
+    @Test
+    fun testSameWordsAsCommentRemover() {
+        assertSameWords("create procedure sp1\n" +
+                "		        // Comment sp2\n" +
+                "		        -- Comment sp2\n" +
+                "                call sp_3(1234)  -- end of line comment sp5\n" +
+                "		        /* Comment sp5 */\n" +
+                "		        sp6 -- ensure that this line still remains (w/ the sp6) between the block comments\n" +
+                "		        /*--------- Comment\n" +
+                "		        sp5\n" +
+                "---------*/\n" +
+                "				call sp4(1234)\n" +
+                "		///		/*\n" +
+                "		This should not get commented out, as the previous 'start block' was itself commented out\n" +
+                "				 */\n" +
+                "				end\n")
+        assertSameWords("text合\n// Comment 合\n-- Comment 合\n/* Comment 合 */\ntext2 合")
+        assertSameWords("abc \"def\" '1' ghi /* comment ' removed */  '2' jkl")
+        assertSameWords("select 'it''s -- not a comment' as col1, \"tab -- le\" from tab1--comment\r\nwhere a/b = 1 and c-d = 2")
+        assertSameWords("select a/*comment*/b, #tmp1, x__y from t1 /*/ still a comment */ where 1=1 // end")
+        assertSameWords("")
+        assertSameWords("-- only a comment")
+    }
+
+    @Test
+    fun testUnclosedQuoteOrCommentSearchesOriginalString() {
+        assertSameWords("abc \"def\" un-closed quote \" un-closed /* comment not removed */ quote")
+        assertSameWords("abc -- comment\n /* unclosed comment def")
+        assertEquals(setOf("abc", "comment", "unclosed", "def"), SqlWordScanner.findWords("abc -- comment\n /* unclosed comment def", "test") { true })
+    }
+
+    private fun assertSameWords(content: String) {
+        val expected = CommentRemover.removeComments(content, "test").split(RegexUtil.SPACE_PATTERN).filter { it.isNotEmpty() }.toSet()
+        assertEquals(expected, SqlWordScanner.findWords(content, "test") { true })
+    }
+}
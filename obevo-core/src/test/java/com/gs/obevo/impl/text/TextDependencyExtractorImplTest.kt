@@ -87,6 +87,19 @@ class TextDependencyExtractorImplTest {
         assertEquals(Sets.mutable.with("sp1", "obj1"), dependencies)
     }
 
+    @Test
+    fun testCalculateDependenciesInParallel() {
+        val objects = (0 until 100).map { newObject("sp$it", "sp$it " + (0 until it).joinToString(" ") { i -> "SP$i" }) }
+
+        val parallelEnricher = TextDependencyExtractorImpl({ it: String -> it.toUpperCase() }, 4)
+        val dependencies = parallelEnricher.calculateDependencies(objects)
+
+        assertEquals(objects, dependencies.keys.toList())
+        objects.forEachIndexed { index, obj ->
+            assertEquals((0 until index).map { CodeDependency("SP$it", CodeDependencyType.DISCOVERED) }.toSet(), dependencies[obj])
+        }
+    }
+
     private fun newObject(objectName: String, content: String): TextDependencyExtractable {
         return newObject(SCHEMA1, objectName, content)
     }
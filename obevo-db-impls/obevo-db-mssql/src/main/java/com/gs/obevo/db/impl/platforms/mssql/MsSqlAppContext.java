@@ -19,6 +19,7 @@ import com.gs.obevo.api.platform.ChangeType;
 import com.gs.obevo.db.api.platform.DbChangeType;
 import com.gs.obevo.db.api.platform.SqlExecutor;
 import com.gs.obevo.db.impl.core.DbDeployerAppContextImpl;
+import com.gs.obevo.db.impl.core.changetypes.CsvStaticDataDeployer;
 import com.gs.obevo.db.impl.core.envinfrasetup.EnvironmentInfraSetup;
 import com.gs.obevo.db.impl.core.jdbc.DataSourceFactory;
 import com.gs.obevo.impl.ChangeTypeBehaviorRegistry.ChangeTypeBehaviorRegistryBuilder;
@@ -40,6 +41,12 @@ public class MsSqlAppContext extends DbDeployerAppContextImpl {
         return new MsSqlJdbcDataSourceFactory();
     }
 
+    @Override
+    public CsvStaticDataDeployer getCsvStaticDataLoader() {
+        return new MsSqlBulkCopyCsvStaticDataDeployer(this.env, this.getSqlExecutor(), this.getManagedDataSource(),
+                this.getDbMetadataManager(), this.platform());
+    }
+
     @Override
     protected ChangeTypeBehaviorRegistryBuilder getChangeTypeBehaviors() {
         DbChangeType usertypeChangeType = (DbChangeType) platform().getChangeType(ChangeType.USERTYPE_STR);
@@ -0,0 +1,122 @@
+/**
+ * Copyright 2017 Goldman Sachs.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.gs.obevo.db.impl.platforms.mssql
+
+import com.gs.obevo.api.platform.DeployerRuntimeException
+import com.gs.obevo.db.api.appdata.DbEnvironment
+import com.gs.obevo.db.api.platform.DbPlatform
+import com.gs.obevo.db.api.platform.SqlExecutor
+import com.gs.obevo.db.impl.core.changetypes.AbstractNativeBulkLoadCsvStaticDataDeployer
+import com.gs.obevo.db.impl.core.changetypes.StaticDataChangeRows
+import com.gs.obevo.dbmetadata.api.DbMetadataManager
+import com.microsoft.sqlserver.jdbc.ISQLServerBulkRecord
+import com.microsoft.sqlserver.jdbc.SQLServerBulkCopy
+import com.microsoft.sqlserver.jdbc.SQLServerBulkCopyOptions
+import com.microsoft.sqlserver.jdbc.SQLServerConnection
+import org.eclipse.collections.api.list.ImmutableList
+import org.slf4j.LoggerFactory
+import java.sql.Connection
+import java.sql.SQLException
+import javax.sql.DataSource
+
+/**
+ * Loads the CSV inserts via the SQL Server bulk copy API of the mssql-jdbc driver.
+ *
+ * The bulk copy options are set so that the load behaves like the regular inserts, i.e. nulls are kept rather than
+ * replaced by the column defaults, and the constraints and triggers are applied.
+ */
+class MsSqlBulkCopyCsvStaticDataDeployer(env: DbEnvironment, sqlExecutor: SqlExecutor, dataSource: DataSource,
+                                         metadataManager: DbMetadataManager, private val dbPlatform: DbPlatform)
+    : AbstractNativeBulkLoadCsvStaticDataDeployer<SQLServerConnection>(env, sqlExecutor, dataSource, metadataManager, dbPlatform, SQLServerConnection::class.java) {
+
+    override fun executeBulkInserts(conn: Connection, nativeConnection: SQLServerConnection, changeRows: StaticDataChangeRows) {
+        val tableName = dbPlatform.getSchemaPrefix(changeRows.schema) + changeRows.table.name
+        val insertColumns = changeRows.insertRows.first.insertColumns
+        val columnTypes = getColumnTypes(conn, tableName, insertColumns)
+
+        val options = SQLServerBulkCopyOptions()
+        options.isKeepNulls = true
+        options.isCheckConstraints = true
+        options.isFireTriggers = true
+
+        val bulkCopy = SQLServerBulkCopy(nativeConnection)
+        try {
+            bulkCopy.bulkCopyOptions = options
+            bulkCopy.destinationTableName = tableName
+            insertColumns.forEachWithIndex { column, i -> bulkCopy.addColumnMapping(i + 1, column) }
+
+            LOG.info("Executing the bulk copy into {} for columns {}", tableName, insertColumns)
+            bulkCopy.writeToServer(InsertRowBulkRecord(changeRows, insertColumns, columnTypes))
+        } catch (e: SQLException) {
+            throw DeployerRuntimeException("Failed to bulk copy the rows into table $tableName", e)
+        } finally {
+            bulkCopy.close()
+        }
+    }
+
+    /**
+     * Returns the JDBC type, precision and scale of each column, as the bulk copy API requires these from the source.
+     */
+    private fun getColumnTypes(conn: Connection, tableName: String, columns: ImmutableList<String>): List<ColumnType> {
+        val stmtRsPair = jdbcTemplate.queryAndLeaveStatementOpen(conn, "SELECT " + columns.makeString(", ") + " FROM " + tableName + " WHERE 1 = 0")
+        try {
+            val metaData = stmtRsPair.two.metaData
+            return (1..columns.size()).map { ColumnType(metaData.getColumnType(it), metaData.getPrecision(it), metaData.getScale(it)) }
+        } finally {
+            stmtRsPair.two.close()
+            stmtRsPair.one.close()
+        }
+    }
+
+    private class ColumnType(val jdbcType: Int, val precision: Int, val scale: Int)
+
+    private class InsertRowBulkRecord(
+            changeRows: StaticDataChangeRows,
+            private val columns: ImmutableList<String>,
+            private val columnTypes: List<ColumnType>
+    ) : ISQLServerBulkRecord {
+        private val rows = changeRows.insertRows.iterator()
+        private var currentRow: Array<Any?>? = null
+
+        override fun getColumnOrdinals(): Set<Int> = (1..columns.size()).toSet()
+
+        override fun getColumnName(column: Int): String = columns.get(column - 1)
+
+        override fun getColumnType(column: Int): Int = columnTypes[column - 1].jdbcType
+
+        override fun getPrecision(column: Int): Int = columnTypes[column - 1].precision
+
+        override fun getScale(column: Int): Int = columnTypes[column - 1].scale
+
+        override fun isAutoIncrement(column: Int): Boolean = false
+
+        override fun getRowData(): Array<Any?>? = currentRow
+
+        override fun next(): Boolean {
+            if (!rows.hasNext()) {
+                currentRow = null
+                return false
+            }
+            val row = rows.next()
+            currentRow = columns.collect { row.params.get(it) }.toArray()
+            return true
+        }
+    }
+
+    companion object {
+        private val LOG = LoggerFactory.getLogger(MsSqlBulkCopyCsvStaticDataDeployer::class.java)
+    }
+}
@@ -19,9 +19,11 @@ import com.gs.obevo.api.platform.ChangeType;
 import com.gs.obevo.db.api.platform.DbChangeType;
 import com.gs.obevo.db.api.platform.SqlExecutor;
 import com.gs.obevo.db.impl.core.DbDeployerAppContextImpl;
+import com.gs.obevo.db.impl.core.changetypes.CsvStaticDataDeployer;
 import com.gs.obevo.db.impl.core.envinfrasetup.EnvironmentInfraSetup;
 import com.gs.obevo.db.impl.core.jdbc.DataSourceFactory;
 import com.gs.obevo.db.impl.platforms.postgresql.changetypes.PostgreSqlFunctionChangeTypeBehavior;
+import com.gs.obevo.db.impl.platforms.redshift.RedshiftDbPlatform;
 import com.gs.obevo.impl.ChangeTypeBehaviorRegistry.ChangeTypeBehaviorRegistryBuilder;
 import com.gs.obevo.impl.NoOpPostDeployAction;
 import com.gs.obevo.impl.PostDeployAction;
@@ -53,6 +55,16 @@ public class PostgreSqlAppContext extends DbDeployerAppContextImpl {
         return new PostgreSqlJdbcDataSourceFactory();
     }
 
+    @Override
+    public CsvStaticDataDeployer getCsvStaticDataLoader() {
+        if (platform() instanceof RedshiftDbPlatform) {
+            // Redshift does not support COPY FROM STDIN
+            return super.getCsvStaticDataLoader();
+        }
+        return new PostgreSqlCopyCsvStaticDataDeployer(this.env, this.getSqlExecutor(), this.getManagedDataSource(),
+                this.getDbMetadataManager(), this.platform());
+    }
+
     @Override
     public EnvironmentInfraSetup getEnvironmentInfraSetup() {
         return new PostgreSqlEnvironmentInfraSetup(this.getEnvironment(), this.getManagedDataSource(), this.deployStatsTracker(), getDbMetadataManager(), this.getChangeTypeBehaviorRegistry());
@@ -0,0 +1,97 @@
+/**
+ * Copyright 2017 Goldman Sachs.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.gs.obevo.db.impl.platforms.postgresql
+
+import com.gs.obevo.api.platform.DeployerRuntimeException
+import com.gs.obevo.db.api.appdata.DbEnvironment
+import com.gs.obevo.db.api.platform.DbPlatform
+import com.gs.obevo.db.api.platform.SqlExecutor
+import com.gs.obevo.db.impl.core.changetypes.AbstractNativeBulkLoadCsvStaticDataDeployer
+import com.gs.obevo.db.impl.core.changetypes.StaticDataChangeRows
+import com.gs.obevo.dbmetadata.api.DbMetadataManager
+import org.postgresql.PGConnection
+import org.slf4j.LoggerFactory
+import java.math.BigDecimal
+import java.nio.charset.StandardCharsets
+import java.sql.Connection
+import java.sql.SQLException
+import java.sql.Timestamp
+import java.util.Date
+import javax.sql.DataSource
+
+/**
+ * Loads the CSV inserts via the PostgreSQL COPY FROM STDIN command, streaming the rows through the pgjdbc CopyManager
+ * in the CSV format.
+ */
+class PostgreSqlCopyCsvStaticDataDeployer(env: DbEnvironment, sqlExecutor: SqlExecutor, dataSource: DataSource,
+                                          metadataManager: DbMetadataManager, private val dbPlatform: DbPlatform)
+    : AbstractNativeBulkLoadCsvStaticDataDeployer<PGConnection>(env, sqlExecutor, dataSource, metadataManager, dbPlatform, PGConnection::class.java) {
+
+    override fun executeBulkInserts(conn: Connection, nativeConnection: PGConnection, changeRows: StaticDataChangeRows) {
+        val insertColumns = changeRows.insertRows.first.insertColumns
+        val sql = "COPY " + dbPlatform.getSchemaPrefix(changeRows.schema) + changeRows.table.name +
+                insertColumns.makeString(" (", ", ", ")") + " FROM STDIN WITH (FORMAT csv)"
+        LOG.info("Executing the copy $sql")
+
+        val copyIn = nativeConnection.copyAPI.copyIn(sql)
+        try {
+            for (insert in changeRows.insertRows) {
+                val line = toCsvLine(insertColumns.collect { insert.params.get(it) }).toByteArray(StandardCharsets.UTF_8)
+                copyIn.writeToCopy(line, 0, line.size)
+            }
+            val rowCount = copyIn.endCopy()
+            LOG.info("Copied {} rows into table {}", rowCount, changeRows.table.name)
+        } catch (e: SQLException) {
+            throw DeployerRuntimeException("Failed to COPY the rows into table " + changeRows.table.name, e)
+        } finally {
+            if (copyIn.isActive) {
+                copyIn.cancelCopy()
+            }
+        }
+    }
+
+    companion object {
+        private val LOG = LoggerFactory.getLogger(PostgreSqlCopyCsvStaticDataDeployer::class.java)
+
+        /**
+         * Formats the values as a line for COPY in the CSV format. Null values are written as an unquoted empty field,
+         * which COPY reads as null; all other values are quoted so that empty strings are kept as such.
+         */
+        internal fun toCsvLine(values: Iterable<Any?>): String {
+            val sb = StringBuilder()
+            for ((i, value) in values.withIndex()) {
+                if (i > 0) {
+                    sb.append(',')
+                }
+                if (value != null) {
+                    sb.append('"').append(toCopyText(value).replace("\"", "\"\"")).append('"')
+                }
+            }
+            return sb.append('\n').toString()
+        }
+
+        private fun toCopyText(value: Any): String {
+            return when (value) {
+                is ByteArray -> "\\x" + value.joinToString("") { String.format("%02x", it) }
+                is BigDecimal -> value.toPlainString()
+                // java.sql.Date/Time/Timestamp already print in the JDBC escape format, which PostgreSQL accepts
+                is java.sql.Date, is java.sql.Time, is Timestamp -> value.toString()
+                is Date -> Timestamp(value.time).toString()
+                else -> value.toString()
+            }
+        }
+    }
+}
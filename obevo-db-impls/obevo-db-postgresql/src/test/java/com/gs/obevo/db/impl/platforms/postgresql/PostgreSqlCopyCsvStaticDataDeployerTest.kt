@@ -0,0 +1,31 @@
+/**
+ * Copyright 2017 Goldman Sachs.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.gs.obevo.db.impl.platforms.postgresql
+
+import org.junit.Assert.assertEquals
+import org.junit.Test
+import java.math.BigDecimal
+import java.sql.Timestamp
+
+class PostgreSqlCopyCsvStaticDataDeployerTest {
+    @Test
+    fun testCsvLine() {
+        assertEquals("\"1\",,\"\",\"a,b\"\"c\"\n", PostgreSqlCopyCsvStaticDataDeployer.toCsvLine(listOf(1, null, "", "a,b\"c")))
+        assertEquals("\"line1\nline2\",\"1000\",\"true\"\n", PostgreSqlCopyCsvStaticDataDeployer.toCsvLine(listOf("line1\nline2", BigDecimal("1E+3"), true)))
+        assertEquals("\"2012-01-01 12:12:12.5\",\"\\x00ff10\"\n", PostgreSqlCopyCsvStaticDataDeployer.toCsvLine(listOf(
+                Timestamp.valueOf("2012-01-01 12:12:12.5"), byteArrayOf(0, -1, 16))))
+    }
+}
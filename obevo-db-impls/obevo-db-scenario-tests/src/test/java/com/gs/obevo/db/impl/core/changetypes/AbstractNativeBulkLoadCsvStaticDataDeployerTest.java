@@ -0,0 +1,201 @@
+/**
+ * Copyright 2017 Goldman Sachs.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.gs.obevo.db.impl.core.changetypes;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import com.gs.obevo.api.appdata.Change;
+import com.gs.obevo.api.appdata.PhysicalSchema;
+import com.gs.obevo.db.api.appdata.DbEnvironment;
+import com.gs.obevo.db.api.platform.DbPlatform;
+import com.gs.obevo.db.api.platform.SqlExecutor;
+import com.gs.obevo.db.impl.core.jdbc.JdbcDataSourceFactory;
+import com.gs.obevo.db.impl.core.jdbc.JdbcHelper;
+import com.gs.obevo.db.impl.platforms.h2.H2DbPlatform;
+import com.gs.obevo.db.impl.platforms.h2.H2JdbcDataSourceFactory;
+import com.gs.obevo.dbmetadata.api.DbMetadataManager;
+import com.gs.obevo.dbmetadata.impl.DbMetadataManagerImpl;
+import com.gs.obevo.dbmetadata.impl.dialects.H2MetadataDialect;
+import com.gs.obevo.impl.ExecuteChangeCommand;
+import com.gs.obevo.util.inputreader.Credential;
+import org.apache.commons.dbutils.DbUtils;
+import org.apache.commons.dbutils.handlers.MapListHandler;
+import org.eclipse.collections.api.block.procedure.Procedure;
+import org.eclipse.collections.impl.block.function.checked.ThrowingFunction;
+import org.h2.jdbc.JdbcConnection;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests the connection unwrapping and fallback logic that is shared by the native bulk-load deployers, using H2 in
+ * place of the platforms that have a bulk-load API.
+ */
+public class AbstractNativeBulkLoadCsvStaticDataDeployerTest {
+    private static final String schema = "BulkLoadTest";
+    private static final String table = "Mytest";
+    private static final DbPlatform PLATFORM = new H2DbPlatform();
+
+    private DataSource ds;
+    private Connection conn;
+    private JdbcHelper jdbc;
+    private DbMetadataManager metadataManager;
+    private DbEnvironment env;
+    private Change artifact;
+
+    @Before
+    public void setup() throws Exception {
+        this.ds = JdbcDataSourceFactory.createFromJdbcUrl(org.h2.Driver.class, H2JdbcDataSourceFactory.getUrl("bulkLoadTest", false), new Credential("sa", ""), 3);
+        this.conn = ds.getConnection();
+
+        this.jdbc = new JdbcHelper();
+        this.jdbc.execute(conn, "DROP SCHEMA IF EXISTS " + schema);
+        this.jdbc.execute(conn, "CREATE SCHEMA " + schema);
+        this.jdbc.execute(conn, "CREATE TABLE " + schema + "." + table + " (AID INT NOT NULL, STRINGFIELD VARCHAR(30) NULL, PRIMARY KEY (AID))");
+        this.jdbc.execute(conn, "INSERT INTO " + schema + "." + table + " (AID, STRINGFIELD) VALUES (1, 'a')");
+
+        this.metadataManager = new DbMetadataManagerImpl(new H2MetadataDialect(), this.ds);
+
+        this.env = new DbEnvironment();
+        env.setPlatform(PLATFORM);
+
+        this.artifact = mock(Change.class);
+        when(artifact.getPhysicalSchema(env)).thenReturn(new PhysicalSchema(schema));
+        when(artifact.getObjectName()).thenReturn(table);
+        when(artifact.getConvertedContent()).thenReturn(
+                "AID,STRINGFIELD\n" +
+                        "1,b\n" +
+                        "2,c\n" +
+                        "3,null\n"
+        );
+    }
+
+    @After
+    public void teardown() {
+        DbUtils.closeQuietly(conn);
+    }
+
+    @Test
+    public void testBulkLoadWithUnwrappedConnection() {
+        TestBulkLoadDeployer<JdbcConnection> deployer = new TestBulkLoadDeployer<>(JdbcConnection.class);
+        deployer.deployArtifact(artifact);
+
+        assertEquals(1, deployer.bulkLoadCount);
+        verifyRows();
+    }
+
+    @Test
+    public void testFallbackToRegularInsertsIfConnectionCannotBeUnwrapped() {
+        TestBulkLoadDeployer<UnsupportedConnection> deployer = new TestBulkLoadDeployer<>(UnsupportedConnection.class);
+        deployer.deployArtifact(artifact);
+
+        assertEquals(0, deployer.bulkLoadCount);
+        verifyRows();
+    }
+
+    private void verifyRows() {
+        List<Map<String, Object>> results = this.jdbc.query(conn, "select * from " + schema + "." + table + " order by AID", new MapListHandler());
+        assertEquals(3, results.size());
+        assertEquals("b", results.get(0).get("STRINGFIELD"));
+        assertEquals("c", results.get(1).get("STRINGFIELD"));
+        assertEquals(null, results.get(2).get("STRINGFIELD"));
+    }
+
+    private SqlExecutor getSqlExecutor() {
+        return new SqlExecutor() {
+            @Override
+            public JdbcHelper getJdbcTemplate() {
+                return new JdbcHelper();
+            }
+
+            @Override
+            public void executeWithinContext(PhysicalSchema schema, Procedure<Connection> runnable) {
+                Connection connection = null;
+                try {
+                    connection = ds.getConnection();
+                    runnable.value(connection);
+                } catch (SQLException e) {
+                    throw new RuntimeException(e);
+                } finally {
+                    DbUtils.closeQuietly(connection);
+                }
+            }
+
+            @Override
+            public <T> T executeWithinContext(PhysicalSchema schema, ThrowingFunction<Connection, T> callable) {
+                Connection connection = null;
+                try {
+                    connection = ds.getConnection();
+                    return callable.safeValueOf(connection);
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                } finally {
+                    DbUtils.closeQuietly(connection);
+                }
+            }
+
+            @Override
+            public void performExtraCleanOperation(ExecuteChangeCommand command, DbMetadataManager metaDataMgr) {
+            }
+        };
+    }
+
+    /**
+     * Stands in for a driver-specific connection class that the pooled connection does not wrap.
+     */
+    private interface UnsupportedConnection {
+    }
+
+    /**
+     * Does the "bulk load" via a plain JDBC batch on the native connection to verify that it is the same session.
+     */
+    private class TestBulkLoadDeployer<C> extends AbstractNativeBulkLoadCsvStaticDataDeployer<C> {
+        private int bulkLoadCount;
+
+        TestBulkLoadDeployer(Class<C> nativeConnectionClass) {
+            super(env, AbstractNativeBulkLoadCsvStaticDataDeployerTest.this.getSqlExecutor(), ds, metadataManager, PLATFORM, nativeConnectionClass);
+        }
+
+        @Override
+        protected void executeBulkInserts(Connection conn, C nativeConnection, StaticDataChangeRows changeRows) {
+            bulkLoadCount++;
+            try {
+                assertSame(conn.unwrap(JdbcConnection.class), nativeConnection);
+                try (PreparedStatement ps = ((Connection) nativeConnection).prepareStatement("INSERT INTO " + schema + "." + table + " (AID, STRINGFIELD) VALUES (?, ?)")) {
+                    for (StaticDataInsertRow insertRow : changeRows.getInsertRows()) {
+                        ps.setObject(1, insertRow.getParams().get("AID"));
+                        ps.setObject(2, insertRow.getParams().get("STRINGFIELD"));
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+                }
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+}
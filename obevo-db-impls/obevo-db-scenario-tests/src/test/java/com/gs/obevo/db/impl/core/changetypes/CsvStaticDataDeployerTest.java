@@ -24,6 +24,7 @@ import javax.sql.DataSource;
 
 import com.gs.obevo.api.appdata.Change;
 import com.gs.obevo.api.appdata.PhysicalSchema;
+import com.gs.obevo.api.appdata.doc.TextMarkupDocumentSection;
 import com.gs.obevo.db.api.appdata.DbEnvironment;
 import com.gs.obevo.db.api.platform.DbPlatform;
 import com.gs.obevo.db.api.platform.SqlExecutor;
@@ -49,10 +50,12 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.lessThan;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -205,7 +208,12 @@ public class CsvStaticDataDeployerTest {
 
     @Test
     public void testNormalInsertAndDeleteUseCase() {
-        this.testNormalInsertAndDeleteUseCase(false);
+        this.testNormalInsertAndDeleteUseCase(false, false);
+    }
+
+    @Test
+    public void testNormalInsertAndDeleteUseCaseWithStreamingDiff() {
+        this.testNormalInsertAndDeleteUseCase(false, true);
     }
 
     /**
@@ -214,10 +222,10 @@ public class CsvStaticDataDeployerTest {
      */
     @Test
     public void testCaseSensitivity() {
-        this.testNormalInsertAndDeleteUseCase(true);
+        this.testNormalInsertAndDeleteUseCase(true, false);
     }
 
-    private void testNormalInsertAndDeleteUseCase(boolean caseSensitiveCsv) {
+    private void testNormalInsertAndDeleteUseCase(boolean caseSensitiveCsv, boolean streamingDiff) {
         this.jdbc.execute(conn, "CREATE TABLE " + schema + "." + table + " (\n" +
                 "AID    INT NOT NULL,\n" +
                 "BID    INT NOT NULL,\n" +
@@ -238,6 +246,9 @@ public class CsvStaticDataDeployerTest {
         when(artifact.getObjectName()).thenReturn(table);
         when(artifact.getMetadataAttribute(TextMarkupDocumentReader.ATTR_UPDATE_TIME_COLUMN)).thenReturn(
                 "UPDATETIMEFIELD");
+        if (streamingDiff) {
+            setStreamingDiffToggle(artifact);
+        }
 
         String columnHeaders = "aId^bId^stringField^timestampField^cId";
         if (!caseSensitiveCsv) {
@@ -288,6 +299,96 @@ public class CsvStaticDataDeployerTest {
         this.verifyRow(results.get(3), 5, 5, "ABCD", null, 9, preDeployTime, true);
     }
 
+    /**
+     * Updates that change different sets of columns produce different SQLs; verify that these are batched separately
+     * and that a batch size smaller than the number of rows is handled.
+     */
+    @Test
+    public void testBatchedUpdatesAndDeletes() {
+        this.jdbc.execute(conn, "CREATE TABLE " + schema + "." + table + " (\n" +
+                "AID    INT NOT NULL,\n" +
+                "BID    INT NULL,\n" +
+                "STRINGFIELD VARCHAR(30)\tNULL,\n" +
+                "PRIMARY KEY (AID)\n" +
+                ")\n");
+        for (int i = 1; i <= 7; i++) {
+            this.jdbc.execute(conn, "INSERT INTO " + schema + "." + table + " (AID, BID, STRINGFIELD) VALUES (" + i + ", " + i + ", 'a" + i + "')");
+        }
+
+        DbEnvironment env = new DbEnvironment();
+        env.setPlatform(PLATFORM);
+        env.setCsvUpdateBatchSize(2);
+        env.setCsvDeleteBatchSize(2);
+
+        Change artifact = mock(Change.class);
+        when(artifact.getPhysicalSchema(env)).thenReturn(new PhysicalSchema(schema));
+        when(artifact.getObjectName()).thenReturn(table);
+        when(artifact.getConvertedContent()).thenReturn(
+                "AID,BID,STRINGFIELD\n" +
+                        "1,10,a1\n" +
+                        "2,20,a2\n" +
+                        "3,30,a3\n" +
+                        "4,4,b4\n" +
+                        "5,50,b5\n"
+        );
+
+        CsvStaticDataDeployer csvStaticDataDeployer = new CsvStaticDataDeployer(env, getSqlExecutor(), this.ds, metadataManager, new H2DbPlatform());
+        csvStaticDataDeployer.deployArtifact(artifact);
+
+        List<Map<String, Object>> results = this.jdbc.query(conn, "select * from " + schema + "." + table + " order by AID",
+                new MapListHandler());
+        assertEquals(5, results.size());
+        String[] expectedStrings = new String[] { "a1", "a2", "a3", "b4", "b5" };
+        int[] expectedBids = new int[] { 10, 20, 30, 4, 50 };
+        for (int i = 0; i < results.size(); i++) {
+            assertEquals(i + 1, results.get(i).get("AID"));
+            assertEquals(expectedBids[i], results.get(i).get("BID"));
+            assertEquals(expectedStrings[i], results.get(i).get("STRINGFIELD"));
+        }
+    }
+
+    @Test
+    public void testStreamingDiffFailsOnUnsortedCsv() {
+        this.jdbc.execute(conn, "CREATE TABLE " + schema + "." + table + " (\n" +
+                "AID    INT NOT NULL,\n" +
+                "BID    INT NOT NULL,\n" +
+                "PRIMARY KEY (AID)\n" +
+                ")\n");
+        this.jdbc.execute(conn, "INSERT INTO " + schema + "." + table + " (AID, BID) VALUES (1, 1)");
+
+        DbEnvironment env = new DbEnvironment();
+        env.setPlatform(PLATFORM);
+
+        Change artifact = mock(Change.class);
+        when(artifact.getPhysicalSchema(env)).thenReturn(new PhysicalSchema(schema));
+        when(artifact.getObjectName()).thenReturn(table);
+        setStreamingDiffToggle(artifact);
+        when(artifact.getConvertedContent()).thenReturn(
+                "AID,BID\n" +
+                        "3,4\n" +
+                        "2,3\n"
+        );
+
+        CsvStaticDataDeployer csvStaticDataDeployer = new CsvStaticDataDeployer(env, getSqlExecutor(), this.ds, metadataManager, new H2DbPlatform());
+        try {
+            csvStaticDataDeployer.deployArtifact(artifact);
+            fail("Expected the unsorted CSV to be rejected");
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage(), containsString("must be sorted by the key columns"));
+        }
+
+        // no changes should have been applied, as the diff is completed before any changes are executed
+        List<Map<String, Object>> results = this.jdbc.query(conn, "select * from " + schema + "." + table, new MapListHandler());
+        assertEquals(1, results.size());
+        assertEquals(1, results.get(0).get("AID"));
+    }
+
+    private void setStreamingDiffToggle(Change artifact) {
+        TextMarkupDocumentSection metadataSection = mock(TextMarkupDocumentSection.class);
+        when(metadataSection.isTogglePresent(TextMarkupDocumentReader.TOGGLE_STREAMING_DIFF)).thenReturn(true);
+        when(artifact.getMetadataSection()).thenReturn(metadataSection);
+    }
+
     private void verifyFkRow(Map<String, Object> stringObjectMap, boolean intDataType, int myId, Integer parentId) {
         assertEquals(intDataType ? myId : String.valueOf(myId), stringObjectMap.get("MYID"));
         assertEquals(intDataType || parentId == null ? parentId : String.valueOf(parentId), stringObjectMap.get("PARENTID"));
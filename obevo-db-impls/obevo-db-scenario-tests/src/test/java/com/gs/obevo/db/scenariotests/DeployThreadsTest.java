@@ -0,0 +1,51 @@
+/**
+ * Copyright 2017 Goldman Sachs.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.gs.obevo.db.scenariotests;
+
+import com.gs.obevo.api.appdata.PhysicalSchema;
+import com.gs.obevo.api.platform.MainDeployerArgs;
+import com.gs.obevo.db.api.factory.DbEnvironmentFactory;
+import com.gs.obevo.db.api.platform.DbDeployerAppContext;
+import com.gs.obevo.dbmetadata.api.DaSchemaInfoLevel;
+import org.junit.Test;
+
+import static org.junit.Assert.assertNotNull;
+
+public class DeployThreadsTest {
+    @Test
+    public void testDeployWithMultipleThreads() {
+        DbDeployerAppContext dbDeployerAppContext = DbEnvironmentFactory.getInstance()
+                .readOneFromSourcePath("scenariotests/changesetDeploy/step1")
+                .buildAppContext()
+                .setupEnvInfra().cleanEnvironment();
+
+        dbDeployerAppContext.deploy(new MainDeployerArgs().deployThreads(3));
+
+        for (String tableName : new String[] { "TABLE_A", "TABLE_B", "TABLE_C" }) {
+            assertNotNull(dbDeployerAppContext.getDbMetadataManager().getTableInfo(new PhysicalSchema("SCHEMA1"), tableName, new DaSchemaInfoLevel().setRetrieveTableIndexes(true)));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDeployThreadsMustFitTheConnectionPool() {
+        DbDeployerAppContext dbDeployerAppContext = DbEnvironmentFactory.getInstance()
+                .readOneFromSourcePath("scenariotests/changesetDeploy/step1")
+                .buildAppContext()
+                .setupEnvInfra().cleanEnvironment();
+
+        dbDeployerAppContext.deploy(new MainDeployerArgs().deployThreads(6));
+    }
+}
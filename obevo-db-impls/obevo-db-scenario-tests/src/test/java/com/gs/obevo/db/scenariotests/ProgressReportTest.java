@@ -0,0 +1,59 @@
+/**
+ * Copyright 2017 Goldman Sachs.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.gs.obevo.db.scenariotests;
+
+import java.sql.Connection;
+
+import com.gs.obevo.api.appdata.PhysicalSchema;
+import com.gs.obevo.api.platform.DeployExecutionDao;
+import com.gs.obevo.api.platform.MainDeployerArgs;
+import com.gs.obevo.db.api.factory.DbEnvironmentFactory;
+import com.gs.obevo.db.api.platform.DbDeployerAppContext;
+import com.gs.obevo.dbmetadata.api.DaSchemaInfoLevel;
+import com.gs.obevo.dbmetadata.api.DaTable;
+import org.eclipse.collections.impl.block.function.checked.ThrowingFunction;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class ProgressReportTest {
+    private final PhysicalSchema schema = new PhysicalSchema("SCHEMA1");
+
+    @Test
+    public void testChangeDurationsAreOnlyStoredWithProgressReports() {
+        DbDeployerAppContext dbDeployerAppContext = DbEnvironmentFactory.getInstance()
+                .readOneFromSourcePath("scenariotests/changesetDeploy/step1")
+                .buildAppContext()
+                .setupEnvInfra().cleanEnvironment();
+
+        dbDeployerAppContext.deploy(new MainDeployerArgs());
+        assertNull(getChangeDurationTable(dbDeployerAppContext));
+
+        dbDeployerAppContext.cleanEnvironment();
+        dbDeployerAppContext.deploy(new MainDeployerArgs().progressReportIntervalSeconds(60));
+        assertNotNull(getChangeDurationTable(dbDeployerAppContext));
+        int durationCount = dbDeployerAppContext.getSqlExecutor().executeWithinContext(schema, (ThrowingFunction<Connection, Integer>) conn ->
+                dbDeployerAppContext.getSqlExecutor().getJdbcTemplate().queryForInt(conn, "SELECT COUNT(*) FROM SCHEMA1." + DeployExecutionDao.CHANGE_DURATION_TABLE_NAME));
+        // one per deployed change; the changes in the phaseA changeset are not deployed by default
+        assertEquals(4, durationCount);
+    }
+
+    private DaTable getChangeDurationTable(DbDeployerAppContext dbDeployerAppContext) {
+        return dbDeployerAppContext.getDbMetadataManager().getTableInfo(schema, DeployExecutionDao.CHANGE_DURATION_TABLE_NAME, new DaSchemaInfoLevel().setRetrieveTables(true));
+    }
+}
@@ -84,6 +84,13 @@ public class IqDataSource implements DataSource {
         this.currentDataSource = this.dsMap.get(schema);
     }
 
+    /**
+     * Returns a connection from the datasource of the given schema, regardless of the current schema.
+     */
+    public Connection getConnection(PhysicalSchema schema) throws SQLException {
+        return this.dsMap.get(schema).getConnection();
+    }
+
     @Override
     public Connection getConnection(String username, String password) throws SQLException {
         throw new UnsupportedOperationException("Not supporting getConnection(String username, " +
@@ -16,6 +16,7 @@
 package com.gs.obevo.db.impl.platforms.sybaseiq;
 
 import java.sql.Connection;
+import java.sql.SQLException;
 
 import com.gs.obevo.api.appdata.PhysicalSchema;
 import com.gs.obevo.db.impl.platforms.AbstractSqlExecutor;
@@ -32,8 +33,26 @@ public class IqSqlExecutor extends AbstractSqlExecutor {
         this.iqDs = iqDs;
     }
 
+    /**
+     * Only switches the datasource for the other clients of {@link IqDataSource#getConnection()}; the connections of
+     * executeWithinContext come from the schema's datasource via {@link #getConnection(PhysicalSchema)}, as the
+     * concurrent calls for other schemas would otherwise race on the current datasource.
+     */
     @Override
     public void setDataSourceSchema(Connection conn, PhysicalSchema schema) {
         iqDs.setCurrentSchema(schema);
     }
+
+    @Override
+    protected Connection getConnection(PhysicalSchema schema) throws SQLException {
+        return iqDs.getConnection(schema);
+    }
+
+    /**
+     * Each schema is accessed via its own datasource and login; see {@link IqDataSource}.
+     */
+    @Override
+    protected boolean isConnectionBoundToSchema() {
+        return true;
+    }
 }
@@ -55,7 +55,7 @@ public class SybaseIqAppContext extends DbDeployerAppContextImpl {
             File workDir = Optional.ofNullable(this.getWorkDir())
                     .orElseGet(() -> FileUtilsCobra.createTempDir(SystemUtils.USER_NAME + "-obevo"));
             return new IqBulkLoadCsvStaticDataDeployer(this.env, this.getSqlExecutor(), this.getIqDataSource(),
-                    this.getDbMetadataManager(), this.env.getPlatform(), iqLoadMode, workDir);
+                    this.getDbMetadataManager(), this.env.getPlatform(), iqLoadMode, workDir, this.getNumThreads());
         } else {
             LOG.info("Using the default SQL insert/update/delete statements for IQ CSV Loads");
             return super.getCsvStaticDataLoader();
@@ -17,6 +17,9 @@ package com.gs.obevo.db.impl.platforms.sybaseiq.iqload
 
 import java.io.File
 import java.sql.Connection
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Executors
+import java.util.concurrent.Future
 
 import javax.sql.DataSource
 
@@ -25,22 +28,88 @@ import com.gs.obevo.db.api.appdata.DbEnvironment
 import com.gs.obevo.db.api.platform.DbPlatform
 import com.gs.obevo.db.api.platform.SqlExecutor
 import com.gs.obevo.db.impl.core.changetypes.CsvStaticDataDeployer
+import com.gs.obevo.db.impl.core.changetypes.StaticDataChangeChunks
 import com.gs.obevo.db.impl.core.changetypes.StaticDataChangeRows
 import com.gs.obevo.db.impl.core.changetypes.StaticDataInsertRow
-import com.gs.obevo.dbmetadata.api.DaTable
+import com.gs.obevo.dbmetadata.api.DaSchemaInfoLevel
 import com.gs.obevo.dbmetadata.api.DbMetadataManager
-import org.eclipse.collections.api.block.function.Function
-import org.eclipse.collections.api.list.ImmutableList
-import org.eclipse.collections.api.list.MutableList
-import org.slf4j.Logger
+import org.apache.commons.lang3.concurrent.BasicThreadFactory
 import org.slf4j.LoggerFactory
 
 /**
  * For this subclass of AbstractCsvStaticDataLoader, we do a bulk delete/insert of the data coming from the input CSV
  * data. Specificaly, we leverage the IQ bulk-load feature
+ *
+ * The load files are streamed to disk via [IqLoadFileWriter]. If loadThreads is more than 1, the tables of a static
+ * data group are written and loaded concurrently, each on its own connection; a table is only loaded after the tables
+ * that it references via foreign keys.
  */
-class IqBulkLoadCsvStaticDataDeployer(env: DbEnvironment, sqlExecutor: SqlExecutor, ds: DataSource, metadataManager: DbMetadataManager,
-                                      dbPlatform: DbPlatform, private val iqLoadMode: IqLoadMode, private val workDir: File) : CsvStaticDataDeployer(env, sqlExecutor, ds, metadataManager, dbPlatform) {
+class IqBulkLoadCsvStaticDataDeployer(env: DbEnvironment, private val sqlExecutor: SqlExecutor, ds: DataSource, private val metadataManager: DbMetadataManager,
+                                      dbPlatform: DbPlatform, private val iqLoadMode: IqLoadMode, private val workDir: File,
+                                      private val loadThreads: Int = 1) : CsvStaticDataDeployer(env, sqlExecutor, ds, metadataManager, dbPlatform) {
+
+    override fun executeInsertsForTables(staticDataChanges: List<StaticDataChangeChunks>) {
+        if (loadThreads <= 1 || staticDataChanges.size <= 1) {
+            super.executeInsertsForTables(staticDataChanges)
+            return
+        }
+
+        val threadFactory = BasicThreadFactory.Builder().namingPattern("obevo-iq-load-%d").daemon(true).build()
+        val executor = Executors.newFixedThreadPool(Math.min(loadThreads, staticDataChanges.size), threadFactory)
+        try {
+            // The loads are submitted in the FK insertion order, so the loads that a task waits on are always started
+            // ahead of it by the executor. The tables are keyed by schema, as tables of different schemas may have the
+            // same name
+            val loadsByTable = LinkedHashMap<Pair<PhysicalSchema, String>, Future<*>>()
+            for (staticDataChange in staticDataChanges) {
+                val referencedTables = getReferencedTables(staticDataChange)
+                val prerequisiteLoads = loadsByTable.filterKeys(referencedTables::contains).values.toList()
+
+                loadsByTable[staticDataChange.schema to staticDataChange.table.name] = executor.submit {
+                    try {
+                        prerequisiteLoads.forEach { it.get() }
+                    } catch (e: ExecutionException) {
+                        // the failure is reported for the referenced table
+                        LOG.warn("Skipping the load of table {} as a table that it references failed to load", staticDataChange.table.name)
+                        return@submit
+                    }
+                    sqlExecutor.executeWithinContext(staticDataChange.schema) { conn ->
+                        staticDataChange.forEachInsertChunk { executeInserts(conn, it) }
+                    }
+                }
+            }
+
+            val failures = loadsByTable.mapNotNull { (table, load) ->
+                try {
+                    load.get()
+                    null
+                } catch (e: ExecutionException) {
+                    LOG.error("Failed to load table {}.{}", table.first.physicalName, table.second, e.cause)
+                    e.cause ?: e
+                }
+            }
+            if (failures.isNotEmpty()) {
+                val exception = RuntimeException("${failures.size} of ${staticDataChanges.size} table loads failed", failures.first())
+                failures.drop(1).forEach(exception::addSuppressed)
+                throw exception
+            }
+        } finally {
+            executor.shutdownNow()
+        }
+    }
+
+    private fun getReferencedTables(staticDataChange: StaticDataChangeChunks): Set<Pair<PhysicalSchema, String>> {
+        val table = metadataManager.getTableInfo(staticDataChange.schema, staticDataChange.table.name, DaSchemaInfoLevel()
+                .setRetrieveTables(true)
+                .setRetrieveTableForeignKeys(true))
+        val foreignKeys = table?.importedForeignKeys ?: return emptySet()
+        return foreignKeys.flatMap { foreignKey ->
+            foreignKey.columnReferences.map {
+                val referencedTable = it.primaryKeyColumn.parent
+                (referencedTable.schema?.toPhysicalSchema() ?: staticDataChange.schema) to referencedTable.name
+            }
+        }.toSet()
+    }
 
     override fun executeInserts(conn: Connection, changeRows: StaticDataChangeRows) {
         val schema = changeRows.schema
@@ -52,15 +121,21 @@ class IqBulkLoadCsvStaticDataDeployer(env: DbEnvironment, sqlExecutor: SqlExecut
 
         val mappings = inserts.first.insertColumns.collect { s -> FieldToColumnMapping(s, s) }.toList()
 
+        // the schema is in the file name as tables of different schemas can be loaded concurrently
         val loadFileCreator = IqLoadFileCreator(table.name, mappings, File(this.workDir,
-                "iqload"), "loadFile",
+                "iqload"), "loadFile-" + schema.physicalName,
                 this.iqLoadMode, DataExtractor { obj, fieldName -> (obj as StaticDataInsertRow).params.get(fieldName) })
 
         loadFileCreator.setRowDel("####")
         loadFileCreator.setColDel("!~!~")
         loadFileCreator.openFile()
-        LOG.info("Writing the file")
-        loadFileCreator.writeToFile(inserts)
+        LOG.info("Writing the file for {} rows of table {}", inserts.size(), table.name)
+        try {
+            loadFileCreator.writeToFile(inserts)
+        } catch (e: RuntimeException) {
+            loadFileCreator.closeFileQuietly()
+            throw e
+        }
         loadFileCreator.closeFile()
 
         LOG.info("Executing the SQL")
@@ -15,14 +15,10 @@
  */
 package com.gs.obevo.db.impl.platforms.sybaseiq.iqload;
 
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.sql.Timestamp;
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.nio.charset.Charset;
+import java.util.Calendar;
 
 import org.apache.commons.beanutils.ConvertUtilsBean;
 import org.apache.commons.beanutils.Converter;
@@ -31,11 +27,6 @@ import org.eclipse.collections.api.block.function.Function;
 import org.eclipse.collections.api.list.MutableList;
 import org.eclipse.collections.api.partition.list.PartitionMutableList;
 import org.eclipse.collections.impl.block.factory.Predicates;
-import org.eclipse.collections.impl.factory.Lists;
-import org.joda.time.LocalDate;
-import org.joda.time.LocalDateTime;
-import org.joda.time.format.DateTimeFormat;
-import org.joda.time.format.DateTimeFormatter;
 
 class IqLoadFileCreator {
     private final DataExtractor dataExtractor;
@@ -55,7 +46,7 @@ class IqLoadFileCreator {
 
     private final File iqLoadDir;
     private final String loadFilePrefix;
-    private BufferedWriter bw;
+    private IqLoadFileWriter writer;
     private String colDel = "~@#~";
     private String rowDel = "\n"; // So that the column delimiter is rendered to IQ
     private final ConvertUtilsBean cub = new ConvertUtilsBean();
@@ -106,50 +97,49 @@ class IqLoadFileCreator {
                     throw new RuntimeException("Failed to create load dirs " + this.iqLoadDir.getAbsolutePath());
                 }
             }
-            this.bw = new BufferedWriter(new FileWriter(this.fileToWrite));
+            this.writer = new IqLoadFileWriter(this.fileToWrite, Charset.defaultCharset(), this.colDel, this.rowDel, IqLoadFileWriter.DEFAULT_BUFFER_SIZE);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
 
-    private void writeToFile(Object obj) {
-        // read the bean contents via reflection and write them to a file
-        MutableList<String> text = Lists.mutable.empty();
+    private void writeToFile(Object obj) throws IOException {
+        // read the bean contents via the extractor and write them to the file
         for (FieldToColumnMapping mapping : this.mappingsWithoutDefaults) {
-            try {
-                Object fieldVal = this.dataExtractor.extractValue(obj, mapping.getFieldName());
-                String outputString = fieldVal == null ? "(null)" : this.cub.convert(fieldVal);
-
-                if (outputString.contains(this.colDel)) {
-                    throw new IllegalArgumentException("Translated string " + outputString
-                            + " contains the column delimiter " + this.colDel
-                            + "; please choose another column delimiter (otherwise, this will cause issues)");
-                }
-                text.add(outputString);
-            } catch (Exception e) {
-                throw new RuntimeException(e);
-            }
+            this.writer.writeCell(this.dataExtractor.extractValue(obj, mapping.getFieldName()));
         }
+        this.writer.endRow();
+    }
 
+    /**
+     * Currently the bean is the only input we have. In future, we will support hashmap KVP or other forms of entry
+     */
+    public void writeToFile(Iterable<?> inputs) {
         try {
-            this.bw.write(text.makeString("", this.colDel, ""));
-            this.bw.write(this.rowDel);
+            for (Object obj : inputs) {
+                this.writeToFile(obj);
+            }
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
 
     /**
-     * Currently the bean is the only input we have. In future, we will support hashmap KVP or other forms of entry
+     * Closes the file; this writes out the rows still buffered, and so must be called before running the load command.
      */
-    public void writeToFile(Iterable<?> inputs) {
-        for (Object obj : inputs) {
-            this.writeToFile(obj);
+    public void closeFile() {
+        try {
+            this.writer.close();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write the load file " + this.fileToWrite, e);
         }
     }
 
-    public void closeFile() {
-        IOUtils.closeQuietly(this.bw);
+    /**
+     * Closes the file without reporting errors, e.g. for cleaning up after a failed write.
+     */
+    public void closeFileQuietly() {
+        IOUtils.closeQuietly(this.writer);
     }
 
     public String getIdLoadCommand(String schemaName) {
@@ -198,38 +188,11 @@ class IqLoadFileCreator {
      */
 
     private static class SybaseIqLoadFieldConverter implements Converter {
-
-        private static final DateTimeFormatter JODA_DATE_FORMAT = DateTimeFormat.forPattern("yyyy-MM-dd");
-
-        /*
-         * this format string is for timestamp objects, which maintain nanosecond precision. Since none of the standard
-         * formatters support printing to this precision, we need to write our own format string. To maintain backward
-         * compatibility, we require nanosecond precision. As dates in cobra at present have up to 6 digits of
-         * nanoseconds, and CDM-based replication joins on these dates to determine which records to OUT_Z To understand
-         * this format string, see http://docs.oracle.com/javase/1.5.0/docs/api/java/util/Formatter.html#syntax
-         */
-        private static final String TIMESTAMP_FORMAT_STRING_WITH_NANOS = "%1$tY-%1$tm-%1$td %1$tH:%1$tM:%1$tS.%2$09d";
-        private static final String DATE_TIME_FORMAT_STRING = "yyyy-MM-dd HH:mm:ss.SSS";
-
-        private static final DateTimeFormatter JODA_DATETIME_FORMAT = DateTimeFormat
-                .forPattern(DATE_TIME_FORMAT_STRING);
-
         @Override
         public Object convert(@SuppressWarnings("rawtypes") Class clazz, Object arg1) {
-            if (arg1 instanceof LocalDate) {
-                return JODA_DATE_FORMAT.print((LocalDate) arg1);
-            } else if (arg1 instanceof LocalDateTime) {
-                return JODA_DATETIME_FORMAT.print((LocalDateTime) arg1);
-            } else if (arg1 instanceof Timestamp) {
-                return String.format(TIMESTAMP_FORMAT_STRING_WITH_NANOS, arg1, ((Timestamp) arg1).getNanos());
-            } else if (arg1 instanceof Date) {
-
-                // we need to create the date format object here, because it is not thread safe.
-                DateFormat jdkDatetimeFormat = new SimpleDateFormat(DATE_TIME_FORMAT_STRING);
-                return jdkDatetimeFormat.format((Date) arg1);
-            } else {
-                return arg1.toString();
-            }
+            StringBuilder sb = new StringBuilder();
+            IqLoadFileWriter.appendValue(sb, arg1, Calendar.getInstance());
+            return sb.toString();
         }
     }
 
@@ -0,0 +1,252 @@
+/**
+ * Copyright 2017 Goldman Sachs.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.gs.obevo.db.impl.platforms.sybaseiq.iqload;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Date;
+
+import org.joda.time.LocalDate;
+import org.joda.time.LocalDateTime;
+
+/**
+ * Writes the rows of an IQ load file to a {@link FileChannel} via a reusable byte buffer.
+ *
+ * The cell values are formatted into a reusable character buffer instead of a String per cell, and are then encoded
+ * directly into the byte buffer, which is written to the channel whenever it is full.
+ *
+ * Instances are not thread-safe; each load file should have its own writer.
+ */
+class IqLoadFileWriter implements Closeable {
+    static final String NULL_VALUE = "(null)";
+    static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final CharsetEncoder encoder;
+    /**
+     * Whether the charset encodes the ASCII characters as the same single bytes, in which case we can put those into
+     * the buffer without going through the encoder.
+     */
+    private final boolean asciiCompatible;
+    private final String colDel;
+    private final String rowDel;
+    private final StringBuilder cellText = new StringBuilder(64);
+    private final Calendar calendar = Calendar.getInstance();
+    private boolean firstCellInRow = true;
+
+    IqLoadFileWriter(File file, Charset charset, String colDel, String rowDel, int bufferSize) throws IOException {
+        if (bufferSize < 16) {
+            throw new IllegalArgumentException("bufferSize must be at least 16 bytes; got " + bufferSize);
+        }
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        this.buffer = ByteBuffer.allocateDirect(bufferSize);
+        this.encoder = charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.asciiCompatible = isAsciiCompatible(charset);
+        this.colDel = colDel;
+        this.rowDel = rowDel;
+    }
+
+    private static boolean isAsciiCompatible(Charset charset) {
+        char[] asciiChars = new char[0x80];
+        for (char c = 0; c < asciiChars.length; c++) {
+            asciiChars[c] = c;
+        }
+        String ascii = new String(asciiChars);
+        return Arrays.equals(ascii.getBytes(StandardCharsets.US_ASCII), ascii.getBytes(charset));
+    }
+
+    /**
+     * Writes the next cell of the current row, preceded by the column delimiter if it is not the first cell.
+     */
+    void writeCell(Object value) throws IOException {
+        CharSequence text;
+        if (value == null) {
+            text = NULL_VALUE;
+        } else if (value instanceof CharSequence) {
+            text = (CharSequence) value;
+        } else {
+            cellText.setLength(0);
+            appendValue(cellText, value, calendar);
+            text = cellText;
+        }
+
+        if (indexOf(text, colDel) >= 0) {
+            throw new IllegalArgumentException("Translated string " + text
+                    + " contains the column delimiter " + this.colDel
+                    + "; please choose another column delimiter (otherwise, this will cause issues)");
+        }
+
+        if (!firstCellInRow) {
+            writeText(colDel);
+        }
+        writeText(text);
+        firstCellInRow = false;
+    }
+
+    /**
+     * Ends the current row with the row delimiter.
+     */
+    void endRow() throws IOException {
+        writeText(rowDel);
+        firstCellInRow = true;
+    }
+
+    private void writeText(CharSequence text) throws IOException {
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c >= 0x80 || !asciiCompatible) {
+                writeEncoded(text, i, length);
+                return;
+            }
+            if (!buffer.hasRemaining()) {
+                flushBuffer();
+            }
+            buffer.put((byte) c);
+        }
+    }
+
+    private void writeEncoded(CharSequence text, int start, int end) throws IOException {
+        CharBuffer chars = CharBuffer.wrap(text, start, end);
+        encoder.reset();
+        while (encoder.encode(chars, buffer, true) == CoderResult.OVERFLOW) {
+            flushBuffer();
+        }
+        while (encoder.flush(buffer) == CoderResult.OVERFLOW) {
+            flushBuffer();
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Writes out the buffered content and closes the file.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flushBuffer();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private static int indexOf(CharSequence text, String searchString) {
+        int searchLength = searchString.length();
+        outer:
+        for (int i = 0; i <= text.length() - searchLength; i++) {
+            for (int j = 0; j < searchLength; j++) {
+                if (text.charAt(i + j) != searchString.charAt(j)) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Appends the text to load into IQ for the given non-null value.
+     *
+     * The JDK timestamps are written with nanosecond precision, which none of the standard formatters support, to keep
+     * the precision of the source data; the other date types are written to millisecond precision.
+     *
+     * @param calendar The calendar used to format the JDK dates; it is not thread-safe, and so must not be shared
+     * across threads.
+     */
+    static void appendValue(StringBuilder sb, Object value, Calendar calendar) {
+        if (value instanceof LocalDate) {
+            LocalDate date = (LocalDate) value;
+            appendDate(sb, date.getYear(), date.getMonthOfYear(), date.getDayOfMonth());
+        } else if (value instanceof LocalDateTime) {
+            LocalDateTime dateTime = (LocalDateTime) value;
+            appendDate(sb, dateTime.getYear(), dateTime.getMonthOfYear(), dateTime.getDayOfMonth());
+            appendTime(sb, dateTime.getHourOfDay(), dateTime.getMinuteOfHour(), dateTime.getSecondOfMinute());
+            appendPadded(sb, dateTime.getMillisOfSecond(), 3);
+        } else if (value instanceof Timestamp) {
+            appendDateTime(sb, (Date) value, calendar);
+            appendPadded(sb, ((Timestamp) value).getNanos(), 9);
+        } else if (value instanceof Date) {
+            appendDateTime(sb, (Date) value, calendar);
+            appendPadded(sb, calendar.get(Calendar.MILLISECOND), 3);
+        } else if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            sb.append(((Number) value).longValue());
+        } else {
+            sb.append(value);
+        }
+    }
+
+    /**
+     * Appends the date in the yyyy-MM-dd HH:mm:ss. format, i.e. excluding the fractional seconds.
+     */
+    private static void appendDateTime(StringBuilder sb, Date date, Calendar calendar) {
+        calendar.setTime(date);
+        appendDate(sb, calendar.get(Calendar.YEAR), calendar.get(Calendar.MONTH) + 1, calendar.get(Calendar.DAY_OF_MONTH));
+        appendTime(sb, calendar.get(Calendar.HOUR_OF_DAY), calendar.get(Calendar.MINUTE), calendar.get(Calendar.SECOND));
+    }
+
+    private static void appendDate(StringBuilder sb, int year, int month, int day) {
+        appendPadded(sb, year, 4);
+        sb.append('-');
+        appendPadded(sb, month, 2);
+        sb.append('-');
+        appendPadded(sb, day, 2);
+    }
+
+    /**
+     * Appends the time in the " HH:mm:ss." format, i.e. with the separator from the date and to the fractional seconds.
+     */
+    private static void appendTime(StringBuilder sb, int hour, int minute, int second) {
+        sb.append(' ');
+        appendPadded(sb, hour, 2);
+        sb.append(':');
+        appendPadded(sb, minute, 2);
+        sb.append(':');
+        appendPadded(sb, second, 2);
+        sb.append('.');
+    }
+
+    private static void appendPadded(StringBuilder sb, int value, int width) {
+        for (int limit = 10; width > 1; width--, limit *= 10) {
+            if (value < limit) {
+                sb.append('0');
+            }
+        }
+        sb.append(value);
+    }
+}
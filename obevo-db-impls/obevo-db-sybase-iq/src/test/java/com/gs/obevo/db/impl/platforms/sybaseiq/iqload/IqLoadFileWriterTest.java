@@ -0,0 +1,71 @@
+/**
+ * Copyright 2017 Goldman Sachs.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.gs.obevo.db.impl.platforms.sybaseiq.iqload;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.Timestamp;
+import java.util.GregorianCalendar;
+
+import org.joda.time.LocalDate;
+import org.joda.time.LocalDateTime;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+
+public class IqLoadFileWriterTest {
+    @Rule
+    public final TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void testWriteRows() throws Exception {
+        File file = tempFolder.newFile("load.txt");
+        Timestamp timestamp = new Timestamp(new GregorianCalendar(2011, 0, 1, 11, 11, 5).getTimeInMillis());
+        timestamp.setNanos(123456789);
+
+        // a small buffer, so that the rows are written across several flushes
+        try (IqLoadFileWriter writer = new IqLoadFileWriter(file, StandardCharsets.UTF_8, "!~", "####", 16)) {
+            for (int i = 0; i < 3; i++) {
+                writer.writeCell(i);
+                writer.writeCell("café " + i);
+                writer.writeCell(null);
+                writer.writeCell(123456789012L);
+                writer.endRow();
+            }
+            writer.writeCell(new LocalDate("2011-02-02"));
+            writer.writeCell(new LocalDateTime("2011-01-01T11:11:00.5"));
+            writer.writeCell(timestamp);
+            writer.writeCell(new GregorianCalendar(2011, 1, 2).getTime());
+            writer.endRow();
+        }
+
+        assertEquals("0!~café 0!~(null)!~123456789012####"
+                        + "1!~café 1!~(null)!~123456789012####"
+                        + "2!~café 2!~(null)!~123456789012####"
+                        + "2011-02-02!~2011-01-01 11:11:00.500!~2011-01-01 11:11:05.123456789!~2011-02-02 00:00:00.000####",
+                new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testValueContainingColumnDelimiter() throws Exception {
+        try (IqLoadFileWriter writer = new IqLoadFileWriter(tempFolder.newFile("load.txt"), StandardCharsets.UTF_8, "-", "\n", 16)) {
+            writer.writeCell(new LocalDate("2011-02-02"));
+        }
+    }
+}
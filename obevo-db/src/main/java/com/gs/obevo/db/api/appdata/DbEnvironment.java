@@ -64,6 +64,13 @@ public class DbEnvironment extends Environment<DbPlatform> {
     private boolean invalidObjectCheckEnabled = true;
     private boolean reorgCheckEnabled = true;
     private int csvVersion = DbPlatformConfiguration.getInstance().getFeatureToggleVersion("csvVersion");
+    private int csvInsertBatchSize = 25;
+    private int csvUpdateBatchSize = 1;
+    private int csvDeleteBatchSize = 1;
+    private boolean auditLightweightReadEnabled = false;
+    private int auditBatchSize = 1;
+    private boolean connectionAffinityEnabled = false;
+    private int statementCacheSize = 0;
     private ImmutableMap<String, String> extraEnvAttrs;
     private ImmutableList<ServerDirectory> serverDirectories;
     private ImmutableList<Extension> extensions;
@@ -105,6 +112,13 @@ public class DbEnvironment extends Environment<DbPlatform> {
         this.invalidObjectCheckEnabled = env.invalidObjectCheckEnabled;
         this.reorgCheckEnabled = env.reorgCheckEnabled;
         this.csvVersion = env.csvVersion;
+        this.csvInsertBatchSize = env.csvInsertBatchSize;
+        this.csvUpdateBatchSize = env.csvUpdateBatchSize;
+        this.csvDeleteBatchSize = env.csvDeleteBatchSize;
+        this.auditLightweightReadEnabled = env.auditLightweightReadEnabled;
+        this.auditBatchSize = env.auditBatchSize;
+        this.connectionAffinityEnabled = env.connectionAffinityEnabled;
+        this.statementCacheSize = env.statementCacheSize;
         this.extraEnvAttrs = env.extraEnvAttrs;
     }
 
@@ -467,6 +481,94 @@ public class DbEnvironment extends Environment<DbPlatform> {
         this.csvVersion = csvVersion;
     }
 
+    /**
+     * Number of rows sent per JDBC batch for the inserts of the CSV static data loads.
+     */
+    public int getCsvInsertBatchSize() {
+        return csvInsertBatchSize;
+    }
+
+    public void setCsvInsertBatchSize(int csvInsertBatchSize) {
+        this.csvInsertBatchSize = csvInsertBatchSize;
+    }
+
+    /**
+     * Number of rows sent per JDBC batch for the updates of the CSV static data loads; 1 (the default) executes each
+     * update individually.
+     */
+    public int getCsvUpdateBatchSize() {
+        return csvUpdateBatchSize;
+    }
+
+    public void setCsvUpdateBatchSize(int csvUpdateBatchSize) {
+        this.csvUpdateBatchSize = csvUpdateBatchSize;
+    }
+
+    /**
+     * Number of rows sent per JDBC batch for the deletes of the CSV static data loads; 1 (the default) executes each
+     * delete individually.
+     */
+    public int getCsvDeleteBatchSize() {
+        return csvDeleteBatchSize;
+    }
+
+    public void setCsvDeleteBatchSize(int csvDeleteBatchSize) {
+        this.csvDeleteBatchSize = csvDeleteBatchSize;
+    }
+
+    /**
+     * Whether to read the audit table without the rollback content column, streaming the rows; the rollback content
+     * is then only read for rollback runs. Hence, an edit to only the rollback script of a deployed change is
+     * written to the audit table on the next rollback run instead of the next deploy.
+     */
+    public boolean isAuditLightweightReadEnabled() {
+        return auditLightweightReadEnabled;
+    }
+
+    public void setAuditLightweightReadEnabled(boolean auditLightweightReadEnabled) {
+        this.auditLightweightReadEnabled = auditLightweightReadEnabled;
+    }
+
+    /**
+     * Number of audit table rows to queue and write per JDBC batch during the deployment; 1 writes the row for each
+     * change as soon as the change is deployed. With larger values, the rows of up to this many deployed changes are
+     * not yet in the audit table if the process is killed.
+     */
+    public int getAuditBatchSize() {
+        return auditBatchSize;
+    }
+
+    public void setAuditBatchSize(int auditBatchSize) {
+        this.auditBatchSize = auditBatchSize;
+    }
+
+    /**
+     * Whether to keep a connection open per deploy thread while the changes are deployed, switching its schema only
+     * when a call is for a different schema than the previous one, instead of checking out a connection and setting
+     * its schema for each call.
+     */
+    public boolean isConnectionAffinityEnabled() {
+        return connectionAffinityEnabled;
+    }
+
+    public void setConnectionAffinityEnabled(boolean connectionAffinityEnabled) {
+        this.connectionAffinityEnabled = connectionAffinityEnabled;
+    }
+
+    /**
+     * Number of prepared statements to keep open per connection while the changes are deployed, so that the SQL
+     * repeated across changes (e.g. the audit table writes) is not prepared again for each change; 0 to not cache
+     * them. The statements are closed along with their connection, so this is best used with
+     * {@link #isConnectionAffinityEnabled()}.
+     */
+    public int getStatementCacheSize() {
+        return statementCacheSize;
+    }
+
+    public void setStatementCacheSize(int statementCacheSize) {
+        this.statementCacheSize = statementCacheSize;
+    }
+
     public ImmutableMap<String, String> getExtraEnvAttrs() {
         return extraEnvAttrs == null ? Maps.immutable.<String, String>empty() : extraEnvAttrs;
     }
@@ -104,6 +104,13 @@ public class DbEnvironmentXmlEnricher extends AbstractEnvironmentEnricher<DbEnvi
         if (csvVersion != null) {
             dbEnv.setCsvVersion(csvVersion);
         }
+        dbEnv.setCsvInsertBatchSize(getBatchSize(envCfg, "csvInsertBatchSize", 25));
+        dbEnv.setCsvUpdateBatchSize(getBatchSize(envCfg, "csvUpdateBatchSize", 1));
+        dbEnv.setCsvDeleteBatchSize(getBatchSize(envCfg, "csvDeleteBatchSize", 1));
+        dbEnv.setAuditLightweightReadEnabled(envCfg.getBoolean("auditLightweightReadEnabled", false));
+        dbEnv.setAuditBatchSize(getBatchSize(envCfg, "auditBatchSize", 1));
+        dbEnv.setConnectionAffinityEnabled(envCfg.getBoolean("connectionAffinityEnabled", false));
+        dbEnv.setStatementCacheSize(envCfg.getInt("statementCacheSize", 0));
 
         MutableMap<String, String> extraEnvAttrs = Maps.mutable.empty();
         for (String extraEnvAttr : dbPlatformConfiguration.getExtraEnvAttrs()) {
@@ -150,6 +157,14 @@ public class DbEnvironmentXmlEnricher extends AbstractEnvironmentEnricher<DbEnvi
         dbEnv.setAuditTableSql(envCfg.getString("auditTableSql"));
     }
 
+    private static int getBatchSize(ImmutableHierarchicalConfiguration envCfg, String attrName, int defaultBatchSize) {
+        int batchSize = envCfg.getInt(attrName, defaultBatchSize);
+        if (batchSize < 1) {
+            throw new IllegalArgumentException(attrName + " must be at least 1; instead, got [" + batchSize + "]");
+        }
+        return batchSize;
+    }
+
     private static Group convertCfgToGroup(ImmutableHierarchicalConfiguration cfg, Tokenizer tokenizer) {
         return new Group(tokenizer.tokenizeString(cfg.getString("name")));
     }
@@ -70,4 +70,37 @@ public interface SqlExecutor {
     default AuditLock lock(Connection conn) {
         return new InMemLock();
     }
+
+    /**
+     * Keeps the connections used by the executeWithinContext calls open until {@link #endConnectionAffinity()}, one
+     * per thread (or per thread and schema for platforms whose connections are bound to a schema), so that each call
+     * can reuse the thread's connection and only set the schema if it differs from the previous call's.
+     *
+     * At most maxConnections connections are kept open; other calls check out a connection as usual. The connections
+     * of the threads that have terminated are closed to make room for other threads.
+     */
+    default void startConnectionAffinity(int maxConnections) {
+    }
+
+    /**
+     * Closes the connections kept open since {@link #startConnectionAffinity(int)}. To be called once the calls that
+     * use them have completed.
+     */
+    default void endConnectionAffinity() {
+    }
+
+    /**
+     * Reuses the prepared statements that the JdbcHelper executes on the same connection until
+     * {@link #endStatementCache()}, keeping up to maxStatementsPerConnection statements open per connection. This pays
+     * off mostly in conjunction with {@link #startConnectionAffinity(int)}, as the statements of a connection are
+     * closed along with it.
+     */
+    default void startStatementCache(int maxStatementsPerConnection) {
+    }
+
+    /**
+     * Closes the statements cached since {@link #startStatementCache(int)}.
+     */
+    default void endStatementCache() {
+    }
 }
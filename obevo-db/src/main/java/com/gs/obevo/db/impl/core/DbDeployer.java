@@ -31,14 +31,15 @@ import com.gs.obevo.db.impl.core.checksum.ChecksumBreak;
 import com.gs.obevo.db.impl.core.checksum.ChecksumEntry;
 import com.gs.obevo.db.impl.core.checksum.ChecksumEntryInclusionPredicate;
 import com.gs.obevo.db.impl.core.checksum.DbChecksumManager;
+import com.gs.obevo.db.impl.core.metadata.CachingDbMetadataManager;
 import com.gs.obevo.dbmetadata.api.DaCatalog;
 import com.gs.obevo.dbmetadata.api.DaSchemaInfoLevel;
 import com.gs.obevo.dbmetadata.api.DaTable;
-import com.gs.obevo.dbmetadata.api.DbMetadataManager;
 import com.gs.obevo.impl.Changeset;
 import com.gs.obevo.impl.DeployMetricsCollector;
 import com.gs.obevo.impl.DeployStrategy;
 import com.gs.obevo.impl.DeployerPlugin;
+import com.gs.obevo.impl.ExecuteChangeCommand;
 import com.gs.obevo.util.lookuppredicate.LookupIndex;
 import org.apache.commons.dbutils.BasicRowProcessor;
 import org.eclipse.collections.api.block.function.Function;
@@ -65,21 +66,33 @@ public class DbDeployer implements DeployerPlugin<DbEnvironment> {
                     "Please double-check that you need this INIT.";
 
     private static final Logger LOG = LoggerFactory.getLogger(DbDeployer.class);
+    /**
+     * The change types that may modify other objects than the one they are named for, e.g. the referenced table of a
+     * foreign key; the whole metadata snapshot is invalidated after them.
+     */
+    private static final ImmutableSet<String> CROSS_OBJECT_CHANGE_TYPES = Sets.immutable.with(
+            ChangeType.MIGRATION_STR, ChangeType.UNCLASSIFIED_STR, ChangeType.FOREIGN_KEY_STR);
 
     private final ChangeAuditDao artifactDeployerDao;
     private final DeployExecutionDao deployExecutionDao;
     private final DeployMetricsCollector deployMetricsCollector;
-    private final DbMetadataManager dbMetadataManager;
+    private final CachingDbMetadataManager dbMetadataManager;
     private final SqlExecutor sqlExecutor;
     private final DbChecksumManager dbChecksumManager;
+    private final int maxAffinityConnections;
 
-    public DbDeployer(ChangeAuditDao artifactDeployerDao, DbMetadataManager dbMetadataManager, SqlExecutor sqlExecutor, DeployMetricsCollector deployMetricsCollector, DbChecksumManager dbChecksumManager, DeployExecutionDao deployExecutionDao) {
+    /**
+     * @param maxAffinityConnections The maximum number of connections to keep open during the deployment if
+     *                               {@link DbEnvironment#isConnectionAffinityEnabled()} is set.
+     */
+    public DbDeployer(ChangeAuditDao artifactDeployerDao, CachingDbMetadataManager dbMetadataManager, SqlExecutor sqlExecutor, DeployMetricsCollector deployMetricsCollector, DbChecksumManager dbChecksumManager, DeployExecutionDao deployExecutionDao, int maxAffinityConnections) {
         this.artifactDeployerDao = artifactDeployerDao;
         this.deployExecutionDao = deployExecutionDao;
         this.deployMetricsCollector = deployMetricsCollector;
         this.dbMetadataManager = dbMetadataManager;
         this.sqlExecutor = sqlExecutor;
         this.dbChecksumManager = dbChecksumManager;
+        this.maxAffinityConnections = maxAffinityConnections;
     }
 
     @Override
@@ -148,6 +161,38 @@ public class DbDeployer implements DeployerPlugin<DbEnvironment> {
         }
     }
 
+    @Override
+    public void beforeDeployChanges(DbEnvironment env) {
+        dbMetadataManager.startSnapshot();
+        if (env.isConnectionAffinityEnabled()) {
+            sqlExecutor.startConnectionAffinity(maxAffinityConnections);
+        }
+        if (env.getStatementCacheSize() > 0) {
+            sqlExecutor.startStatementCache(env.getStatementCacheSize());
+        }
+    }
+
+    @Override
+    public void afterDeployChangeCommand(DbEnvironment env, ExecuteChangeCommand changeCommand) {
+        for (Change change : changeCommand.getChanges()) {
+            if (CROSS_OBJECT_CHANGE_TYPES.contains(change.getChangeTypeName())) {
+                dbMetadataManager.invalidateAll();
+                return;
+            }
+            // static data changes only modify the rows of the table, not its metadata
+            if (!change.getChangeTypeName().equals(ChangeType.STATICDATA_STR)) {
+                dbMetadataManager.invalidate(change.getPhysicalSchema(env), change.getObjectName());
+            }
+        }
+    }
+
+    @Override
+    public void afterDeployChanges(DbEnvironment env) {
+        dbMetadataManager.endSnapshot();
+        sqlExecutor.endConnectionAffinity();
+        sqlExecutor.endStatementCache();
+    }
+
     @Override
     public void doPostDeployAction(DbEnvironment env, final ImmutableList<Change> sourceChanges) {
         if (env.isChecksumDetectionEnabled()) {
@@ -197,7 +242,8 @@ public class DbDeployer implements DeployerPlugin<DbEnvironment> {
                 env.getPlatform().convertDbObjectName().valueOf(getArtifactDeployerDao().getAuditContainerName()),
                 env.getPlatform().convertDbObjectName().valueOf(dbChecksumManager.getChecksumContainerName()),
                 env.getPlatform().convertDbObjectName().valueOf(getDeployExecutionDao().getExecutionContainerName()),
-                env.getPlatform().convertDbObjectName().valueOf(getDeployExecutionDao().getExecutionAttributeContainerName())
+                env.getPlatform().convertDbObjectName().valueOf(getDeployExecutionDao().getExecutionAttributeContainerName()),
+                env.getPlatform().convertDbObjectName().valueOf(DeployExecutionDao.CHANGE_DURATION_TABLE_NAME)
         ));
         ObjectTypeAndNamePredicateBuilder auditTablePredicateBuilder = new ObjectTypeAndNamePredicateBuilder(tablesToExclude.toImmutable(), ObjectTypeAndNamePredicateBuilder.FilterType.EXCLUDE);
         Predicates<? super ChecksumEntry> auditTablePredicate = auditTablePredicateBuilder.build(ChecksumEntry.TO_OBJECT_TYPE, ChecksumEntry.TO_NAME1);
@@ -45,9 +45,9 @@ import com.gs.obevo.db.impl.core.envinfrasetup.EnvironmentInfraSetup
 import com.gs.obevo.db.impl.core.envinfrasetup.NoOpEnvironmentInfraSetup
 import com.gs.obevo.db.impl.core.jdbc.DataSourceFactory
 import com.gs.obevo.db.impl.core.jdbc.SingleConnectionDataSource
+import com.gs.obevo.db.impl.core.metadata.CachingDbMetadataManager
 import com.gs.obevo.db.impl.core.reader.BaselineTableChangeParser
 import com.gs.obevo.db.impl.core.reader.PrepareDbChangeForDb
-import com.gs.obevo.dbmetadata.api.DbMetadataManager
 import com.gs.obevo.impl.ChangeTypeBehaviorRegistry
 import com.gs.obevo.impl.ChangeTypeBehaviorRegistry.ChangeTypeBehaviorRegistryBuilder
 import com.gs.obevo.impl.DeployerPlugin
@@ -274,11 +274,11 @@ abstract class DbDeployerAppContextImpl : AbstractDeployerAppContext<DbEnvironme
         }
     }
 
-    override fun getDbMetadataManager(): DbMetadataManager {
+    override fun getDbMetadataManager(): CachingDbMetadataManager {
         return this.singleton("getDbMetadataManager") {
             val dbMetadataManager = platform().dbMetadataManager
             dbMetadataManager.setDataSource(managedDataSource)
-            dbMetadataManager
+            CachingDbMetadataManager(dbMetadataManager)
         }
     }
 
@@ -311,8 +311,11 @@ abstract class DbDeployerAppContextImpl : AbstractDeployerAppContext<DbEnvironme
 
     override fun getDeployerPlugin(): DeployerPlugin<*> {
         return this.singleton("getDeployerPlugin") {
+            // leaving two connections of the managed datasource for the calls beyond the connection affinity, e.g. the
+            // nested calls for another schema and the deploy lock that some platforms hold on its own connection
             DbDeployer(
-                    artifactDeployerDao, dbMetadataManager, sqlExecutor, deployStatsTracker(), dbChecksumManager, deployExecutionDao
+                    artifactDeployerDao, dbMetadataManager, sqlExecutor, deployStatsTracker(), dbChecksumManager, deployExecutionDao,
+                    Math.max(1, numThreads - 1)
             )
         }
     }
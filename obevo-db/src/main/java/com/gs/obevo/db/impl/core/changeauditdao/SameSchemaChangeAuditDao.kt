@@ -38,6 +38,7 @@ import com.gs.obevo.dbmetadata.api.DbMetadataManager
 import com.gs.obevo.impl.ChangeTypeBehaviorRegistry
 import com.gs.obevo.util.VisibleForTesting
 import com.gs.obevo.util.knex.InternMap
+import org.apache.commons.dbutils.ResultSetHandler
 import org.apache.commons.dbutils.handlers.MapListHandler
 import org.eclipse.collections.api.list.ImmutableList
 import org.eclipse.collections.impl.block.function.checked.ThrowingFunction
@@ -48,6 +49,7 @@ import org.joda.time.DateTime
 import org.joda.time.format.DateTimeFormat
 import org.slf4j.LoggerFactory
 import java.sql.Connection
+import java.sql.Statement
 import java.sql.Timestamp
 
 /**
@@ -68,6 +70,14 @@ class SameSchemaChangeAuditDao(private val env: DbEnvironment, private val sqlEx
     private val currentTimestamp: Timestamp
         get() = Timestamp(DateTime().millis)
 
+    private val pendingAuditRows = LinkedHashMap<PhysicalSchema, MutableList<PendingAuditRow>>()
+    private var pendingAuditRowCount = 0
+    /**
+     * Held while a batch of audit rows is written, so that the batches are written in the order they were queued;
+     * the DAO lock itself is only held while the rows are queued or taken for a batch.
+     */
+    private val flushLock = Any()
+
     init {
 
         val convertDbObjectName = env.platform.convertDbObjectName()
@@ -223,80 +233,157 @@ class SameSchemaChangeAuditDao(private val env: DbEnvironment, private val sqlEx
     }
 
     override fun insertNewChange(change: Change, deployExecution: DeployExecution) {
-        sqlExecutor.executeWithinContext(change.getPhysicalSchema(env)) { conn -> insertNewChangeInternal(conn, change, deployExecution) }
+        if (env.auditBatchSize > 1) {
+            queueAuditRow(change, deployExecution, false)
+        } else {
+            sqlExecutor.executeWithinContext(change.getPhysicalSchema(env)) { conn -> insertNewChangeInternal(conn, change, deployExecution) }
+        }
     }
 
     private fun insertNewChangeInternal(conn: Connection, change: Change, deployExecution: DeployExecution) {
-        val jdbcTemplate = sqlExecutor.jdbcTemplate
+        val currentTimestamp = currentTimestamp
+        sqlExecutor.jdbcTemplate.update(conn, getInsertSql(change.getPhysicalSchema(env)), *getInsertArgs(change, deployExecution, currentTimestamp))
+    }
+
+    private fun getInsertSql(physicalSchema: PhysicalSchema): String {
+        return "INSERT INTO " + env.platform.getSchemaPrefix(physicalSchema) + dbChangeTable +
+                " (ARTFTYPE, DBSCHEMA, ACTIVE, CHANGETYPE, CONTENTHASH, " + changeNameColumn + ", OBJECTNAME, " +
+                rollbackContentColumn + ", " + deployUserIdColumn + ", " + timeInsertedColumn + ", " + timeUpdatedColumn + ", " + insertDeployExecutionIdColumn + ", " + updateDeployExecutionIdColumn + ") " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)"
+    }
+
+    private fun getInsertArgs(change: Change, deployExecution: DeployExecution, currentTimestamp: Timestamp): Array<Any?> {
+        return arrayOf(if (change is ChangeIncremental) "I" else "R", change.schema, if (change.isActive) 1 else 0, change.changeType.name, change.contentHash, change.changeName, change.objectName, change.rollbackContent, deployUserId, currentTimestamp, currentTimestamp, deployExecution.id, deployExecution.id)
+    }
 
+    override fun updateOrInsertChange(change: Change, deployExecution: DeployExecution) {
+        if (env.auditBatchSize > 1) {
+            queueAuditRow(change, deployExecution, true)
+        } else {
+            sqlExecutor.executeWithinContext(change.getPhysicalSchema(env)) { conn ->
+                val numRowsUpdated = updateInternal(conn, change, deployExecution)
+                if (numRowsUpdated == 0) {
+                    insertNewChangeInternal(conn, change, deployExecution)
+                }
+            }
+        }
+    }
+
+    /**
+     * Queues the audit row for the change to be written with the next batch, for when auditBatchSize is set. The
+     * values are captured now, as the change may be modified before the batch is written.
+     */
+    private fun queueAuditRow(change: Change, deployExecution: DeployExecution, upsert: Boolean) {
         val currentTimestamp = currentTimestamp
-        jdbcTemplate.update(
-                conn, "INSERT INTO " + env.platform.getSchemaPrefix(change.getPhysicalSchema(env))
-                + dbChangeTable +
-                " (ARTFTYPE, DBSCHEMA, ACTIVE, CHANGETYPE, CONTENTHASH, " + changeNameColumn + ", OBJECTNAME, "
-                + rollbackContentColumn + ", " + deployUserIdColumn + ", " + timeInsertedColumn + ", " + timeUpdatedColumn + ", " + insertDeployExecutionIdColumn + ", " + updateDeployExecutionIdColumn + ") " +
-                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)", if (change is ChangeIncremental) "I" else "R", change.schema, if (change.isActive) 1 else 0, change.changeType.name, change.contentHash, change.changeName, change.objectName, change.rollbackContent, deployUserId, currentTimestamp, currentTimestamp, deployExecution.id, deployExecution.id
+        val pendingAuditRow = PendingAuditRow(
+                Pair(change.objectName, change.changeName),
+                upsert,
+                getInsertArgs(change, deployExecution, currentTimestamp),
+                if (upsert) getUpdateArgs(change, deployExecution, currentTimestamp) else null
         )
+        val batchFull = synchronized(this) {
+            pendingAuditRows.getOrPut(change.getPhysicalSchema(env)) { mutableListOf() }.add(pendingAuditRow)
+            pendingAuditRowCount++
+            pendingAuditRowCount >= env.auditBatchSize
+        }
+
+        if (batchFull) {
+            flush()
+        }
     }
 
-    override fun updateOrInsertChange(change: Change, deployExecution: DeployExecution) {
-        sqlExecutor.executeWithinContext(change.getPhysicalSchema(env)) { conn ->
-            val numRowsUpdated = updateInternal(conn, change, deployExecution)
-            if (numRowsUpdated == 0) {
-                insertNewChangeInternal(conn, change, deployExecution)
+    /**
+     * Writes the queued audit rows, using one connection per physical schema and JDBC batches for the rows. The rows
+     * are taken off the queue under the DAO lock and written outside of it, so that the other deploy threads can keep
+     * queueing rows meanwhile.
+     */
+    override fun flush() {
+        synchronized(flushLock) {
+            val auditRowsBySchema = takePendingAuditRows() ?: return
+            for ((physicalSchema, auditRows) in auditRowsBySchema) {
+                sqlExecutor.executeWithinContext(physicalSchema) { conn -> writeAuditRows(conn, physicalSchema, auditRows) }
+            }
+        }
+    }
+
+    @Synchronized
+    private fun takePendingAuditRows(): Map<PhysicalSchema, List<PendingAuditRow>>? {
+        if (pendingAuditRowCount == 0) {
+            return null
+        }
+        val auditRowsBySchema = LinkedHashMap<PhysicalSchema, List<PendingAuditRow>>(pendingAuditRows)
+        pendingAuditRows.clear()
+        pendingAuditRowCount = 0
+        return auditRowsBySchema
+    }
+
+    private fun writeAuditRows(conn: Connection, physicalSchema: PhysicalSchema, auditRows: List<PendingAuditRow>) {
+        val jdbcTemplate = sqlExecutor.jdbcTemplate
+        val insertSql = getInsertSql(physicalSchema)
+        val updateSql = getUpdateSql(physicalSchema)
+
+        // Rows are written in the order they were queued, in runs of the same operation. A run ends at a repeated key
+        // so that an upsert sees the row inserted by an earlier request for the same change
+        val runs = mutableListOf<MutableList<PendingAuditRow>>()
+        val runKeys = mutableSetOf<Pair<String, String>>()
+        for (auditRow in auditRows) {
+            val currentRun = runs.lastOrNull()
+            if (currentRun == null || currentRun[0].upsert != auditRow.upsert || runKeys.contains(auditRow.key)) {
+                runs.add(mutableListOf(auditRow))
+                runKeys.clear()
+            } else {
+                currentRun.add(auditRow)
+            }
+            runKeys.add(auditRow.key)
+        }
+
+        for (run in runs) {
+            val rowsToInsert = if (run[0].upsert) {
+                val updateCounts = jdbcTemplate.batchUpdate(conn, updateSql, run.map { it.updateArgs!! }.toTypedArray())
+                run.filterIndexed { i, auditRow ->
+                    if (updateCounts[i] == Statement.SUCCESS_NO_INFO) {
+                        // the driver does not report the batch counts; we redo the update individually to find out
+                        jdbcTemplate.update(conn, updateSql, *auditRow.updateArgs!!) == 0
+                    } else {
+                        updateCounts[i] == 0
+                    }
+                }
+            } else {
+                run
+            }
+
+            if (rowsToInsert.isNotEmpty()) {
+                jdbcTemplate.batchUpdate(conn, insertSql, rowsToInsert.map { it.insertArgs }.toTypedArray())
             }
         }
     }
 
     override fun getDeployedChanges(): ImmutableList<Change> {
-        val convertDbObjectName = env.platform.convertDbObjectName()
+        flush()
 
         val artfs = env.schemaNames.flatMap { schema ->
             val deployExecutionsById = deployExecutionDao.getDeployExecutions(schema).associateBy(DeployExecution::getId)
 
             val physicalSchema = env.getPhysicalSchema(schema)
             sqlExecutor.executeWithinContext(physicalSchema, ThrowingFunction<Connection, List<Change>> { conn ->
-                val jdbcTemplate = sqlExecutor.jdbcTemplate
                 val artifactTable = queryAuditTable(physicalSchema)
                         ?: return@ThrowingFunction emptyList()  // If the artifact tables does not exist, then return empty list for that schema
 
-                return@ThrowingFunction jdbcTemplate.query(
-                        conn, "SELECT * FROM " + env.platform.getSchemaPrefix(physicalSchema) + dbChangeTable
-                        + " WHERE DBSCHEMA = '" + schema + "'", MapListHandler()).map { resultSet ->
-                    val artfType = resultSet[convertDbObjectName.valueOf("ARTFTYPE")] as String
-                    val artf: Change
-                    if (artfType == "I") {
-                        artf = ChangeIncremental()
-                    } else if (artfType == "R") {
-                        artf = ChangeRerunnable()
-                    } else {
-                        throw IllegalArgumentException("This type does not exist $artfType")
+                // for backward compatibility, make sure the ROLLBACKCONTENT column exists
+                val rollbackContentColumnExists = artifactTable.getColumn(rollbackContentColumn) != null
+
+                if (env.isAuditLightweightReadEnabled) {
+                    getDeployedChangesLightweight(conn, physicalSchema, schema, artifactTable, rollbackContentColumnExists, deployExecutionsById)
+                } else {
+                    sqlExecutor.jdbcTemplate.query(
+                            conn, "SELECT * FROM " + env.platform.getSchemaPrefix(physicalSchema) + dbChangeTable
+                            + " WHERE DBSCHEMA = '" + schema + "'", MapListHandler()).map { resultSet ->
+                        val artf = createChange({ resultSet[it] }, deployExecutionsById)
+                        if (rollbackContentColumnExists) {
+                            artf.rollbackContent = resultSet[rollbackContentColumn] as String?
+                        }
+                        artf
                     }
-
-                    var changeType = resultSet[changeTypeColumn] as String
-                    changeType = if (changeType == OLD_STATICDATA_CHANGETYPE) ChangeType.STATICDATA_STR else changeType
-                    artf.changeKey = ChangeKey(
-                            InternMap.instance().intern(resultSet[convertDbObjectName.valueOf("DBSCHEMA")] as String),
-                            env.platform.getChangeType(changeType),
-                            InternMap.instance().intern(resultSet[convertDbObjectName.valueOf("OBJECTNAME")] as String),
-                            resultSet[convertDbObjectName.valueOf(changeNameColumn)] as String
-                    )
-
-                    artf.isActive = env.platform.getIntegerValue(resultSet[convertDbObjectName.valueOf("ACTIVE")]) == 1
-                    // change METADATA to STATICDATA for backward compatability
-
-                    artf.contentHash = resultSet[convertDbObjectName.valueOf("CONTENTHASH")] as String?
-                    // these are repeated often
-
-                    artf.timeInserted = env.platform.getTimestampValue(resultSet[convertDbObjectName.valueOf(timeInsertedColumn)])
-                    artf.timeUpdated = env.platform.getTimestampValue(resultSet[convertDbObjectName.valueOf(timeUpdatedColumn)])
-                    artf.deployExecution = deployExecutionsById[env.platform.getLongValue(resultSet[updateDeployExecutionIdColumn])]
-
-                    // for backward compatibility, make sure the ROLLBACKCONTENT column exists
-                    if (artifactTable.getColumn(rollbackContentColumn) != null) {
-                        artf.rollbackContent = resultSet[rollbackContentColumn] as String?
-                    }
-                    artf
                 }
             })
         }
@@ -312,7 +399,113 @@ class SameSchemaChangeAuditDao(private val env: DbEnvironment, private val sqlEx
         return Lists.immutable.ofAll(artfs.toSet().toList().filter { env.schemaNames.contains(it.schema) })
     }
 
+    /**
+     * Reads only the columns needed to compare against the source changes, streaming the rows instead of holding them
+     * all as maps. The rollback content column is left out, as it is large and rarely needed; it is read on demand via
+     * [RollbackContentLoader].
+     */
+    private fun getDeployedChangesLightweight(conn: Connection, physicalSchema: PhysicalSchema, schema: String, artifactTable: DaTable,
+                                              rollbackContentColumnExists: Boolean, deployExecutionsById: Map<Long, DeployExecution>): List<Change> {
+        val convertDbObjectName = env.platform.convertDbObjectName()
+        val columns = listOf("ARTFTYPE", "DBSCHEMA", "OBJECTNAME", changeNameColumn, "ACTIVE", changeTypeColumn, "CONTENTHASH",
+                timeInsertedColumn, timeUpdatedColumn, updateDeployExecutionIdColumn)
+                .map(convertDbObjectName::valueOf)
+                .filter { artifactTable.getColumn(it) != null }
+                .toSet()
+
+        val rollbackContentLoader = if (rollbackContentColumnExists) RollbackContentLoader(physicalSchema, schema) else null
+
+        return sqlExecutor.jdbcTemplate.query(
+                conn, "SELECT " + columns.joinToString(", ") + " FROM " + env.platform.getSchemaPrefix(physicalSchema) + dbChangeTable
+                + " WHERE DBSCHEMA = '" + schema + "'", AUDIT_FETCH_SIZE, ResultSetHandler<List<Change>> { rs ->
+            val changes = mutableListOf<Change>()
+            while (rs.next()) {
+                val artf = createChange({ if (columns.contains(it)) rs.getObject(it) else null }, deployExecutionsById)
+                if (rollbackContentLoader != null && artf is ChangeIncremental) {
+                    artf.setRollbackContentLoader { rollbackContentLoader.getRollbackContent(artf) }
+                }
+                changes.add(artf)
+            }
+            changes
+        })
+    }
+
+    private fun createChange(columnValue: (String) -> Any?, deployExecutionsById: Map<Long, DeployExecution>): Change {
+        val convertDbObjectName = env.platform.convertDbObjectName()
+
+        val artfType = columnValue(convertDbObjectName.valueOf("ARTFTYPE")) as String
+        val artf: Change
+        if (artfType == "I") {
+            artf = ChangeIncremental()
+        } else if (artfType == "R") {
+            artf = ChangeRerunnable()
+        } else {
+            throw IllegalArgumentException("This type does not exist $artfType")
+        }
+
+        var changeType = columnValue(changeTypeColumn) as String
+        changeType = if (changeType == OLD_STATICDATA_CHANGETYPE) ChangeType.STATICDATA_STR else changeType
+        artf.changeKey = ChangeKey(
+                InternMap.instance().intern(columnValue(convertDbObjectName.valueOf("DBSCHEMA")) as String),
+                env.platform.getChangeType(changeType),
+                InternMap.instance().intern(columnValue(convertDbObjectName.valueOf("OBJECTNAME")) as String),
+                columnValue(convertDbObjectName.valueOf(changeNameColumn)) as String
+        )
+
+        artf.isActive = env.platform.getIntegerValue(columnValue(convertDbObjectName.valueOf("ACTIVE"))) == 1
+        // change METADATA to STATICDATA for backward compatability
+
+        artf.contentHash = columnValue(convertDbObjectName.valueOf("CONTENTHASH")) as String?
+        // these are repeated often
+
+        artf.timeInserted = env.platform.getTimestampValue(columnValue(convertDbObjectName.valueOf(timeInsertedColumn)))
+        artf.timeUpdated = env.platform.getTimestampValue(columnValue(convertDbObjectName.valueOf(timeUpdatedColumn)))
+        artf.deployExecution = deployExecutionsById[env.platform.getLongValue(columnValue(updateDeployExecutionIdColumn))]
+        return artf
+    }
+
+    /**
+     * Reads the rollback content of the incremental changes of a schema on the first request, for the lightweight
+     * audit read. The content is read for all the changes at once, as the deployer compares the rollback content of
+     * each incremental change that it finds in the source, and one query per change would be slower than the full read.
+     * Rerunnable changes do not have rollback content, so they are not read.
+     */
+    private inner class RollbackContentLoader(private val physicalSchema: PhysicalSchema, private val schema: String) {
+        private var rollbackContents: MutableMap<Pair<String, String>, String?>? = null
+
+        @Synchronized
+        fun getRollbackContent(change: Change): String? {
+            var rollbackContents = this.rollbackContents
+            if (rollbackContents == null) {
+                rollbackContents = readRollbackContents()
+                this.rollbackContents = rollbackContents
+            }
+            // each change requests its content once, so we release it here
+            return rollbackContents.remove(Pair(change.objectName, change.changeName))
+        }
+
+        private fun readRollbackContents(): MutableMap<Pair<String, String>, String?> {
+            val convertDbObjectName = env.platform.convertDbObjectName()
+            val objectNameColumn = convertDbObjectName.valueOf("OBJECTNAME")
+            val changeNameColumn = convertDbObjectName.valueOf(this@SameSchemaChangeAuditDao.changeNameColumn)
+
+            return sqlExecutor.executeWithinContext(physicalSchema, ThrowingFunction<Connection, MutableMap<Pair<String, String>, String?>> { conn ->
+                sqlExecutor.jdbcTemplate.query(
+                        conn, "SELECT " + objectNameColumn + ", " + changeNameColumn + ", " + rollbackContentColumn
+                        + " FROM " + env.platform.getSchemaPrefix(physicalSchema) + dbChangeTable
+                        + " WHERE DBSCHEMA = '" + schema + "' AND ARTFTYPE = 'I'", AUDIT_FETCH_SIZE, ResultSetHandler { rs ->
+                    val rollbackContents = mutableMapOf<Pair<String, String>, String?>()
+                    while (rs.next()) {
+                        rollbackContents[Pair(rs.getString(objectNameColumn), rs.getString(changeNameColumn))] = rs.getObject(rollbackContentColumn) as String?
+                    }
+                    rollbackContents
+                })
+            })
+        }
+    }
+
     override fun deleteChange(change: Change) {
+        flush()
         sqlExecutor.executeWithinContext(change.getPhysicalSchema(env)) { conn ->
             sqlExecutor.jdbcTemplate.update(
                     conn, "DELETE FROM " + env.platform.getSchemaPrefix(change.getPhysicalSchema(env))
@@ -321,6 +514,7 @@ class SameSchemaChangeAuditDao(private val env: DbEnvironment, private val sqlEx
     }
 
     override fun deleteObjectChanges(change: Change) {
+        flush()
         sqlExecutor.executeWithinContext(change.getPhysicalSchema(env)) { conn ->
             sqlExecutor.jdbcTemplate.update(
                     conn, "DELETE FROM " + env.platform.getSchemaPrefix(change.getPhysicalSchema(env))
@@ -340,9 +534,12 @@ class SameSchemaChangeAuditDao(private val env: DbEnvironment, private val sqlEx
     }
 
     private fun updateInternal(conn: Connection, artifact: Change, deployExecution: DeployExecution): Int {
-        return sqlExecutor.jdbcTemplate.update(
-                conn, "UPDATE " + env.platform.getSchemaPrefix(artifact.getPhysicalSchema(env)) + dbChangeTable
-                + " SET " +
+        return sqlExecutor.jdbcTemplate.update(conn, getUpdateSql(artifact.getPhysicalSchema(env)), *getUpdateArgs(artifact, deployExecution, currentTimestamp))
+    }
+
+    private fun getUpdateSql(physicalSchema: PhysicalSchema): String {
+        return "UPDATE " + env.platform.getSchemaPrefix(physicalSchema) + dbChangeTable +
+                " SET " +
                 "ARTFTYPE = ?, " +
                 "DBSCHEMA = ?, " +
                 "ACTIVE = ?, " +
@@ -352,19 +549,29 @@ class SameSchemaChangeAuditDao(private val env: DbEnvironment, private val sqlEx
                 deployUserIdColumn + " = ?, " +
                 timeUpdatedColumn + " = ?, " +
                 updateDeployExecutionIdColumn + " = ? " +
-                "WHERE " + changeNameColumn + " = ? AND OBJECTNAME = ?", if (artifact is ChangeIncremental) "I" else "R", artifact.schema, if (artifact.isActive) 1 else 0, artifact.changeType.name, artifact.contentHash, artifact.rollbackContent, deployUserId, currentTimestamp, deployExecution.id, artifact.changeName, artifact.objectName
-        )
+                "WHERE " + changeNameColumn + " = ? AND OBJECTNAME = ?"
+    }
+
+    private fun getUpdateArgs(artifact: Change, deployExecution: DeployExecution, currentTimestamp: Timestamp): Array<Any?> {
+        return arrayOf(if (artifact is ChangeIncremental) "I" else "R", artifact.schema, if (artifact.isActive) 1 else 0, artifact.changeType.name, artifact.contentHash, artifact.rollbackContent, deployUserId, currentTimestamp, deployExecution.id, artifact.changeName, artifact.objectName)
     }
 
     override fun acquireLock(): AuditLock {
         return sqlExecutor.executeWithinContext(env.physicalSchemas.first, ThrowingFunction { sqlExecutor.lock(it) })
     }
 
+    private class PendingAuditRow(val key: Pair<String, String>, val upsert: Boolean, val insertArgs: Array<Any?>, val updateArgs: Array<Any?>?)
+
     companion object {
         private val LOG = LoggerFactory.getLogger(SameSchemaChangeAuditDao::class.java)
         private val TIMESTAMP_FORMAT = DateTimeFormat.forPattern("yyyy-MM-dd HH:mm:ss.SSS")
 
         // older version of static data
         private val OLD_STATICDATA_CHANGETYPE = "METADATA"
+
+        /**
+         * Rows to fetch at a time for the lightweight audit read.
+         */
+        private const val AUDIT_FETCH_SIZE = 1000
     }
 }
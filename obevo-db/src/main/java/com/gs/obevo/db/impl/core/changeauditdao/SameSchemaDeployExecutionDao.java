@@ -51,6 +51,8 @@ import org.eclipse.collections.api.collection.ImmutableCollection;
 import org.eclipse.collections.api.list.ImmutableList;
 import org.eclipse.collections.api.list.MutableList;
 import org.eclipse.collections.api.map.ImmutableMap;
+import org.eclipse.collections.api.map.MapIterable;
+import org.eclipse.collections.api.map.MutableMap;
 import org.eclipse.collections.api.multimap.list.MutableListMultimap;
 import org.eclipse.collections.api.multimap.set.MutableSetMultimap;
 import org.eclipse.collections.api.set.ImmutableSet;
@@ -59,6 +61,7 @@ import org.eclipse.collections.api.tuple.Pair;
 import org.eclipse.collections.impl.block.factory.Functions;
 import org.eclipse.collections.impl.block.function.checked.ThrowingFunction;
 import org.eclipse.collections.impl.factory.Lists;
+import org.eclipse.collections.impl.factory.Maps;
 import org.eclipse.collections.impl.factory.Multimaps;
 import org.eclipse.collections.impl.factory.Sets;
 import org.eclipse.collections.impl.list.Interval;
@@ -97,6 +100,9 @@ public class SameSchemaDeployExecutionDao implements DeployExecutionDao {
     private final String attrValueColName;
     private final String productVersionColName;
     private final String dbSchemaColName;
+    private final String changeDurationTableName;
+    private final String changeKeyColName;
+    private final String durationMillisColName;
     private final ImmutableList<String> allMainColumns;
     private final ImmutableList<String> allAttrColumns;
     private final ImmutableMap<PhysicalSchema, MutableInt> nextIdBySchema;
@@ -137,6 +143,10 @@ public class SameSchemaDeployExecutionDao implements DeployExecutionDao {
         this.attrNameColName = convertDbObjectName.valueOf("ATTRNAME");
         this.attrValueColName = convertDbObjectName.valueOf("ATTRVALUE");
         this.allAttrColumns = Lists.immutable.with(deployExecutionIdColName, attrNameColName, attrValueColName);
+
+        this.changeDurationTableName = convertDbObjectName.valueOf(CHANGE_DURATION_TABLE_NAME);
+        this.changeKeyColName = convertDbObjectName.valueOf("CHANGEKEY");
+        this.durationMillisColName = convertDbObjectName.valueOf("DURATIONMILLIS");
     }
 
     @Override
@@ -249,6 +259,20 @@ public class SameSchemaDeployExecutionDao implements DeployExecutionDao {
                 ")" + tableSqlSuffix;
     }
 
+    /**
+     * SQL for the change duration table, which holds the duration of the last successful deploy of each change for the
+     * progress estimates of the next deploys.
+     */
+    @VisibleForTesting
+    String getChangeDurationTableSql(PhysicalSchema physicalSchema) {
+        return "CREATE TABLE " + platform.getSchemaPrefix(physicalSchema) + changeDurationTableName + " (" +
+                dbSchemaColName + " VARCHAR(255) NOT NULL," +
+                changeKeyColName + " VARCHAR(512) NOT NULL," +
+                durationMillisColName + " " + platform.getBigIntType() + " NOT NULL," +
+                deployExecutionIdColName + " " + platform.getBigIntType() + " NOT NULL" +
+                ")" + tableSqlSuffix;
+    }
+
     /**
      * Check that the DAO tables have been created. This is needed:  1) for the initialization of this DAO for writing
      * data  2) to allow the read calls to proceed even if tables aren't created - in that case, they would return no
@@ -438,6 +462,72 @@ public class SameSchemaDeployExecutionDao implements DeployExecutionDao {
         }).toImmutable();
     }
 
+    @Override
+    public ImmutableMap<String, Long> getChangeDurations(final String schema) {
+        final PhysicalSchema physicalSchema = env.getPhysicalSchema(schema);
+        if (getTable(physicalSchema, changeDurationTableName) == null) {
+            return Maps.immutable.empty();
+        }
+
+        return sqlExecutor.executeWithinContext(physicalSchema, conn -> {
+            MutableMap<String, Long> durations = Maps.mutable.empty();
+            for (Map<String, Object> result : jdbc.queryForList(conn, "SELECT " + changeKeyColName + ", " + durationMillisColName + " " +
+                    "FROM " + platform.getSchemaPrefix(physicalSchema) + changeDurationTableName + " " +
+                    "WHERE " + dbSchemaColName + " = '" + schema + "'")) {
+                durations.put((String) result.get(changeKeyColName), platform.getLongValue(result.get(durationMillisColName)));
+            }
+            return durations.toImmutable();
+        });
+    }
+
+    @Override
+    public void persistChangeDurations(final DeployExecution deployExecution, final MapIterable<String, Long> durationMillisByChangeKey) {
+        if (durationMillisByChangeKey.isEmpty()) {
+            return;
+        }
+
+        final String schema = deployExecution.getSchema();
+        final PhysicalSchema physicalSchema = env.getPhysicalSchema(schema);
+        final MutableList<Object[]> deleteArgs = Lists.mutable.empty();
+        final MutableList<Object[]> insertArgs = Lists.mutable.empty();
+        durationMillisByChangeKey.forEachKeyValue((changeKey, durationMillis) -> {
+            deleteArgs.add(new Object[] { schema, changeKey });
+            insertArgs.add(new Object[] { schema, changeKey, durationMillis, deployExecution.getId() });
+        });
+
+        sqlExecutor.executeWithinContext(physicalSchema, new Procedure<Connection>() {
+            @Override
+            public void value(Connection conn) {
+                if (getTable(physicalSchema, changeDurationTableName) == null) {
+                    createChangeDurationTable(conn, physicalSchema);
+                }
+
+                String tableName = platform.getSchemaPrefix(physicalSchema) + changeDurationTableName;
+                jdbc.batchUpdate(conn, "DELETE FROM " + tableName + " " +
+                                "WHERE " + dbSchemaColName + " = ? AND " + changeKeyColName + " = ?",
+                        deleteArgs.toArray(new Object[deleteArgs.size()][]));
+                jdbc.batchUpdate(conn, "INSERT INTO " + tableName + " " +
+                                "(" + dbSchemaColName + ", " + changeKeyColName + ", " + durationMillisColName + ", " + deployExecutionIdColName + ") " +
+                                "VALUES (?, ?, ?, ?)",
+                        insertArgs.toArray(new Object[insertArgs.size()][]));
+            }
+        });
+    }
+
+    /**
+     * Creates the change duration table on the first save of the durations rather than in {@link #init()}, so that it
+     * only exists in the schemas of the deploys that report their progress.
+     */
+    private void createChangeDurationTable(Connection conn, PhysicalSchema physicalSchema) {
+        jdbc.execute(conn, getChangeDurationTableSql(physicalSchema));
+
+        if (env.getPlatform().isPublicSchemaSupported()) {
+            DbChangeTypeBehavior tableChangeType = (DbChangeTypeBehavior) changeTypeBehaviorRegistry.getChangeTypeBehavior(ChangeType.TABLE_STR);
+            tableChangeType.applyGrants(conn, physicalSchema, changeDurationTableName, Lists.immutable.with(new Permission("artifactTable",
+                    Lists.immutable.with(new Grant(Lists.immutable.with("SELECT"), Multimaps.immutable.list.with(GrantTargetType.PUBLIC, "PUBLIC"))))));
+        }
+    }
+
     private DaTable queryAuditExecutionTable(PhysicalSchema physicalSchema) {
         return this.dbMetadataManager.getTableInfo(physicalSchema, deployExecutionTableName, new DaSchemaInfoLevel().setRetrieveTableColumns(true));
     }
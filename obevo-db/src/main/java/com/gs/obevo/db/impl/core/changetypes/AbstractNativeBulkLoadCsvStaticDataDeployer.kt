@@ -0,0 +1,81 @@
+/**
+ * Copyright 2017 Goldman Sachs.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.gs.obevo.db.impl.core.changetypes
+
+import com.gs.obevo.db.api.appdata.DbEnvironment
+import com.gs.obevo.db.api.platform.DbPlatform
+import com.gs.obevo.db.api.platform.SqlExecutor
+import com.gs.obevo.dbmetadata.api.DbMetadataManager
+import org.slf4j.LoggerFactory
+import java.sql.Connection
+import java.sql.SQLException
+import javax.sql.DataSource
+
+/**
+ * Base class for the deployers that load the CSV inserts via a driver-specific bulk-load API (e.g. PostgreSQL COPY),
+ * which requires the driver's own connection class.
+ *
+ * The connection is unwrapped from the pool to get that class; if that is not possible (e.g. if the environment uses
+ * a different driver or a pool that does not support unwrapping), we fall back to the regular batched inserts.
+ * Updates and deletes always go through the regular statements.
+ */
+abstract class AbstractNativeBulkLoadCsvStaticDataDeployer<C>(
+        env: DbEnvironment,
+        sqlExecutor: SqlExecutor,
+        dataSource: DataSource,
+        metadataManager: DbMetadataManager,
+        dbPlatform: DbPlatform,
+        private val nativeConnectionClass: Class<C>
+) : CsvStaticDataDeployer(env, sqlExecutor, dataSource, metadataManager, dbPlatform) {
+
+    override fun executeInserts(conn: Connection, changeRows: StaticDataChangeRows) {
+        if (changeRows.insertRows.isEmpty) {
+            return
+        }
+
+        val nativeConnection = unwrapConnection(conn)
+        if (nativeConnection == null) {
+            LOG.info("Connection {} cannot be unwrapped to {}; using the regular inserts for table {}",
+                    conn.javaClass.name, nativeConnectionClass.name, changeRows.table.name)
+            super.executeInserts(conn, changeRows)
+        } else {
+            LOG.info("Bulk-loading {} rows into table {}", changeRows.insertRows.size(), changeRows.table.name)
+            executeBulkInserts(conn, nativeConnection, changeRows)
+        }
+    }
+
+    /**
+     * Loads the insert rows of the given changes, which is guaranteed to have at least one insert row. The native
+     * connection is the unwrapped form of the given connection, i.e. the same database session.
+     */
+    protected abstract fun executeBulkInserts(conn: Connection, nativeConnection: C, changeRows: StaticDataChangeRows)
+
+    private fun unwrapConnection(conn: Connection): C? {
+        return try {
+            if (conn.isWrapperFor(nativeConnectionClass)) conn.unwrap(nativeConnectionClass) else null
+        } catch (e: SQLException) {
+            LOG.debug("Failed to unwrap the connection", e)
+            null
+        } catch (e: AbstractMethodError) {
+            // for drivers that predate JDBC 4
+            null
+        }
+    }
+
+    companion object {
+        private val LOG = LoggerFactory.getLogger(AbstractNativeBulkLoadCsvStaticDataDeployer::class.java)
+    }
+}
@@ -26,6 +26,7 @@ import com.gs.obevo.dbmetadata.api.*
 import com.gs.obevo.impl.reader.TextMarkupDocumentReader
 import com.gs.obevocomparer.compare.CatoDataSide
 import com.gs.obevocomparer.compare.CatoProperties
+import com.gs.obevocomparer.compare.breaks.Break
 import com.gs.obevocomparer.compare.breaks.DataObjectBreak
 import com.gs.obevocomparer.compare.breaks.FieldBreak
 import com.gs.obevocomparer.compare.simple.SimpleCatoProperties
@@ -41,6 +42,7 @@ import org.slf4j.LoggerFactory
 import java.sql.*
 import java.util.*
 import java.util.Date
+import java.util.function.Consumer
 import javax.sql.DataSource
 
 /**
@@ -75,21 +77,32 @@ open class CsvStaticDataDeployer(
      * then TABLE_A should come first in the sorted list here)
      */
     fun deployArtifact(staticDatas: List<Change>) {
-        val staticDataChanges = staticDatas.map { artifact -> getStaticDataChangesForTable(env, artifact) }
+        val staticDataChanges = Lists.mutable.empty<StaticDataChangeChunks>()
+        try {
+            for (artifact in staticDatas) {
+                staticDataChanges.add(getStaticDataChangesForTable(env, artifact))
+            }
 
-        for (staticDataChange in staticDataChanges) {
-            sqlExecutor.executeWithinContext(staticDataChange.schema) { conn -> executeInserts(conn, staticDataChange) }
-        }
-        for (staticDataChange in staticDataChanges) {
-            sqlExecutor.executeWithinContext(staticDataChange.schema) { conn -> executeUpdates(conn, staticDataChange) }
-        }
-        // note here that deletes must be done in reverse order of the inserts
-        for (staticDataChange in staticDataChanges.asReversed()) {
-            sqlExecutor.executeWithinContext(staticDataChange.schema) { conn -> executeDeletes(conn, staticDataChange) }
+            executeInsertsForTables(staticDataChanges)
+            for (staticDataChange in staticDataChanges) {
+                sqlExecutor.executeWithinContext(staticDataChange.schema) { conn ->
+                    staticDataChange.forEachUpdateChunk { executeUpdates(conn, it) }
+                }
+            }
+            // note here that deletes must be done in reverse order of the inserts
+            for (staticDataChange in staticDataChanges.asReversed()) {
+                sqlExecutor.executeWithinContext(staticDataChange.schema) { conn ->
+                    staticDataChange.forEachDeleteChunk { executeDeletes(conn, it) }
+                }
+            }
+        } finally {
+            for (staticDataChange in staticDataChanges) {
+                staticDataChange.close()
+            }
         }
     }
 
-    private fun getStaticDataChangesForTable(env: DbEnvironment, artifact: Change): StaticDataChangeRows {
+    private fun getStaticDataChangesForTable(env: DbEnvironment, artifact: Change): StaticDataChangeChunks {
         val table = Validate.notNull(
                 this.metadataManager.getTableInfo(artifact.getPhysicalSchema(env), artifact.objectName, DaSchemaInfoLevel()
                         .setRetrieveTables(true)
@@ -130,7 +143,10 @@ open class CsvStaticDataDeployer(
         val excludeFields = dbColumnNames.filter { !fileColumnNames.contains(it) }
 
         val reconFields = SimpleCatoProperties(keyFields, excludeFields)
-        return this.parseReconChanges(artifact, table, fileSource, reconFields, fileColumnNames, updateTimeColumn)
+        if (artifact.metadataSection?.isTogglePresent(TextMarkupDocumentReader.TOGGLE_STREAMING_DIFF) == true) {
+            return this.parseSortedReconChanges(artifact, table, fileSource, reconFields, fileColumnNames, updateTimeColumn)
+        }
+        return InMemoryStaticDataChangeChunks(this.parseReconChanges(artifact, table, fileSource, reconFields, fileColumnNames, updateTimeColumn))
     }
 
     private fun getUniqueIndexColumnNames(artifact: Change, table: DaTable, fileColumnNames: Set<String>): List<String> {
@@ -188,84 +204,143 @@ open class CsvStaticDataDeployer(
         val updateTime = Timestamp(Date().time)
 
         for (reconBreak in recon.breaks) {
-            if (reconBreak is FieldBreak) {
-                LOG.debug("Found as diff {}", reconBreak)
+            addChangeRow(reconBreak, recon.keyFields, fileColumnNames, updateTimeColumn, updateTime,
+                    { inserts.add(it) }, { updates.add(it) }, { deletes.add(it) })
+        }
 
-                val params = UnifiedMap.newMap<String, Any>()
-                val whereParams = UnifiedMap.newMap<String, Any>()
+        // sort this by the row number to assure that the insertion row from the CSV file remains preserved
+        inserts.sortThisBy { it.rowNumber }
 
-                UnifiedMap.newMap(reconBreak.fieldBreaks).forEachKey(Procedure { field ->
-                    // same as for updates
-                    val fieldToCompare = this@CsvStaticDataDeployer.dbPlatform.convertDbObjectName().valueOf(field)
-                    if (!fileColumnNames.contains(fieldToCompare)) {
-                        return@Procedure
-                    }
-                    val value = reconBreak.dataObject.getValue(field)
-                    params[field] = value
+        return StaticDataChangeRows(artifact.getPhysicalSchema(env), table, inserts.toImmutable(), updates.toImmutable(), deletes.toImmutable())
+    }
+
+    /**
+     * Variant of [parseReconChanges] for the [TextMarkupDocumentReader.TOGGLE_STREAMING_DIFF] toggle: the file and
+     * the table are both read in key order and merge-joined, so that neither side needs to be held in memory. The
+     * resulting changes are spilled to temporary files rather than applied directly so that the diff completes (and
+     * the sort order is validated) before any modifications are made, and so that the table is not modified while
+     * the query cursor on it is still open.
+     */
+    private fun parseSortedReconChanges(artifact: Change, table: DaTable,
+                                        fileSource: CatoDataSource,
+                                        reconFields: CatoProperties, fileColumnNames: Set<String>, updateTimeColumn: String?): StaticDataChangeChunks {
+        val dbSource = this.getQueryDataSource(artifact.getPhysicalSchema(env), table, reconFields.keyFields)
+
+        val updateTime = Timestamp(Date().time)
+
+        val changeRows = SpilledStaticDataChangeRows(artifact.getPhysicalSchema(env), table, STREAMING_CHUNK_SIZE)
+        try {
+            try {
+                CatoBaseUtil.compareSorted(fileSource, dbSource, reconFields, Consumer { reconBreak ->
+                    addChangeRow(reconBreak, reconFields.keyFields, fileColumnNames, updateTimeColumn, updateTime,
+                            { changeRows.addInsert(it) }, { changeRows.addUpdate(it) }, { changeRows.addDelete(it) })
                 })
+            } catch (e: IllegalStateException) {
+                throw IllegalStateException("Streaming diff failed for table ${table.name}; with the ${TextMarkupDocumentReader.TOGGLE_STREAMING_DIFF} toggle, " +
+                        "the CSV rows must be sorted by the key columns ${reconFields.keyFields} in the same order that the database returns for an ORDER BY on those columns", e)
+            }
+            changeRows.finishWriting()
+            LOG.info("Streaming diff for table {} found {} inserts, {} updates and {} deletes", table.name,
+                    changeRows.insertCount, changeRows.updateCount, changeRows.deleteCount)
+            return changeRows
+        } catch (e: Throwable) {
+            changeRows.close()
+            throw e
+        }
+    }
 
-                if (params.isEmpty) {
-                    // nothing to do - only diff was in a default column
-                    // see the "DEFAULT_FIELD TIMESTAMP NOT NULL DEFAULT CURRENT TIMESTAMP," use case
-                    continue
+    private fun addChangeRow(reconBreak: Break, keyFields: Collection<String>, fileColumnNames: Set<String>,
+                             updateTimeColumn: String?, updateTime: Timestamp,
+                             addInsert: (StaticDataInsertRow) -> Unit,
+                             addUpdate: (StaticDataUpdateRow) -> Unit,
+                             addDelete: (StaticDataDeleteRow) -> Unit) {
+        if (reconBreak is FieldBreak) {
+            LOG.debug("Found as diff {}", reconBreak)
+
+            val params = UnifiedMap.newMap<String, Any>()
+            val whereParams = UnifiedMap.newMap<String, Any>()
+
+            UnifiedMap.newMap(reconBreak.fieldBreaks).forEachKey(Procedure { field ->
+                // same as for updates
+                val fieldToCompare = this@CsvStaticDataDeployer.dbPlatform.convertDbObjectName().valueOf(field)
+                if (!fileColumnNames.contains(fieldToCompare)) {
+                    return@Procedure
                 }
+                val value = reconBreak.dataObject.getValue(field)
+                params[field] = value
+            })
 
-                if (updateTimeColumn != null) {
-                    params[updateTimeColumn] = updateTime
-                }
+            if (params.isEmpty) {
+                // nothing to do - only diff was in a default column
+                // see the "DEFAULT_FIELD TIMESTAMP NOT NULL DEFAULT CURRENT TIMESTAMP," use case
+                return
+            }
 
-                for (keyField in recon.keyFields) {
-                    whereParams[keyField] = reconBreak.getDataObject().getValue(keyField)
-                }
+            if (updateTimeColumn != null) {
+                params[updateTimeColumn] = updateTime
+            }
 
-                updates.add(StaticDataUpdateRow(params.toImmutable(), whereParams.toImmutable()))
-            } else if (reconBreak is DataObjectBreak) {
-
-                when (reconBreak.dataSide) {
-                    CatoDataSide.LEFT -> {
-                        // file source should be an insert
-                        LOG.debug("Found as insert {}", reconBreak)
-
-                        val params = UnifiedMap.newMap<String, Any>()
-                        for (field in reconBreak.dataObject.fields) {
-                            val fieldToCompare = this.dbPlatform.convertDbObjectName().valueOf(field)
-                            if (!fileColumnNames.contains(fieldToCompare)) {
-                                continue
-                            }
-                            params[field] = reconBreak.dataObject.getValue(field)
-                        }
+            for (keyField in keyFields) {
+                whereParams[keyField] = reconBreak.getDataObject().getValue(keyField)
+            }
 
-                        if (updateTimeColumn != null) {
-                            params[updateTimeColumn] = updateTime
-                        }
+            addUpdate(StaticDataUpdateRow(params.toImmutable(), whereParams.toImmutable()))
+        } else if (reconBreak is DataObjectBreak) {
+
+            when (reconBreak.dataSide) {
+                CatoDataSide.LEFT -> {
+                    // file source should be an insert
+                    LOG.debug("Found as insert {}", reconBreak)
 
-                        val rowNumber = reconBreak.dataObject.getValue(CsvReaderDataSource.ROW_NUMBER_FIELD) as Int
+                    val params = UnifiedMap.newMap<String, Any>()
+                    for (field in reconBreak.dataObject.fields) {
+                        val fieldToCompare = this.dbPlatform.convertDbObjectName().valueOf(field)
+                        if (!fileColumnNames.contains(fieldToCompare)) {
+                            continue
+                        }
+                        params[field] = reconBreak.dataObject.getValue(field)
+                    }
 
-                        inserts.add(StaticDataInsertRow(rowNumber, params.toImmutable()))
+                    if (updateTimeColumn != null) {
+                        params[updateTimeColumn] = updateTime
                     }
-                    CatoDataSide.RIGHT -> {
-                        // db source should be a delete
-                        LOG.debug("Found as delete {}", reconBreak)
 
-                        val whereParams = UnifiedMap.newMap<String, Any>()
-                        for (keyField in recon.keyFields) {
-                            whereParams[keyField] = reconBreak.getDataObject().getValue(keyField)
-                        }
+                    val rowNumber = reconBreak.dataObject.getValue(CsvReaderDataSource.ROW_NUMBER_FIELD) as Int
+
+                    addInsert(StaticDataInsertRow(rowNumber, params.toImmutable()))
+                }
+                CatoDataSide.RIGHT -> {
+                    // db source should be a delete
+                    LOG.debug("Found as delete {}", reconBreak)
 
-                        deletes.add(StaticDataDeleteRow(whereParams.toImmutable()))
+                    val whereParams = UnifiedMap.newMap<String, Any>()
+                    for (keyField in keyFields) {
+                        whereParams[keyField] = reconBreak.getDataObject().getValue(keyField)
                     }
-                    else -> throw IllegalArgumentException("Invalid enum specified here: " + reconBreak.dataSide + " on " + reconBreak)
+
+                    addDelete(StaticDataDeleteRow(whereParams.toImmutable()))
                 }
-            } else {
-                throw IllegalStateException(
-                        "Cannot have group breaks or any breaks other than Field or DataObject - is your primary key defined correctly? $reconBreak")
+                else -> throw IllegalArgumentException("Invalid enum specified here: " + reconBreak.dataSide + " on " + reconBreak)
             }
+        } else {
+            throw IllegalStateException(
+                    "Cannot have group breaks or any breaks other than Field or DataObject - is your primary key defined correctly? $reconBreak")
         }
+    }
 
-        // sort this by the row number to assure that the insertion row from the CSV file remains preserved
-        inserts.sortThisBy { it.rowNumber }
-
-        return StaticDataChangeRows(artifact.getPhysicalSchema(env), table, inserts.toImmutable(), updates.toImmutable(), deletes.toImmutable())
+    /**
+     * Executes the inserts for the tables of a [deployArtifact] call, which are given in the FK insertion order. The
+     * inserts of each table are executed via [executeInserts] on a connection for that table.
+     *
+     * This can be overridden to load the tables concurrently, e.g. for bulk loads, as long as a table is only loaded
+     * after the tables that it references. All the inserts must be done when this method returns.
+     */
+    protected open fun executeInsertsForTables(staticDataChanges: List<StaticDataChangeChunks>) {
+        for (staticDataChange in staticDataChanges) {
+            sqlExecutor.executeWithinContext(staticDataChange.schema) { conn ->
+                staticDataChange.forEachInsertChunk { executeInserts(conn, it) }
+            }
+        }
     }
 
     /**
@@ -275,8 +350,7 @@ open class CsvStaticDataDeployer(
      * Also - this can be overridable in case we want to support bulk-inserts for specific database types,
      * e.g. Sybase IQ
      *
-     * We only use batching for "executeInserts" as that is the 90% case of the performance
-     * (updates may vary the kinds of sqls that are needed, and deletes I'd assume are rare)
+     * The batch size is configured via [DbEnvironment.getCsvInsertBatchSize].
      */
     protected open fun executeInserts(conn: Connection, changeRows: StaticDataChangeRows) {
         if (changeRows.insertRows.isEmpty) {
@@ -294,7 +368,7 @@ open class CsvStaticDataDeployer(
                 " VALUES " + insertValues.makeString("(", ", ", ")")
         LOG.info("Executing the insert $sql")
 
-        for (chunkInsertRows in changeRows.insertRows.chunk(INSERT_BATCH_SIZE)) {
+        for (chunkInsertRows in changeRows.insertRows.chunk(env.csvInsertBatchSize)) {
             val paramArrays = arrayOfNulls<Array<Any>>(chunkInsertRows.size())
             chunkInsertRows.forEachWithIndex { insert, i -> paramArrays[i] = insert.params.valuesView().toList().toTypedArray() }
 
@@ -306,60 +380,68 @@ open class CsvStaticDataDeployer(
     }
 
     /**
-     * See executeInserts javadoc for why we don't leverage batching here
+     * Updates on rows with the same set of changed columns share the same SQL, and so are batched together per
+     * [DbEnvironment.getCsvUpdateBatchSize].
      */
     private fun executeUpdates(conn: Connection, changeRows: StaticDataChangeRows) {
+        val updatesBySql = LinkedHashMap<String, MutableList<Array<Any?>>>()
         for (update in changeRows.updateRows) {
-            val updatePieces = Lists.mutable.empty<String>()
-            val whereClauseParts = Lists.mutable.empty<String>()
-            val paramVals = Lists.mutable.empty<Any>()
-
-            for (stringObjectPair in update.params.keyValuesView()) {
-                updatePieces.add(stringObjectPair.one + " = ?")
-                paramVals.add(stringObjectPair.two)
-            }
-
-            for (stringObjectPair in update.whereParams.keyValuesView()) {
-                whereClauseParts.add(stringObjectPair.one + " = ?")
-                paramVals.add(stringObjectPair.two)
-            }
-
             val sql = "UPDATE " + dbPlatform.getSchemaPrefix(changeRows.schema) + changeRows.table.name +
-                    " SET " + updatePieces.makeString(", ") +
-                    " WHERE " + whereClauseParts.makeString(" AND ")
+                    " SET " + update.params.keysView().makeString(" = ?, ") + " = ?" +
+                    " WHERE " + update.whereParams.keysView().makeString(" = ? AND ") + " = ?"
 
-            LOG.info("Executing this break: [$sql] with params [$paramVals]")
+            val paramVals = Lists.mutable.empty<Any?>()
+            paramVals.addAllIterable(update.params.valuesView())
+            paramVals.addAllIterable(update.whereParams.valuesView())
+            updatesBySql.getOrPut(sql) { ArrayList() }.add(paramVals.toTypedArray())
+        }
 
-            this.jdbcTemplate.update(conn, sql, *paramVals.toArray())
+        for ((sql, paramArrays) in updatesBySql) {
+            executeStatements(conn, sql, paramArrays, env.csvUpdateBatchSize)
         }
     }
 
     /**
-     * See executeInserts javadoc for why we don't leverage batching here
+     * Deletes are batched per [DbEnvironment.getCsvDeleteBatchSize], as for [executeUpdates].
      */
     private fun executeDeletes(conn: Connection, changeRows: StaticDataChangeRows) {
+        val deletesBySql = LinkedHashMap<String, MutableList<Array<Any?>>>()
         for (delete in changeRows.deleteRows) {
-            val paramVals = Lists.mutable.empty<Any>()
-            val whereClauseParts = Lists.mutable.empty<String>()
-
-            for (stringObjectPair in delete.whereParams.keyValuesView()) {
-                val column = stringObjectPair.one
-                val value = stringObjectPair.two
-                whereClauseParts.add("$column = ?")
-                paramVals.add(value)
-            }
-
             val sql = "DELETE FROM " + dbPlatform.getSchemaPrefix(changeRows.schema) + changeRows.table.name +
-                    " WHERE " + whereClauseParts.makeString(" AND ")
-            LOG.info("DELETING: " + sql + ":" + paramVals.makeString(", "))
-            this.jdbcTemplate.update(conn, sql, *paramVals.toArray())
+                    " WHERE " + delete.whereParams.keysView().makeString(" = ? AND ") + " = ?"
+
+            deletesBySql.getOrPut(sql) { ArrayList() }.add(delete.whereParams.valuesView().toList<Any?>().toTypedArray())
+        }
+
+        for ((sql, paramArrays) in deletesBySql) {
+            executeStatements(conn, sql, paramArrays, env.csvDeleteBatchSize)
+        }
+    }
+
+    private fun executeStatements(conn: Connection, sql: String, paramArrays: List<Array<Any?>>, batchSize: Int) {
+        if (batchSize <= 1) {
+            for (paramArray in paramArrays) {
+                LOG.info("Executing this break: [$sql] with params [${paramArray.joinToString(", ")}]")
+                this.jdbcTemplate.update(conn, sql, *paramArray)
+            }
+        } else {
+            LOG.info("Executing [$sql] for ${paramArrays.size} rows in batches of $batchSize")
+            for (chunkParamArrays in paramArrays.chunked(batchSize)) {
+                if (LOG.isDebugEnabled) {
+                    LOG.debug("for " + chunkParamArrays.size + " rows with params: " + chunkParamArrays.joinToString { Arrays.toString(it) })
+                }
+                this.jdbcTemplate.batchUpdate(conn, sql, chunkParamArrays.toTypedArray())
+            }
         }
     }
 
-    private fun getQueryDataSource(physicalSchema: PhysicalSchema, table: DaTable): CatoDataSource {
+    private fun getQueryDataSource(physicalSchema: PhysicalSchema, table: DaTable, orderByColumns: List<String> = emptyList()): CatoDataSource {
         val cols = table.columns
         val colNameStr = cols.collect(DaNamedObject.TO_NAME).collect(this.dbPlatform.convertDbObjectName()).makeString(", ")
-        val query = "select " + colNameStr + " from " + this.dbPlatform.getSchemaPrefix(physicalSchema) + table.name
+        var query = "select " + colNameStr + " from " + this.dbPlatform.getSchemaPrefix(physicalSchema) + table.name
+        if (orderByColumns.isNotEmpty()) {
+            query += " order by " + orderByColumns.joinToString(", ")
+        }
 
         try {
             val conn = this.dataSource.connection
@@ -388,6 +470,28 @@ open class CsvStaticDataDeployer(
     companion object {
         private val LOG = LoggerFactory.getLogger(CsvStaticDataDeployer::class.java)
 
-        private val INSERT_BATCH_SIZE = 25
+        /**
+         * Number of spilled rows that are read back into memory at a time for the streaming diff.
+         */
+        private val STREAMING_CHUNK_SIZE = 10000
+    }
+
+    /**
+     * Adapts the in-memory diff results to the chunked access used by [deployArtifact].
+     */
+    private class InMemoryStaticDataChangeChunks(private val changeRows: StaticDataChangeRows) : StaticDataChangeChunks {
+        override val schema: PhysicalSchema
+            get() = changeRows.schema
+        override val table: DaTable
+            get() = changeRows.table
+
+        override fun forEachInsertChunk(action: (StaticDataChangeRows) -> Unit) = action(changeRows)
+
+        override fun forEachUpdateChunk(action: (StaticDataChangeRows) -> Unit) = action(changeRows)
+
+        override fun forEachDeleteChunk(action: (StaticDataChangeRows) -> Unit) = action(changeRows)
+
+        override fun close() {
+        }
     }
 }
@@ -15,20 +15,29 @@
  */
 package com.gs.obevo.db.impl.core.changetypes;
 
+import java.util.Locale;
+
 import com.gs.obevo.api.appdata.Change;
+import com.gs.obevo.api.appdata.PhysicalSchema;
 import com.gs.obevo.api.platform.ChangeType;
 import com.gs.obevo.api.platform.CommandExecutionContext;
 import com.gs.obevo.db.api.appdata.DbEnvironment;
 import com.gs.obevo.db.api.platform.DbChangeType;
 import com.gs.obevo.db.api.platform.DbPlatform;
 import com.gs.obevo.db.api.platform.SqlExecutor;
+import com.gs.obevo.dbmetadata.api.DaCatalog;
 import com.gs.obevo.dbmetadata.api.DaRoutine;
 import com.gs.obevo.dbmetadata.api.DaSchemaInfoLevel;
 import com.gs.obevo.dbmetadata.api.DaTable;
 import com.gs.obevo.dbmetadata.api.DaView;
 import com.gs.obevo.dbmetadata.api.DbMetadataManager;
 import com.gs.obevo.impl.graph.GraphEnricher;
+import org.eclipse.collections.api.RichIterable;
 import org.eclipse.collections.api.collection.ImmutableCollection;
+import org.eclipse.collections.api.map.ImmutableMap;
+import org.eclipse.collections.api.map.MutableMap;
+import org.eclipse.collections.api.multimap.Multimap;
+import org.eclipse.collections.impl.factory.Maps;
 
 /**
  * Represent the class of change types that are rerunnable (i.e. that we can easily drop/add or replace the
@@ -75,27 +84,14 @@ public class RerunnableDbChangeTypeBehavior extends AbstractDbChangeTypeBehavior
         if (drop.getChangeType().getName().equals(ChangeType.VIEW_STR)) {
             DaTable table = this.dbMetadataManager.getTableInfo(drop.getPhysicalSchema(env),
                     drop.getObjectName(), new DaSchemaInfoLevel().setRetrieveViewDetails(true));
-            DaView view;
-            if (table instanceof DaView) {
-                view = (DaView) table;
-            } else {
-                throw new IllegalStateException("Invalid code here - should not have gotten to this point; what " +
-                        "kind of object? " + table);
-            }
-
-            return view.getDefinition();
+            return getViewDefinition(table);
         } else if (drop.getChangeType().getName().equals(ChangeType.FUNCTION_STR)) {
             ImmutableCollection<DaRoutine> procedures = this.dbMetadataManager.getRoutineInfo(
                     drop.getPhysicalSchema(env),
                     drop.getObjectName(),
                     new DaSchemaInfoLevel().setRetrieveRoutineDetails(true)
             );
-            StringBuilder sb = new StringBuilder();
-            for (DaRoutine routine : procedures) {
-                sb.append(routine.getDefinition()).append("\nGO");
-            }
-
-            return sb.toString();
+            return getRoutineDefinition(procedures);
         } else if (drop.getChangeType().getName().equals(ChangeType.SEQUENCE_STR)) {
             return ""; // no dependencies for SEQUENCE
         }
@@ -103,4 +99,91 @@ public class RerunnableDbChangeTypeBehavior extends AbstractDbChangeTypeBehavior
         throw new UnsupportedOperationException("No other dbObjectType implemented here: " + drop.getChangeType()
                 + "; " + drop);
     }
+
+    /**
+     * Retrieves the view and function definitions with one metadata lookup per schema, instead of one lookup per object
+     * as in {@link #getDefinitionFromEnvironment(Change)}. The single-object lookup is still used where a schema only
+     * has one such object, as that is cheaper than retrieving the whole schema.
+     */
+    @Override
+    public ImmutableMap<Change, String> getDefinitionsFromEnvironment(ImmutableCollection<Change> drops) {
+        MutableMap<Change, String> definitions = Maps.mutable.empty();
+        Multimap<PhysicalSchema, Change> dropsBySchema = drops
+                .select(drop -> drop.getChangeType().getName().equals(ChangeType.VIEW_STR) || drop.getChangeType().getName().equals(ChangeType.FUNCTION_STR))
+                .groupBy(drop -> drop.getPhysicalSchema(env));
+
+        dropsBySchema.forEachKeyMultiValues((physicalSchema, schemaDropsIterable) -> {
+            RichIterable<Change> schemaDrops = (RichIterable<Change>) schemaDropsIterable;
+            if (schemaDrops.size() <= 1) {
+                return;
+            }
+
+            boolean hasViews = schemaDrops.anySatisfy(drop -> drop.getChangeType().getName().equals(ChangeType.VIEW_STR));
+            boolean hasFunctions = schemaDrops.anySatisfy(drop -> drop.getChangeType().getName().equals(ChangeType.FUNCTION_STR));
+            DaSchemaInfoLevel schemaInfoLevel = new DaSchemaInfoLevel()
+                    .setRetrieveTables(hasViews)
+                    .setRetrieveViewDetails(hasViews)
+                    .setRetrieveRoutines(hasFunctions)
+                    .setRetrieveRoutineDetails(hasFunctions);
+            DaCatalog database = this.dbMetadataManager.getDatabase(physicalSchema, schemaInfoLevel, hasViews, hasFunctions);
+
+            // the object names in the metadata can be cased differently than in the source files (the individual
+            // lookups convert the names per the platform), hence the case-insensitive keys
+            MutableMap<String, DaTable> tablesByName = Maps.mutable.empty();
+            for (DaTable table : database.getTables()) {
+                tablesByName.put(toLookupKey(table.getName()), table);
+            }
+            Multimap<String, DaRoutine> routinesByName = database.getRoutines().groupBy(routine -> toLookupKey(routine.getName()));
+
+            for (Change drop : schemaDrops) {
+                String key = toLookupKey(drop.getObjectName());
+                // objects not found in the bulk read are left to the individual lookup below
+                if (drop.getChangeType().getName().equals(ChangeType.VIEW_STR)) {
+                    DaTable table = tablesByName.get(key);
+                    if (table != null) {
+                        definitions.put(drop, getViewDefinition(table));
+                    }
+                } else {
+                    RichIterable<DaRoutine> routines = routinesByName.get(key);
+                    if (routines.notEmpty()) {
+                        definitions.put(drop, getRoutineDefinition(routines));
+                    }
+                }
+            }
+        });
+
+        // the rest are looked up individually
+        for (Change drop : drops) {
+            if (!definitions.containsKey(drop)) {
+                definitions.put(drop, getDefinitionFromEnvironment(drop));
+            }
+        }
+
+        return definitions.toImmutable();
+    }
+
+    private static String toLookupKey(String objectName) {
+        return objectName.toUpperCase(Locale.ROOT);
+    }
+
+    private String getViewDefinition(DaTable table) {
+        DaView view;
+        if (table instanceof DaView) {
+            view = (DaView) table;
+        } else {
+            throw new IllegalStateException("Invalid code here - should not have gotten to this point; what " +
+                    "kind of object? " + table);
+        }
+
+        return view.getDefinition();
+    }
+
+    private String getRoutineDefinition(RichIterable<DaRoutine> procedures) {
+        StringBuilder sb = new StringBuilder();
+        for (DaRoutine routine : procedures) {
+            sb.append(routine.getDefinition()).append("\nGO");
+        }
+
+        return sb.toString();
+    }
 }
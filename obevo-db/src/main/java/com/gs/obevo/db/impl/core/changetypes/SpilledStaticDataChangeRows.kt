@@ -0,0 +1,215 @@
+/**
+ * Copyright 2017 Goldman Sachs.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.gs.obevo.db.impl.core.changetypes
+
+import com.gs.obevo.api.appdata.PhysicalSchema
+import com.gs.obevo.dbmetadata.api.DaTable
+import com.gs.obevo.impl.reader.TextMarkupDocumentReader
+import org.eclipse.collections.api.map.ImmutableMap
+import org.eclipse.collections.api.map.MapIterable
+import org.eclipse.collections.impl.factory.Lists
+import org.eclipse.collections.impl.map.mutable.UnifiedMap
+import java.io.BufferedInputStream
+import java.io.BufferedOutputStream
+import java.io.Closeable
+import java.io.File
+import java.io.FileInputStream
+import java.io.FileOutputStream
+import java.io.NotSerializableException
+import java.io.ObjectInputStream
+import java.io.ObjectOutputStream
+
+/**
+ * The insert, update and delete rows calculated for a table, accessed in chunks so that implementations do not need
+ * to hold all the rows in memory.
+ */
+interface StaticDataChangeChunks : Closeable {
+    val schema: PhysicalSchema
+
+    val table: DaTable
+
+    fun forEachInsertChunk(action: (StaticDataChangeRows) -> Unit)
+
+    fun forEachUpdateChunk(action: (StaticDataChangeRows) -> Unit)
+
+    fun forEachDeleteChunk(action: (StaticDataChangeRows) -> Unit)
+}
+
+/**
+ * Holds the insert, update and delete rows for a table in temporary files rather than in memory, and returns them
+ * in chunks of [StaticDataChangeRows] so that the existing execute methods in [CsvStaticDataDeployer] can be reused.
+ *
+ * The rows are first added while the diff is calculated; [finishWriting] must then be called before reading them.
+ * The temporary files are deleted on [close], which the caller must call on every path; they are not registered for
+ * deletion on exit, as that would retain an entry per file for the lifetime of the JVM (e.g. in the build plugins).
+ */
+internal class SpilledStaticDataChangeRows(
+        override val schema: PhysicalSchema,
+        override val table: DaTable,
+        private val chunkSize: Int
+) : StaticDataChangeChunks {
+    private val spills = ArrayList<RowSpill>(3)
+    private val insertSpill = newSpill("inserts")
+    private val updateSpill = newSpill("updates")
+    private val deleteSpill = newSpill("deletes")
+
+    val insertCount: Int
+        get() = insertSpill.count
+    val updateCount: Int
+        get() = updateSpill.count
+    val deleteCount: Int
+        get() = deleteSpill.count
+
+    fun addInsert(row: StaticDataInsertRow) {
+        insertSpill.write { out ->
+            out.writeInt(row.rowNumber)
+            writeParams(out, row.params)
+        }
+    }
+
+    fun addUpdate(row: StaticDataUpdateRow) {
+        updateSpill.write { out ->
+            writeParams(out, row.params)
+            writeParams(out, row.whereParams)
+        }
+    }
+
+    fun addDelete(row: StaticDataDeleteRow) {
+        deleteSpill.write { out -> writeParams(out, row.whereParams) }
+    }
+
+    fun finishWriting() {
+        insertSpill.finishWriting()
+        updateSpill.finishWriting()
+        deleteSpill.finishWriting()
+    }
+
+    override fun forEachInsertChunk(action: (StaticDataChangeRows) -> Unit) {
+        insertSpill.forEachChunk({ input -> StaticDataInsertRow(input.readInt(), readParams(input)) }) { rows ->
+            action(StaticDataChangeRows(schema, table, Lists.immutable.ofAll(rows), Lists.immutable.empty(), Lists.immutable.empty()))
+        }
+    }
+
+    override fun forEachUpdateChunk(action: (StaticDataChangeRows) -> Unit) {
+        updateSpill.forEachChunk({ input -> StaticDataUpdateRow(readParams(input), readParams(input)) }) { rows ->
+            action(StaticDataChangeRows(schema, table, Lists.immutable.empty(), Lists.immutable.ofAll(rows), Lists.immutable.empty()))
+        }
+    }
+
+    override fun forEachDeleteChunk(action: (StaticDataChangeRows) -> Unit) {
+        deleteSpill.forEachChunk({ input -> StaticDataDeleteRow(readParams(input)) }) { rows ->
+            action(StaticDataChangeRows(schema, table, Lists.immutable.empty(), Lists.immutable.empty(), Lists.immutable.ofAll(rows)))
+        }
+    }
+
+    override fun close() {
+        spills.forEach(RowSpill::close)
+    }
+
+    /**
+     * Creates the spill, deleting the files of the previous ones if it fails, as the caller does not get an instance
+     * to close in that case.
+     */
+    private fun newSpill(type: String): RowSpill {
+        try {
+            val spill = RowSpill(type)
+            spills.add(spill)
+            return spill
+        } catch (e: Throwable) {
+            close()
+            throw e
+        }
+    }
+
+    private fun writeParams(out: ObjectOutputStream, params: MapIterable<String, Any>) {
+        out.writeInt(params.size())
+        for (columnValue in params.keyValuesView()) {
+            val column = columnValue.one
+            val value = columnValue.two
+            out.writeUTF(column)
+            try {
+                out.writeObject(value)
+            } catch (e: NotSerializableException) {
+                throw IllegalStateException("Cannot stream the static data changes for table ${table.name}, as the value of column $column is of the non-serializable type ${value?.javaClass?.name}; please remove the ${TextMarkupDocumentReader.TOGGLE_STREAMING_DIFF} toggle for this table", e)
+            }
+        }
+    }
+
+    private fun readParams(input: ObjectInputStream): ImmutableMap<String, Any> {
+        val size = input.readInt()
+        val params = UnifiedMap.newMap<String, Any>(size)
+        for (i in 0 until size) {
+            params[input.readUTF()] = input.readObject()
+        }
+        return params.toImmutable()
+    }
+
+    private inner class RowSpill(private val type: String) : Closeable {
+        private val file: File = File.createTempFile("obevo-static-data-" + type + "-", ".ser")
+        private var out: ObjectOutputStream? = try {
+            ObjectOutputStream(BufferedOutputStream(FileOutputStream(file)))
+        } catch (e: Throwable) {
+            file.delete()
+            throw e
+        }
+        var count = 0
+            private set
+
+        fun write(writeRow: (ObjectOutputStream) -> Unit) {
+            val out = out ?: throw IllegalStateException("Cannot add $type after finishWriting() was called")
+            writeRow(out)
+            // the stream otherwise keeps a reference to each written object
+            out.reset()
+            count++
+        }
+
+        fun finishWriting() {
+            out?.close()
+            out = null
+        }
+
+        fun <T> forEachChunk(readRow: (ObjectInputStream) -> T, action: (List<T>) -> Unit) {
+            if (out != null) {
+                throw IllegalStateException("finishWriting() must be called before reading the $type")
+            }
+            if (count == 0) {
+                return
+            }
+
+            ObjectInputStream(BufferedInputStream(FileInputStream(file))).use { input ->
+                var remaining = count
+                while (remaining > 0) {
+                    val chunk = ArrayList<T>(Math.min(remaining, chunkSize))
+                    while (chunk.size < chunkSize && remaining > 0) {
+                        chunk.add(readRow(input))
+                        remaining--
+                    }
+                    action(chunk)
+                }
+            }
+        }
+
+        override fun close() {
+            try {
+                out?.close()
+            } catch (ignore: Exception) {
+                // closing on cleanup; the file is deleted regardless
+            }
+            out = null
+            file.delete()
+        }
+    }
+}
@@ -22,6 +22,8 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.Map;
 
+import com.gs.obevo.impl.jfr.DeployEventScope;
+import com.gs.obevo.impl.jfr.DeployEvents;
 import org.apache.commons.dbutils.DbUtils;
 import org.apache.commons.dbutils.ResultSetHandler;
 import org.apache.commons.dbutils.handlers.MapHandler;
@@ -52,14 +54,25 @@ public class JdbcHelper {
 
     private final JdbcHandler jdbcHandler;
     private final boolean parameterTypeEnabled;
+    private final PreparedStatementCache statementCache;
 
     public JdbcHelper() {
         this(null, true);
     }
 
     public JdbcHelper(JdbcHandler jdbcHandler, boolean parameterTypeEnabled) {
+        this(jdbcHandler, parameterTypeEnabled, null);
+    }
+
+    /**
+     * @param statementCache The cache to reuse the prepared statements from for the updates with arguments and the
+     *                       batch updates on the connections registered with it while it is enabled; null to always
+     *                       prepare a new statement for each call
+     */
+    public JdbcHelper(JdbcHandler jdbcHandler, boolean parameterTypeEnabled, PreparedStatementCache statementCache) {
         this.jdbcHandler = jdbcHandler != null ? jdbcHandler : new DefaultJdbcHandler();
         this.parameterTypeEnabled = parameterTypeEnabled;
+        this.statementCache = statementCache;
     }
 
     public void execute(Connection conn, String sql) {
@@ -77,8 +90,11 @@ public class JdbcHelper {
     private int updateInternal(Connection conn, int retryCount, String sql, Object... args) {
         this.jdbcHandler.preUpdate(conn, this);
 
+        DeployEventScope sqlEvent = DeployEvents.beginSqlStatement(sql);
         Statement statement = null;
         PreparedStatement ps = null;
+        boolean cached = this.isStatementCached(conn);
+        boolean succeeded = false;
         try {
             if (LOG.isDebugEnabled()) {
                 LOG.debug("Executing update on {}: {} with args: {}", displayConnection(conn), sql, args);
@@ -94,7 +110,7 @@ public class JdbcHelper {
                 statement = conn.createStatement();
                 return statement.executeUpdate(sql);
             } else {
-                ps = conn.prepareStatement(sql);
+                ps = this.prepareStatement(conn, sql, cached);
                 for (int j = 0; j < args.length; j++) {
                     if (!parameterTypeEnabled || args[j] != null) {
                         ps.setObject(j + 1, args[j]);
@@ -103,9 +119,14 @@ public class JdbcHelper {
                     }
                 }
 
-                return ps.executeUpdate();
+                int updateCount = ps.executeUpdate();
+                succeeded = true;
+                return updateCount;
             }
         } catch (SQLException e) {
+            // release the failed statement before the handler gets to act on the connection, e.g. for a DB2 reorg
+            this.releaseStatement(conn, sql, ps, cached, false);
+            ps = null;
             DataAccessException dataAccessException = new DataAccessException(e);
             boolean retry = this.jdbcHandler.handleException(this, conn, retryCount, dataAccessException);
             if (retry) {
@@ -115,7 +136,8 @@ public class JdbcHelper {
             }
         } finally {
             DbUtils.closeQuietly(statement);
-            DbUtils.closeQuietly(ps);
+            this.releaseStatement(conn, sql, ps, cached, succeeded);
+            sqlEvent.end();
         }
     }
 
@@ -124,14 +146,17 @@ public class JdbcHelper {
     }
 
     private int[] batchUpdateInternal(Connection conn, int retryCount, String sql, Object[][] argsArray) {
+        DeployEventScope sqlEvent = DeployEvents.beginSqlStatement(sql);
         PreparedStatement ps = null;
+        boolean cached = this.isStatementCached(conn);
+        boolean succeeded = false;
         try {
             this.jdbcHandler.preUpdate(conn, this);
 
             if (LOG.isDebugEnabled()) {
                 LOG.debug("Executing batch update on {}: {} with args: {}", displayConnection(conn), sql, argsArray);
             }
-            ps = conn.prepareStatement(sql);
+            ps = this.prepareStatement(conn, sql, cached);
             for (Object[] args : argsArray) {
                 for (int j = 0; j < args.length; j++) {
                     if (!parameterTypeEnabled || args[j] != null) {
@@ -143,8 +168,12 @@ public class JdbcHelper {
                 ps.addBatch();
             }
 
-            return ps.executeBatch();
+            int[] updateCounts = ps.executeBatch();
+            succeeded = true;
+            return updateCounts;
         } catch (SQLException e) {
+            this.releaseStatement(conn, sql, ps, cached, false);
+            ps = null;
             DataAccessException dataAccessException = new DataAccessException(e);
             boolean retry = this.jdbcHandler.handleException(this, conn, retryCount, dataAccessException);
             if (retry) {
@@ -154,7 +183,30 @@ public class JdbcHelper {
                 throw dataAccessException;
             }
         } finally {
+            this.releaseStatement(conn, sql, ps, cached, succeeded);
+            sqlEvent.end();
+        }
+    }
+
+    private boolean isStatementCached(Connection conn) {
+        return statementCache != null && statementCache.isCached(conn);
+    }
+
+    private PreparedStatement prepareStatement(Connection conn, String sql, boolean cached) throws SQLException {
+        return cached ? statementCache.prepareStatement(conn, sql) : conn.prepareStatement(sql);
+    }
+
+    /**
+     * Closes the statement, unless it is cached and was executed successfully, in which case it is kept for reuse.
+     */
+    private void releaseStatement(Connection conn, String sql, PreparedStatement ps, boolean cached, boolean succeeded) {
+        if (ps == null) {
+            return;
+        }
+        if (!cached) {
             DbUtils.closeQuietly(ps);
+        } else if (!succeeded) {
+            statementCache.evict(conn, sql);
         }
     }
 
@@ -167,9 +219,20 @@ public class JdbcHelper {
     }
 
     public <T> T query(Connection conn, String sql, ResultSetHandler<T> resultSetHandler) {
+        return this.query(conn, sql, 0, resultSetHandler);
+    }
+
+    /**
+     * Variant of {@link #query(Connection, String, ResultSetHandler)} that passes the fetch size hint to the driver,
+     * so that large results can be streamed through the handler without the driver buffering all the rows.
+     *
+     * @param fetchSize The number of rows to fetch from the database at a time; 0 to use the driver default
+     */
+    public <T> T query(Connection conn, String sql, int fetchSize, ResultSetHandler<T> resultSetHandler) {
+        DeployEventScope sqlEvent = DeployEvents.beginSqlStatement(sql);
         Pair<Statement, ResultSet> stmtRsPair = null;
         try {
-            stmtRsPair = queryAndLeaveStatementOpen(conn, sql);
+            stmtRsPair = queryAndLeaveStatementOpenInternal(conn, 0, sql, fetchSize);
             return resultSetHandler.handle(stmtRsPair.getTwo());
         } catch (SQLException e) {
             throw new DataAccessException(e);
@@ -178,6 +241,7 @@ public class JdbcHelper {
                 DbUtils.closeQuietly(stmtRsPair.getOne());
                 DbUtils.closeQuietly(stmtRsPair.getTwo());
             }
+            sqlEvent.end();
         }
     }
 
@@ -190,13 +254,16 @@ public class JdbcHelper {
      * we can refactor this and not need this public API.
      */
     public Pair<Statement, ResultSet> queryAndLeaveStatementOpen(Connection conn, String sql) {
-        return queryAndLeaveStatementOpenInternal(conn, 0, sql);
+        return queryAndLeaveStatementOpenInternal(conn, 0, sql, 0);
     }
 
-    private Pair<Statement, ResultSet> queryAndLeaveStatementOpenInternal(Connection conn, int retryCount, String sql) {
+    private Pair<Statement, ResultSet> queryAndLeaveStatementOpenInternal(Connection conn, int retryCount, String sql, int fetchSize) {
         Statement statement = null;
         try {
             statement = conn.createStatement();
+            if (fetchSize > 0) {
+                statement.setFetchSize(fetchSize);
+            }
             if (LOG.isDebugEnabled()) {
                 LOG.debug("Executing query on {}: {}", displayConnection(conn), sql);
             }
@@ -206,7 +273,7 @@ public class JdbcHelper {
             DataAccessException dataAccessException = new DataAccessException(e);
             boolean retry = this.jdbcHandler.handleException(this, conn, retryCount, dataAccessException);
             if (retry) {
-                return this.queryAndLeaveStatementOpenInternal(conn, retryCount + 1, sql);
+                return this.queryAndLeaveStatementOpenInternal(conn, retryCount + 1, sql, fetchSize);
             } else {
                 throw dataAccessException;
             }
@@ -0,0 +1,179 @@
+/**
+ * Copyright 2017 Goldman Sachs.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.gs.obevo.db.impl.core.jdbc;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.dbutils.DbUtils;
+
+/**
+ * Keeps the prepared statements that {@link JdbcHelper} executes open for reuse on the same connection, so that the
+ * SQL that is repeated for many changes (e.g. the audit table writes) is only prepared once per connection.
+ *
+ * Only the statements of the connections registered via {@link #registerConnection(Connection)} are cached, so that
+ * connections that are borrowed elsewhere (e.g. for a lock) and closed without the cache knowing do not leave their
+ * statements behind; JdbcHelper prepares a new statement for each call on the other connections. Each registered
+ * connection has its own cache of up to maxStatementsPerConnection statements; the least recently used one is closed
+ * when that is exceeded. The cache is disabled while maxStatementsPerConnection is 0. A registered connection's
+ * statements must be closed via {@link #closeStatements(Connection)} before the connection is closed or returned to
+ * its pool.
+ *
+ * A connection and its statements are only to be used by one thread at a time, as with the connections of the
+ * SqlExecutor.
+ */
+public class PreparedStatementCache {
+    private volatile int maxStatementsPerConnection;
+    private final Map<Connection, LinkedHashMap<String, PreparedStatement>> statementsByConnection = new IdentityHashMap<Connection, LinkedHashMap<String, PreparedStatement>>();
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    public PreparedStatementCache(int maxStatementsPerConnection) {
+        this.setMaxStatementsPerConnection(maxStatementsPerConnection);
+    }
+
+    public boolean isEnabled() {
+        return maxStatementsPerConnection > 0;
+    }
+
+    /**
+     * Sets the number of statements to keep per connection; 0 disables the cache and closes the cached statements.
+     */
+    public void setMaxStatementsPerConnection(int maxStatementsPerConnection) {
+        if (maxStatementsPerConnection < 0) {
+            throw new IllegalArgumentException("maxStatementsPerConnection must not be negative; got " + maxStatementsPerConnection);
+        }
+        this.maxStatementsPerConnection = maxStatementsPerConnection;
+        if (maxStatementsPerConnection == 0) {
+            this.closeAll();
+        }
+    }
+
+    /**
+     * Starts caching the statements of the connection, until {@link #closeStatements(Connection)} is called for it.
+     * Does nothing while the cache is disabled.
+     */
+    public void registerConnection(Connection conn) {
+        if (isEnabled()) {
+            getStatements(conn);
+        }
+    }
+
+    /**
+     * Whether the statements of the connection are to be taken from the cache, i.e. if the cache is enabled and the
+     * connection is registered.
+     */
+    boolean isCached(Connection conn) {
+        if (!isEnabled()) {
+            return false;
+        }
+        synchronized (statementsByConnection) {
+            return statementsByConnection.containsKey(conn);
+        }
+    }
+
+    /**
+     * Returns the open statement for the SQL on the connection, preparing it if it is not yet in the cache.
+     */
+    PreparedStatement prepareStatement(Connection conn, String sql) throws SQLException {
+        LinkedHashMap<String, PreparedStatement> statements = getStatements(conn);
+        PreparedStatement ps = statements.get(sql);
+        if (ps != null) {
+            hitCount.incrementAndGet();
+            return ps;
+        }
+
+        missCount.incrementAndGet();
+        ps = conn.prepareStatement(sql);
+        statements.put(sql, ps);
+        return ps;
+    }
+
+    /**
+     * Closes and removes the statement for the SQL, e.g. after it failed, as it may be left in an unknown state.
+     */
+    void evict(Connection conn, String sql) {
+        LinkedHashMap<String, PreparedStatement> statements;
+        synchronized (statementsByConnection) {
+            statements = statementsByConnection.get(conn);
+        }
+        if (statements != null) {
+            DbUtils.closeQuietly(statements.remove(sql));
+        }
+    }
+
+    private LinkedHashMap<String, PreparedStatement> getStatements(Connection conn) {
+        synchronized (statementsByConnection) {
+            LinkedHashMap<String, PreparedStatement> statements = statementsByConnection.get(conn);
+            if (statements == null) {
+                statements = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                        if (size() > maxStatementsPerConnection) {
+                            DbUtils.closeQuietly(eldest.getValue());
+                            return true;
+                        }
+                        return false;
+                    }
+                };
+                statementsByConnection.put(conn, statements);
+            }
+            return statements;
+        }
+    }
+
+    /**
+     * Closes the cached statements of the connection.
+     */
+    public void closeStatements(Connection conn) {
+        LinkedHashMap<String, PreparedStatement> statements;
+        synchronized (statementsByConnection) {
+            statements = statementsByConnection.remove(conn);
+        }
+        if (statements != null) {
+            for (PreparedStatement ps : statements.values()) {
+                DbUtils.closeQuietly(ps);
+            }
+        }
+    }
+
+    /**
+     * Closes the cached statements of all the connections.
+     */
+    public void closeAll() {
+        synchronized (statementsByConnection) {
+            for (LinkedHashMap<String, PreparedStatement> statements : statementsByConnection.values()) {
+                for (PreparedStatement ps : statements.values()) {
+                    DbUtils.closeQuietly(ps);
+                }
+            }
+            statementsByConnection.clear();
+        }
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+}
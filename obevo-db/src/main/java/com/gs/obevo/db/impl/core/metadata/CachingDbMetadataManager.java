@@ -0,0 +1,265 @@
+/**
+ * Copyright 2017 Goldman Sachs.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.gs.obevo.db.impl.core.metadata;
+
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.sql.DataSource;
+
+import com.gs.obevo.api.appdata.PhysicalSchema;
+import com.gs.obevo.dbmetadata.api.DaCatalog;
+import com.gs.obevo.dbmetadata.api.DaDirectory;
+import com.gs.obevo.dbmetadata.api.DaExtension;
+import com.gs.obevo.dbmetadata.api.DaRoutine;
+import com.gs.obevo.dbmetadata.api.DaSchemaInfoLevel;
+import com.gs.obevo.dbmetadata.api.DaTable;
+import com.gs.obevo.dbmetadata.api.DbMetadataManager;
+import org.eclipse.collections.api.block.function.Function0;
+import org.eclipse.collections.api.collection.ImmutableCollection;
+import org.eclipse.collections.api.set.ImmutableSet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link DbMetadataManager} decorator that keeps a snapshot of the metadata lookups done during a deployment, as
+ * the same objects are otherwise crawled repeatedly (e.g. by the static data deployer, the routine behaviors and the
+ * checksum calculation), which adds up on platforms with slow catalog queries like Sybase ASE and DB2.
+ *
+ * The snapshot is only kept between {@link #startSnapshot()} and {@link #endSnapshot()}; otherwise, all calls go
+ * straight to the delegate so that the behavior is unchanged for the other utilities that share this instance.
+ *
+ * While the snapshot is active, the deployer must call {@link #invalidate(PhysicalSchema, String)} for each object
+ * that it modifies. This removes the cached lookups for that object and the cached catalogs for its schema (as a
+ * catalog may include the object); lookups for the other objects are retained. Changes that may modify other objects
+ * than their own (e.g. migrations) must call {@link #invalidateAll()} instead.
+ */
+public class CachingDbMetadataManager implements DbMetadataManager {
+    private static final Logger LOG = LoggerFactory.getLogger(CachingDbMetadataManager.class);
+
+    private final DbMetadataManager delegate;
+    private final ConcurrentMap<CacheKey, CacheValue> cache = new ConcurrentHashMap<>();
+    /**
+     * Incremented on each invalidation so that lookups that were in progress while an object was modified are not
+     * added to the cache.
+     */
+    private final AtomicLong invalidationCount = new AtomicLong();
+    private volatile boolean snapshotActive = false;
+
+    public CachingDbMetadataManager(DbMetadataManager delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * Starts caching the metadata lookups; any previously cached values are discarded.
+     */
+    public void startSnapshot() {
+        cache.clear();
+        snapshotActive = true;
+    }
+
+    /**
+     * Stops caching the metadata lookups and discards the cached values.
+     */
+    public void endSnapshot() {
+        snapshotActive = false;
+        cache.clear();
+    }
+
+    /**
+     * Removes the cached lookups for the given object and the cached catalogs of its schema. The object name is
+     * compared case-insensitively, as the names in the source may differ in case from those in the database.
+     */
+    public void invalidate(PhysicalSchema physicalSchema, String objectName) {
+        invalidationCount.incrementAndGet();
+        cache.keySet().removeIf(key -> key.physicalSchema.equals(physicalSchema)
+                && (key.objectName == null || key.objectName.equalsIgnoreCase(objectName)));
+    }
+
+    /**
+     * Removes all the cached lookups.
+     */
+    public void invalidateAll() {
+        invalidationCount.incrementAndGet();
+        cache.clear();
+    }
+
+    @Override
+    public void setDataSource(DataSource ds) {
+        delegate.setDataSource(ds);
+    }
+
+    @Override
+    public DaCatalog getDatabase(PhysicalSchema physicalSchema, DaSchemaInfoLevel schemaInfoLevel, boolean searchAllTables, boolean searchAllRoutines) {
+        String lookupType = "catalog:" + searchAllTables + ":" + searchAllRoutines;
+        return getOrLookup(new CacheKey(lookupType, physicalSchema, null, schemaInfoLevel), () -> delegate.getDatabase(physicalSchema, schemaInfoLevel, searchAllTables, searchAllRoutines));
+    }
+
+    @Override
+    public DaCatalog getDatabaseOptional(String physicalSchema) {
+        return delegate.getDatabaseOptional(physicalSchema);
+    }
+
+    @Override
+    public DaCatalog getDatabaseOptional(PhysicalSchema physicalSchema) {
+        return delegate.getDatabaseOptional(physicalSchema);
+    }
+
+    @Override
+    public DaTable getTableInfo(PhysicalSchema physicalSchema, String tableName) {
+        return getTableInfo(physicalSchema, tableName, new DaSchemaInfoLevel().setRetrieveTables(true));
+    }
+
+    @Override
+    public DaTable getTableInfo(PhysicalSchema physicalSchema, String tableName, DaSchemaInfoLevel schemaInfoLevel) {
+        return getOrLookup(new CacheKey("table", physicalSchema, tableName, schemaInfoLevel), () -> delegate.getTableInfo(physicalSchema, tableName, schemaInfoLevel));
+    }
+
+    @Override
+    public ImmutableCollection<DaRoutine> getRoutineInfo(PhysicalSchema physicalSchema, String routineName) {
+        return getRoutineInfo(physicalSchema, routineName, new DaSchemaInfoLevel().setRetrieveRoutineDetails(true));
+    }
+
+    @Override
+    public ImmutableCollection<DaRoutine> getRoutineInfo(PhysicalSchema physicalSchema, String routineName, DaSchemaInfoLevel schemaInfoLevel) {
+        return getOrLookup(new CacheKey("routine", physicalSchema, routineName, schemaInfoLevel), () -> delegate.getRoutineInfo(physicalSchema, routineName, schemaInfoLevel));
+    }
+
+    @Override
+    public ImmutableSet<String> getGroupNamesOptional(PhysicalSchema physicalSchema) {
+        return delegate.getGroupNamesOptional(physicalSchema);
+    }
+
+    @Override
+    public ImmutableSet<String> getUserNamesOptional(PhysicalSchema physicalSchema) {
+        return delegate.getUserNamesOptional(physicalSchema);
+    }
+
+    @Override
+    public ImmutableSet<DaDirectory> getDirectoriesOptional() {
+        return delegate.getDirectoriesOptional();
+    }
+
+    @Override
+    public ImmutableSet<DaExtension> getExtensionsOptional() {
+        return delegate.getExtensionsOptional();
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T getOrLookup(CacheKey key, Function0<T> lookup) {
+        if (!snapshotActive) {
+            return lookup.value();
+        }
+
+        CacheValue cachedValue = cache.get(key);
+        if (cachedValue != null) {
+            LOG.debug("Using the cached metadata for {}", key);
+            return (T) cachedValue.value;
+        }
+
+        long invalidationCountBeforeLookup = invalidationCount.get();
+        T value = lookup.value();
+        if (snapshotActive && invalidationCount.get() == invalidationCountBeforeLookup) {
+            // an invalidation may still happen right before the put; it either removes the value after the put, or it
+            // incremented the count before the check below, in which case the value is removed here
+            CacheValue cacheValue = new CacheValue(value);
+            if (cache.putIfAbsent(key, cacheValue) == null && invalidationCount.get() != invalidationCountBeforeLookup) {
+                cache.remove(key, cacheValue);
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Wraps the cached value as the lookups may return null (e.g. for tables that do not exist).
+     */
+    private static class CacheValue {
+        private final Object value;
+
+        CacheValue(Object value) {
+            this.value = value;
+        }
+    }
+
+    private static class CacheKey {
+        private final String lookupType;
+        private final PhysicalSchema physicalSchema;
+        private final String objectName;
+        /**
+         * The info level flags are copied here as {@link DaSchemaInfoLevel} is mutable and does not implement equals.
+         */
+        private final int schemaInfoLevelFlags;
+
+        CacheKey(String lookupType, PhysicalSchema physicalSchema, String objectName, DaSchemaInfoLevel schemaInfoLevel) {
+            this.lookupType = lookupType;
+            this.physicalSchema = physicalSchema;
+            this.objectName = objectName;
+            this.schemaInfoLevelFlags = toFlags(schemaInfoLevel);
+        }
+
+        private static int toFlags(DaSchemaInfoLevel schemaInfoLevel) {
+            boolean[] flags = new boolean[] {
+                    schemaInfoLevel.isRetrieveTables(),
+                    schemaInfoLevel.isRetrieveTableColumns(),
+                    schemaInfoLevel.isRetrieveTableForeignKeys(),
+                    schemaInfoLevel.isRetrieveTableIndexes(),
+                    schemaInfoLevel.isRetrieveTableCheckConstraints(),
+                    schemaInfoLevel.isRetrieveViewDetails(),
+                    schemaInfoLevel.isRetrieveRoutines(),
+                    schemaInfoLevel.isRetrieveRoutineDetails(),
+                    schemaInfoLevel.isRetrieveSequences(),
+                    schemaInfoLevel.isRetrieveSynonyms(),
+                    schemaInfoLevel.isRetrieveRules(),
+                    schemaInfoLevel.isRetrieveRuleBindings(),
+                    schemaInfoLevel.isRetrieveUserDefinedColumnDataTypes(),
+            };
+            int result = 0;
+            for (int i = 0; i < flags.length; i++) {
+                if (flags[i]) {
+                    result |= 1 << i;
+                }
+            }
+            return result;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            CacheKey cacheKey = (CacheKey) o;
+            return schemaInfoLevelFlags == cacheKey.schemaInfoLevelFlags &&
+                    lookupType.equals(cacheKey.lookupType) &&
+                    physicalSchema.equals(cacheKey.physicalSchema) &&
+                    Objects.equals(objectName, cacheKey.objectName);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(lookupType, physicalSchema, objectName, schemaInfoLevelFlags);
+        }
+
+        @Override
+        public String toString() {
+            return lookupType + ":" + physicalSchema + ":" + objectName + ":" + schemaInfoLevelFlags;
+        }
+    }
+}
@@ -16,6 +16,8 @@
 package com.gs.obevo.db.impl.platforms;
 
 import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Iterator;
 
 import javax.sql.DataSource;
 
@@ -25,14 +27,33 @@ import com.gs.obevo.db.api.platform.SqlExecutor;
 import com.gs.obevo.db.impl.core.jdbc.DefaultJdbcHandler;
 import com.gs.obevo.db.impl.core.jdbc.JdbcHandler;
 import com.gs.obevo.db.impl.core.jdbc.JdbcHelper;
+import com.gs.obevo.db.impl.core.jdbc.PreparedStatementCache;
 import com.gs.obevo.dbmetadata.api.DbMetadataManager;
 import com.gs.obevo.impl.ExecuteChangeCommand;
 import org.apache.commons.dbutils.DbUtils;
 import org.eclipse.collections.api.block.procedure.Procedure;
+import org.eclipse.collections.api.list.MutableList;
+import org.eclipse.collections.api.map.MutableMap;
 import org.eclipse.collections.impl.block.function.checked.ThrowingFunction;
+import org.eclipse.collections.impl.factory.Lists;
+import org.eclipse.collections.impl.factory.Maps;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public abstract class AbstractSqlExecutor implements SqlExecutor {
+    private static final Logger LOG = LoggerFactory.getLogger(AbstractSqlExecutor.class);
+
     private final DataSource ds;
+    /**
+     * The connections kept open between {@link #startConnectionAffinity(int)} and {@link #endConnectionAffinity()};
+     * null otherwise.
+     */
+    private volatile ConnectionAffinity connectionAffinity;
+    /**
+     * Shared by all the JdbcHelpers of this executor, including those that clients hold on to; only enabled between
+     * {@link #startStatementCache(int)} and {@link #endStatementCache()}.
+     */
+    private final PreparedStatementCache statementCache = new PreparedStatementCache(0);
 
     protected AbstractSqlExecutor(DataSource ds) {
         this.ds = ds;
@@ -54,14 +75,31 @@ public abstract class AbstractSqlExecutor implements SqlExecutor {
      * Overload to facilitate creating the JdbcHelper given any datasource.
      */
     public JdbcHelper createJdbcHelper(DataSource ds) {
-        return new JdbcHelper(this.getJdbcHandler(), this.isParameterTypeEnabled());
+        return new JdbcHelper(this.getJdbcHandler(), this.isParameterTypeEnabled(), statementCache);
     }
 
     @Override
     public void executeWithinContext(PhysicalSchema schema, Procedure<Connection> runnable) {
+        ConnectionAffinity affinity = connectionAffinity;
+        AffinityConnection affinityConn = affinity != null ? affinity.acquire(schema) : null;
+        if (affinityConn != null) {
+            try {
+                executeWithAffinityConnection(affinity, affinityConn, schema, conn -> {
+                    runnable.value(conn);
+                    return null;
+                });
+            } catch (RuntimeException e) {
+                throw e;  // rethrowing DeployerRuntimeException to avoid excessive stack trace outputs
+            } catch (Exception e) {
+                throw new DeployerRuntimeException(e);
+            }
+            return;
+        }
+
         Connection conn = null;
         try {
-            conn = ds.getConnection();
+            conn = getConnection(schema);
+            statementCache.registerConnection(conn);
             setDataSourceSchema(conn, schema);
             runnable.value(conn);
         } catch (RuntimeException e) {
@@ -69,15 +107,28 @@ public abstract class AbstractSqlExecutor implements SqlExecutor {
         } catch (Exception e) {
             throw new DeployerRuntimeException(e);
         } finally {
-            DbUtils.closeQuietly(conn);
+            closeConnection(conn);
         }
     }
 
     @Override
     public <T> T executeWithinContext(PhysicalSchema schema, ThrowingFunction<Connection, T> callable) {
+        ConnectionAffinity affinity = connectionAffinity;
+        AffinityConnection affinityConn = affinity != null ? affinity.acquire(schema) : null;
+        if (affinityConn != null) {
+            try {
+                return executeWithAffinityConnection(affinity, affinityConn, schema, callable);
+            } catch (DeployerRuntimeException e) {
+                throw e;  // rethrowing DeployerRuntimeException to avoid excessive stack trace outputs
+            } catch (Exception e) {
+                throw new DeployerRuntimeException(e);
+            }
+        }
+
         Connection conn = null;
         try {
-            conn = ds.getConnection();
+            conn = getConnection(schema);
+            statementCache.registerConnection(conn);
             setDataSourceSchema(conn, schema);
             return callable.safeValueOf(conn);
         } catch (DeployerRuntimeException e) {
@@ -85,10 +136,71 @@ public abstract class AbstractSqlExecutor implements SqlExecutor {
         } catch (Exception e) {
             throw new DeployerRuntimeException(e);
         } finally {
-            DbUtils.closeQuietly(conn);
+            closeConnection(conn);
+        }
+    }
+
+    private <T> T executeWithAffinityConnection(ConnectionAffinity affinity, AffinityConnection affinityConn, PhysicalSchema schema, ThrowingFunction<Connection, T> callable) throws Exception {
+        boolean succeeded = false;
+        try {
+            if (affinityConn.conn == null) {
+                affinityConn.conn = getConnection(schema);
+                statementCache.registerConnection(affinityConn.conn);
+            }
+            if (!schema.equals(affinityConn.currentSchema)) {
+                setDataSourceSchema(affinityConn.conn, schema);
+                affinityConn.currentSchema = schema;
+            }
+            T result = callable.safeValueOf(affinityConn.conn);
+            succeeded = true;
+            return result;
+        } finally {
+            affinity.release(affinityConn, succeeded);
         }
     }
 
+    @Override
+    public synchronized void startConnectionAffinity(int maxConnections) {
+        if (connectionAffinity == null) {
+            connectionAffinity = new ConnectionAffinity(maxConnections, isConnectionBoundToSchema());
+        }
+    }
+
+    @Override
+    public void endConnectionAffinity() {
+        ConnectionAffinity affinity;
+        synchronized (this) {
+            affinity = connectionAffinity;
+            connectionAffinity = null;
+        }
+        if (affinity != null) {
+            affinity.closeAll();
+        }
+    }
+
+    @Override
+    public void startStatementCache(int maxStatementsPerConnection) {
+        statementCache.setMaxStatementsPerConnection(maxStatementsPerConnection);
+    }
+
+    @Override
+    public void endStatementCache() {
+        if (statementCache.isEnabled()) {
+            statementCache.setMaxStatementsPerConnection(0);
+            LOG.info("Prepared statement cache had {} hits and {} misses", statementCache.getHitCount(), statementCache.getMissCount());
+        }
+    }
+
+    /**
+     * Closes the connection along with its cached statements, if any.
+     */
+    private void closeConnection(Connection conn) {
+        if (conn != null) {
+            statementCache.closeStatements(conn);
+        }
+        DbUtils.closeQuietly(conn);
+    }
+
     @Override
     public void performExtraCleanOperation(final ExecuteChangeCommand command, final DbMetadataManager metaDataMgr) {
         // as a default no special extra steps
@@ -108,4 +220,120 @@ public abstract class AbstractSqlExecutor implements SqlExecutor {
     protected boolean isParameterTypeEnabled() {
         return true;
     }
+
+    /**
+     * Returns a new connection for executing against the given schema; {@link #setDataSourceSchema(Connection, PhysicalSchema)}
+     * is still called on it afterwards. Platforms whose datasource depends on the schema should return a connection of
+     * the schema's datasource here rather than rely on shared state, as the calls may run on multiple threads.
+     */
+    protected Connection getConnection(PhysicalSchema schema) throws SQLException {
+        return ds.getConnection();
+    }
+
+    /**
+     * Whether the connections of this platform can only execute against the schema that they were opened for, in which
+     * case the connection affinity keeps a connection per thread and schema instead of one per thread.
+     */
+    protected boolean isConnectionBoundToSchema() {
+        return false;
+    }
+
+    /**
+     * The connections kept open per thread while the connection affinity is on.
+     */
+    private class ConnectionAffinity {
+        private final int maxConnections;
+        private final boolean connectionBoundToSchema;
+        /**
+         * The connections of each thread, keyed by schema if the connections are bound to a schema; otherwise, each
+         * thread has a single connection under the null key.
+         */
+        private final ThreadLocal<MutableMap<PhysicalSchema, AffinityConnection>> threadConnections = ThreadLocal.withInitial(Maps.mutable::empty);
+        private final MutableList<AffinityConnection> allConnections = Lists.mutable.empty();
+
+        ConnectionAffinity(int maxConnections, boolean connectionBoundToSchema) {
+            this.maxConnections = maxConnections;
+            this.connectionBoundToSchema = connectionBoundToSchema;
+        }
+
+        /**
+         * Returns the connection for the current thread to use for the schema, or null if the call should check out a
+         * connection as usual, i.e. if the connection limit is reached or if the thread's connection is in use by an
+         * enclosing call for another schema.
+         */
+        AffinityConnection acquire(PhysicalSchema schema) {
+            MutableMap<PhysicalSchema, AffinityConnection> connections = threadConnections.get();
+            PhysicalSchema key = connectionBoundToSchema ? schema : null;
+            AffinityConnection affinityConn = connections.get(key);
+            if (affinityConn == null) {
+                synchronized (allConnections) {
+                    if (allConnections.size() >= maxConnections) {
+                        releaseConnectionsOfTerminatedThreads();
+                    }
+                    if (allConnections.size() >= maxConnections) {
+                        return null;
+                    }
+                    affinityConn = new AffinityConnection();
+                    allConnections.add(affinityConn);
+                }
+                connections.put(key, affinityConn);
+            } else if (affinityConn.useCount > 0 && !schema.equals(affinityConn.currentSchema)) {
+                return null;
+            }
+            affinityConn.useCount++;
+            return affinityConn;
+        }
+
+        /**
+         * Releases the connection from the current call. A connection whose call failed is closed once its enclosing
+         * calls complete, as the failure may have left it in an unknown state; the next call opens a new one.
+         */
+        void release(AffinityConnection affinityConn, boolean succeeded) {
+            affinityConn.useCount--;
+            affinityConn.failed |= !succeeded;
+            if (affinityConn.useCount == 0 && affinityConn.failed) {
+                threadConnections.get().values().remove(affinityConn);
+                synchronized (allConnections) {
+                    allConnections.remove(affinityConn);
+                }
+                closeConnection(affinityConn.conn);
+            }
+        }
+
+        /**
+         * Frees the slots of the threads that have terminated, e.g. the threads of an executor that was shut down, so
+         * that they do not hold on to their connections until {@link #closeAll()} and keep the later threads from
+         * getting a connection.
+         */
+        private void releaseConnectionsOfTerminatedThreads() {
+            for (Iterator<AffinityConnection> iter = allConnections.iterator(); iter.hasNext(); ) {
+                AffinityConnection affinityConn = iter.next();
+                if (!affinityConn.owner.isAlive()) {
+                    iter.remove();
+                    closeConnection(affinityConn.conn);
+                }
+            }
+        }
+
+        void closeAll() {
+            synchronized (allConnections) {
+                for (AffinityConnection affinityConn : allConnections) {
+                    closeConnection(affinityConn.conn);
+                }
+                allConnections.clear();
+            }
+        }
+    }
+
+    /**
+     * A connection kept open by {@link ConnectionAffinity}; only accessed by the thread that it belongs to until that
+     * thread terminates.
+     */
+    private static class AffinityConnection {
+        private final Thread owner = Thread.currentThread();
+        private Connection conn;
+        private PhysicalSchema currentSchema;
+        private int useCount;
+        private boolean failed;
+    }
 }
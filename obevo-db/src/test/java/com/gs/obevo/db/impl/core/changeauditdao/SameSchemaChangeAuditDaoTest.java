@@ -20,10 +20,14 @@ import java.sql.Timestamp;
 import java.util.Date;
 import java.util.Map;
 
+import com.gs.obevo.api.appdata.Change;
+import com.gs.obevo.api.appdata.ChangeIncremental;
+import com.gs.obevo.api.appdata.ChangeRerunnable;
 import com.gs.obevo.api.appdata.DeployExecution;
 import com.gs.obevo.api.appdata.PhysicalSchema;
 import com.gs.obevo.api.platform.ChangeAuditDao;
 import com.gs.obevo.api.platform.DeployExecutionDao;
+import com.gs.obevo.db.api.appdata.DbEnvironment;
 import com.gs.obevo.db.api.platform.DbDeployerAppContext;
 import com.gs.obevo.db.api.platform.DbPlatform;
 import com.gs.obevo.db.impl.core.DbDeployerAppContextImpl;
@@ -33,6 +37,7 @@ import org.apache.commons.dbutils.DbUtils;
 import org.eclipse.collections.api.block.function.Function;
 import org.eclipse.collections.api.block.function.primitive.IntToObjectFunction;
 import org.eclipse.collections.api.collection.ImmutableCollection;
+import org.eclipse.collections.api.list.ImmutableList;
 import org.eclipse.collections.api.map.MutableMap;
 import org.junit.After;
 import org.junit.Before;
@@ -42,7 +47,10 @@ import org.junit.Test;
 import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.hasSize;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 /**
  * Tests around the {@link ChangeAuditDao} class and verifying that we can upgrade successfully between versions.
@@ -60,6 +68,7 @@ public abstract class SameSchemaChangeAuditDaoTest {
     private String logicalSchema1;
     private String logicalSchema2;
     private PhysicalSchema testSchema;
+    private DbEnvironment env;
     private DbPlatform platform;
     private JdbcHelper jdbcHelper;
     private Connection conn;
@@ -77,6 +86,7 @@ public abstract class SameSchemaChangeAuditDaoTest {
         this.logicalSchema1 = context.getEnvironment().getSchemas().getFirst().getName();  // pick one from the environment at random as our logical schema so that we can test the retrieval logic
         this.logicalSchema2 = "MYSCHEMA2";  // this is just for testing in this DAO, no need to tie to the actual logical schema
         this.testSchema = context.getEnvironment().getPhysicalSchema(this.logicalSchema1);
+        this.env = context.getEnvironment();
         this.platform = context.getEnvironment().getPlatform();
         this.conn = context.getDataSource().getConnection();
         this.jdbcHelper = ((AbstractSqlExecutor) context.getSqlExecutor()).createJdbcHelper(context.getDataSource());
@@ -314,6 +324,79 @@ public abstract class SameSchemaChangeAuditDaoTest {
         assertEquals(myVersion, versionsById.get(4L));
     }
 
+    @Test
+    public void testLightweightRead() {
+        updateAndIgnoreError("DROP TABLE " + getChangeAuditTableName());
+        updateAndIgnoreError("DROP TABLE " + getDeployExecutionTableName());
+        updateAndIgnoreError("DROP TABLE " + getDeployExecutionAttrTableName());
+        deployExecutionDao.init();
+        artifactDeployerDao.init();
+
+        jdbcHelper.update(conn, "INSERT INTO " + getChangeAuditTableName() + " (ARTFTYPE, ARTIFACTPATH, OBJECTNAME, ACTIVE, " + CHANGETYPE_COL + ", CONTENTHASH, ROLLBACKCONTENT, DBSCHEMA)" +
+                        "VALUES (?, ?, ?, ?, ?, ?, ?, ?)",
+                "I", "chng1", "TABLE1", 1, "TABLE", "hash1", "DROP TABLE TABLE1", logicalSchema1
+        );
+        jdbcHelper.update(conn, "INSERT INTO " + getChangeAuditTableName() + " (ARTFTYPE, ARTIFACTPATH, OBJECTNAME, ACTIVE, " + CHANGETYPE_COL + ", CONTENTHASH, ROLLBACKCONTENT, DBSCHEMA)" +
+                        "VALUES (?, ?, ?, ?, ?, ?, ?, ?)",
+                "I", "chng2", "TABLE1", 0, "TABLE", "hash2", "", logicalSchema1
+        );
+        jdbcHelper.update(conn, "INSERT INTO " + getChangeAuditTableName() + " (ARTFTYPE, ARTIFACTPATH, OBJECTNAME, ACTIVE, " + CHANGETYPE_COL + ", CONTENTHASH, DBSCHEMA)" +
+                        "VALUES (?, ?, ?, ?, ?, ?, ?)",
+                "R", "n/a", "VIEW1", 1, "VIEW", "hash3", logicalSchema1
+        );
+
+        ImmutableList<Change> fullChanges = artifactDeployerDao.getDeployedChanges();
+        env.setAuditLightweightReadEnabled(true);
+        ImmutableList<Change> lightweightChanges = artifactDeployerDao.getDeployedChanges();
+
+        assertThat(lightweightChanges.toList(), hasSize(fullChanges.size()));
+        for (Change fullChange : fullChanges) {
+            Change lightweightChange = lightweightChanges.detect(change -> change.getChangeKey().equals(fullChange.getChangeKey()));
+            assertNotSame(fullChange, lightweightChange);
+            assertEquals(fullChange.getClass(), lightweightChange.getClass());
+            assertEquals(fullChange.getContentHash(), lightweightChange.getContentHash());
+            assertEquals(fullChange.isActive(), lightweightChange.isActive());
+            assertEquals(fullChange.getOrderWithinObject(), lightweightChange.getOrderWithinObject());
+            assertEquals(fullChange.getRollbackContent(), lightweightChange.getRollbackContent());
+        }
+        assertEquals("DROP TABLE TABLE1", lightweightChanges.detect(change -> change.getChangeName().equals("chng1")).getRollbackContent());
+        assertEquals("", lightweightChanges.detect(change -> change.getObjectName().equals("VIEW1")).getRollbackContent());
+    }
+
+    @Test
+    public void testBatchedWrites() {
+        updateAndIgnoreError("DROP TABLE " + getChangeAuditTableName());
+        updateAndIgnoreError("DROP TABLE " + getDeployExecutionTableName());
+        updateAndIgnoreError("DROP TABLE " + getDeployExecutionAttrTableName());
+        deployExecutionDao.init();
+        artifactDeployerDao.init();
+
+        DeployExecution deployExecution = mock(DeployExecution.class);
+        when(deployExecution.getId()).thenReturn(1L);
+        ChangeIncremental table1 = new ChangeIncremental(platform.getChangeType("TABLE"), logicalSchema1, "TABLE1", "chng1", 0, "hash1", "content");
+        ChangeRerunnable view1 = new ChangeRerunnable(platform.getChangeType("VIEW"), logicalSchema1, "VIEW1", "hash2", "content");
+        ChangeRerunnable view2 = new ChangeRerunnable(platform.getChangeType("VIEW"), logicalSchema1, "VIEW2", "hash3", "content");
+
+        env.setAuditBatchSize(3);
+        artifactDeployerDao.insertNewChange(table1, deployExecution);
+        artifactDeployerDao.updateOrInsertChange(view1, deployExecution);
+        assertEquals(0, jdbcHelper.queryForInt(conn, "SELECT COUNT(*) FROM " + getChangeAuditTableName()));
+
+        // the third row fills the batch; the update for VIEW1 has to see the row queued before it
+        view1.setContentHash("hash2b");
+        artifactDeployerDao.updateOrInsertChange(view1, deployExecution);
+        assertEquals(2, jdbcHelper.queryForInt(conn, "SELECT COUNT(*) FROM " + getChangeAuditTableName()));
+
+        artifactDeployerDao.updateOrInsertChange(view2, deployExecution);
+        artifactDeployerDao.flush();
+
+        ImmutableList<Change> deployedChanges = artifactDeployerDao.getDeployedChanges().select(change -> change.getSchema().equals(logicalSchema1));
+        assertThat(deployedChanges.toList(), hasSize(3));
+        assertEquals("hash1", deployedChanges.detect(change -> change.getObjectName().equals("TABLE1")).getContentHash());
+        assertEquals("hash2b", deployedChanges.detect(change -> change.getObjectName().equals("VIEW1")).getContentHash());
+        assertEquals("hash3", deployedChanges.detect(change -> change.getObjectName().equals("VIEW2")).getContentHash());
+    }
+
     private String getDeployExecutionAttrTableName() {
         return getTestPhysicalSchema() + platform.convertDbObjectName().valueOf(DeployExecutionDao.DEPLOY_EXECUTION_ATTRIBUTE_TABLE_NAME);
     }
@@ -0,0 +1,138 @@
+/**
+ * Copyright 2017 Goldman Sachs.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.gs.obevo.db.impl.core.changetypes;
+
+import com.gs.obevo.api.appdata.Change;
+import com.gs.obevo.api.appdata.PhysicalSchema;
+import com.gs.obevo.api.platform.ChangeType;
+import com.gs.obevo.db.api.appdata.DbEnvironment;
+import com.gs.obevo.dbmetadata.api.DaCatalog;
+import com.gs.obevo.dbmetadata.api.DaRoutine;
+import com.gs.obevo.dbmetadata.api.DaSchemaInfoLevel;
+import com.gs.obevo.dbmetadata.api.DaTable;
+import com.gs.obevo.dbmetadata.api.DaView;
+import com.gs.obevo.dbmetadata.api.DbMetadataManager;
+import org.eclipse.collections.api.list.ImmutableList;
+import org.eclipse.collections.api.map.ImmutableMap;
+import org.eclipse.collections.impl.factory.Lists;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class RerunnableDbChangeTypeBehaviorTest {
+    private final DbEnvironment env = mock(DbEnvironment.class);
+    private final DbMetadataManager dbMetadataManager = mock(DbMetadataManager.class);
+    private final ChangeType viewChangeType = newChangeType(ChangeType.VIEW_STR);
+    private final ChangeType functionChangeType = newChangeType(ChangeType.FUNCTION_STR);
+    private final PhysicalSchema schema1 = new PhysicalSchema("schema1");
+    private final PhysicalSchema schema2 = new PhysicalSchema("schema2");
+
+    @Test
+    public void testBulkDefinitionLookupPerSchema() {
+        Change view1 = newChange(viewChangeType, schema1, "view1");
+        Change view2 = newChange(viewChangeType, schema1, "view2");
+        Change func1 = newChange(functionChangeType, schema1, "func1");
+        Change view3 = newChange(viewChangeType, schema2, "view3");
+
+        ImmutableList<DaTable> tables = Lists.immutable.with(newView("view1", "create view view1 as select 1"), newView("view2", "create view view2 as select * from view1"));
+        ImmutableList<DaRoutine> routines = Lists.immutable.with(newRoutine("func1", "def1"), newRoutine("func1", "def2"), newRoutine("func2", "def3"));
+        DaCatalog catalog = mock(DaCatalog.class);
+        when(catalog.getTables()).thenReturn(tables);
+        when(catalog.getRoutines()).thenReturn(routines);
+        when(dbMetadataManager.getDatabase(eq(schema1), any(DaSchemaInfoLevel.class), eq(true), eq(true))).thenReturn(catalog);
+
+        DaView view3Info = newView("view3", "create view view3 as select 3");
+        when(dbMetadataManager.getTableInfo(eq(schema2), eq("view3"), any(DaSchemaInfoLevel.class))).thenReturn(view3Info);
+
+        RerunnableDbChangeTypeBehavior behavior = new RerunnableDbChangeTypeBehavior(env, null, null, null, null, null, null, dbMetadataManager);
+        ImmutableMap<Change, String> definitions = behavior.getDefinitionsFromEnvironment(Lists.immutable.with(view1, view2, func1, view3));
+
+        assertEquals("create view view1 as select 1", definitions.get(view1));
+        assertEquals("create view view2 as select * from view1", definitions.get(view2));
+        assertEquals("def1\nGOdef2\nGO", definitions.get(func1));
+        assertEquals("create view view3 as select 3", definitions.get(view3));
+
+        // schema1 is retrieved in one lookup; schema2 only has one object and so is looked up individually
+        verify(dbMetadataManager, times(1)).getDatabase(eq(schema1), any(DaSchemaInfoLevel.class), eq(true), eq(true));
+        verify(dbMetadataManager, never()).getTableInfo(eq(schema1), anyString(), any(DaSchemaInfoLevel.class));
+        verify(dbMetadataManager, never()).getRoutineInfo(eq(schema1), anyString(), any(DaSchemaInfoLevel.class));
+        verify(dbMetadataManager, times(1)).getTableInfo(eq(schema2), eq("view3"), any(DaSchemaInfoLevel.class));
+    }
+
+    @Test
+    public void testBulkDefinitionLookupIgnoresCase() {
+        Change view1 = newChange(viewChangeType, schema1, "view1");
+        Change func1 = newChange(functionChangeType, schema1, "func1");
+        Change view2 = newChange(viewChangeType, schema1, "view2");
+
+        ImmutableList<DaTable> tables = Lists.immutable.with(newView("VIEW1", "create view view1 as select 1"));
+        ImmutableList<DaRoutine> routines = Lists.immutable.with(newRoutine("FUNC1", "def1"));
+        DaCatalog catalog = mock(DaCatalog.class);
+        when(catalog.getTables()).thenReturn(tables);
+        when(catalog.getRoutines()).thenReturn(routines);
+        when(dbMetadataManager.getDatabase(eq(schema1), any(DaSchemaInfoLevel.class), eq(true), eq(true))).thenReturn(catalog);
+
+        DaView view2Info = newView("VIEW2", "create view view2 as select 2");
+        when(dbMetadataManager.getTableInfo(eq(schema1), eq("view2"), any(DaSchemaInfoLevel.class))).thenReturn(view2Info);
+
+        RerunnableDbChangeTypeBehavior behavior = new RerunnableDbChangeTypeBehavior(env, null, null, null, null, null, null, dbMetadataManager);
+        ImmutableMap<Change, String> definitions = behavior.getDefinitionsFromEnvironment(Lists.immutable.with(view1, func1, view2));
+
+        assertEquals("create view view1 as select 1", definitions.get(view1));
+        assertEquals("def1\nGO", definitions.get(func1));
+        assertEquals("create view view2 as select 2", definitions.get(view2));
+
+        // objects missing from the bulk read fall back to the individual lookup
+        verify(dbMetadataManager, never()).getTableInfo(eq(schema1), eq("view1"), any(DaSchemaInfoLevel.class));
+        verify(dbMetadataManager, times(1)).getTableInfo(eq(schema1), eq("view2"), any(DaSchemaInfoLevel.class));
+    }
+
+    private ChangeType newChangeType(String name) {
+        ChangeType changeType = mock(ChangeType.class);
+        when(changeType.getName()).thenReturn(name);
+        return changeType;
+    }
+
+    private Change newChange(ChangeType changeType, PhysicalSchema physicalSchema, String objectName) {
+        Change change = mock(Change.class);
+        when(change.getChangeType()).thenReturn(changeType);
+        when(change.getPhysicalSchema(env)).thenReturn(physicalSchema);
+        when(change.getObjectName()).thenReturn(objectName);
+        return change;
+    }
+
+    private DaView newView(String name, String definition) {
+        DaView view = mock(DaView.class);
+        when(view.getName()).thenReturn(name);
+        when(view.getDefinition()).thenReturn(definition);
+        return view;
+    }
+
+    private DaRoutine newRoutine(String name, String definition) {
+        DaRoutine routine = mock(DaRoutine.class);
+        when(routine.getName()).thenReturn(name);
+        when(routine.getDefinition()).thenReturn(definition);
+        return routine;
+    }
+}
@@ -0,0 +1,145 @@
+/**
+ * Copyright 2017 Goldman Sachs.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.gs.obevo.db.impl.core.jdbc;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import org.eclipse.collections.api.list.MutableList;
+import org.eclipse.collections.impl.factory.Lists;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class JdbcHelperTest {
+    private final Connection conn = mock(Connection.class);
+    private final MutableList<PreparedStatement> preparedStatements = Lists.mutable.empty();
+
+    @Before
+    public void setup() throws SQLException {
+        when(conn.prepareStatement(anyString())).thenAnswer(invocation -> {
+            PreparedStatement ps = mock(PreparedStatement.class);
+            when(ps.executeUpdate()).thenReturn(1);
+            when(ps.executeBatch()).thenReturn(new int[] { 1, 1 });
+            preparedStatements.add(ps);
+            return ps;
+        });
+    }
+
+    @Test
+    public void testStatementPerCallWithoutCache() throws SQLException {
+        JdbcHelper jdbc = new JdbcHelper();
+        jdbc.update(conn, "update tab set a = ?", 1);
+        jdbc.update(conn, "update tab set a = ?", 2);
+
+        assertEquals(2, preparedStatements.size());
+        verify(preparedStatements.get(0)).close();
+        verify(preparedStatements.get(1)).close();
+    }
+
+    @Test
+    public void testStatementPerCallWithDisabledCache() throws SQLException {
+        PreparedStatementCache statementCache = new PreparedStatementCache(0);
+        JdbcHelper jdbc = new JdbcHelper(null, true, statementCache);
+        jdbc.update(conn, "update tab set a = ?", 1);
+        verify(preparedStatements.get(0)).close();
+
+        // enabling the cache applies to the existing JdbcHelper instances
+        statementCache.setMaxStatementsPerConnection(1);
+        statementCache.registerConnection(conn);
+        jdbc.update(conn, "update tab set a = ?", 2);
+        jdbc.update(conn, "update tab set a = ?", 3);
+        assertEquals(2, preparedStatements.size());
+        verify(preparedStatements.get(1), never()).close();
+
+        statementCache.setMaxStatementsPerConnection(0);
+        verify(preparedStatements.get(1)).close();
+    }
+
+    @Test
+    public void testStatementsOfUnregisteredConnectionsAreNotCached() throws SQLException {
+        PreparedStatementCache statementCache = new PreparedStatementCache(2);
+        JdbcHelper jdbc = new JdbcHelper(null, true, statementCache);
+
+        // e.g. a connection borrowed from the pool directly, which the cache is not told about when it is closed
+        jdbc.update(conn, "update tab set a = ?", 1);
+        jdbc.update(conn, "update tab set a = ?", 2);
+        assertEquals(2, preparedStatements.size());
+        verify(preparedStatements.get(0)).close();
+        verify(preparedStatements.get(1)).close();
+        assertEquals(0, statementCache.getMissCount());
+    }
+
+    @Test
+    public void testCachedStatementsAreReused() throws SQLException {
+        PreparedStatementCache statementCache = new PreparedStatementCache(2);
+        statementCache.registerConnection(conn);
+        JdbcHelper jdbc = new JdbcHelper(null, true, statementCache);
+
+        assertEquals(1, jdbc.update(conn, "update tab set a = ?", 1));
+        assertEquals(1, jdbc.update(conn, "update tab set a = ?", 2));
+        assertArrayEquals(new int[] { 1, 1 }, jdbc.batchUpdate(conn, "insert into tab values (?)", new Object[][] { { 1 }, { 2 } }));
+        assertArrayEquals(new int[] { 1, 1 }, jdbc.batchUpdate(conn, "insert into tab values (?)", new Object[][] { { 3 }, { 4 } }));
+
+        assertEquals(2, preparedStatements.size());
+        assertEquals(2, statementCache.getHitCount());
+        assertEquals(2, statementCache.getMissCount());
+        verify(preparedStatements.get(0), times(2)).executeUpdate();
+        verify(preparedStatements.get(0), never()).close();
+
+        // the least recently used statement is closed when the limit is exceeded
+        jdbc.update(conn, "delete from tab where a = ?", 1);
+        verify(preparedStatements.get(0)).close();
+        verify(preparedStatements.get(1), never()).close();
+
+        statementCache.closeStatements(conn);
+        verify(preparedStatements.get(1)).close();
+        verify(preparedStatements.get(2)).close();
+    }
+
+    @Test
+    public void testFailedStatementIsReplacedOnRetry() throws SQLException {
+        JdbcHandler jdbcHandler = mock(JdbcHandler.class);
+        when(jdbcHandler.handleException(any(JdbcHelper.class), eq(conn), anyInt(), any(DataAccessException.class))).thenReturn(true);
+        PreparedStatementCache statementCache = new PreparedStatementCache(2);
+        statementCache.registerConnection(conn);
+        JdbcHelper jdbc = new JdbcHelper(jdbcHandler, true, statementCache);
+
+        jdbc.update(conn, "update tab set a = ?", 1);
+        when(preparedStatements.get(0).executeUpdate()).thenThrow(new SQLException("reorg pending"));
+
+        // the handler requests a retry, which must not use the statement that failed
+        assertEquals(1, jdbc.update(conn, "update tab set a = ?", 2));
+        assertEquals(2, preparedStatements.size());
+        verify(preparedStatements.get(0)).close();
+        verify(preparedStatements.get(1), never()).close();
+
+        jdbc.update(conn, "update tab set a = ?", 3);
+        verify(preparedStatements.get(1), times(2)).executeUpdate();
+    }
+}
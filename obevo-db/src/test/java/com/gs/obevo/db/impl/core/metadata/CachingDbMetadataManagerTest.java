@@ -0,0 +1,124 @@
+/**
+ * Copyright 2017 Goldman Sachs.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.gs.obevo.db.impl.core.metadata;
+
+import com.gs.obevo.api.appdata.PhysicalSchema;
+import com.gs.obevo.dbmetadata.api.DaCatalog;
+import com.gs.obevo.dbmetadata.api.DaSchemaInfoLevel;
+import com.gs.obevo.dbmetadata.api.DaTable;
+import com.gs.obevo.dbmetadata.api.DbMetadataManager;
+import org.junit.Test;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class CachingDbMetadataManagerTest {
+    private final DbMetadataManager delegate = mock(DbMetadataManager.class);
+    private final CachingDbMetadataManager metadataManager = new CachingDbMetadataManager(delegate);
+    private final PhysicalSchema schema1 = new PhysicalSchema("schema1");
+    private final PhysicalSchema schema2 = new PhysicalSchema("schema2");
+    private final DaTable table1 = mock(DaTable.class);
+    private final DaTable table2 = mock(DaTable.class);
+    private final DaCatalog catalog1 = mock(DaCatalog.class);
+
+    {
+        when(delegate.getTableInfo(eq(schema1), eq("table1"), any(DaSchemaInfoLevel.class))).thenReturn(table1);
+        when(delegate.getTableInfo(eq(schema1), eq("table2"), any(DaSchemaInfoLevel.class))).thenReturn(table2);
+        when(delegate.getDatabase(eq(schema1), any(DaSchemaInfoLevel.class), anyBoolean(), anyBoolean())).thenReturn(catalog1);
+    }
+
+    @Test
+    public void testLookupsAreNotCachedOutsideOfSnapshot() {
+        assertSame(table1, metadataManager.getTableInfo(schema1, "table1"));
+        assertSame(table1, metadataManager.getTableInfo(schema1, "table1"));
+        verify(delegate, times(2)).getTableInfo(eq(schema1), eq("table1"), any(DaSchemaInfoLevel.class));
+    }
+
+    @Test
+    public void testLookupsAreCachedPerObjectAndInfoLevel() {
+        metadataManager.startSnapshot();
+        assertSame(table1, metadataManager.getTableInfo(schema1, "table1", new DaSchemaInfoLevel().setRetrieveTableColumns(true)));
+        assertSame(table1, metadataManager.getTableInfo(schema1, "table1", new DaSchemaInfoLevel().setRetrieveTableColumns(true)));
+        verify(delegate, times(1)).getTableInfo(eq(schema1), eq("table1"), any(DaSchemaInfoLevel.class));
+
+        assertSame(table1, metadataManager.getTableInfo(schema1, "table1", new DaSchemaInfoLevel().setRetrieveTables(true)));
+        verify(delegate, times(2)).getTableInfo(eq(schema1), eq("table1"), any(DaSchemaInfoLevel.class));
+
+        // null values for missing objects are cached too
+        assertNull(metadataManager.getTableInfo(schema2, "table1"));
+        assertNull(metadataManager.getTableInfo(schema2, "table1"));
+        verify(delegate, times(1)).getTableInfo(eq(schema2), eq("table1"), any(DaSchemaInfoLevel.class));
+
+        metadataManager.endSnapshot();
+        metadataManager.getTableInfo(schema2, "table1");
+        verify(delegate, times(2)).getTableInfo(eq(schema2), eq("table1"), any(DaSchemaInfoLevel.class));
+    }
+
+    @Test
+    public void testInvalidateOnlyRemovesTheObjectAndItsSchemaCatalogs() {
+        metadataManager.startSnapshot();
+        metadataManager.getTableInfo(schema1, "table1");
+        metadataManager.getTableInfo(schema1, "table2");
+        metadataManager.getTableInfo(schema2, "table1");
+        assertSame(catalog1, metadataManager.getDatabase(schema1, new DaSchemaInfoLevel().setRetrieveTables(true), true, false));
+
+        metadataManager.invalidate(schema1, "TABLE1");
+
+        metadataManager.getTableInfo(schema1, "table1");
+        metadataManager.getTableInfo(schema1, "table2");
+        metadataManager.getTableInfo(schema2, "table1");
+        metadataManager.getDatabase(schema1, new DaSchemaInfoLevel().setRetrieveTables(true), true, false);
+
+        verify(delegate, times(2)).getTableInfo(eq(schema1), eq("table1"), any(DaSchemaInfoLevel.class));
+        verify(delegate, times(1)).getTableInfo(eq(schema1), eq("table2"), any(DaSchemaInfoLevel.class));
+        verify(delegate, times(1)).getTableInfo(eq(schema2), eq("table1"), any(DaSchemaInfoLevel.class));
+        verify(delegate, times(2)).getDatabase(eq(schema1), any(DaSchemaInfoLevel.class), eq(true), eq(false));
+    }
+
+    @Test
+    public void testInvalidateAllRemovesAllLookups() {
+        metadataManager.startSnapshot();
+        metadataManager.getTableInfo(schema1, "table1");
+        metadataManager.getTableInfo(schema2, "table1");
+
+        metadataManager.invalidateAll();
+
+        metadataManager.getTableInfo(schema1, "table1");
+        metadataManager.getTableInfo(schema2, "table1");
+        verify(delegate, times(2)).getTableInfo(eq(schema1), eq("table1"), any(DaSchemaInfoLevel.class));
+        verify(delegate, times(2)).getTableInfo(eq(schema2), eq("table1"), any(DaSchemaInfoLevel.class));
+    }
+
+    @Test
+    public void testLookupsOverlappingAnInvalidationAreNotCached() {
+        metadataManager.startSnapshot();
+        when(delegate.getTableInfo(eq(schema2), eq("table2"), any(DaSchemaInfoLevel.class))).thenAnswer(invocation -> {
+            metadataManager.invalidate(schema2, "table2");
+            return table2;
+        });
+
+        assertSame(table2, metadataManager.getTableInfo(schema2, "table2"));
+        assertSame(table2, metadataManager.getTableInfo(schema2, "table2"));
+        verify(delegate, times(2)).getTableInfo(eq(schema2), eq("table2"), any(DaSchemaInfoLevel.class));
+    }
+}
@@ -0,0 +1,200 @@
+/**
+ * Copyright 2017 Goldman Sachs.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.gs.obevo.db.impl.platforms;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import javax.sql.DataSource;
+
+import com.gs.obevo.api.appdata.PhysicalSchema;
+import org.eclipse.collections.api.block.procedure.Procedure;
+import org.eclipse.collections.api.list.MutableList;
+import org.eclipse.collections.impl.factory.Lists;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class AbstractSqlExecutorTest {
+    private final PhysicalSchema schema1 = new PhysicalSchema("schema1");
+    private final PhysicalSchema schema2 = new PhysicalSchema("schema2");
+    private final DataSource ds = mock(DataSource.class);
+    private final MutableList<Connection> openedConnections = Lists.mutable.empty();
+    private final MutableList<PhysicalSchema> schemaSwitches = Lists.mutable.empty();
+    private final MutableList<PhysicalSchema> connectionSchemas = Lists.mutable.empty();
+
+    @Before
+    public void setup() throws SQLException {
+        when(ds.getConnection()).thenAnswer(invocation -> {
+            Connection conn = mock(Connection.class);
+            openedConnections.add(conn);
+            return conn;
+        });
+    }
+
+    @Test
+    public void testConnectionPerCallWithoutAffinity() throws SQLException {
+        TestSqlExecutor sqlExecutor = new TestSqlExecutor(false);
+        sqlExecutor.executeWithinContext(schema1, conn -> { });
+        sqlExecutor.executeWithinContext(schema2, conn -> { });
+
+        assertEquals(2, openedConnections.size());
+        // the connections are requested for the schema, so that platforms with a datasource per schema pick the right one
+        assertEquals(Lists.mutable.with(schema1, schema2), connectionSchemas);
+        assertEquals(Lists.mutable.with(schema1, schema2), schemaSwitches);
+        verify(openedConnections.get(0)).close();
+        verify(openedConnections.get(1)).close();
+    }
+
+    @Test
+    public void testAffinitySkipsRedundantSchemaSwitches() throws SQLException {
+        TestSqlExecutor sqlExecutor = new TestSqlExecutor(false);
+        sqlExecutor.startConnectionAffinity(2);
+        sqlExecutor.executeWithinContext(schema1, conn -> { });
+        sqlExecutor.executeWithinContext(schema1, conn -> { });
+        sqlExecutor.executeWithinContext(schema2, conn -> { });
+        assertEquals(1, (int) sqlExecutor.executeWithinContext(schema2, conn -> 1));
+
+        assertEquals(1, openedConnections.size());
+        assertEquals(Lists.mutable.with(schema1, schema2), schemaSwitches);
+        verify(openedConnections.get(0), times(0)).close();
+
+        sqlExecutor.endConnectionAffinity();
+        verify(openedConnections.get(0)).close();
+
+        // back to a connection per call
+        sqlExecutor.executeWithinContext(schema2, conn -> { });
+        assertEquals(2, openedConnections.size());
+    }
+
+    @Test
+    public void testAffinityWithNestedCalls() {
+        TestSqlExecutor sqlExecutor = new TestSqlExecutor(false);
+        sqlExecutor.startConnectionAffinity(2);
+        sqlExecutor.executeWithinContext(schema1, outerConn -> {
+            // the same schema reuses the connection, while another schema must not switch the schema of the outer call
+            sqlExecutor.executeWithinContext(schema1, innerConn -> { assertSame(outerConn, innerConn); });
+            sqlExecutor.executeWithinContext(schema2, innerConn -> { assertNotSame(outerConn, innerConn); });
+        });
+
+        assertEquals(2, openedConnections.size());
+        assertEquals(Lists.mutable.with(schema1, schema2), schemaSwitches);
+        sqlExecutor.endConnectionAffinity();
+    }
+
+    @Test
+    public void testAffinityPerSchemaForSchemaBoundConnections() {
+        TestSqlExecutor sqlExecutor = new TestSqlExecutor(true);
+        sqlExecutor.startConnectionAffinity(2);
+        sqlExecutor.executeWithinContext(schema1, conn -> { });
+        sqlExecutor.executeWithinContext(schema2, conn -> { });
+        sqlExecutor.executeWithinContext(schema1, conn -> { });
+        sqlExecutor.executeWithinContext(schema2, conn -> { });
+
+        assertEquals(2, openedConnections.size());
+        assertEquals(Lists.mutable.with(schema1, schema2), schemaSwitches);
+        sqlExecutor.endConnectionAffinity();
+    }
+
+    @Test
+    public void testAffinityConnectionLimit() {
+        TestSqlExecutor sqlExecutor = new TestSqlExecutor(true);
+        sqlExecutor.startConnectionAffinity(1);
+        sqlExecutor.executeWithinContext(schema1, conn -> { });
+        sqlExecutor.executeWithinContext(schema2, conn -> { });
+        sqlExecutor.executeWithinContext(schema2, conn -> { });
+
+        assertEquals(3, openedConnections.size());
+        sqlExecutor.endConnectionAffinity();
+    }
+
+    @Test
+    public void testAffinityConnectionIsReplacedAfterFailure() throws SQLException {
+        TestSqlExecutor sqlExecutor = new TestSqlExecutor(false);
+        sqlExecutor.startConnectionAffinity(1);
+        sqlExecutor.executeWithinContext(schema1, conn -> { });
+        try {
+            sqlExecutor.executeWithinContext(schema1, (Procedure<Connection>) conn -> {
+                throw new IllegalStateException("failed");
+            });
+            fail("Expecting exception");
+        } catch (IllegalStateException expected) {
+        }
+        verify(openedConnections.get(0)).close();
+
+        sqlExecutor.executeWithinContext(schema1, conn -> { });
+        assertEquals(2, openedConnections.size());
+        assertEquals(Lists.mutable.with(schema1, schema1), schemaSwitches);
+        sqlExecutor.endConnectionAffinity();
+        verify(openedConnections.get(1)).close();
+    }
+
+    @Test
+    public void testAffinityConnectionsOfTerminatedThreadsAreReleased() throws Exception {
+        TestSqlExecutor sqlExecutor = new TestSqlExecutor(false);
+        sqlExecutor.startConnectionAffinity(2);
+        for (int i = 0; i < 5; i++) {
+            Thread thread = new Thread(() -> {
+                sqlExecutor.executeWithinContext(schema1, conn -> { });
+                sqlExecutor.executeWithinContext(schema1, conn -> { });
+            });
+            thread.start();
+            thread.join();
+        }
+
+        // each thread got a slot and reused its connection, as the slots of the previous threads were released
+        assertEquals(5, openedConnections.size());
+        for (int i = 0; i < 3; i++) {
+            verify(openedConnections.get(i)).close();
+        }
+        sqlExecutor.endConnectionAffinity();
+        verify(openedConnections.get(3)).close();
+        verify(openedConnections.get(4)).close();
+    }
+
+    private class TestSqlExecutor extends AbstractSqlExecutor {
+        private final boolean connectionBoundToSchema;
+
+        TestSqlExecutor(boolean connectionBoundToSchema) {
+            super(ds);
+            this.connectionBoundToSchema = connectionBoundToSchema;
+        }
+
+        @Override
+        protected void setDataSourceSchema(Connection conn, PhysicalSchema schema) {
+            schemaSwitches.add(schema);
+        }
+
+        @Override
+        protected Connection getConnection(PhysicalSchema schema) throws SQLException {
+            connectionSchemas.add(schema);
+            return super.getConnection(schema);
+        }
+
+        @Override
+        protected boolean isConnectionBoundToSchema() {
+            return connectionBoundToSchema;
+        }
+    }
+}
@@ -75,6 +75,16 @@ public class DbDeployerMain extends AbstractMain<Environment> {
             }
             dbArgs.setSourceGraphExportFile(args.getSourceGraphExportFile());
             dbArgs.setSourceGraphExportFormat(args.getSourceGraphExportFormat());
+            dbArgs.setMetricsExportFile(args.getMetricsExportFile());
+            dbArgs.setMetricsExportFormat(args.getMetricsExportFormat());
+            dbArgs.setFlightRecorderEventsEnabled(args.isFlightRecorderEvents());
+            dbArgs.setFlightRecordingFile(args.getFlightRecordingFile());
+            if (args.getDeployThreads() != null) {
+                dbArgs.setDeployThreads(args.getDeployThreads());
+            }
+            if (args.getProgressReportIntervalSeconds() != null) {
+                dbArgs.setProgressReportIntervalSeconds(args.getProgressReportIntervalSeconds());
+            }
 
             ctxt.deploy(dbArgs);
         }
@@ -15,9 +15,21 @@
  */
 package com.gs.obevocomparer.compare;
 
+import java.util.function.Consumer;
+
+import com.gs.obevocomparer.compare.breaks.Break;
 import com.gs.obevocomparer.input.CatoDataSource;
 
 public interface CatoDataSourceComparator {
 
     CatoComparison compare(String comparisonName, CatoDataSource sourceData, CatoDataSource targetData);
+
+    /**
+     * Compares two data sources that are both sorted by the key fields and passes each break to the breakHandler as
+     * soon as it is found. Neither the data nor the breaks are retained, so the memory usage does not grow with the
+     * size of the inputs.
+     *
+     * @throws IllegalStateException if either data source is not sorted by the key fields
+     */
+    void compareSorted(CatoDataSource sourceData, CatoDataSource targetData, Consumer<Break> breakHandler);
 }
@@ -33,4 +33,21 @@ public interface CatoProperties {
     Collection<BreakExclude> getBreakExcludes();
 
     int getDecimalPrecision();
+
+    /**
+     * Returns the approximate heap size that the sorting of an unsorted data source may use before it spills the data
+     * to temporary files; 0 to use a default based on the max heap size.
+     */
+    default long getSortMemoryBudgetBytes() {
+        return 0;
+    }
+
+    /**
+     * Returns the number of threads to compare unsorted data sources with; the data is hash-partitioned on the key
+     * fields and the partitions are compared in parallel if this is greater than 1. Both sides are then held in memory
+     * and the {@link #getSortMemoryBudgetBytes() sort memory budget} does not apply.
+     */
+    default int getCompareThreads() {
+        return 1;
+    }
 }
@@ -0,0 +1,204 @@
+/**
+ * Copyright 2017 Goldman Sachs.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.gs.obevocomparer.compare.simple;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.gs.obevocomparer.compare.CatoDataComparator;
+import com.gs.obevocomparer.compare.CatoProperties;
+import com.gs.obevocomparer.compare.breaks.FieldBreak;
+import com.gs.obevocomparer.data.simple.SimpleDataObject;
+import com.gs.obevocomparer.data.simple.SimpleDataSchema;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The comparison of {@link SimpleDataSourceComparator#compareDataObjects} compiled for a pair of
+ * {@link SimpleDataSchema}s: the key fields, the compared fields and the right-only fields are resolved to their
+ * indexes in the schemas once, so that comparing two objects only reads their value slots and allocates nothing unless
+ * the objects break.
+ *
+ * Fields can be added to a schema after the plan is compiled, which {@link #isCurrent()} checks for. The plan reflects
+ * the key, exclude and mapped fields of the properties at the time it was compiled.
+ */
+class FieldComparisonPlan {
+
+    private final CatoDataComparator dataComparator;
+    private final SimpleDataSchema leftSchema;
+    private final SimpleDataSchema rightSchema;
+    private final int leftFieldCount;
+    private final int rightFieldCount;
+
+    private final int[] keyLeftIndexes;
+    private final int[] keyRightIndexes;
+    private final String[] compareFields;
+    private final int[] compareLeftIndexes;
+    private final int[] compareRightIndexes;
+    private final String[] rightOnlyFields;
+    private final int[] rightOnlyIndexes;
+
+    private static final Logger LOG = LoggerFactory.getLogger(FieldComparisonPlan.class);
+
+    FieldComparisonPlan(CatoProperties properties, CatoDataComparator dataComparator, SimpleDataSchema leftSchema,
+            SimpleDataSchema rightSchema) {
+        this.dataComparator = dataComparator;
+        this.leftSchema = leftSchema;
+        this.rightSchema = rightSchema;
+        this.leftFieldCount = leftSchema.getFields().size();
+        this.rightFieldCount = rightSchema.getFields().size();
+
+        List<String> keyFields = properties.getKeyFields();
+        Set<String> excludeFields = properties.getExcludeFields();
+        Map<String, String> mappedFields = properties.getMappedFields();
+
+        List<Integer> keyLeftIndexes = new ArrayList<Integer>();
+        List<Integer> keyRightIndexes = new ArrayList<Integer>();
+        List<String> compareFields = new ArrayList<String>();
+        List<Integer> compareLeftIndexes = new ArrayList<Integer>();
+        List<Integer> compareRightIndexes = new ArrayList<Integer>();
+        Set<String> comparedRightFields = new HashSet<String>();
+
+        for (String field : leftSchema.getFields()) {
+            if (excludeFields.contains(field)) {
+                continue;
+            }
+
+            String rightField = mappedFields.containsKey(field) ? mappedFields.get(field) : field;
+            if (keyFields.contains(field)) {
+                keyLeftIndexes.add(leftSchema.getFieldIndex(field));
+                keyRightIndexes.add(getFieldIndex(rightSchema, rightField));
+                continue;
+            }
+
+            compareFields.add(field);
+            compareLeftIndexes.add(leftSchema.getFieldIndex(field));
+            compareRightIndexes.add(getFieldIndex(rightSchema, rightField));
+            comparedRightFields.add(rightField);
+        }
+
+        List<String> rightOnlyFields = new ArrayList<String>();
+        List<Integer> rightOnlyIndexes = new ArrayList<Integer>();
+        for (String rightField : rightSchema.getFields()) {
+            if (keyFields.contains(rightField)
+                    || excludeFields.contains(rightField)
+                    || comparedRightFields.contains(rightField)
+                    || mappedFields.containsKey(rightField)) {
+                continue;
+            }
+
+            rightOnlyFields.add(rightField);
+            rightOnlyIndexes.add(rightSchema.getFieldIndex(rightField));
+        }
+
+        this.keyLeftIndexes = toArray(keyLeftIndexes);
+        this.keyRightIndexes = toArray(keyRightIndexes);
+        this.compareFields = compareFields.toArray(new String[compareFields.size()]);
+        this.compareLeftIndexes = toArray(compareLeftIndexes);
+        this.compareRightIndexes = toArray(compareRightIndexes);
+        this.rightOnlyFields = rightOnlyFields.toArray(new String[rightOnlyFields.size()]);
+        this.rightOnlyIndexes = toArray(rightOnlyIndexes);
+    }
+
+    /**
+     * Returns false if fields were added to the schemas since the plan was compiled.
+     */
+    boolean isCurrent() {
+        return this.leftSchema.getFields().size() == this.leftFieldCount
+                && this.rightSchema.getFields().size() == this.rightFieldCount;
+    }
+
+    FieldBreak compare(SimpleDataObject leftObj, SimpleDataObject rightObj) {
+        for (int i = 0; i < this.keyLeftIndexes.length; i++) {
+            if (this.dataComparator.compareKeyValues(getValue(leftObj, this.keyLeftIndexes[i]), getValue(rightObj, this.keyRightIndexes[i])) != 0) {
+                LOG.error("Cannot compare data objects with different keys\n{}\n{}", leftObj, rightObj);
+                throw new IllegalArgumentException("Cannot compare data objects with different keys");
+            }
+        }
+
+        Map<String, Object> fieldBreaks = null;
+        for (int i = 0; i < this.compareFields.length; i++) {
+            Object rightVal = getValue(rightObj, this.compareRightIndexes[i]);
+            if (!this.dataComparator.compareValues(getValue(leftObj, this.compareLeftIndexes[i]), rightVal)) {
+                if (fieldBreaks == null) {
+                    fieldBreaks = new HashMap<String, Object>();
+                }
+                fieldBreaks.put(this.compareFields[i], rightVal);
+            }
+        }
+
+        for (int i = 0; i < this.rightOnlyFields.length; i++) {
+            if (fieldBreaks == null) {
+                fieldBreaks = new HashMap<String, Object>();
+            }
+            fieldBreaks.put(this.rightOnlyFields[i], getValue(rightObj, this.rightOnlyIndexes[i]));
+        }
+
+        return fieldBreaks == null ? null : new FieldBreak(leftObj, fieldBreaks);
+    }
+
+    private static Object getValue(SimpleDataObject obj, int index) {
+        return index < 0 ? null : obj.getValue(index);
+    }
+
+    private static int getFieldIndex(SimpleDataSchema schema, String field) {
+        Integer index = schema.getFieldIndex(field);
+        return index == null ? -1 : index;
+    }
+
+    private static int[] toArray(List<Integer> list) {
+        int[] array = new int[list.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = list.get(i);
+        }
+        return array;
+    }
+
+    /**
+     * The plans for the schema pairs of one comparison, compiled when first needed. Instances are not thread-safe.
+     */
+    static class Cache {
+        private final CatoProperties properties;
+        private final CatoDataComparator dataComparator;
+        private final List<FieldComparisonPlan> plans = new ArrayList<FieldComparisonPlan>(1);
+
+        Cache(CatoProperties properties, CatoDataComparator dataComparator) {
+            this.properties = properties;
+            this.dataComparator = dataComparator;
+        }
+
+        FieldComparisonPlan get(SimpleDataSchema leftSchema, SimpleDataSchema rightSchema) {
+            for (int i = 0; i < this.plans.size(); i++) {
+                FieldComparisonPlan plan = this.plans.get(i);
+                if (plan.leftSchema == leftSchema && plan.rightSchema == rightSchema) {
+                    if (!plan.isCurrent()) {
+                        plan = new FieldComparisonPlan(this.properties, this.dataComparator, leftSchema, rightSchema);
+                        this.plans.set(i, plan);
+                    }
+                    return plan;
+                }
+            }
+
+            FieldComparisonPlan plan = new FieldComparisonPlan(this.properties, this.dataComparator, leftSchema, rightSchema);
+            this.plans.add(plan);
+            return plan;
+        }
+    }
+}
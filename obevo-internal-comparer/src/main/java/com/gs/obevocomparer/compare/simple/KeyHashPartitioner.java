@@ -0,0 +1,80 @@
+/**
+ * Copyright 2017 Goldman Sachs.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.gs.obevocomparer.compare.simple;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.gs.obevocomparer.data.CatoDataObject;
+
+/**
+ * Splits data objects into partitions by the hash of their key values, such that the objects with equal keys per
+ * {@link SimpleDataComparator#compareKeyValues(Object, Object)} end up in the same partition.
+ *
+ * That only holds if each key field has values of a single kind across all the partitioned objects, as values of
+ * different kinds are compared by their toString() values; {@link #isConsistentWithComparator()} checks this once all
+ * the data was partitioned. Instances are not thread-safe.
+ */
+class KeyHashPartitioner {
+
+    private final SimpleDataComparator dataComparator;
+    private final List<String> keyFields;
+    private final int partitionCount;
+    private final int[] keyKinds;
+
+    KeyHashPartitioner(SimpleDataComparator dataComparator, List<String> keyFields, int partitionCount) {
+        this.dataComparator = dataComparator;
+        this.keyFields = keyFields;
+        this.partitionCount = partitionCount;
+        this.keyKinds = new int[keyFields.size()];
+    }
+
+    List<List<CatoDataObject>> partition(List<CatoDataObject> data) {
+        List<List<CatoDataObject>> partitions = new ArrayList<List<CatoDataObject>>(this.partitionCount);
+        for (int i = 0; i < this.partitionCount; i++) {
+            partitions.add(new ArrayList<CatoDataObject>(data.size() / this.partitionCount + 1));
+        }
+
+        for (CatoDataObject obj : data) {
+            partitions.get(this.getPartition(obj)).add(obj);
+        }
+
+        return partitions;
+    }
+
+    private int getPartition(CatoDataObject obj) {
+        int hash = 1;
+        for (int i = 0; i < this.keyKinds.length; i++) {
+            Object val = obj.getValue(this.keyFields.get(i));
+            this.keyKinds[i] |= SimpleDataComparator.keyKind(val);
+            hash = 31 * hash + this.dataComparator.hashKeyValue(val);
+        }
+        return Math.floorMod(hash ^ (hash >>> 16), this.partitionCount);
+    }
+
+    /**
+     * Returns false if a key field had values of different kinds, in which case equal keys may have been put into
+     * different partitions.
+     */
+    boolean isConsistentWithComparator() {
+        for (int keyKind : this.keyKinds) {
+            if (Integer.bitCount(keyKind) > 1) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
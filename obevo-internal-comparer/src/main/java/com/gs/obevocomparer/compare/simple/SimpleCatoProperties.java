@@ -38,6 +38,8 @@ public class SimpleCatoProperties implements CatoProperties {
     private Collection<BreakExclude> breakExcludes;
 
     private int decimalPrecision;
+    private long sortMemoryBudgetBytes;
+    private int compareThreads = 1;
 
     public SimpleCatoProperties(List<String> keyFields) {
         this(keyFields, Collections.<String>emptyList());
@@ -108,6 +110,32 @@ public class SimpleCatoProperties implements CatoProperties {
         this.decimalPrecision = decimalPrecision;
     }
 
+    public long getSortMemoryBudgetBytes() {
+        return this.sortMemoryBudgetBytes;
+    }
+
+    public void setSortMemoryBudgetBytes(long sortMemoryBudgetBytes) {
+        this.sortMemoryBudgetBytes = sortMemoryBudgetBytes;
+    }
+
+    public SimpleCatoProperties withSortMemoryBudgetBytes(long sortMemoryBudgetBytes) {
+        this.setSortMemoryBudgetBytes(sortMemoryBudgetBytes);
+        return this;
+    }
+
+    public int getCompareThreads() {
+        return this.compareThreads;
+    }
+
+    public void setCompareThreads(int compareThreads) {
+        this.compareThreads = compareThreads;
+    }
+
+    public SimpleCatoProperties withCompareThreads(int compareThreads) {
+        this.setCompareThreads(compareThreads);
+        return this;
+    }
+
     public SimpleCatoProperties withExcludedFields(Set<String> excludeFields) {
         this.excludeFields = excludeFields;
         return this;
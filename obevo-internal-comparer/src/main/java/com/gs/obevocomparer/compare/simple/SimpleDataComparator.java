@@ -23,6 +23,11 @@ import org.slf4j.LoggerFactory;
 
 public class SimpleDataComparator implements CatoDataComparator {
 
+    static final int KEY_KIND_NUMBER = 1;
+    static final int KEY_KIND_STRING = 2;
+    static final int KEY_KIND_DATE = 4;
+    static final int KEY_KIND_OTHER = 8;
+
     private final double precisionBase10;
     private final double precisionBaseNeg10;
 
@@ -73,7 +78,7 @@ public class SimpleDataComparator implements CatoDataComparator {
         }
 
         if (val1 instanceof Date && val2 instanceof Date) {
-            return Long.valueOf(((Date) val1).getTime()).compareTo(((Date) val2).getTime());
+            return Long.compare(((Date) val1).getTime(), ((Date) val2).getTime());
         }
 
         if (compareKey) {
@@ -97,15 +102,68 @@ public class SimpleDataComparator implements CatoDataComparator {
         }
     }
 
+    /**
+     * Returns a hash code of the key value that is consistent with {@link #compareKeyValues(Object, Object)} for values
+     * of the same {@link #keyKind(Object) kind}. Values of different kinds are compared by their toString() values,
+     * which this does not account for.
+     */
+    int hashKeyValue(Object val) {
+        if (val == null) {
+            return 0;
+        }
+        if (val instanceof Number) {
+            return Long.hashCode(this.round((Number) val));
+        }
+        if (val instanceof String) {
+            // hashes the trimmed string without creating it; same as String.trim().hashCode()
+            String str = (String) val;
+            int start = 0;
+            int end = str.length();
+            while (start < end && str.charAt(start) <= ' ') {
+                start++;
+            }
+            while (start < end && str.charAt(end - 1) <= ' ') {
+                end--;
+            }
+            int hash = 0;
+            for (int i = start; i < end; i++) {
+                hash = 31 * hash + str.charAt(i);
+            }
+            return hash;
+        }
+        if (val instanceof Date) {
+            return Long.hashCode(((Date) val).getTime());
+        }
+        return val.toString().hashCode();
+    }
+
+    /**
+     * Returns the kind of the key value by which {@link #compare(Object, Object, boolean)} picks the comparison, or 0
+     * for null.
+     */
+    static int keyKind(Object val) {
+        if (val == null) {
+            return 0;
+        } else if (val instanceof Number) {
+            return KEY_KIND_NUMBER;
+        } else if (val instanceof String) {
+            return KEY_KIND_STRING;
+        } else if (val instanceof Date) {
+            return KEY_KIND_DATE;
+        } else {
+            return KEY_KIND_OTHER;
+        }
+    }
+
     private int subtractCompare(Number num1, Number num2) {
         return Math.abs(num1.doubleValue() - num2.doubleValue()) < this.precisionBaseNeg10 ? 0 : -2;
     }
 
     private int roundCompare(Number num1, Number num2) {
-        return this.round(num1).compareTo(this.round(num2));
+        return Long.compare(this.round(num1), this.round(num2));
     }
 
-    private Long round(Number n) {
+    private long round(Number n) {
         return Math.round(n.doubleValue() * this.precisionBase10);
     }
 }
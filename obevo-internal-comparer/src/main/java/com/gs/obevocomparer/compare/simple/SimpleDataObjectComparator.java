@@ -31,6 +31,14 @@ public class SimpleDataObjectComparator implements Comparator<CatoDataObject> {
         this.compareFields = compareFields;
     }
 
+    CatoDataComparator getDataComparator() {
+        return this.dataComparator;
+    }
+
+    List<String> getCompareFields() {
+        return this.compareFields;
+    }
+
     @Override
     public int compare(CatoDataObject obj1, CatoDataObject obj2) {
         if (obj1 == null && obj2 == null) {
@@ -24,7 +24,15 @@ import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
+import java.util.function.ToIntFunction;
 
 import com.gs.obevocomparer.compare.CatoComparison;
 import com.gs.obevocomparer.compare.CatoDataComparator;
@@ -36,9 +44,12 @@ import com.gs.obevocomparer.compare.breaks.DataObjectBreak;
 import com.gs.obevocomparer.compare.breaks.FieldBreak;
 import com.gs.obevocomparer.compare.breaks.GroupBreak;
 import com.gs.obevocomparer.data.CatoDataObject;
+import com.gs.obevocomparer.data.simple.SimpleDataObject;
+import com.gs.obevocomparer.data.simple.SimpleDataSchema;
 import com.gs.obevocomparer.input.CatoDataSource;
 import com.gs.obevocomparer.sort.Sort;
 import com.gs.obevocomparer.sort.SortedGroupIterator;
+import com.gs.obevocomparer.sort.simple.ExternalMergeSort;
 import com.gs.obevocomparer.util.Factory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -54,6 +65,9 @@ public class SimpleDataSourceComparator implements CatoDataSourceComparator {
 
     private int groupId = 1;
 
+    /** More partitions than threads, so that a few large partitions do not leave the other threads idle. */
+    private static final int PARTITIONS_PER_THREAD = 4;
+
     private static final Logger LOG = LoggerFactory.getLogger(SimpleDataSourceComparator.class);
 
     public SimpleDataSourceComparator(CatoProperties properties, Comparator<CatoDataObject> dataObjectComparator,
@@ -78,18 +92,233 @@ public class SimpleDataSourceComparator implements CatoDataSourceComparator {
         leftDataSource.open();
         rightDataSource.open();
 
-        Iterator<CatoDataObject> sortedLeftData = leftDataSource.isSorted() ?
-                leftDataSource : this.sort.sort(leftDataSource);
-        Iterator<CatoDataObject> sortedRightData = rightDataSource.isSorted() ?
-                rightDataSource : this.sort.sort(rightDataSource);
-
         Collection<Break> breaks = this.breakCollectionFactory.create();
 
+        int compareThreads = this.properties.getCompareThreads();
+        if (compareThreads > 1 && this.dataObjectComparator instanceof SimpleDataObjectComparator
+                && ((SimpleDataObjectComparator) this.dataObjectComparator).getDataComparator() instanceof SimpleDataComparator) {
+            this.comparePartitioned(leftDataSource, rightDataSource, compareThreads, breaks, leftData, rightData);
+        } else {
+            Iterator<CatoDataObject> sortedLeftData = null;
+            Iterator<CatoDataObject> sortedRightData = null;
+            try {
+                sortedLeftData = leftDataSource.isSorted() ?
+                        leftDataSource : this.sort.sort(leftDataSource);
+                sortedRightData = rightDataSource.isSorted() ?
+                        rightDataSource : this.sort.sort(rightDataSource);
+
+                this.compareSortedData(sortedLeftData, sortedRightData, false, breaks::add, leftData, rightData, obj -> this.nextGroupId());
+            } finally {
+                this.closeSortedData(leftDataSource, sortedLeftData);
+                this.closeSortedData(rightDataSource, sortedRightData);
+            }
+        }
+
+        leftDataSource.close();
+        rightDataSource.close();
+
+        this.processComparisonData(breaks, leftData, rightData);
+
+        LOG.info("Completed comparison with {} breaks", breaks.size());
+        return new CatoComparison(comparisonName, this.properties, breaks,
+                leftDataSource, leftData,
+                rightDataSource, rightData);
+    }
+
+    @Override
+    public void compareSorted(CatoDataSource leftDataSource, CatoDataSource rightDataSource, Consumer<Break> breakHandler) {
+        LOG.info("Comparing sorted left data set '{}' to sorted right data set '{}'",
+                leftDataSource.getName(), rightDataSource.getName());
+
+        leftDataSource.open();
+        rightDataSource.open();
+        try {
+            this.compareSortedData(leftDataSource, rightDataSource, true, breakHandler, null, null, obj -> this.nextGroupId());
+        } finally {
+            leftDataSource.close();
+            rightDataSource.close();
+        }
+
+        LOG.info("Completed sorted comparison");
+    }
+
+    /**
+     * Closes the data sorted by this.sort, e.g. to delete its temporary files if the comparison stopped early; the
+     * data source itself is closed by the caller.
+     */
+    private void closeSortedData(CatoDataSource dataSource, Iterator<CatoDataObject> sortedData) {
+        if (sortedData != dataSource) {
+            Sort.close(sortedData);
+        }
+    }
+
+    private int nextGroupId() {
+        return this.groupId++;
+    }
+
+    /**
+     * Compares the data by splitting both sides into partitions by the hash of the key fields and comparing the
+     * partitions on multiple threads. The data of both sides is held in memory, so the memory budget of the configured
+     * {@link Sort} (see {@link CatoProperties#getSortMemoryBudgetBytes()}) does not apply and nothing is spilled to disk.
+     *
+     * The results of the partitions are merged back in the key order and the group IDs are assigned in that order, so
+     * that the comparison is the same as that of {@link #compareSortedData} regardless of the number of threads. If a
+     * key field has values of different types, which are compared by their toString() values and so may not hash to
+     * the same partition when equal, the data is compared on the current thread instead.
+     */
+    private void comparePartitioned(CatoDataSource leftDataSource, CatoDataSource rightDataSource, int threads,
+            Collection<Break> breaks, Collection<CatoDataObject> leftData, Collection<CatoDataObject> rightData) {
+        List<CatoDataObject> leftInput = new ArrayList<CatoDataObject>();
+        leftDataSource.forEachRemaining(leftInput::add);
+        List<CatoDataObject> rightInput = new ArrayList<CatoDataObject>();
+        rightDataSource.forEachRemaining(rightInput::add);
+
+        SimpleDataObjectComparator keyComparator = (SimpleDataObjectComparator) this.dataObjectComparator;
+        int partitionCount = threads * PARTITIONS_PER_THREAD;
+        KeyHashPartitioner partitioner = new KeyHashPartitioner((SimpleDataComparator) keyComparator.getDataComparator(),
+                keyComparator.getCompareFields(), partitionCount);
+        List<List<CatoDataObject>> leftPartitions = partitioner.partition(leftInput);
+        List<List<CatoDataObject>> rightPartitions = partitioner.partition(rightInput);
+
+        if (!partitioner.isConsistentWithComparator()) {
+            LOG.info("Key fields have values of different types; comparing on a single thread");
+            Iterator<CatoDataObject> sortedLeftData = null;
+            Iterator<CatoDataObject> sortedRightData = null;
+            try {
+                sortedLeftData = this.sort.sort(leftInput.iterator());
+                sortedRightData = this.sort.sort(rightInput.iterator());
+                this.compareSortedData(sortedLeftData, sortedRightData, false,
+                        breaks::add, leftData, rightData, obj -> this.nextGroupId());
+            } finally {
+                Sort.close(sortedLeftData);
+                Sort.close(sortedRightData);
+            }
+            return;
+        }
+
+        LOG.info("Comparing {} left and {} right objects in {} partitions on {} threads",
+                leftInput.size(), rightInput.size(), partitionCount, threads);
+        if (this.sort instanceof ExternalMergeSort) {
+            LOG.warn("The data is compared in memory on multiple threads; the sort memory budget is ignored and no data "
+                    + "is spilled to disk. Set compareThreads to 1 to compare data that does not fit in memory");
+        }
+
+        List<PartitionComparison> partitionComparisons = new ArrayList<PartitionComparison>(partitionCount);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<PartitionComparison>> futures = new ArrayList<Future<PartitionComparison>>(partitionCount);
+            for (int i = 0; i < partitionCount; i++) {
+                List<CatoDataObject> leftPartition = leftPartitions.get(i);
+                List<CatoDataObject> rightPartition = rightPartitions.get(i);
+                futures.add(executor.submit(() -> this.comparePartition(leftPartition, rightPartition)));
+            }
+            for (Future<PartitionComparison> future : futures) {
+                partitionComparisons.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while comparing the partitions", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        List<List<Break>> partitionBreaks = new ArrayList<List<Break>>(partitionCount);
+        List<List<CatoDataObject>> partitionLeftData = new ArrayList<List<CatoDataObject>>(partitionCount);
+        List<List<CatoDataObject>> partitionRightData = new ArrayList<List<CatoDataObject>>(partitionCount);
+        List<List<CatoDataObject>> partitionGroupKeys = new ArrayList<List<CatoDataObject>>(partitionCount);
+        int[][] mergedGroupIds = new int[partitionCount][];
+        for (int i = 0; i < partitionCount; i++) {
+            PartitionComparison partitionComparison = partitionComparisons.get(i);
+            partitionBreaks.add(partitionComparison.breaks);
+            partitionLeftData.add(partitionComparison.leftData);
+            partitionRightData.add(partitionComparison.rightData);
+            partitionGroupKeys.add(partitionComparison.groupKeys);
+            mergedGroupIds[i] = new int[partitionComparison.groupKeys.size()];
+        }
+
+        // the group IDs of the partitions are local to them; every group takes an ID in the merged order, as in
+        // compareSortedData, whether or not it has breaks
+        int[] mergedGroupCounts = new int[partitionCount];
+        this.mergePartitions(partitionGroupKeys, this.dataObjectComparator,
+                (obj, partition) -> mergedGroupIds[partition][mergedGroupCounts[partition]++] = this.nextGroupId());
+        this.mergePartitions(partitionBreaks,
+                (br1, br2) -> this.dataObjectComparator.compare(br1.getDataObject(), br2.getDataObject()),
+                (br, partition) -> {
+                    if (br instanceof GroupBreak) {
+                        GroupBreak groupBreak = (GroupBreak) br;
+                        breaks.add(new GroupBreak(groupBreak.getDataObject(), groupBreak.getDataSide(),
+                                groupBreak.getFields(), mergedGroupIds[partition][groupBreak.getGroupId() - 1]));
+                    } else {
+                        breaks.add(br);
+                    }
+                });
+        this.mergePartitions(partitionLeftData, this.dataObjectComparator, (obj, partition) -> leftData.add(obj));
+        this.mergePartitions(partitionRightData, this.dataObjectComparator, (obj, partition) -> rightData.add(obj));
+    }
+
+    private PartitionComparison comparePartition(List<CatoDataObject> leftPartition, List<CatoDataObject> rightPartition) {
+        // stable sorts, so that the objects of a group are in the input order as with this.sort
+        leftPartition.sort(this.dataObjectComparator);
+        rightPartition.sort(this.dataObjectComparator);
+
+        PartitionComparison partitionComparison = new PartitionComparison();
+        this.compareSortedData(leftPartition.iterator(), rightPartition.iterator(), false,
+                partitionComparison.breaks::add, partitionComparison.leftData, partitionComparison.rightData,
+                obj -> {
+                    partitionComparison.groupKeys.add(obj);
+                    return partitionComparison.groupKeys.size();
+                });
+        return partitionComparison;
+    }
+
+    /**
+     * Merges the sorted partitions into the consumer, which also receives the index of the element's partition. Equal
+     * elements only come from the same partition, so the result is sorted the same way as the unpartitioned data.
+     */
+    private <T> void mergePartitions(List<List<T>> partitions, Comparator<? super T> comparator, ObjIntConsumer<T> consumer) {
+        int[] positions = new int[partitions.size()];
+        PriorityQueue<Integer> heads = new PriorityQueue<Integer>(Math.max(1, partitions.size()), (p1, p2) -> {
+            int result = comparator.compare(partitions.get(p1).get(positions[p1]), partitions.get(p2).get(positions[p2]));
+            return result != 0 ? result : Integer.compare(p1, p2);
+        });
+        for (int i = 0; i < partitions.size(); i++) {
+            if (!partitions.get(i).isEmpty()) {
+                heads.add(i);
+            }
+        }
+
+        while (!heads.isEmpty()) {
+            int partition = heads.poll();
+            consumer.accept(partitions.get(partition).get(positions[partition]++), partition);
+            if (positions[partition] < partitions.get(partition).size()) {
+                heads.add(partition);
+            }
+        }
+    }
+
+    /**
+     * Merge-joins the sorted data by the key fields.
+     *
+     * @param leftData collection to add the left data into; may be null if the data should not be retained
+     * @param rightData collection to add the right data into; may be null if the data should not be retained
+     * @param groupIds supplies the ID of each group of more than one object with the same key, given the first object
+     * of the group; it is called for every such group, including those without breaks
+     */
+    private void compareSortedData(Iterator<CatoDataObject> sortedLeftData, Iterator<CatoDataObject> sortedRightData,
+            boolean failIfUnsorted, Consumer<Break> breaks, Collection<CatoDataObject> leftData, Collection<CatoDataObject> rightData,
+            ToIntFunction<CatoDataObject> groupIds) {
         SortedGroupIterator<CatoDataObject> leftGroupIter =
-                new SortedGroupIterator<CatoDataObject>(sortedLeftData, this.dataObjectComparator);
+                new SortedGroupIterator<CatoDataObject>(sortedLeftData, this.dataObjectComparator, failIfUnsorted);
 
         SortedGroupIterator<CatoDataObject> rightGroupIter =
-                new SortedGroupIterator<CatoDataObject>(sortedRightData, this.dataObjectComparator);
+                new SortedGroupIterator<CatoDataObject>(sortedRightData, this.dataObjectComparator, failIfUnsorted);
+
+        FieldComparisonPlan.Cache comparisonPlans = new FieldComparisonPlan.Cache(this.properties, this.dataComparator);
 
         List<CatoDataObject> leftGroup = leftGroupIter.next();
         List<CatoDataObject> rightGroup = rightGroupIter.next();
@@ -101,62 +330,63 @@ public class SimpleDataSourceComparator implements CatoDataSourceComparator {
                     rightGroup.size() > 0 ? rightGroup.get(0) : null);
 
             if (keyCompResult < 0) {
-                this.processLeftOnlyGroup(leftGroup, breaks, leftData, rightData);
+                this.processLeftOnlyGroup(leftGroup, breaks, leftData);
                 leftGroup = leftGroupIter.next();
             } else if (keyCompResult > 0) {
-                this.processRightOnlyGroup(rightGroup, breaks, leftData, rightData);
+                this.processRightOnlyGroup(rightGroup, breaks, rightData);
                 rightGroup = rightGroupIter.next();
             } else {
-                this.processBothGroups(leftGroup, rightGroup, breaks, leftData, rightData);
+                this.processBothGroups(leftGroup, rightGroup, breaks, leftData, rightData, groupIds, comparisonPlans);
                 leftGroup = leftGroupIter.next();
                 rightGroup = rightGroupIter.next();
             }
         }
-
-        leftDataSource.close();
-        rightDataSource.close();
-
-        this.processComparisonData(breaks, leftData, rightData);
-
-        LOG.info("Completed comparison with {} breaks", breaks.size());
-        return new CatoComparison(comparisonName, this.properties, breaks,
-                leftDataSource, leftData,
-                rightDataSource, rightData);
     }
 
-    private void processLeftOnlyGroup(List<CatoDataObject> leftGroup, Collection<Break> breaks,
-            Collection<CatoDataObject> leftData, Collection<CatoDataObject> rightData) {
-        leftData.addAll(leftGroup);
+    private void processLeftOnlyGroup(List<CatoDataObject> leftGroup, Consumer<Break> breaks,
+            Collection<CatoDataObject> leftData) {
+        if (leftData != null) {
+            leftData.addAll(leftGroup);
+        }
 
         for (CatoDataObject obj : leftGroup) {
-            breaks.add(new DataObjectBreak(obj, CatoDataSide.LEFT));
+            breaks.accept(new DataObjectBreak(obj, CatoDataSide.LEFT));
         }
     }
 
-    private void processRightOnlyGroup(List<CatoDataObject> rightGroup, Collection<Break> breaks,
-            Collection<CatoDataObject> leftData, Collection<CatoDataObject> rightData) {
-        rightData.addAll(rightGroup);
+    private void processRightOnlyGroup(List<CatoDataObject> rightGroup, Consumer<Break> breaks,
+            Collection<CatoDataObject> rightData) {
+        if (rightData != null) {
+            rightData.addAll(rightGroup);
+        }
 
         for (CatoDataObject obj : rightGroup) {
-            breaks.add(new DataObjectBreak(obj, CatoDataSide.RIGHT));
+            breaks.accept(new DataObjectBreak(obj, CatoDataSide.RIGHT));
         }
     }
 
     private void processBothGroups(List<CatoDataObject> leftGroup, List<CatoDataObject> rightGroup,
-            Collection<Break> breaks, Collection<CatoDataObject> leftData, Collection<CatoDataObject> rightData) {
-        leftData.addAll(leftGroup);
-        rightData.addAll(rightGroup);
+            Consumer<Break> breaks, Collection<CatoDataObject> leftData, Collection<CatoDataObject> rightData,
+            ToIntFunction<CatoDataObject> groupIds, FieldComparisonPlan.Cache comparisonPlans) {
+        if (leftData != null) {
+            leftData.addAll(leftGroup);
+        }
+        if (rightData != null) {
+            rightData.addAll(rightGroup);
+        }
 
         FieldBreak fieldBreak;
 
         if (leftGroup.size() == 1 && rightGroup.size() == 1) {
-            fieldBreak = this.compareDataObjects(leftGroup.get(0), rightGroup.get(0));
+            fieldBreak = this.compareDataObjects(leftGroup.get(0), rightGroup.get(0), comparisonPlans);
             if (fieldBreak != null) {
-                breaks.add(fieldBreak);
+                breaks.accept(fieldBreak);
             }
             return;
         }
 
+        int groupId = groupIds.applyAsInt(leftGroup.get(0));
+
         if (leftGroup.size() > 100) {
             LOG.warn("Large group of size {} being compared", leftGroup.size());
         }
@@ -170,7 +400,7 @@ public class SimpleDataSourceComparator implements CatoDataSourceComparator {
             leftObj = leftIter.next();
             for (Iterator<CatoDataObject> rightIter = rightCompareGroup.iterator(); rightIter.hasNext(); ) {
                 rightObj = rightIter.next();
-                if (this.compareDataObjects(leftObj, rightObj) == null) {
+                if (this.compareDataObjects(leftObj, rightObj, comparisonPlans) == null) {
                     leftIter.remove();
                     rightIter.remove();
                     break;
@@ -181,28 +411,45 @@ public class SimpleDataSourceComparator implements CatoDataSourceComparator {
         Set<String> breakFields = new LinkedHashSet<String>();
         for (CatoDataObject leftObject : leftCompareGroup) {
             for (CatoDataObject rightObject : rightCompareGroup) {
-                fieldBreak = this.compareDataObjects(leftObject, rightObject);
+                fieldBreak = this.compareDataObjects(leftObject, rightObject, comparisonPlans);
                 breakFields.addAll(fieldBreak.getFields());
             }
         }
 
         for (CatoDataObject obj : leftCompareGroup) {
-            breaks.add(new GroupBreak(obj, CatoDataSide.LEFT, breakFields, this.groupId));
+            breaks.accept(new GroupBreak(obj, CatoDataSide.LEFT, breakFields, groupId));
         }
 
         for (CatoDataObject obj : rightCompareGroup) {
-            breaks.add(new GroupBreak(obj, CatoDataSide.RIGHT, breakFields, this.groupId));
+            breaks.accept(new GroupBreak(obj, CatoDataSide.RIGHT, breakFields, groupId));
         }
-
-        this.groupId++;
     }
 
     FieldBreak compareDataObjects(CatoDataObject leftObj, CatoDataObject rightObj) {
+        return this.compareDataObjects(leftObj, rightObj, new FieldComparisonPlan.Cache(this.properties, this.dataComparator));
+    }
+
+    private FieldBreak compareDataObjects(CatoDataObject leftObj, CatoDataObject rightObj, FieldComparisonPlan.Cache comparisonPlans) {
         if (leftObj == null || rightObj == null) {
             LOG.error("Cannot compare null DataObjects");
             throw new IllegalArgumentException("Cannot compare null DataObjects");
         }
 
+        if (leftObj instanceof SimpleDataObject && rightObj instanceof SimpleDataObject) {
+            SimpleDataObject leftSimpleObj = (SimpleDataObject) leftObj;
+            SimpleDataObject rightSimpleObj = (SimpleDataObject) rightObj;
+            return comparisonPlans.get((SimpleDataSchema) leftSimpleObj.getSchema(), (SimpleDataSchema) rightSimpleObj.getSchema())
+                    .compare(leftSimpleObj, rightSimpleObj);
+        }
+
+        return this.compareDataObjectsByFieldName(leftObj, rightObj);
+    }
+
+    /**
+     * Compares objects of other {@link CatoDataObject} implementations, which do not have the field indexes that
+     * {@link FieldComparisonPlan} needs.
+     */
+    private FieldBreak compareDataObjectsByFieldName(CatoDataObject leftObj, CatoDataObject rightObj) {
         Object leftVal;
         Object rightVal;
         Set<String> comparedRightFields = new HashSet<String>();
@@ -257,6 +504,14 @@ public class SimpleDataSourceComparator implements CatoDataSourceComparator {
         }
     }
 
+    private static class PartitionComparison {
+        private final List<Break> breaks = new ArrayList<Break>();
+        private final List<CatoDataObject> leftData = new ArrayList<CatoDataObject>();
+        private final List<CatoDataObject> rightData = new ArrayList<CatoDataObject>();
+        /** The first object of each group of more than one object, in the order of their local group IDs. */
+        private final List<CatoDataObject> groupKeys = new ArrayList<CatoDataObject>();
+    }
+
     private void processComparisonData(Collection<Break> breaks, Collection<CatoDataObject> leftData, Collection<CatoDataObject> rightData) {
         // This method is intended to help subclass implementations
     }
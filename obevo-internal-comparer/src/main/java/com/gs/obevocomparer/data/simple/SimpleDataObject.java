@@ -40,6 +40,13 @@ public class SimpleDataObject implements CatoDataObject {
         return this.data[index];
     }
 
+    /**
+     * Returns the value at the {@link SimpleDataSchema#getFieldIndex(String) field index}, or null if it was not set.
+     */
+    public Object getValue(int index) {
+        return index < this.data.length ? this.data[index] : null;
+    }
+
     @Override
     public void setValue(String field, Object value) {
         int index = this.schema.getOrCreateFieldIndex(field);
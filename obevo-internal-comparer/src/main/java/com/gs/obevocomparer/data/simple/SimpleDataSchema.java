@@ -35,7 +35,11 @@ public class SimpleDataSchema implements CatoDataSchema {
         this.mappedFields.putAll(mappedFields);
     }
 
-    Integer getFieldIndex(String field) {
+    /**
+     * Returns the index of the field's value in the {@link SimpleDataObject}s of this schema, or null if the schema
+     * does not have the field. The index of a field does not change once it is added.
+     */
+    public Integer getFieldIndex(String field) {
         return this.fieldMap.get(field);
     }
 
@@ -32,6 +32,7 @@ public class AggregateDataSource extends AbstractCatoWrapperDataSource {
     private final List<String> keyFields;
     private final List<? extends AggregateField> aggFields;
 
+    private Iterator<CatoDataObject> sortedData;
     private Iterator<List<CatoDataObject>> sortedGroupData;
 
     private Sort<CatoDataObject> sort;
@@ -70,8 +71,20 @@ public class AggregateDataSource extends AbstractCatoWrapperDataSource {
     public void open() {
         super.open();
 
-        Iterator<CatoDataObject> sortedData = this.baseDataSource.isSorted() ? this.baseDataSource : this.sort.sort(this.baseDataSource);
-        this.sortedGroupData = new SortedGroupIterator<CatoDataObject>(sortedData, this.dataObjectComparator);
+        this.sortedData = this.baseDataSource.isSorted() ? this.baseDataSource : this.sort.sort(this.baseDataSource);
+        this.sortedGroupData = new SortedGroupIterator<CatoDataObject>(this.sortedData, this.dataObjectComparator);
+    }
+
+    @Override
+    public void close() {
+        try {
+            if (this.sortedData != this.baseDataSource) {
+                Sort.close(this.sortedData);
+            }
+            this.sortedData = null;
+        } finally {
+            super.close();
+        }
     }
 
     @Override
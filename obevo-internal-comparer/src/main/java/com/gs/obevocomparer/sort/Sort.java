@@ -15,9 +15,29 @@
  */
 package com.gs.obevocomparer.sort;
 
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.Iterator;
 
 public interface Sort<T> {
 
+    /**
+     * Returns the data in sorted order. The iterator may hold resources, e.g. temporary files, in which case it is
+     * {@link Closeable} and should be passed to {@link #close(Iterator)} once it is no longer needed.
+     */
     Iterator<T> sort(Iterator<T> data);
+
+    /**
+     * Releases the resources of an iterator returned by {@link #sort(Iterator)}, if any; null is ignored.
+     */
+    static void close(Iterator<?> sortedData) {
+        if (sortedData instanceof Closeable) {
+            try {
+                ((Closeable) sortedData).close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
 }
@@ -28,13 +28,23 @@ public class SortedGroupIterator<T> implements Iterator<List<T>> {
 
     private final Iterator<T> iterator;
     private final Comparator<T> comparator;
+    private final boolean failIfUnsorted;
     private T next;
 
     private static final Logger LOG = LoggerFactory.getLogger(SortedGroupIterator.class);
 
     public SortedGroupIterator(Iterator<T> iterator, Comparator<T> comparator) {
+        this(iterator, comparator, false);
+    }
+
+    /**
+     * @param failIfUnsorted if true, an IllegalStateException is thrown if the objects are not in sorted order;
+     *                       otherwise, a warning is logged
+     */
+    public SortedGroupIterator(Iterator<T> iterator, Comparator<T> comparator, boolean failIfUnsorted) {
         this.iterator = iterator;
         this.comparator = comparator;
+        this.failIfUnsorted = failIfUnsorted;
 
         if (iterator.hasNext()) {
             this.next = this.iterator.next();
@@ -59,6 +69,9 @@ public class SortedGroupIterator<T> implements Iterator<List<T>> {
         }
 
         if (compare > 0) {
+            if (this.failIfUnsorted) {
+                throw new IllegalStateException("Objects not in sorted order - " + curr + " precedes " + this.next + " but is greater");
+            }
             LOG.warn("Objects not in sorted order - {} precedes {} but is greater", curr, this.next);
         }
 
@@ -0,0 +1,529 @@
+/**
+ * Copyright 2017 Goldman Sachs.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.gs.obevocomparer.sort.simple;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+import com.gs.obevocomparer.data.CatoDataObject;
+import com.gs.obevocomparer.data.CatoDataSchema;
+import com.gs.obevocomparer.sort.Sort;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sorts the data in runs that fit within a memory budget, writing each sorted run to a temporary file, and then merges
+ * the runs. If all the data fits within the budget, it is sorted in memory as with {@link MemorySort}.
+ *
+ * The budget is compared against an estimate of the heap size of the data objects. The run files use a compact binary
+ * format: the common JDK value types are written directly, and the other values via Java serialization. The merge
+ * reads at most maxMergeFanIn runs at once; if there are more runs, the earliest ones are first merged into larger
+ * runs. The sort is stable. The run files are deleted once the returned iterator is exhausted or closed; it is
+ * {@link Closeable} if the data was spilled, see {@link Sort#close(Iterator)}.
+ *
+ * The data objects are recreated from their schema when read back; the objects of a data source are expected to share
+ * their schema instance.
+ */
+public class ExternalMergeSort implements Sort<CatoDataObject> {
+    private static final Logger LOG = LoggerFactory.getLogger(ExternalMergeSort.class);
+
+    static final int DEFAULT_MAX_MERGE_FAN_IN = 64;
+    private static final int FILE_BUFFER_SIZE = 64 * 1024;
+
+    private final Comparator<CatoDataObject> comparator;
+    private final long memoryBudgetBytes;
+    private final File tempDir;
+    private final int maxMergeFanIn;
+
+    public ExternalMergeSort(Comparator<CatoDataObject> comparator, long memoryBudgetBytes) {
+        this(comparator, memoryBudgetBytes, null);
+    }
+
+    /**
+     * @param tempDir The directory for the run files; null for the default temporary-file directory.
+     */
+    public ExternalMergeSort(Comparator<CatoDataObject> comparator, long memoryBudgetBytes, File tempDir) {
+        this(comparator, memoryBudgetBytes, tempDir, DEFAULT_MAX_MERGE_FAN_IN);
+    }
+
+    ExternalMergeSort(Comparator<CatoDataObject> comparator, long memoryBudgetBytes, File tempDir, int maxMergeFanIn) {
+        if (memoryBudgetBytes <= 0) {
+            throw new IllegalArgumentException("memoryBudgetBytes must be positive; got " + memoryBudgetBytes);
+        }
+        if (maxMergeFanIn < 2) {
+            throw new IllegalArgumentException("maxMergeFanIn must be at least 2; got " + maxMergeFanIn);
+        }
+        this.comparator = comparator;
+        this.memoryBudgetBytes = memoryBudgetBytes;
+        this.tempDir = tempDir;
+        this.maxMergeFanIn = maxMergeFanIn;
+    }
+
+    /**
+     * Returns the default memory budget: an eighth of the max heap size, as both sides of a comparison may be sorted
+     * and the comparison itself needs memory too.
+     */
+    public static long getDefaultMemoryBudgetBytes() {
+        return Runtime.getRuntime().maxMemory() / 8;
+    }
+
+    @Override
+    public Iterator<CatoDataObject> sort(Iterator<CatoDataObject> data) {
+        RowCodec codec = new RowCodec();
+        List<Run> runs = new ArrayList<Run>();
+        try {
+            List<CatoDataObject> runData = new ArrayList<CatoDataObject>();
+            long runBytes = 0;
+            long rowCount = 0;
+            while (data.hasNext()) {
+                CatoDataObject obj = data.next();
+                runData.add(obj);
+                runBytes += estimateSize(obj);
+                rowCount++;
+                if (runBytes >= this.memoryBudgetBytes) {
+                    runs.add(this.writeRun(runData, codec));
+                    runData = new ArrayList<CatoDataObject>();
+                    runBytes = 0;
+                }
+            }
+
+            if (runs.isEmpty()) {
+                Collections.sort(runData, this.comparator);
+                return runData.iterator();
+            }
+            if (!runData.isEmpty()) {
+                runs.add(this.writeRun(runData, codec));
+            }
+            runData = null;
+
+            LOG.info("Sorted {} rows in {} runs on disk for a memory budget of {} bytes", rowCount, runs.size(), this.memoryBudgetBytes);
+
+            while (runs.size() > this.maxMergeFanIn) {
+                // the earliest runs are merged into a run that takes their place, to keep the sort stable
+                List<Run> mergeRuns = runs.subList(0, this.maxMergeFanIn);
+                MergeIterator mergeIterator = new MergeIterator(new ArrayList<Run>(mergeRuns), codec);
+                Run mergedRun;
+                try {
+                    mergedRun = this.writeRun(mergeIterator, codec);
+                } finally {
+                    mergeIterator.close();
+                }
+                mergeRuns.clear();
+                runs.add(0, mergedRun);
+            }
+
+            return new MergeIterator(runs, codec);
+        } catch (IOException e) {
+            deleteRuns(runs);
+            throw new RuntimeException("Failed to sort the data via the temporary files", e);
+        } catch (RuntimeException | Error e) {
+            deleteRuns(runs);
+            throw e;
+        }
+    }
+
+    private static void deleteRuns(List<Run> runs) {
+        for (Run run : runs) {
+            run.delete();
+        }
+    }
+
+    private Run writeRun(List<CatoDataObject> runData, RowCodec codec) throws IOException {
+        Collections.sort(runData, this.comparator);
+        return this.writeRun(runData.iterator(), codec);
+    }
+
+    private Run writeRun(Iterator<CatoDataObject> sortedData, RowCodec codec) throws IOException {
+        Run run = new Run(File.createTempFile("obevo-comparer-sort-", ".run", this.tempDir));
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(run.file), FILE_BUFFER_SIZE));
+            try {
+                while (sortedData.hasNext()) {
+                    codec.write(out, sortedData.next());
+                    run.rowCount++;
+                }
+            } finally {
+                out.close();
+            }
+            return run;
+        } catch (IOException | RuntimeException | Error e) {
+            run.delete();
+            throw e;
+        }
+    }
+
+    /**
+     * Estimates the heap size of the data object: the object and its value array, plus the boxed values.
+     */
+    private static long estimateSize(CatoDataObject obj) {
+        long size = 48;
+        for (String field : obj.getFields()) {
+            Object value = obj.getValue(field);
+            size += 8;
+            if (value instanceof String) {
+                size += 40 + 2L * ((String) value).length();
+            } else if (value instanceof BigDecimal) {
+                size += 64;
+            } else if (value instanceof Number || value instanceof Boolean || value instanceof Date) {
+                size += 24;
+            } else if (value != null) {
+                size += 64;
+            }
+        }
+        return size;
+    }
+
+    private static class Run {
+        private final File file;
+        private long rowCount;
+
+        Run(File file) {
+            this.file = file;
+        }
+
+        void delete() {
+            if (!this.file.delete() && this.file.exists()) {
+                LOG.warn("Failed to delete the sort run file {}", this.file);
+            }
+        }
+    }
+
+    /**
+     * Reads the rows of a run, holding the next row to be merged.
+     */
+    private static class RunReader implements Closeable {
+        private final Run run;
+        private final int runIndex;
+        private final RowCodec codec;
+        private final DataInputStream in;
+        private long remainingRows;
+        private CatoDataObject head;
+
+        RunReader(Run run, int runIndex, RowCodec codec) throws IOException {
+            this.run = run;
+            this.runIndex = runIndex;
+            this.codec = codec;
+            this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(run.file), FILE_BUFFER_SIZE));
+            this.remainingRows = run.rowCount;
+        }
+
+        boolean advance() throws IOException {
+            if (this.remainingRows == 0) {
+                this.head = null;
+                return false;
+            }
+            this.head = this.codec.read(this.in);
+            this.remainingRows--;
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                this.in.close();
+            } finally {
+                this.run.delete();
+            }
+        }
+    }
+
+    /**
+     * k-way merge of the runs, via a priority queue of the run readers ordered by their next row. Ties are broken by
+     * the run order, as the runs are in the order of the input data. Closing it deletes the runs that are not read yet.
+     */
+    private class MergeIterator implements Iterator<CatoDataObject>, Closeable {
+        private final PriorityQueue<RunReader> readers;
+
+        MergeIterator(List<Run> runs, RowCodec codec) throws IOException {
+            this.readers = new PriorityQueue<RunReader>(runs.size(), new Comparator<RunReader>() {
+                @Override
+                public int compare(RunReader reader1, RunReader reader2) {
+                    int result = ExternalMergeSort.this.comparator.compare(reader1.head, reader2.head);
+                    return result != 0 ? result : Integer.compare(reader1.runIndex, reader2.runIndex);
+                }
+            });
+            for (int i = 0; i < runs.size(); i++) {
+                try {
+                    this.offerOrClose(new RunReader(runs.get(i), i, codec));
+                } catch (IOException | RuntimeException | Error e) {
+                    this.close();
+                    deleteRuns(runs.subList(i, runs.size()));
+                    throw e;
+                }
+            }
+        }
+
+        private void offerOrClose(RunReader reader) throws IOException {
+            if (reader.advance()) {
+                this.readers.add(reader);
+            } else {
+                reader.close();
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !this.readers.isEmpty();
+        }
+
+        @Override
+        public CatoDataObject next() {
+            RunReader reader = this.readers.poll();
+            if (reader == null) {
+                throw new NoSuchElementException();
+            }
+            CatoDataObject obj = reader.head;
+            try {
+                this.offerOrClose(reader);
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to read the sort run file " + reader.run.file, e);
+            }
+            return obj;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void close() {
+            for (RunReader reader : this.readers) {
+                try {
+                    reader.close();
+                } catch (IOException e) {
+                    LOG.warn("Failed to close the sort run file {}", reader.run.file, e);
+                }
+            }
+            this.readers.clear();
+        }
+    }
+
+    /**
+     * Writes and reads the data objects in the run file format. Each row is written as its schema ID, followed by the
+     * field ID and value of each non-null value, and ended by a 0; the schemas and field names are kept in memory and
+     * are written by ID. The IDs and the lengths are written as variable-length ints.
+     */
+    private static class RowCodec {
+        private static final byte TYPE_STRING = 1;
+        private static final byte TYPE_INTEGER = 2;
+        private static final byte TYPE_LONG = 3;
+        private static final byte TYPE_DOUBLE = 4;
+        private static final byte TYPE_BIG_DECIMAL = 5;
+        private static final byte TYPE_BOOLEAN = 6;
+        private static final byte TYPE_TIMESTAMP = 7;
+        private static final byte TYPE_SQL_DATE = 8;
+        private static final byte TYPE_SQL_TIME = 9;
+        private static final byte TYPE_DATE = 10;
+        private static final byte TYPE_SERIALIZED = 11;
+
+        private final Map<CatoDataSchema, Integer> schemaIds = new IdentityHashMap<CatoDataSchema, Integer>();
+        private final List<CatoDataSchema> schemas = new ArrayList<CatoDataSchema>();
+        private final Map<String, Integer> fieldIds = new HashMap<String, Integer>();
+        private final List<String> fieldNames = new ArrayList<String>();
+        private byte[] readBuffer = new byte[256];
+
+        void write(DataOutputStream out, CatoDataObject obj) throws IOException {
+            Integer schemaId = this.schemaIds.get(obj.getSchema());
+            if (schemaId == null) {
+                schemaId = this.schemas.size();
+                this.schemaIds.put(obj.getSchema(), schemaId);
+                this.schemas.add(obj.getSchema());
+            }
+            writeVarInt(out, schemaId);
+
+            for (String field : obj.getFields()) {
+                Object value = obj.getValue(field);
+                if (value != null) {
+                    Integer fieldId = this.fieldIds.get(field);
+                    if (fieldId == null) {
+                        fieldId = this.fieldNames.size() + 1;
+                        this.fieldIds.put(field, fieldId);
+                        this.fieldNames.add(field);
+                    }
+                    writeVarInt(out, fieldId);
+                    this.writeValue(out, field, value);
+                }
+            }
+            writeVarInt(out, 0);
+        }
+
+        CatoDataObject read(DataInputStream in) throws IOException {
+            CatoDataObject obj = this.schemas.get(readVarInt(in)).createDataObject();
+            for (int fieldId = readVarInt(in); fieldId != 0; fieldId = readVarInt(in)) {
+                obj.setValue(this.fieldNames.get(fieldId - 1), this.readValue(in));
+            }
+            return obj;
+        }
+
+        private void writeValue(DataOutputStream out, String field, Object value) throws IOException {
+            Class<?> valueClass = value.getClass();
+            if (valueClass == String.class) {
+                out.writeByte(TYPE_STRING);
+                this.writeBytes(out, ((String) value).getBytes(StandardCharsets.UTF_8));
+            } else if (valueClass == Integer.class) {
+                out.writeByte(TYPE_INTEGER);
+                out.writeInt((Integer) value);
+            } else if (valueClass == Long.class) {
+                out.writeByte(TYPE_LONG);
+                out.writeLong((Long) value);
+            } else if (valueClass == Double.class) {
+                out.writeByte(TYPE_DOUBLE);
+                out.writeDouble((Double) value);
+            } else if (valueClass == BigDecimal.class) {
+                out.writeByte(TYPE_BIG_DECIMAL);
+                out.writeInt(((BigDecimal) value).scale());
+                this.writeBytes(out, ((BigDecimal) value).unscaledValue().toByteArray());
+            } else if (valueClass == Boolean.class) {
+                out.writeByte(TYPE_BOOLEAN);
+                out.writeBoolean((Boolean) value);
+            } else if (valueClass == Timestamp.class) {
+                out.writeByte(TYPE_TIMESTAMP);
+                out.writeLong(((Timestamp) value).getTime());
+                out.writeInt(((Timestamp) value).getNanos());
+            } else if (valueClass == java.sql.Date.class) {
+                out.writeByte(TYPE_SQL_DATE);
+                out.writeLong(((Date) value).getTime());
+            } else if (valueClass == Time.class) {
+                out.writeByte(TYPE_SQL_TIME);
+                out.writeLong(((Date) value).getTime());
+            } else if (valueClass == Date.class) {
+                out.writeByte(TYPE_DATE);
+                out.writeLong(((Date) value).getTime());
+            } else {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                ObjectOutputStream objectOut = new ObjectOutputStream(bytes);
+                try {
+                    objectOut.writeObject(value);
+                } catch (NotSerializableException e) {
+                    throw new IllegalStateException("Cannot write the value of field " + field + " to the sort run file, as its type "
+                            + valueClass.getName() + " is not serializable; please increase the sort memory budget to sort the data in memory", e);
+                }
+                objectOut.close();
+                out.writeByte(TYPE_SERIALIZED);
+                this.writeBytes(out, bytes.toByteArray());
+            }
+        }
+
+        private Object readValue(DataInputStream in) throws IOException {
+            byte type = in.readByte();
+            switch (type) {
+            case TYPE_STRING:
+                int length = this.readBytes(in);
+                return new String(this.readBuffer, 0, length, StandardCharsets.UTF_8);
+            case TYPE_INTEGER:
+                return in.readInt();
+            case TYPE_LONG:
+                return in.readLong();
+            case TYPE_DOUBLE:
+                return in.readDouble();
+            case TYPE_BIG_DECIMAL:
+                int scale = in.readInt();
+                byte[] unscaledValue = new byte[readVarInt(in)];
+                in.readFully(unscaledValue);
+                return new BigDecimal(new BigInteger(unscaledValue), scale);
+            case TYPE_BOOLEAN:
+                return in.readBoolean();
+            case TYPE_TIMESTAMP:
+                Timestamp timestamp = new Timestamp(in.readLong());
+                timestamp.setNanos(in.readInt());
+                return timestamp;
+            case TYPE_SQL_DATE:
+                return new java.sql.Date(in.readLong());
+            case TYPE_SQL_TIME:
+                return new Time(in.readLong());
+            case TYPE_DATE:
+                return new Date(in.readLong());
+            case TYPE_SERIALIZED:
+                int serializedLength = this.readBytes(in);
+                ObjectInputStream objectIn = new ObjectInputStream(new ByteArrayInputStream(this.readBuffer, 0, serializedLength));
+                try {
+                    return objectIn.readObject();
+                } catch (ClassNotFoundException e) {
+                    throw new IOException(e);
+                } finally {
+                    objectIn.close();
+                }
+            default:
+                throw new IOException("Unexpected value type " + type + " in the sort run file");
+            }
+        }
+
+        private void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+            writeVarInt(out, bytes.length);
+            out.write(bytes);
+        }
+
+        /**
+         * Reads a length-prefixed byte array into the read buffer, returning the length.
+         */
+        private int readBytes(DataInputStream in) throws IOException {
+            int length = readVarInt(in);
+            if (this.readBuffer.length < length) {
+                this.readBuffer = new byte[Math.max(length, 2 * this.readBuffer.length)];
+            }
+            in.readFully(this.readBuffer, 0, length);
+            return length;
+        }
+
+        private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+            while ((value & ~0x7F) != 0) {
+                out.writeByte((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            out.writeByte(value);
+        }
+
+        private static int readVarInt(DataInputStream in) throws IOException {
+            int value = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = in.readByte();
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+        }
+    }
+}
@@ -34,7 +34,7 @@ import com.gs.obevocomparer.data.CatoDataObject;
 import com.gs.obevocomparer.data.CatoDataSchema;
 import com.gs.obevocomparer.data.simple.SimpleDataSchema;
 import com.gs.obevocomparer.sort.Sort;
-import com.gs.obevocomparer.sort.simple.MemorySort;
+import com.gs.obevocomparer.sort.simple.ExternalMergeSort;
 import com.gs.obevocomparer.util.CatoConfiguration;
 import com.gs.obevocomparer.util.CollectionFactory;
 import com.gs.obevocomparer.util.Factory;
@@ -87,7 +87,9 @@ public class CatoSimpleJavaConfiguration implements CatoConfiguration {
     }
 
     public Sort<CatoDataObject> sort() {
-        return new MemorySort<CatoDataObject>(this.dataObjectComparator());
+        long memoryBudgetBytes = this.properties.getSortMemoryBudgetBytes();
+        return new ExternalMergeSort(this.dataObjectComparator(),
+                memoryBudgetBytes > 0 ? memoryBudgetBytes : ExternalMergeSort.getDefaultMemoryBudgetBytes());
     }
 
     @Override
@@ -24,11 +24,13 @@ import java.text.SimpleDateFormat;
 import java.util.Collection;
 import java.util.Date;
 import java.util.List;
+import java.util.function.Consumer;
 
 import com.gs.obevocomparer.compare.CatoBreakExcluder;
 import com.gs.obevocomparer.compare.CatoComparison;
 import com.gs.obevocomparer.compare.CatoDataSourceComparator;
 import com.gs.obevocomparer.compare.CatoProperties;
+import com.gs.obevocomparer.compare.breaks.Break;
 import com.gs.obevocomparer.compare.simple.SimpleCatoProperties;
 import com.gs.obevocomparer.input.CatoDataSource;
 import com.gs.obevocomparer.input.db.QueryDataSource;
@@ -105,6 +107,32 @@ public class CatoBaseUtil {
         return result;
     }
 
+    /**
+     * Compares data sources that are both sorted by the key fields, passing each break to the breakHandler as it is
+     * found instead of collecting the breaks and data into a {@link CatoComparison}. Break excludes are not supported
+     * in this mode.
+     *
+     * @throws IllegalStateException if either data source is not sorted by the key fields
+     */
+    public static void compareSorted(CatoDataSource leftDataSource, CatoDataSource rightDataSource,
+            CatoProperties properties, Consumer<Break> breakHandler) {
+        if (properties.getBreakExcludes() != null && properties.getBreakExcludes().size() != 0) {
+            throw new IllegalArgumentException("Break excludes are not supported for sorted comparisons");
+        }
+
+        LOG.info("Beginning sorted comparison of left data source '{}' to right data source '{}'", leftDataSource.getName(),
+                rightDataSource.getName());
+
+        CatoConfiguration appContext = new CatoSimpleJavaConfiguration(properties);
+        leftDataSource.setCatoConfiguration(appContext);
+        rightDataSource.setCatoConfiguration(appContext);
+
+        appContext.dataSourceComparator().compareSorted(leftDataSource, rightDataSource, breakHandler);
+
+        LOG.info("Completed sorted comparison of left data source '{}' to right data source '{}'", leftDataSource.getName(),
+                rightDataSource.getName());
+    }
+
     public static void writeComparison(CatoComparison comparison, CatoComparisonWriter comparisonWriter)
             throws IOException {
         comparisonWriter.writeComparison(comparison);
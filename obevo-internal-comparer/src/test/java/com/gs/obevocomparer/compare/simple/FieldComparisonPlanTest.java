@@ -0,0 +1,82 @@
+/**
+ * Copyright 2017 Goldman Sachs.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.gs.obevocomparer.compare.simple;
+
+import com.gs.obevocomparer.compare.breaks.FieldBreak;
+import com.gs.obevocomparer.data.simple.SimpleDataObject;
+import com.gs.obevocomparer.data.simple.SimpleDataSchema;
+import com.gs.obevocomparer.util.TestUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class FieldComparisonPlanTest {
+
+    private final SimpleCatoProperties properties = TestUtil.getProperties();
+    private final FieldComparisonPlan.Cache comparisonPlans = new FieldComparisonPlan.Cache(this.properties, new SimpleDataComparator());
+    private final SimpleDataSchema leftSchema = new SimpleDataSchema();
+    private final SimpleDataSchema rightSchema = new SimpleDataSchema();
+
+    @Test
+    public void testCompare() {
+        this.properties.addMappedField("Val 2", "Right Val 2");
+        SimpleDataObject leftObj = this.createDataObject(this.leftSchema, "Key 1", "A", "Key 2", 1, "Val 1", 1.0, "Val 2", "x", "Val 4", 1);
+        SimpleDataObject rightObj = this.createDataObject(this.rightSchema, "Key 1", "A ", "Key 2", 1, "Val 1", 1, "Right Val 2", "x", "Val 4", 2);
+
+        FieldComparisonPlan plan = this.comparisonPlans.get(this.leftSchema, this.rightSchema);
+        Assert.assertSame(plan, this.comparisonPlans.get(this.leftSchema, this.rightSchema));
+        Assert.assertNull(plan.compare(leftObj, rightObj));
+
+        rightObj.setValue("Right Val 2", "y");
+        FieldBreak fieldBreak = plan.compare(leftObj, rightObj);
+        Assert.assertEquals(1, fieldBreak.getFieldBreaks().size());
+        Assert.assertEquals("y", fieldBreak.getExpectedValue("Val 2"));
+
+        try {
+            rightObj.setValue("Key 2", 2);
+            plan.compare(leftObj, rightObj);
+            Assert.fail();
+        } catch (IllegalArgumentException ex) {
+        }
+    }
+
+    @Test
+    public void testPlanIsRecompiledWhenFieldsAreAdded() {
+        SimpleDataObject leftObj = this.createDataObject(this.leftSchema, "Key 1", "A", "Key 2", 1, "Val 1", 1);
+        SimpleDataObject rightObj = this.createDataObject(this.rightSchema, "Key 1", "A", "Key 2", 1, "Val 1", 1);
+
+        FieldComparisonPlan plan = this.comparisonPlans.get(this.leftSchema, this.rightSchema);
+        Assert.assertNull(plan.compare(leftObj, rightObj));
+
+        // a field that only the right side has is a break, even on the objects that were created before it was added
+        this.createDataObject(this.rightSchema, "Key 1", "B", "Key 2", 1, "Val 1", 1, "Val 3", 3);
+        Assert.assertFalse(plan.isCurrent());
+
+        FieldComparisonPlan recompiledPlan = this.comparisonPlans.get(this.leftSchema, this.rightSchema);
+        Assert.assertNotSame(plan, recompiledPlan);
+        Assert.assertTrue(recompiledPlan.isCurrent());
+        FieldBreak fieldBreak = recompiledPlan.compare(leftObj, rightObj);
+        Assert.assertTrue(fieldBreak.getFieldBreaks().containsKey("Val 3"));
+        Assert.assertNull(fieldBreak.getExpectedValue("Val 3"));
+    }
+
+    private SimpleDataObject createDataObject(SimpleDataSchema schema, Object... fields) {
+        SimpleDataObject obj = schema.createDataObject();
+        for (int i = 0; i < fields.length; i += 2) {
+            obj.setValue(fields[i].toString(), fields[i + 1]);
+        }
+        return obj;
+    }
+}
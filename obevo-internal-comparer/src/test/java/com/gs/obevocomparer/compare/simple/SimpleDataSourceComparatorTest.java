@@ -15,6 +15,10 @@
  */
 package com.gs.obevocomparer.compare.simple;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
 import com.gs.obevocomparer.compare.CatoComparison;
 import com.gs.obevocomparer.compare.CatoDataSide;
 import com.gs.obevocomparer.compare.breaks.Break;
@@ -348,6 +352,112 @@ public class SimpleDataSourceComparatorTest {
         this.assertBreaks(dataSource1, dataSource2, 2, 3, 1, 4, 1);
     }
 
+    @Test
+    public void compareSortedTest() {
+        dataSource1 = new MockDataSource();
+        dataSource2 = new MockDataSource();
+
+        dataSource2.addData(1, 1, 1, 2, 3);
+        dataSource1.addData(1, 2, 3, 4, 5);
+        dataSource2.addData(1, 2, 3, 4, 5);
+        dataSource1.addData(1, 3, 1, 2, 3);
+        dataSource2.addData(1, 3, 1, 2, 4);
+        dataSource1.addData(1, 4, 1, 2, 3);
+
+        List<Break> breaks = new ArrayList<Break>();
+        comparator.compareSorted(dataSource1, dataSource2, breaks::add);
+
+        Assert.assertEquals(3, breaks.size());
+        Assert.assertTrue(breaks.get(0) instanceof DataObjectBreak);
+        Assert.assertEquals(CatoDataSide.RIGHT, breaks.get(0).getDataSide());
+        Assert.assertTrue(breaks.get(1) instanceof FieldBreak);
+        Assert.assertTrue(breaks.get(2) instanceof DataObjectBreak);
+        Assert.assertEquals(CatoDataSide.LEFT, breaks.get(2).getDataSide());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void compareSortedFailsOnUnsortedData() {
+        dataSource1 = new MockDataSource();
+        dataSource2 = new MockDataSource();
+
+        dataSource1.addData(1, 3, 1, 2, 3);
+        dataSource1.addData(1, 2, 3, 4, 5);
+
+        comparator.compareSorted(dataSource1, dataSource2, br -> { });
+    }
+
+    @Test
+    public void parallelCompareMatchesSequentialCompare() {
+        Random random = new Random(42);
+        dataSource1 = new MockDataSource();
+        dataSource2 = new MockDataSource();
+        for (int i = 0; i < 2000; i++) {
+            dataSource1.addData(random.nextInt(20), random.nextInt(50), random.nextInt(3), random.nextInt(3), 1);
+            dataSource2.addData(random.nextInt(20), random.nextInt(50), random.nextInt(3), random.nextInt(3), 1);
+        }
+        this.assertParallelCompareMatchesSequentialCompare();
+
+        // keys of different types are compared by their toString() values, which is done on a single thread
+        dataSource1.addData("3", 7, 1, 1, 1);
+        dataSource2.addData(3, "7", 1, 1, 2);
+        this.assertParallelCompareMatchesSequentialCompare();
+    }
+
+    @Test
+    public void groupIdsCountTheGroupsWithoutBreaks() {
+        dataSource1 = new MockDataSource();
+        dataSource2 = new MockDataSource();
+        dataSource1.addData(1, 2, 3, 4, 5);
+        dataSource1.addData(1, 2, 3, 4, 6);
+        dataSource2.addData(1, 2, 3, 4, 5);
+        dataSource2.addData(1, 2, 3, 4, 6);
+
+        dataSource1.addData(1, 3, 3, 4, 5);
+        dataSource1.addData(1, 3, 3, 4, 6);
+        dataSource2.addData(1, 3, 3, 4, 7);
+
+        for (int threads : new int[] { 1, 2 }) {
+            CatoComparison comparison = this.compareWithThreads(threads);
+            Assert.assertEquals(3, comparison.getBreaks().size());
+            for (Break br : comparison.getBreaks()) {
+                Assert.assertEquals(2, ((GroupBreak) br).getGroupId());
+            }
+        }
+    }
+
+    private void assertParallelCompareMatchesSequentialCompare() {
+        CatoComparison sequentialComparison = this.compareWithThreads(1);
+        List<String> sequentialBreaks = this.describeBreaks(sequentialComparison);
+        Assert.assertTrue(sequentialBreaks.size() > 100);
+
+        for (int threads : new int[] { 2, 5 }) {
+            CatoComparison parallelComparison = this.compareWithThreads(threads);
+            Assert.assertEquals(sequentialBreaks, this.describeBreaks(parallelComparison));
+            Assert.assertEquals(new ArrayList<CatoDataObject>(sequentialComparison.getLeftData()), new ArrayList<CatoDataObject>(parallelComparison.getLeftData()));
+            Assert.assertEquals(new ArrayList<CatoDataObject>(sequentialComparison.getRightData()), new ArrayList<CatoDataObject>(parallelComparison.getRightData()));
+        }
+    }
+
+    private CatoComparison compareWithThreads(int threads) {
+        CatoSimpleJavaConfiguration configuration = new CatoSimpleJavaConfiguration();
+        configuration.setProperties(TestUtil.getProperties().withCompareThreads(threads));
+        return configuration.dataSourceComparator().compare("Test Comp", dataSource1, dataSource2);
+    }
+
+    private List<String> describeBreaks(CatoComparison comparison) {
+        List<String> descriptions = new ArrayList<String>();
+        for (Break br : comparison.getBreaks()) {
+            String description = br.getClass().getSimpleName() + " " + br.getDataSide() + " " + System.identityHashCode(br.getDataObject());
+            if (br instanceof FieldBreak) {
+                description += " " + ((FieldBreak) br).getFields();
+            } else if (br instanceof GroupBreak) {
+                description += " " + ((GroupBreak) br).getGroupId() + " " + ((GroupBreak) br).getFields();
+            }
+            descriptions.add(description);
+        }
+        return descriptions;
+    }
+
     private void assertBreaks(MockDataSource dataSource1, MockDataSource dataSource2, int fieldBreakCount, int missingBreakCount, int additionalBreakCount) {
         this.assertBreaks(dataSource1, dataSource2, fieldBreakCount, missingBreakCount, additionalBreakCount, 0, 0);
     }
@@ -362,6 +472,7 @@ public class SimpleDataSourceComparatorTest {
 
             dataSource1.shuffle();
             dataSource2.shuffle();
+            this.properties.setCompareThreads(i % 2 + 1);
 
             CatoComparison comparison = comparator.compare("Test Comp", dataSource1, dataSource2);
 
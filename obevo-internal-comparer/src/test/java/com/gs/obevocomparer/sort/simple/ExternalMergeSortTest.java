@@ -0,0 +1,114 @@
+/**
+ * Copyright 2017 Goldman Sachs.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.gs.obevocomparer.sort.simple;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import com.gs.obevocomparer.compare.simple.SimpleDataComparator;
+import com.gs.obevocomparer.compare.simple.SimpleDataObjectComparator;
+import com.gs.obevocomparer.data.CatoDataObject;
+import com.gs.obevocomparer.data.simple.SimpleDataSchema;
+import com.gs.obevocomparer.sort.Sort;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ExternalMergeSortTest {
+    @Rule
+    public final TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private final Comparator<CatoDataObject> comparator =
+            new SimpleDataObjectComparator(new SimpleDataComparator(), Arrays.asList("key"));
+
+    @Test
+    public void testSpilledRunsAreMergedInOrder() throws Exception {
+        File tempDir = tempFolder.newFolder();
+        List<CatoDataObject> data = this.createData(1000);
+
+        // a budget of about 50 rows and a fan-in of 4 forces several merge passes
+        Iterator<CatoDataObject> sorted = new ExternalMergeSort(this.comparator, 20000, tempDir, 4).sort(data.iterator());
+        Assert.assertTrue(tempDir.list().length > 0);
+
+        Iterator<CatoDataObject> expected = new MemorySort<CatoDataObject>(this.comparator).sort(data.iterator());
+        while (expected.hasNext()) {
+            Assert.assertTrue(sorted.hasNext());
+            CatoDataObject expectedObj = expected.next();
+            CatoDataObject sortedObj = sorted.next();
+            for (String field : expectedObj.getFields()) {
+                Assert.assertEquals(field, expectedObj.getValue(field), sortedObj.getValue(field));
+            }
+        }
+        Assert.assertFalse(sorted.hasNext());
+        Assert.assertEquals(0, tempDir.list().length);
+    }
+
+    @Test
+    public void testRunFilesAreDeletedOnClose() throws Exception {
+        File tempDir = tempFolder.newFolder();
+        Iterator<CatoDataObject> sorted = new ExternalMergeSort(this.comparator, 20000, tempDir, 4).sort(this.createData(1000).iterator());
+        sorted.next();
+        Assert.assertTrue(tempDir.list().length > 0);
+
+        Sort.close(sorted);
+        Assert.assertEquals(0, tempDir.list().length);
+    }
+
+    @Test
+    public void testDataWithinBudgetIsSortedInMemory() throws Exception {
+        File tempDir = tempFolder.newFolder();
+        Iterator<CatoDataObject> sorted = new ExternalMergeSort(this.comparator, 1024 * 1024, tempDir).sort(this.createData(100).iterator());
+
+        Assert.assertEquals(0, tempDir.list().length);
+        for (int i = 0; i < 100; i++) {
+            Assert.assertEquals(i / 2, sorted.next().getValue("key"));
+        }
+        Assert.assertFalse(sorted.hasNext());
+    }
+
+    /**
+     * Creates the rows in random order, with two rows per key that can only be told apart by their input order.
+     */
+    private List<CatoDataObject> createData(int size) {
+        SimpleDataSchema schema = new SimpleDataSchema();
+        List<CatoDataObject> data = new ArrayList<CatoDataObject>();
+        for (int i = 0; i < size; i++) {
+            CatoDataObject obj = schema.createDataObject();
+            obj.setValue("key", i / 2);
+            obj.setValue("inputOrder", (long) i);
+            obj.setValue("name", i % 7 == 0 ? null : "name-é-" + i);
+            obj.setValue("amount", new BigDecimal("-12345678901234567890.123").add(BigDecimal.valueOf(i)));
+            obj.setValue("price", i * 1.5);
+            obj.setValue("flag", i % 2 == 0);
+            obj.setValue("timestamp", new Timestamp(1500000000000L + i));
+            obj.setValue("date", new Date(1500000000000L - i));
+            obj.setValue("ratio", (float) i);
+            data.add(obj);
+        }
+        Collections.shuffle(data, new Random(42));
+        return data;
+    }
+}